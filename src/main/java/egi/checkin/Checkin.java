@@ -4,45 +4,108 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.microprofile.rest.client.RestClientBuilder;
 import org.eclipse.microprofile.rest.client.RestClientDefinitionException;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.mutiny.tuples.Tuple2;
-
+import io.quarkus.runtime.Startup;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jboss.resteasy.reactive.client.api.QuarkusRestClientProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response.Status;
 import org.jboss.logging.Logger;
 import org.jboss.logging.MDC;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import egi.eu.IntegratedManagementSystemConfig;
+import egi.eu.ActionError;
 import egi.eu.ActionException;
+import egi.eu.InvalidationBus;
+import egi.eu.model.MembershipReconciliation;
 import egi.eu.model.RoleInfo;
+import egi.eu.model.User;
 import egi.checkin.model.*;
 
 
 /**
- * Check-in AAI
+ * Check-in AAI.
+ * Shared by all resources, holds the REST client and the cached membership.
+ * Methods that call Check-in take the test stub to pass in header x-test-stub,
+ * which selects the mock stub in unit/integration tests.
  */
+@Startup
+@ApplicationScoped
 public class Checkin {
 
     private static final Logger log = Logger.getLogger(Checkin.class);
-    private static CheckinService checkin;
-    private static Map<String, CheckinUser> voMembers;  // Does not cache assigned roles
-    private static long voMembersUpdatedAt = 0;         // Milliseconds since epoch
-    private static CheckinRoleList roleRecords;
-    private static long rolesUpdatedAt = 0;             // Milliseconds since epoch
+    private CheckinGuard checkin;                       // Null if the configuration is invalid
+    private volatile CheckinUserIndex voMembers;        // Does not cache assigned roles
+    private volatile long voMembersUpdatedAt = 0;       // Milliseconds since epoch
+    private volatile CheckinRecordStore voRecords;      // The VO members were built from these
+    private volatile long voMembersValidUntil = CheckinValidity.NEVER; // Next validity boundary
+    private volatile CheckinRoleList roleRecords;
+    private volatile long rolesUpdatedAt = 0;           // Milliseconds since epoch
+
+    // Indexes derived from the cached role records, valid as long as the records
+    // and the VO members they were computed from do not change, and no record
+    // enters or leaves its validity interval
+    private volatile DerivedIndex groupMembers;
+    private volatile DerivedIndex usersWithRoles;
+    private volatile CheckinMembershipBitmaps membershipBitmaps;
+
+    // Set while serving the cache restored from a snapshot, until it is refreshed
+    private volatile boolean voMembersRestored = false;
+    private volatile boolean rolesRestored = false;
+    private final AtomicBoolean refreshingVoMembers = new AtomicBoolean(false);
+    private final AtomicBoolean refreshingRoles = new AtomicBoolean(false);
+
+    // User information by access token hash, least recently used evicted first
+    private static final int USERINFO_CACHE_SIZE = 1000;
+    private final Map<String, CachedUserInfo> userInfos = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUserInfo> eldest) {
+                return size() > USERINFO_CACHE_SIZE;
+            }
+        });
+    private final Map<String, Uni<CheckinUser>> userInfoLookups = new ConcurrentHashMap<>();
+
+    @Inject
+    CheckinConfig checkinConfig;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
 
-    private CheckinConfig checkinConfig;
-    private IntegratedManagementSystemConfig imsConfig;
+    @Inject
+    MeterRegistry registry;
 
-    // Pass to service in header x-test-stub, selects mock stub in unit/integration tests
-    private String stub;
+    @Inject
+    InvalidationBus invalidationBus;
+
+    @Inject
+    CheckinGuard guard;
 
 
     /***
@@ -50,11 +113,11 @@ public class Checkin {
      * @return True if VO members are available in the cache
      */
     private boolean voMembersCached() {
-        if(null == Checkin.voMembers)
+        if(null == this.voMembers)
             return false;
 
         final long millisecondsSinceEpoch = Instant.now().toEpochMilli();
-        final boolean stale = Checkin.voMembersUpdatedAt + this.checkinConfig.cacheMembers() < millisecondsSinceEpoch;
+        final boolean stale = this.voMembersUpdatedAt + this.checkinConfig.cacheMembers() < millisecondsSinceEpoch;
         return !stale;
     }
 
@@ -72,27 +135,184 @@ public class Checkin {
     }
 
     /***
-     * Ensure no role records are cached (need to reload them on next API call)
+     * Check if data restored from a snapshot is recent enough to be served
+     * @param updatedAt When the data was fetched from Check-in, milliseconds since epoch
+     * @return True if the data is not older than the configured maximum age
+     */
+    private boolean restoredUsable(long updatedAt) {
+        final long millisecondsSinceEpoch = Instant.now().toEpochMilli();
+        return updatedAt + this.checkinConfig.snapshotMaxAge().toMillis() >= millisecondsSinceEpoch;
+    }
+
+    /***
+     * Ensure no role records are cached (need to reload them on next API call),
+     * neither here nor in the other replicas
      */
     private void invalidateCachedRoleRecords() {
-       Checkin.roleRecords = null;
-       Checkin.rolesUpdatedAt = 0;
+        clearCachedRoleRecords();
+        this.invalidationBus.publish(InvalidationBus.TOPIC_CHECKIN_ROLES);
     }
 
-    /**
-     * Prepare REST client for EGI Check-in.
-     * @return true on success
+    /***
+     * Drop the cached role records after another replica changed them
+     */
+    void onInvalidation(@Observes InvalidationBus.Invalidation event) {
+        if(InvalidationBus.TOPIC_CHECKIN_ROLES.equals(event.topic)) {
+            log.debug("Role records changed by another replica");
+            clearCachedRoleRecords();
+        }
+    }
+
+    /***
+     * Ensure no role records are cached in this replica
+     */
+    private void clearCachedRoleRecords() {
+       this.roleRecords = null;
+       this.rolesUpdatedAt = 0;
+       this.rolesRestored = false;
+    }
+
+    /***
+     * Populate the caches from a snapshot saved by a previous run.
+     * The restored data is served even if stale, while it is being refreshed in the background,
+     * but not once it is older than the configured maximum age. It is never used to decide on
+     * changes, as it may miss changes made while we were down.
+     * @param snapshot The snapshot to restore
+     * @param groupName The configured group, role records of other groups are ignored
+     */
+    public void restoreSnapshot(CheckinSnapshot snapshot, String groupName) {
+        if(null == snapshot)
+            return;
+
+        if(null != snapshot.voMembers && null == this.voMembers) {
+            useSnapshotVoMembers(snapshot);
+            this.voMembersUpdatedAt = snapshot.voMembersUpdatedAt;
+            this.voMembersRestored = true;
+        }
+
+        if(null != snapshot.roleRecords && null == this.roleRecords &&
+           null != groupName && groupName.equals(snapshot.groupName)) {
+            this.roleRecords = snapshot.roleRecords;
+            this.rolesUpdatedAt = snapshot.rolesUpdatedAt;
+            this.rolesRestored = true;
+        }
+    }
+
+    /***
+     * Save the cached VO members and role records, so that they are available after a restart.
+     * Runs on a worker thread, the caller does not wait for it.
+     */
+    private void saveSnapshot() {
+        var file = this.checkinConfig.snapshotFile();
+        if(file.isEmpty() || file.get().isBlank())
+            return;
+
+        final var snapshot = snapshot();
+        final var path = Path.of(file.get());
+
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            try {
+                snapshot.save(path);
+                log.debug("Saved Check-in snapshot");
+            }
+            catch(IOException e) {
+                log.warnf("Cannot save Check-in snapshot: %s", e.getMessage());
+            }
+        });
+    }
+
+    /***
+     * Get the cached VO members and role records of the configured group
+     * @return Snapshot of the caches
+     */
+    public CheckinSnapshot snapshot() {
+        return new CheckinSnapshot(this.voMembers, this.voRecords, this.voMembersUpdatedAt,
+                                   this.imsConfig.group(), this.roleRecords, this.rolesUpdatedAt);
+    }
+
+    /***
+     * Populate the caches from a snapshot shared by the replica that refreshes them.
+     * Unlike {@link #restoreSnapshot}, this replaces what we have, if the snapshot is newer.
+     * @param snapshot The snapshot to apply
+     * @param groupName The configured group, role records of other groups are ignored
+     * @return True if any part of the snapshot was newer than our caches
      */
-    public boolean init(CheckinConfig checkinConfig, IntegratedManagementSystemConfig imsConfig, String stub) {
+    public boolean applySharedSnapshot(CheckinSnapshot snapshot, String groupName) {
+        if(null == snapshot)
+            return false;
+
+        boolean applied = false;
+        if(null != snapshot.voMembers && snapshot.voMembersUpdatedAt > this.voMembersUpdatedAt) {
+            useSnapshotVoMembers(snapshot);
+            this.voMembersUpdatedAt = snapshot.voMembersUpdatedAt;
+            this.voMembersRestored = false;
+            applied = true;
+        }
 
-        this.stub = stub;
+        if(null != snapshot.roleRecords && snapshot.rolesUpdatedAt > this.rolesUpdatedAt &&
+           null != groupName && groupName.equals(snapshot.groupName)) {
+            this.roleRecords = snapshot.roleRecords;
+            this.rolesUpdatedAt = snapshot.rolesUpdatedAt;
+            this.rolesRestored = false;
+            applied = true;
+        }
 
-        if(null != checkin)
-            return true;
+        return applied;
+    }
 
-        this.checkinConfig = checkinConfig;
-        this.imsConfig = imsConfig;
+    /***
+     * Cache the VO members from a snapshot.
+     * When the snapshot has the VO membership records, the members are rebuilt from them, so that
+     * memberships that started or ended since the snapshot was taken are applied, and so are the
+     * ones that start or end later.
+     */
+    private void useSnapshotVoMembers(CheckinSnapshot snapshot) {
+        if(null != snapshot.voRecords) {
+            buildVoMembers(snapshot.voRecords, Instant.now().toEpochMilli(), false);
+            return;
+        }
+
+        // Without records, validity is only applied again on the next fetch
+        this.voRecords = null;
+        this.voMembersValidUntil = CheckinValidity.NEVER;
+        this.voMembers = snapshot.voMembers;
+    }
+
+    /***
+     * Fetch the VO members and the role records of the configured group again,
+     * if they are close to expiring from the cache.
+     * @param refreshAt Refresh once this fraction of the cache time has passed
+     * @return True if anything was refreshed
+     */
+    public Uni<Boolean> refreshExpiringAsync(double refreshAt) {
+        if(null == checkin) {
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
+        }
+
+        final long now = Instant.now().toEpochMilli();
+        final boolean voMembersDue = null == this.voMembers || this.voMembersRestored ||
+                this.voMembersUpdatedAt + (long)(refreshAt * this.checkinConfig.cacheMembers()) <= now;
+        final boolean rolesDue = null == this.roleRecords || this.rolesRestored ||
+                this.rolesUpdatedAt + (long)(refreshAt * this.checkinConfig.cacheRoles()) <= now;
+
+        var voMembers = voMembersDue ?
+                fetchVoMembersAsync(this.imsConfig.vo(), null).replaceWith(true) :
+                Uni.createFrom().item(false);
+        var roles = rolesDue ?
+                fetchGroupMembersAndRolesAsync(this.imsConfig.group(), null).replaceWith(true) :
+                Uni.createFrom().item(false);
+
+        return Uni.combine().all().unis(voMembers, roles).asTuple()
+                  .map(refreshed -> refreshed.getItem1() || refreshed.getItem2());
+    }
 
+    /**
+     * Prepare REST client for EGI Check-in, once at startup.
+     * If the configuration is invalid, all calls to Check-in will fail.
+     */
+    @PostConstruct
+    void init() {
         MDC.put("checkinServer", this.checkinConfig.server());
 
         log.debug("Obtaining REST client for EGI Check-in");
@@ -104,17 +324,23 @@ public class Checkin {
             urlCheckin = new URL(urlCheckin.getProtocol(), urlCheckin.getHost(), urlCheckin.getPort(), "");
         } catch (MalformedURLException e) {
             log.error(e.getMessage());
-            return false;
+            return;
         }
 
         try {
-            // Create the REST client for EGI Check-in
-            var rcb = RestClientBuilder.newBuilder().baseUrl(urlCheckin);
-            checkin = rcb.build(CheckinService.class);
-
-            MDC.remove("checkinServer");
-
-            return true;
+            // Create the REST client for EGI Check-in, reusing connections across requests
+            var rcb = RestClientBuilder.newBuilder()
+                    .baseUrl(urlCheckin)
+                    .connectTimeout(this.checkinConfig.connectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(this.checkinConfig.readTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .property(QuarkusRestClientProperties.CONNECTION_POOL_SIZE, this.checkinConfig.connectionPoolSize())
+                    .property(QuarkusRestClientProperties.KEEP_ALIVE_ENABLED, true)
+                    .property(QuarkusRestClientProperties.CONNECTION_TTL, (int)this.checkinConfig.keepAlive().toSeconds())
+                    .property(QuarkusRestClientProperties.HTTP2, this.checkinConfig.http2());
+            var client = CheckinClientMetrics.wrap(rcb.build(CheckinService.class), registry,
+                                                   this.checkinConfig.connectionPoolSize());
+            guard.guard(client);
+            checkin = guard;
         }
         catch(IllegalStateException ise) {
             log.error(ise.getMessage());
@@ -122,33 +348,111 @@ public class Checkin {
         catch (RestClientDefinitionException rcde) {
             log.error(rcde.getMessage());
         }
-
-        return false;
+        finally {
+            MDC.remove("checkinServer");
+        }
     }
 
     /***
      * Retrieve information about authenticated user.
      * @param token Check-in access token
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return User information
      */
-    public Uni<CheckinUser> getUserInfoAsync(String token) {
+    public Uni<CheckinUser> getUserInfoAsync(String token, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
-        return checkin.getUserInfoAsync(token, stub);
+        // First check if we have it cached
+        final var key = null != stub ? tokenHash(token) + " " + stub : tokenHash(token);
+        final long now = Instant.now().toEpochMilli();
+        var cached = this.userInfos.get(key);
+        if(null != cached) {
+            if(cached.expiresAt > now) {
+                log.debug("Using cached user info");
+                return Uni.createFrom().item(cached.user);
+            }
+
+            this.userInfos.remove(key, cached);
+        }
+
+        // Concurrent requests with the same token share one lookup
+        final var coalesced = new AtomicBoolean(true);
+        var lookup = this.userInfoLookups.computeIfAbsent(key, k -> {
+            coalesced.set(false);
+            return fetchUserInfoAsync(token, stub)
+                .invoke(user -> {
+                    // Got user info, cache it
+                    this.userInfos.put(k, new CachedUserInfo(user, now + this.checkinConfig.cacheUserInfo()));
+                })
+                .onTermination().invoke(() -> this.userInfoLookups.remove(k))
+                .memoize().indefinitely();
+        });
+
+        if(coalesced.get()) {
+            log.debug("Joining pending user info lookup");
+            registry.counter("checkin.userinfo.coalesced").increment();
+        }
+
+        return lookup;
+    }
+
+    /***
+     * Fetch information about authenticated user from Check-in.
+     * If configured, when there is no response after the hedge delay a second request
+     * is sent, and the first response wins.
+     * @param token Check-in access token
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return User information
+     */
+    private Uni<CheckinUser> fetchUserInfoAsync(String token, String stub) {
+        var primary = checkin.getUserInfoAsync(token, stub);
+
+        var hedgeDelay = this.checkinConfig.userInfoHedgeDelay();
+        if(hedgeDelay.isEmpty())
+            return primary;
+
+        var hedged = Uni.createFrom().voidItem()
+            .onItem().delayIt().by(hedgeDelay.get())
+            .chain(unused -> {
+                // No response yet, send another request
+                log.debug("Hedging user info request");
+                registry.counter("checkin.userinfo.hedged").increment();
+                return checkin.getUserInfoAsync(token, stub);
+            });
+
+        return Uni.combine().any().of(primary, hedged);
+    }
+
+    /***
+     * Hash an access token, so that it can be used as a key without keeping the token around.
+     * @param token The access token, with or without the Bearer prefix
+     * @return Hex-encoded SHA-256 of the token
+     */
+    private static String tokenHash(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            var hash = digest.digest((null != token ? token : "").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        }
+        catch(NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 
     /***
      * List all groups and virtual organizations (VOs).
      * The configured Check-in credentials are usually scoped to just one VO.
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return List of all groups
      */
-    public Uni<CheckinGroupList> listGroupsAsync() {
+    public Uni<CheckinGroupList> listGroupsAsync(String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         var header = getBasicAuthHeader();
@@ -161,57 +465,82 @@ public class Checkin {
      * Although multiple membership records can exist for a user, e.g. with different
      * start/until dates and different statuses, this function returns just one
      * {@link CheckinUser} per user.
-     * @return List of all active VO members
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return All active VO members
      */
-    public Uni<List<CheckinUser>> listVoMembersAsync(String voName) {
+    public Uni<CheckinUserIndex> listVoMembersAsync(String voName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         MDC.put("voName", voName);
         MDC.put("coId", this.checkinConfig.coId());
 
+        // Apply the validity intervals of the cached records, in case some started or ended
+        applyVoMembersValidity();
+
         // First check if we have them cached
         if(voMembersCached()) {
             // We have a cache, and it's not stale
             log.info("Using cached VO members");
-            var users = Checkin.voMembers;
-            List<CheckinUser> userList = new ArrayList<>(users.values());
-            return Uni.createFrom().item(userList);
+            return Uni.createFrom().item(this.voMembers);
         }
 
-        Uni<List<CheckinUser>> result = Uni.createFrom().nullItem()
+        if(this.voMembersRestored && null != this.voMembers) {
+            if(!restoredUsable(this.voMembersUpdatedAt)) {
+                // Members from the last run are too old to serve, only fresh ones will do
+                log.warn("Restored VO members too old, fetching them");
+                return fetchVoMembersAsync(voName, stub)
+                    .onFailure().transform(e -> new ActionException("notReady", "VO members not loaded"));
+            }
 
-            .chain(unused -> {
-                log.info("Getting VO members");
-                return getGroupMembersAndRolesAsync(voName);
-            })
-            .chain(voRoles -> {
-                // Got VO role records, keep just the membership ones
-                var members = filterList(voRoles.records, role -> role.role.equals("member"));
-
-                Map<String, CheckinUser> users = new HashMap<>();
-                for(var role : members) {
-                    if(role.deleted || !role.status.equalsIgnoreCase("Active"))
-                        // Inactive membership record, skip
-                        continue;
+            // We have members from the last run, use them until they are refreshed
+            if(refreshingVoMembers.compareAndSet(false, true)) {
+                log.info("Refreshing restored VO members");
+                fetchVoMembersAsync(voName, stub)
+                    .onTermination().invoke(() -> refreshingVoMembers.set(false))
+                    .subscribe().with(unused -> {}, e -> log.warn("Failed to refresh restored VO members"));
+            }
 
-                    var user = new CheckinUser(role);
-                    if(!users.containsKey(user.checkinUserId))
-                        users.put(user.checkinUserId, user);
-                }
+            log.info("Using restored VO members");
+            return Uni.createFrom().item(this.voMembers);
+        }
 
-                if(this.checkinConfig.traceRoles())
-                    logGroupMembers(members, users, false);
+        return fetchVoMembersAsync(voName, stub)
+            .onFailure(CheckinGuard::isRejected).recoverWithUni(e -> {
+                // Check-in is unavailable, use the members we have, even if stale
+                final var stale = this.voMembers;
+                if(null == stale)
+                    return Uni.createFrom().failure(e);
 
-                // Cache VO member list
-                Checkin.voMembers = users;
-                Checkin.voMembersUpdatedAt = Instant.now().toEpochMilli();
+                log.warn("Using stale VO members, Check-in unavailable");
+                return Uni.createFrom().item(stale);
+            });
+    }
+
+    /***
+     * Fetch all members of a virtual organization (VO) from Check-in, and cache them.
+     * @return All active VO members
+     */
+    private Uni<CheckinUserIndex> fetchVoMembersAsync(String voName, String stub) {
+
+        Uni<CheckinUserIndex> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                log.info("Getting VO members");
+                return getVoRecordsAsync(voName, stub);
+            })
+            .chain(voRecords -> {
+                // Got VO role records, keep just the active memberships
+                final long now = Instant.now().toEpochMilli();
+                var index = buildVoMembers(voRecords, now, this.checkinConfig.traceRoles());
+                this.voMembersUpdatedAt = now;
+                this.voMembersRestored = false;
+                saveSnapshot();
 
                 // Return VO members
-                List<CheckinUser> userList = new ArrayList<>(users.values());
-                return Uni.createFrom().item(userList);
+                return Uni.createFrom().item(index);
             })
             .onFailure().invoke(e -> {
                 log.error("Failed to get VO members");
@@ -220,41 +549,99 @@ public class Checkin {
         return result;
     }
 
+    /***
+     * Build the VO members from the VO records, and cache them.
+     * @param voRecords The records of the VO
+     * @param now Milliseconds since epoch, only memberships valid at this moment are included
+     * @param logRecords Whether to dump the membership records in the log
+     * @return Active VO members
+     */
+    private CheckinUserIndex buildVoMembers(CheckinRecordStore voRecords, long now, boolean logRecords) {
+        var members = logRecords ? new ArrayList<CheckinRole>() : null;
+
+        Map<String, CheckinUser> users = new HashMap<>();
+        long validUntil = CheckinValidity.NEVER;
+        for(int i = 0; i < voRecords.size(); i++) {
+            if(!"member".equals(voRecords.role(i)))
+                // Role record, skip
+                continue;
+
+            if(logRecords)
+                members.add(voRecords.toRole(i));
+
+            if(voRecords.isDeleted(i) || !"Active".equalsIgnoreCase(voRecords.status(i)))
+                // Inactive membership record, skip
+                continue;
+
+            // Remember when the next membership starts or ends
+            validUntil = Math.min(validUntil, voRecords.nextBoundary(i, now));
+
+            if(!voRecords.isActiveMembership(i, now))
+                // Membership not valid at this time, skip
+                continue;
+
+            var checkinUserId = voRecords.checkinUserId(i);
+            if(null != checkinUserId && !users.containsKey(checkinUserId))
+                users.put(checkinUserId, voRecords.user(i));
+        }
+
+        if(logRecords)
+            logGroupMembers(members, users, false);
+
+        // Cache VO member list, sorted once for all pages served from it
+        var index = new CheckinUserIndex(users.values());
+        this.voMembers = index;
+        this.voRecords = voRecords;
+        this.voMembersValidUntil = validUntil;
+
+        return index;
+    }
+
+    /***
+     * Rebuild the cached VO members if a membership started or ended since they were built.
+     * This uses the cached VO records, Check-in is not called.
+     */
+    private void applyVoMembersValidity() {
+        final var records = this.voRecords;
+        final long now = Instant.now().toEpochMilli();
+        if(null == records || now < this.voMembersValidUntil)
+            return;
+
+        log.info("VO membership validity changed, rebuilding VO members");
+        buildVoMembers(records, now, false);
+    }
+
     /***
      * List all members of a group or virtual organization (VO).
      * Although multiple membership records can exist for a user, e.g. with different
      * start/until dates and different statuses, this function returns just one per user.
-     * @return List of all active group members, see also {@link CheckinUser}
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return All active group members, see also {@link CheckinUser}
      */
-    public Uni<List<CheckinUser>> listGroupMembersAsync(String groupName) {
+    public Uni<CheckinUserIndex> listGroupMembersAsync(String groupName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
-        Uni<List<CheckinUser>> result = Uni.createFrom().nullItem()
+        Uni<CheckinUserIndex> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
                 // Check-in does not enforce that users in a group are enrolled in the group's parent VO.
                 // Therefore, we must check ourselves and only return group members that are also
                 // members of the VO. This means we need the list of VO members, even if we are being
                 // called just to list members of the configured group.
-                return listVoMembersAsync(this.imsConfig.vo());
-            })
-            .chain(vom -> {
-                // VO members are now cached, get group role records
                 log.info("Getting members of group " + groupName);
-                return getGroupMembersAndRolesAsync(groupName);
+                return listVoMembersAndGroupRolesAsync(groupName, stub);
             })
-            .chain(groupRoles -> {
-                // Got group role records, keep just the membership ones
-                var members = filterToGroupMembers(groupRoles, this.checkinConfig.traceRoles());
-                if(null == members)
+            .chain(fetched -> {
+                // Got group role records, keep just the membership records
+                var index = groupMembersFrom(fetched.getItem2());
+                if(null == index)
                     return Uni.createFrom().failure(new ActionException("notReady"));
 
                 // Return group members
-                List<CheckinUser> userList = new ArrayList<>(members.values());
-                return Uni.createFrom().item(userList);
+                return Uni.createFrom().item(index);
             })
             .onFailure().invoke(e -> {
                 log.error("Failed to get group members");
@@ -263,39 +650,47 @@ public class Checkin {
         return result;
     }
 
+    /***
+     * Build the index of group members from the group role records.
+     * Reuses the members last computed from the same records, if any.
+     * @param groupRoles List of Check-in role records
+     * @return All active group members, null on error
+     */
+    private CheckinUserIndex groupMembersFrom(CheckinRoleList groupRoles) {
+        final long now = Instant.now().toEpochMilli();
+        final var voMembers = this.voMembers;
+        var cached = this.groupMembers;
+        if(null != cached && cached.isFor(groupRoles, voMembers, now))
+            return cached.index;
+
+        var members = filterToGroupMembers(groupRoles, now, this.checkinConfig.traceRoles());
+        if(null == members)
+            return null;
+
+        var index = new CheckinUserIndex(members.values());
+        if(groupRoles == this.roleRecords)
+            this.groupMembers = new DerivedIndex(groupRoles, voMembers, now, index);
+
+        return index;
+    }
+
     /***
      * Filter records to the ones that indicate membership in the group.
      * @param groupRoles List of Check-in role records
+     * @param now Milliseconds since epoch, only records valid at this moment are considered
      * @param logRecords Whether to dump the membership records in the log
      * @return List of member users, null on error
      */
-    private Map<String, CheckinUser> filterToGroupMembers(CheckinRoleList groupRoles, boolean logRecords) {
-        if(!voMembersCached()) {
-            // We need the VO members to be already cached
+    private Map<String, CheckinUser> filterToGroupMembers(CheckinRoleList groupRoles, long now, boolean logRecords) {
+        if(null == this.voMembers) {
+            // We need the VO members to be already loaded
             log.error("Cannot filter group members, VO members not loaded");
             return null;
         }
 
         // Keep just the records that mean membership in the group
-        var members = filterList(groupRoles.records, role -> role.role.equals("member"));
-
-        Map<String, CheckinUser> users = new HashMap<>();
-        for(var role : members) {
-            if(role.deleted || null == role.status || !role.status.equalsIgnoreCase("Active"))
-                // Not an active membership record, skip
-                continue;
-
-            // Only include users that are members of the configured VO
-            var user = new CheckinUser(role);
-            if(null == user.checkinUserId || user.checkinUserId.isBlank())
-                // Skip invalid users too
-                continue;
-
-            if(null != Checkin.voMembers && Checkin.voMembers.containsKey(user.checkinUserId) &&
-                    !users.containsKey(user.checkinUserId))
-                // This is a membership record, not a role record
-                users.put(user.checkinUserId, user);
-        }
+        var members = filterList(groupRoles.records, CheckinReconciliation::isMembership);
+        var users = CheckinReconciliation.groupMembers(this.voMembers, members, now);
 
         if(logRecords)
             logGroupMembers(members, users, true);
@@ -307,12 +702,13 @@ public class Checkin {
      * Add a user to a group.
      * @param checkinUserId The Id of the user to add to the group
      * @param groupName The group to add the user to
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return Details of membership record, see also {@link CheckinObject}
      */
-    public Uni<CheckinObject> addUserToGroupAsync(String checkinUserId, String groupName) {
+    public Uni<CheckinObject> addUserToGroupAsync(String checkinUserId, String groupName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         final var coId = checkinConfig.coId();
@@ -334,19 +730,13 @@ public class Checkin {
                 // add a new record for the role, we must check whether there is a record for this role
                 // that is marked deleted, and if so restore that instead of adding a new one.
                 // First, get the group membership records.
-                return getGroupMembersAndRolesAsync(groupName);
+                return getGroupRecordsForChangeAsync(groupName, stub);
             })
             .chain(roles -> {
                 // Got group membership records
-                var deleted = filterList(roles.records,
-                                         role -> checkinUserId.equals(role.person.checkinUserId()) &&
-                                                 role.role.equals("member") &&
-                                                 (role.deleted || role.status.equalsIgnoreCase("Deleted")) &&
-                                                 null == role.from && null == role.until);
-
-                if(!deleted.isEmpty()) {
+                var deletedRole = CheckinReconciliation.findDeletedMembership(roles, checkinUserId);
+                if(null != deletedRole) {
                     // Deleted membership record found, restore it
-                    var deletedRole = deleted.get(0);
                     MDC.put("roleId", deletedRole.roleId);
 
                     log.info("Restore membership record");
@@ -420,12 +810,13 @@ public class Checkin {
      * Remove a user from a group.
      * @param checkinUserId The Id of the user to remove from the group
      * @param groupName The group to remove the user from
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return True on success
      */
-    public Uni<Boolean> removeUserFromGroupAsync(String checkinUserId, String groupName) {
+    public Uni<Boolean> removeUserFromGroupAsync(String checkinUserId, String groupName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         final var coId = checkinConfig.coId();
@@ -441,19 +832,13 @@ public class Checkin {
 
             .chain(unused -> {
                 // First, get the group membership records
-                return getGroupMembersAndRolesAsync(groupName);
+                return getGroupRecordsForChangeAsync(groupName, stub);
             })
             .chain(roles -> {
                 // Got group membership records
-                var active = filterList(roles.records,
-                                        role -> checkinUserId.equals(role.person.checkinUserId()) &&
-                                                role.role.equals("member") &&
-                                                !role.deleted && !role.status.equalsIgnoreCase("Deleted") &&
-                                                null == role.from && null == role.until);
-
-                if(!active.isEmpty()) {
+                var activeRole = CheckinReconciliation.findActiveMembership(roles, checkinUserId);
+                if(null != activeRole) {
                     // Active membership record found, delete it
-                    var activeRole = active.get(0);
                     MDC.put("roleId", activeRole.roleId);
 
                     log.info("Delete membership record");
@@ -500,6 +885,131 @@ public class Checkin {
         return result;
     }
 
+    /***
+     * Bring the members of a group in line with a desired set of users.
+     * The changes are computed from VO members and group records freshly fetched from Check-in,
+     * never from the cache, then only the users that must be added or removed cause calls to
+     * Check-in, and at most reconcile-concurrency of these are in flight at once.
+     * Each change is independent, and is reported as soon as it is applied, so if the request
+     * is interrupted the applied changes are not lost and reconciling again applies just the
+     * changes still missing.
+     * @param groupName The group to reconcile
+     * @param desiredUsers The users that should be members of the group, all must be VO members
+     * @param dryRun If true, only compute the changes, do not apply them
+     * @param onApplied Called for each applied change, one at a time, its failure is ignored
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return The changes and their outcome
+     */
+    public Uni<MembershipReconciliation> reconcileGroupMembersAsync(String groupName, List<User> desiredUsers,
+                                                                    boolean dryRun,
+                                                                    Function<MembershipReconciliation.Change, Uni<?>> onApplied,
+                                                                    String stub) {
+        if(null == checkin) {
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
+        }
+
+        final var coId = checkinConfig.coId();
+
+        MDC.put("coId", coId);
+        MDC.put("groupName", groupName);
+
+        final var header = getBasicAuthHeader();
+
+        Uni<MembershipReconciliation> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Get the VO members and the group records, always fresh
+                log.info("Reconciling members of group " + groupName);
+                return Uni.combine().all()
+                          .unis(fetchVoMembersAsync(this.imsConfig.vo(), stub), fetchGroupMembersAndRolesAsync(groupName, stub))
+                          .asTuple();
+            })
+            .chain(fetched -> {
+                // Got VO members and group records, compute the changes
+                var reconciliation = CheckinReconciliation.plan(fetched.getItem1(), fetched.getItem2(),
+                                                                desiredUsers, Instant.now().toEpochMilli(), dryRun);
+                if(dryRun)
+                    return Uni.createFrom().item(reconciliation);
+
+                // Apply the changes, a few at a time
+                var planned = filterList(reconciliation.changes, c -> MembershipReconciliation.PLANNED.equals(c.status));
+                if(planned.isEmpty())
+                    return Uni.createFrom().item(reconciliation);
+
+                final var done = new AtomicInteger(0);
+                final var anyApplied = new AtomicBoolean(false);
+                return Multi.createFrom().iterable(planned)
+                    .onItem().transformToUni(change -> applyMembershipChangeAsync(change, groupName, coId, header, stub)
+                        .invoke(() -> {
+                            // Report progress
+                            log.infof("Reconciled %d of %d membership changes", done.incrementAndGet(), planned.size());
+                        }))
+                    .merge(Math.max(1, this.checkinConfig.reconcileConcurrency()))
+                    .onItem().transformToUniAndConcatenate(change -> {
+                        if(!MembershipReconciliation.APPLIED.equals(change.status))
+                            return Uni.createFrom().item(change);
+
+                        // Change applied, the cached records are out of date
+                        anyApplied.set(true);
+                        clearCachedRoleRecords();
+                        return onApplied.apply(change)
+                            .onFailure().invoke(e -> {
+                                log.warnf("Failed to report %s of %s", change.action, change.user.checkinUserId);
+                            })
+                            .onFailure().recoverWithNull()
+                            .replaceWith(change);
+                    })
+                    .onTermination().invoke((failure, cancelled) -> {
+                        // Also when interrupted, let the other replicas know the records changed
+                        if(anyApplied.get())
+                            invalidateCachedRoleRecords();
+                    })
+                    .collect().last()
+                    .map(unused -> reconciliation.count());
+            })
+            .onFailure().invoke(e -> {
+                log.error("Failed to reconcile group members");
+            });
+
+        return result;
+    }
+
+    /***
+     * Send one membership change to Check-in.
+     * Never fails, the outcome is recorded in the change.
+     * @return The change, with its status updated
+     */
+    private Uni<MembershipReconciliation.Change> applyMembershipChangeAsync(MembershipReconciliation.Change change,
+                                                                           String groupName, String coId,
+                                                                           String header, String stub) {
+        final var checkinUserId = change.user.checkinUserId;
+
+        Uni<?> call = switch(change.action) {
+            case MembershipReconciliation.RESTORE -> checkin.updateUserRoleAsync(header, stub, change.recordId,
+                    new CheckinRoleList(checkinUserId, groupName, coId, "member", "Active"));
+            case MembershipReconciliation.REMOVE -> checkin.updateUserRoleAsync(header, stub, change.recordId,
+                    new CheckinRoleList(checkinUserId, groupName, coId, "member", "Deleted"));
+            default -> checkin.addUserRoleAsync(header, stub,
+                    new CheckinRoleList(checkinUserId, groupName, coId, "member", "Active"));
+        };
+
+        return call
+            .map(unused -> {
+                // Change applied
+                change.status = MembershipReconciliation.APPLIED;
+                this.registry.counter("checkin.reconcile.changes", "action", change.action, "result", "applied").increment();
+                return change;
+            })
+            .onFailure().recoverWithItem(e -> {
+                log.warnf("Failed to %s membership of %s", change.action, checkinUserId);
+                change.status = MembershipReconciliation.FAILED;
+                change.error = new ActionError(e);
+                this.registry.counter("checkin.reconcile.changes", "action", change.action, "result", "failed").increment();
+                return change;
+            });
+    }
+
     /***
      * List all users with assigned roles in a group.
      * @param groupName The group under which assigned roles are considered
@@ -507,37 +1017,33 @@ public class Checkin {
      *                 If empty or null, all users holding roles are returned.
      *                 Note: Using this parameter means the returned users will not have
      *                 all their roles reported, just the ones matching this expression.
-     * @return List of all users holding effective roles in the group, see also {@link CheckinUser}
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return All users holding effective roles in the group, see also {@link CheckinUser}
      */
-    public Uni<List<CheckinUser>> listUsersWithGroupRolesAsync(String groupName, String roleName) {
+    public Uni<CheckinUserIndex> listUsersWithGroupRolesAsync(String groupName, String roleName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
-        Uni<List<CheckinUser>> result = Uni.createFrom().nullItem()
+        Uni<CheckinUserIndex> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
                 // Check-in does not enforce that users in a group are enrolled in the group's parent VO.
                 // Therefore, we must check ourselves and only return group members that are also
                 // members of the VO. This means we need the list of VO members, even if we are being
                 // called just to list members of the configured group.
-                return listVoMembersAsync(this.imsConfig.vo());
-            })
-            .chain(vom -> {
-                // VO members are now cached, get group role records
                 log.info("Getting users with roles in group " + groupName);
-                return getGroupMembersAndRolesAsync(groupName);
+                return listVoMembersAndGroupRolesAsync(groupName, stub);
             })
-            .chain(groupRoles -> {
-                // Got group role records, keep just the role ones
-                var usersWithRoles = filterToUsersWithGroupRoles(groupRoles, roleName, this.checkinConfig.traceRoles());
-                if(null == usersWithRoles)
+            .chain(fetched -> {
+                // Got group role records, keep just the role records
+                var index = usersWithGroupRolesFrom(fetched.getItem2(), roleName);
+                if(null == index)
                     return Uni.createFrom().failure(new ActionException("notReady"));
 
                 // Return users with roles
-                List<CheckinUser> users = usersWithRoles.values().stream().toList();
-                return Uni.createFrom().item(users);
+                return Uni.createFrom().item(index);
             })
             .onFailure().invoke(e -> {
                 log.error("Failed to get users with roles");
@@ -546,6 +1052,85 @@ public class Checkin {
         return result;
     }
 
+    /***
+     * Build the index of users with assigned roles from the group role records.
+     * When all roles are requested, reuses the role holders last computed from the same records, if any.
+     * @param groupRoles List of Check-in role records
+     * @param roleName Only return users holding roles that match this expression.
+     *                 If empty or null, all users holding roles are returned.
+     * @return All users holding effective roles in the group, null on error
+     */
+    private CheckinUserIndex usersWithGroupRolesFrom(CheckinRoleList groupRoles, String roleName) {
+        final boolean allRoles = null == roleName || roleName.isBlank();
+        final long now = Instant.now().toEpochMilli();
+        final var voMembers = this.voMembers;
+        var cached = this.usersWithRoles;
+        if(allRoles && null != cached && cached.isFor(groupRoles, voMembers, now))
+            return cached.index;
+
+        var usersWithRoles = filterToUsersWithGroupRoles(groupRoles, roleName, now, this.checkinConfig.traceRoles());
+        if(null == usersWithRoles)
+            return null;
+
+        var index = new CheckinUserIndex(usersWithRoles.values());
+        if(allRoles && groupRoles == this.roleRecords)
+            this.usersWithRoles = new DerivedIndex(groupRoles, voMembers, now, index);
+
+        return index;
+    }
+
+    /***
+     * Find users by combining VO membership, group membership, and roles with set operators.
+     * See {@link CheckinMembershipBitmaps} for the supported expressions.
+     * @param groupName The group under which membership and assigned roles are considered
+     * @param expression The set expression to evaluate, e.g. "vo ANDNOT group"
+     * @param stub Selects the mock stub in tests, pass null otherwise
+     * @return The matching users, with their roles filled if they hold any
+     */
+    public Uni<CheckinUserIndex> queryUsersAsync(String groupName, String expression, String stub) {
+        if(null == checkin) {
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
+        }
+
+        Uni<CheckinUserIndex> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Get the VO members and the group role records, both sets of group users are built from these
+                log.info("Querying users in group " + groupName);
+                return listVoMembersAndGroupRolesAsync(groupName, stub);
+            })
+            .chain(fetched -> {
+                // Got the records, get group members and role holders from them
+                var groupRoles = fetched.getItem2();
+                var groupMembers = groupMembersFrom(groupRoles);
+                var roleHolders = null != groupMembers ? usersWithGroupRolesFrom(groupRoles, null) : null;
+                if(null == roleHolders)
+                    return Uni.createFrom().failure(new ActionException("notReady"));
+
+                // Got all sets of users, reuse the bitmaps built from them, if any
+                final var voMembers = this.voMembers;
+                var bitmaps = this.membershipBitmaps;
+                if(null == bitmaps || !bitmaps.isFor(voMembers, groupMembers, roleHolders)) {
+                    bitmaps = new CheckinMembershipBitmaps(voMembers, groupMembers, roleHolders);
+                    this.membershipBitmaps = bitmaps;
+                }
+
+                try {
+                    var matches = bitmaps.evaluate(expression);
+                    return Uni.createFrom().item(bitmaps.users(matches));
+                }
+                catch(IllegalArgumentException e) {
+                    return Uni.createFrom().failure(new ActionException("badRequest", e.getMessage()));
+                }
+            })
+            .onFailure().invoke(e -> {
+                log.error("Failed to query users");
+            });
+
+        return result;
+    }
+
     /***
      * Filter records to the ones that indicate assigned roles in the group.
      * @param groupRoles List of Check-in role records
@@ -553,21 +1138,22 @@ public class Checkin {
      *                 If empty or null, all users holding roles are returned.
      *                 Note: Using this parameter means the returned users will not have
      *                 all their roles reported, just the ones matching this expression.
+     * @param now Milliseconds since epoch, only records valid at this moment are considered
      * @param logRecords Whether to dump the records in the log
      * @return List of users holding roles in the group, null on error.
      *         Unlike the cached list of VO members, the users in the returned list
      *         will have their <b>roles</b> field filled.
      */
-    private Map<String, CheckinUser> filterToUsersWithGroupRoles(CheckinRoleList groupRoles, String roleName, boolean logRecords) {
-        if(!voMembersCached()) {
-            // We need the VO members to be already cached
+    private Map<String, CheckinUser> filterToUsersWithGroupRoles(CheckinRoleList groupRoles, String roleName, long now, boolean logRecords) {
+        if(null == this.voMembers) {
+            // We need the VO members to be already loaded
             log.error("Cannot filter group roles, VO members not loaded");
             return null;
         }
 
         // When determining assigned roles, ensure the user is a member in both the VO and the group
         // The VO members are cached, but the group members we need to calculate
-        var members = filterToGroupMembers(groupRoles, false);
+        var members = filterToGroupMembers(groupRoles, now, false);
 
         // Keep just the records that mean assigned role in the group
         // If an expression is specified, consider just matching roles
@@ -582,7 +1168,7 @@ public class Checkin {
 
         Map<String, CheckinUser> users = new HashMap<>();    // Users with assigned roles
         for(var role : records) {
-            if(role.deleted || !role.status.equalsIgnoreCase("Active"))
+            if(role.deleted || !role.status.equalsIgnoreCase("Active") || !CheckinValidity.isValid(role, now))
                 // Not an active role record, skip
                 continue;
 
@@ -592,7 +1178,7 @@ public class Checkin {
                 // Skip invalid users too
                 continue;
 
-            if(null != Checkin.voMembers && Checkin.voMembers.containsKey(user.checkinUserId) &&
+            if(null != this.voMembers && this.voMembers.contains(user.checkinUserId) &&
                     members.containsKey(user.checkinUserId)) {
                 // The user mentioned in this role record is both a VO and group member
                 if(users.containsKey(user.checkinUserId)) {
@@ -627,12 +1213,13 @@ public class Checkin {
      *                 If empty or null, all users holding roles are returned.
      *                 Note: Using this parameter means the returned users will not have
      *                 all their roles reported, just the ones matching this expression.
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return List of all users holding effective roles in the group, see also {@link CheckinUser}
      */
-    public Uni<List<RoleInfo>> listGroupRolesAsync(String groupName, String roleName) {
+    public Uni<List<RoleInfo>> listGroupRolesAsync(String groupName, String roleName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         Uni<List<RoleInfo>> result = Uni.createFrom().nullItem()
@@ -642,16 +1229,15 @@ public class Checkin {
                 // Therefore, we must check ourselves and only return group members that are also
                 // members of the VO. This means we need the list of VO members, even if we are being
                 // called just to list members of the configured group.
-                return listVoMembersAsync(this.imsConfig.vo());
-            })
-            .chain(vom -> {
-                // VO members are now cached, get group role records
                 log.info("Getting assigned roles in group " + groupName);
-                return getGroupMembersAndRolesAsync(groupName);
+                return listVoMembersAndGroupRolesAsync(groupName, stub);
             })
-            .chain(groupRoles -> {
+            .chain(fetched -> {
+                var groupRoles = fetched.getItem2();
+
                 // Got group role records, keep just the role ones
-                var rolesWithUsers = filterToGroupRoles(groupRoles, roleName, this.checkinConfig.traceRoles());
+                var rolesWithUsers = filterToGroupRoles(groupRoles, roleName, Instant.now().toEpochMilli(),
+                                                        this.checkinConfig.traceRoles());
                 if(null == rolesWithUsers)
                     return Uni.createFrom().failure(new ActionException("notReady"));
 
@@ -670,21 +1256,22 @@ public class Checkin {
      * Filter records to the ones that indicate assigned roles in the group.
      * @param groupRoles List of Check-in role records
      * @param roleName Role name fragment or regular expression
+     * @param now Milliseconds since epoch, only records valid at this moment are considered
      * @param logRecords Whether to dump the records in the log
      * @return Roles currently assigned in the group, null on error.
      *         Unlike the cached list of VO members, the users in the returned roles
      *         will have their <b>roles</b> field filled.
      */
-    private Map<String, RoleInfo> filterToGroupRoles(CheckinRoleList groupRoles, String roleName, boolean logRecords) {
-        if (!voMembersCached()) {
-            // We need the VO members to be already cached
+    private Map<String, RoleInfo> filterToGroupRoles(CheckinRoleList groupRoles, String roleName, long now, boolean logRecords) {
+        if(null == this.voMembers) {
+            // We need the VO members to be already loaded
             log.error("Cannot filter group roles, VO members not loaded");
             return null;
         }
 
         // When determining assigned roles, ensure the user is a member in both the VO and the group
         // The VO members are cached, but the group members we need to calculate
-        var members = filterToGroupMembers(groupRoles, false);
+        var members = filterToGroupMembers(groupRoles, now, false);
 
         // Keep just the records that mean assigned role in the group
         // If an expression is specified, consider just matching roles
@@ -701,7 +1288,8 @@ public class Checkin {
         Map<String, RoleInfo> roles = new HashMap<>();   // Roles assigned in the group
         Map<String, Set<String>> roleUsers = new HashMap<>(); // Tracks which role is assigned to which users
         for(var roleRecord : records) {
-            if(roleRecord.deleted || !roleRecord.status.equalsIgnoreCase("Active"))
+            if(roleRecord.deleted || !roleRecord.status.equalsIgnoreCase("Active") ||
+               !CheckinValidity.isValid(roleRecord, now))
                 // Not an active role record, skip
                 continue;
 
@@ -711,7 +1299,7 @@ public class Checkin {
                 // Skip invalid users too
                 continue;
 
-            if(null != Checkin.voMembers && Checkin.voMembers.containsKey(user.checkinUserId) &&
+            if(null != this.voMembers && this.voMembers.contains(user.checkinUserId) &&
                     members.containsKey(user.checkinUserId)) {
                 // The user mentioned in this role record is both a VO and group member
                 RoleInfo role = null;
@@ -775,16 +1363,17 @@ public class Checkin {
      * @param checkinUserId The Id of the user to assign the role to
      * @param groupName The group in which the role is assigned.
      *                  The user must be included this group before the operation is allowed.
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return Details of membership record, see also {@link CheckinObject}
      */
-    public Uni<CheckinObject> assignUserRoleAsync(String checkinUserId, String groupName, String roleName) {
+    public Uni<CheckinObject> assignUserRoleAsync(String checkinUserId, String groupName, String roleName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
-        if(voMembersCached()) {
-            if(!Checkin.voMembers.containsKey(checkinUserId)) {
+        if(!this.voMembersRestored && voMembersCached()) {
+            if(!this.voMembers.contains(checkinUserId)) {
                 log.error("Unknown user");
                 return Uni.createFrom().failure(new ActionException("notFound", "Unknown user"));
             }
@@ -803,22 +1392,20 @@ public class Checkin {
         Uni<CheckinObject> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
-                // We need the list of VO members to be able to determine group membership
-                return listVoMembersAsync(this.imsConfig.vo());
-            })
-            .chain(vom -> {
+                // We need the list of VO members to be able to determine group membership.
                 // Check-in allows multiple role records for the same role.
                 // However, once there are multiple records, with (at least) one being marked deleted,
                 // attempts to remove the role from the user (by marking it deleted) will fail,
                 // as there is already a record marked deleted for the role. Therefore, before we
                 // add a new record for the role, we must check whether there is a record for this role
                 // that is marked deleted, and if so restore that instead of adding a new one.
-                // First, get the group role records.
-                return getGroupMembersAndRolesAsync(groupName);
+                // So we also need the group role records.
+                return listVoMembersAndGroupRolesForChangeAsync(groupName, stub);
             })
-            .chain(roles -> {
+            .chain(fetched -> {
                 // Got group role records, check if the user is a member of the group
-                var members = filterToGroupMembers(roles, false);
+                var roles = fetched.getItem2();
+                var members = filterToGroupMembers(roles, Instant.now().toEpochMilli(), false);
                 if(null == members || !members.containsKey(checkinUserId)) {
                     // The user is not member of the group, cannot assign roles
                     log.error("User not member of group, cannot assign role");
@@ -911,12 +1498,13 @@ public class Checkin {
      * Revoke a role from a user.
      * @param checkinUserId The Id of the user to revoke the role from
      * @param groupName The group in which the role is assigned
+     * @param stub Selects the mock stub in tests, pass null otherwise
      * @return True on success
      */
-    public Uni<Boolean> revokeUserRoleAsync(String checkinUserId, String groupName, String roleName) {
+    public Uni<Boolean> revokeUserRoleAsync(String checkinUserId, String groupName, String roleName, String stub) {
         if(null == checkin) {
-            log.error("Check-in not ready, call init() first");
-            return Uni.createFrom().failure(new ActionException("notReady"));
+            log.error("No REST client for Check-in, check the configuration");
+            return Uni.createFrom().failure(new ActionException("invalidConfig"));
         }
 
         final var coId = checkinConfig.coId();
@@ -933,7 +1521,7 @@ public class Checkin {
 
             .chain(unused -> {
                 // First, get the group membership records
-                return getGroupMembersAndRolesAsync(groupName);
+                return getGroupRecordsForChangeAsync(groupName, stub);
             })
             .chain(roles -> {
                 // Got group membership records
@@ -992,13 +1580,107 @@ public class Checkin {
         return result;
     }
 
+    /***
+     * Fetch the VO members and the role records of a group concurrently.
+     * Filtering group records by VO membership needs both, but neither depends on the other,
+     * so on a cold cache this takes as long as the slower of the two calls.
+     * @param groupName The group to list records of.
+     * @return The VO members and the group role records
+     */
+    private Uni<Tuple2<CheckinUserIndex, CheckinRoleList>> listVoMembersAndGroupRolesAsync(final String groupName, final String stub) {
+        return Uni.combine().all()
+                  .unis(listVoMembersAsync(this.imsConfig.vo(), stub), getGroupMembersAndRolesAsync(groupName, stub))
+                  .asTuple();
+    }
+
+    /***
+     * Get the VO members and the role records of a group to decide on a change to them.
+     * Unlike {@link #listVoMembersAndGroupRolesAsync}, stale or restored data is never used, so
+     * when Check-in is unavailable the change fails right away instead of being based on records
+     * that may no longer be accurate.
+     * @param groupName The group to list records of.
+     * @return The VO members and the group role records
+     */
+    private Uni<Tuple2<CheckinUserIndex, CheckinRoleList>> listVoMembersAndGroupRolesForChangeAsync(final String groupName, final String stub) {
+        return Uni.combine().all()
+                  .unis(getVoMembersForChangeAsync(this.imsConfig.vo(), stub), getGroupRecordsForChangeAsync(groupName, stub))
+                  .asTuple();
+    }
+
+    /***
+     * Get the VO members to decide on a change, from the cache only if it is not stale
+     * and was fetched by this run.
+     * @param voName The VO to list members of.
+     * @return All active VO members
+     */
+    private Uni<CheckinUserIndex> getVoMembersForChangeAsync(final String voName, final String stub) {
+        applyVoMembersValidity();
+        if(!this.voMembersRestored && voMembersCached())
+            return Uni.createFrom().item(this.voMembers);
+
+        // Fail if rejected, do not fall back to the stale members
+        return fetchVoMembersAsync(voName, stub);
+    }
+
+    /***
+     * Get the role records of a group to decide on a change, from the cache only if it is not stale
+     * and was fetched by this run.
+     * @param groupName The group to list records of.
+     * @return List of records, see also {@link CheckinRoleList}
+     */
+    private Uni<CheckinRoleList> getGroupRecordsForChangeAsync(final String groupName, final String stub) {
+        final var group = this.imsConfig.group();
+        final var cached = this.roleRecords;
+        if(null != group && group.equals(groupName) && !this.rolesRestored && rolesCached() && null != cached)
+            return Uni.createFrom().item(cached);
+
+        // Fail if rejected, do not fall back to the stale records
+        return fetchGroupMembersAndRolesAsync(groupName, stub);
+    }
+
+    /***
+     * List all role records of a virtual organization (VO).
+     * VOs can have tens of thousands of records, so instead of deserializing them into
+     * {@link CheckinRoleList}, the response is parsed with a streaming parser into
+     * a {@link CheckinRecordStore} that keeps just the fields we use, chunk by chunk as the response arrives.
+     * @param voName The VO to list records of.
+     * @return Compact store of records
+     */
+    private Uni<CheckinRecordStore> getVoRecordsAsync(final String voName, final String stub) {
+
+        final var coId = checkinConfig.coId();
+
+        MDC.put("groupName", voName);
+        MDC.put("coId", coId);
+
+        Uni<CheckinRecordStore> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Get role records, parse each chunk as it arrives, inflating it on the fly if compressed
+                log.debug("Getting Check-in records");
+                var header = getBasicAuthHeader();
+                var encoding = this.checkinConfig.compression() ? "gzip" : null;
+                return checkin.listGroupMemberRecordsAsync(header, encoding, stub, coId, voName);
+            })
+            .onFailure(IOException.class).transform(e -> new ActionException(e, "invalidResponse"))
+            .invoke(records -> {
+                // Got all role records
+                log.debugf("Got %d Check-in records", records.size());
+            })
+            .onFailure().invoke(e -> {
+                log.error("Failed to get Check-in records");
+            });
+
+        return result;
+    }
+
     /***
      * List all role records for a group or virtual organization (VO).
      * Computes the role field.
      * @param groupName The group or VO to list records of.
      * @return List of records, see also {@link CheckinRoleList}
      */
-    private Uni<CheckinRoleList> getGroupMembersAndRolesAsync(final String groupName) {
+    private Uni<CheckinRoleList> getGroupMembersAndRolesAsync(final String groupName, final String stub) {
 
         final var coId = checkinConfig.coId();
 
@@ -1007,12 +1689,57 @@ public class Checkin {
 
         // First check if we have them cached
         final var group = this.imsConfig.group();
-        if(null != group && !group.isBlank() && group.equals(groupName) && rolesCached()) {
+        final boolean isGroup = null != group && !group.isBlank() && group.equals(groupName);
+        if(isGroup && rolesCached()) {
             // We have a cache, and it's not stale
             log.info("Using cached group role records");
             return Uni.createFrom().item(roleRecords);
         }
 
+        final var restored = this.roleRecords;
+        if(isGroup && this.rolesRestored && null != restored) {
+            if(!restoredUsable(this.rolesUpdatedAt)) {
+                // Role records from the last run are too old to serve, only fresh ones will do
+                log.warn("Restored group role records too old, fetching them");
+                return fetchGroupMembersAndRolesAsync(groupName, stub)
+                    .onFailure().transform(e -> new ActionException("notReady", "Group role records not loaded"));
+            }
+
+            // We have role records from the last run, use them until they are refreshed
+            if(refreshingRoles.compareAndSet(false, true)) {
+                log.info("Refreshing restored group role records");
+                fetchGroupMembersAndRolesAsync(groupName, stub)
+                    .onTermination().invoke(() -> refreshingRoles.set(false))
+                    .subscribe().with(unused -> {}, e -> log.warn("Failed to refresh restored group role records"));
+            }
+
+            log.info("Using restored group role records");
+            return Uni.createFrom().item(restored);
+        }
+
+        return fetchGroupMembersAndRolesAsync(groupName, stub)
+            .onFailure(CheckinGuard::isRejected).recoverWithUni(e -> {
+                // Check-in is unavailable, use the role records we have, even if stale
+                final var stale = this.roleRecords;
+                if(!isGroup || null == stale)
+                    return Uni.createFrom().failure(e);
+
+                log.warn("Using stale group role records, Check-in unavailable");
+                return Uni.createFrom().item(stale);
+            });
+    }
+
+    /***
+     * Fetch all role records for a group or virtual organization (VO) from Check-in.
+     * Computes the role field, and caches the records of the configured group.
+     * @param groupName The group or VO to list records of.
+     * @return List of records, see also {@link CheckinRoleList}
+     */
+    private Uni<CheckinRoleList> fetchGroupMembersAndRolesAsync(final String groupName, final String stub) {
+
+        final var coId = checkinConfig.coId();
+        final var group = this.imsConfig.group();
+
         Uni<CheckinRoleList> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
@@ -1057,6 +1784,8 @@ public class Checkin {
                     // Cache group role records
                     roleRecords = roles;
                     rolesUpdatedAt = Instant.now().toEpochMilli();
+                    rolesRestored = false;
+                    saveSnapshot();
                 }
 
                 return Uni.createFrom().item(roles);
@@ -1091,7 +1820,7 @@ public class Checkin {
             var trace = "userId:" + checkinUserId;
             var user = users.get(checkinUserId);
             if(null == user && onlyGroup && voMembersCached())
-                user = Checkin.voMembers.get(checkinUserId);
+                user = this.voMembers.get(checkinUserId);
 
             MDC.put("roleId", role.roleId);
             MDC.put("roleStatus", role.status);
@@ -1146,7 +1875,7 @@ public class Checkin {
             var trace = "userId:" + checkinUserId;
             var user = users.get(checkinUserId);
             if(null == user && voMembersCached())
-                user = Checkin.voMembers.get(checkinUserId);
+                user = this.voMembers.get(checkinUserId);
 
             MDC.put("roleId", role.roleId);
             MDC.put("roleName", role.role);
@@ -1246,4 +1975,42 @@ public class Checkin {
 
         return "Basic "+ encoded;
     }
+
+    /***
+     * User information fetched for an access token
+     */
+    private static class CachedUserInfo {
+        final CheckinUser user;
+        final long expiresAt;   // Milliseconds since epoch
+
+        CachedUserInfo(CheckinUser user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /***
+     * Users computed from a specific set of cached role records and VO members,
+     * until the next moment when one of the records starts or stops being valid
+     */
+    private static class DerivedIndex {
+        final CheckinRoleList source;
+        final CheckinUserIndex voMembers;
+        final long validUntil;          // Next validity boundary of the source records
+        final CheckinUserIndex index;
+
+        DerivedIndex(CheckinRoleList source, CheckinUserIndex voMembers, long builtAt, CheckinUserIndex index) {
+            this.source = source;
+            this.voMembers = voMembers;
+            this.validUntil = CheckinValidity.nextBoundary(source.records, builtAt);
+            this.index = index;
+        }
+
+        /***
+         * Check if this index is still valid for the specified role records and VO members
+         */
+        boolean isFor(CheckinRoleList records, CheckinUserIndex voMembers, long now) {
+            return this.source == records && this.voMembers == voMembers && now < this.validUntil;
+        }
+    }
 }
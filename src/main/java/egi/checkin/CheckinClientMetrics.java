@@ -0,0 +1,108 @@
+package egi.checkin;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/***
+ * Records metrics for the calls made through the Check-in REST client.
+ * These are measured around the client, not read from its connection pool. Calls in flight
+ * persistently above the configured connection limit suggest calls are waiting for a
+ * connection, but the number of open or idle connections is not known here.
+ */
+class CheckinClientMetrics implements InvocationHandler {
+
+    private final CheckinService target;
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+
+    /***
+     * Constructor
+     */
+    private CheckinClientMetrics(CheckinService target, MeterRegistry registry) {
+        this.target = target;
+        this.registry = registry;
+    }
+
+    /***
+     * Wrap a REST client, so that all its calls are measured
+     * @param client The REST client for Check-in
+     * @param registry Where to register the metrics
+     * @param connectionLimit The configured maximum number of connections
+     * @return Client that measures the calls, then delegates them to the wrapped client
+     */
+    static CheckinService wrap(CheckinService client, MeterRegistry registry, int connectionLimit) {
+        var handler = new CheckinClientMetrics(client, registry);
+
+        Gauge.builder("checkin.client.connections.limit", () -> connectionLimit)
+             .description("Configured maximum number of connections to Check-in")
+             .register(registry);
+        Gauge.builder("checkin.client.calls.in.flight", handler.inFlight, AtomicInteger::get)
+             .description("Calls to Check-in made through the client that have not completed yet")
+             .register(registry);
+
+        return (CheckinService)Proxy.newProxyInstance(CheckinService.class.getClassLoader(),
+                                                      new Class<?>[] { CheckinService.class }, handler);
+    }
+
+    /***
+     * Delegate a call to the wrapped client, measuring the returned Uni
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(this.target, args);
+        }
+        catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        final var name = method.getName();
+        if(result instanceof Multi<?> stream) {
+            // Streamed response, measured until the last chunk arrives
+            return Multi.createFrom().deferred(() -> {
+                final var sample = start();
+                return stream.onTermination().invoke((failure, cancelled) -> stop(sample, name, failure, cancelled));
+            });
+        }
+
+        if(!(result instanceof Uni<?> call))
+            return result;
+
+        return Uni.createFrom().deferred(() -> {
+            // Request is sent on subscription
+            final var sample = start();
+            return call.onTermination().invoke((item, failure, cancelled) -> stop(sample, name, failure, cancelled));
+        });
+    }
+
+    /***
+     * A call is sent
+     * @return Sample to pass to {@link #stop}
+     */
+    private Timer.Sample start() {
+        this.inFlight.incrementAndGet();
+        return Timer.start(this.registry);
+    }
+
+    /***
+     * A call has completed
+     */
+    private void stop(Timer.Sample sample, String name, Throwable failure, boolean cancelled) {
+        this.inFlight.decrementAndGet();
+
+        var outcome = null != failure ? "failure" : (cancelled ? "cancelled" : "success");
+        sample.stop(this.registry.timer("checkin.client.requests", "method", name, "outcome", outcome));
+    }
+}
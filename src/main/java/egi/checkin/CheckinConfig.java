@@ -1,9 +1,13 @@
 package egi.checkin;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
+import java.time.Duration;
+import java.util.Optional;
+
 
 /***
  * The EGI Check-in configuration
@@ -21,12 +25,88 @@ public interface CheckinConfig {
     @WithName("co-id")
     String coId();
 
+    // REST client connections, reused across requests.
+    // The pool itself is not measured, only the calls in flight through the client.
+    @WithName("connection-pool-size")
+    @WithDefault("20")
+    int connectionPoolSize();
+
+    @WithName("keep-alive")
+    @WithDefault("60s")
+    Duration keepAlive();
+
+    // Multiplex requests over HTTP/2 connections, when Check-in supports it
+    @WithName("http2")
+    @WithDefault("true")
+    boolean http2();
+
+    // Ask for compressed responses, the large membership lists compress well
+    @WithName("compression")
+    @WithDefault("true")
+    boolean compression();
+
+    @WithName("connect-timeout")
+    @WithDefault("5s")
+    Duration connectTimeout();
+
+    @WithName("read-timeout")
+    @WithDefault("30s")
+    Duration readTimeout();
+
+    // Only one replica, elected with a Postgres advisory lock, refreshes the
+    // cached membership and shares it with the others through the database
+    Refresher refresher();
+
+    interface Refresher {
+        @WithDefault("true")
+        boolean enabled();
+
+        // How often to refresh (leader) or check for a newer shared snapshot (followers)
+        @WithDefault("30s")
+        Duration interval();
+
+        // Refresh once this fraction of the cache time has passed, so followers never expire
+        @WithName("refresh-at")
+        @WithDefault("0.8")
+        double refreshAt();
+
+        // The advisory lock that elects the leader, same for all replicas
+        @WithName("lock-key")
+        @WithDefault("4947")
+        long lockKey();
+    }
+
+    // How long to reuse the fetched records, validity intervals are applied as they start or end
     @WithName("cache-vo-members")
     int cacheMembers();
 
     @WithName("cache-roles")
     int cacheRoles();
 
+    // How long to reuse the user information fetched for an access token
+    @WithName("cache-userinfo")
+    @WithDefault("60000")
+    int cacheUserInfo();
+
+    // Send a second user information request when the first one takes longer than this,
+    // set to about the 95th percentile of checkin.client.requests for getUserInfoAsync
+    @WithName("userinfo-hedge-delay")
+    Optional<Duration> userInfoHedgeDelay();
+
     @WithName("trace-roles")
     boolean traceRoles();
+
+    // How many membership changes to send to Check-in at once when reconciling a group
+    @WithName("reconcile-concurrency")
+    @WithDefault("4")
+    int reconcileConcurrency();
+
+    // File where the last fetched membership is saved, to be served right after a restart
+    @WithName("snapshot-file")
+    Optional<String> snapshotFile();
+
+    // Stop serving restored membership this long after it was fetched, if it could not be refreshed
+    @WithName("snapshot-max-age")
+    @WithDefault("1h")
+    Duration snapshotMaxAge();
 }
@@ -0,0 +1,143 @@
+package egi.checkin;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.tuples.Tuple2;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import egi.checkin.model.*;
+import egi.eu.ActionException;
+
+
+/***
+ * Protects us from a degraded Check-in.
+ * Each operation of the REST client has a circuit breaker, which opens when too many of the
+ * recent calls failed, and then rejects calls until a trial call succeeds. Client errors (4xx other
+ * than 408 and 429) mean the request was wrong, they do not count. A bulkhead caps the number of
+ * concurrent calls of each operation. Both are MicroProfile Fault Tolerance policies, their
+ * thresholds are only set in application.yml, with its global config keys, e.g. CircuitBreaker/delay.
+ * Rejected calls fail immediately with an {@link ActionException} "checkinUnavailable".
+ */
+@ApplicationScoped
+public class CheckinGuard {
+
+    private static final Logger log = Logger.getLogger(CheckinGuard.class);
+
+    public static final String REJECTED = "checkinUnavailable";
+
+    private CheckinService client;
+
+
+    /***
+     * Set the REST client to guard
+     * @param client The REST client for Check-in
+     */
+    void guard(CheckinService client) {
+        this.client = client;
+    }
+
+    /***
+     * Check if a call failed because it was rejected by the guard
+     * @param e The failure of the call
+     * @return True if the call was not sent to Check-in
+     */
+    static boolean isRejected(Throwable e) {
+        return e instanceof ActionException ae && REJECTED.equals(ae.id());
+    }
+
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "getUserInfoRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<CheckinUser> getUserInfoAsync(String auth, String stub) {
+        return this.client.getUserInfoAsync(auth, stub);
+    }
+
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "listAllGroupsRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<CheckinGroupList> listAllGroupsAsync(String auth, String stub, String coId) {
+        return this.client.listAllGroupsAsync(auth, stub, coId);
+    }
+
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "listGroupMembersRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<CheckinRoleList> listGroupMembersAsync(String auth, String stub, String coId, String groupName) {
+        return this.client.listGroupMembersAsync(auth, stub, coId, groupName);
+    }
+
+    /***
+     * List the records of a group or VO, parsed while the response streams in.
+     * The call is guarded until the whole response is parsed.
+     * @return Store with all records, fails with an {@link java.io.IOException} if the response is not valid
+     */
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "listGroupMemberRecordsRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<CheckinRecordStore> listGroupMemberRecordsAsync(String auth, String acceptEncoding, String stub,
+                                                               String coId, String groupName) {
+        return CheckinRecordStore.parseAsync(
+                this.client.listGroupMembersRawAsync(auth, acceptEncoding, stub, coId, groupName));
+    }
+
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "addUserRoleRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<CheckinObject> addUserRoleAsync(String auth, String stub, CheckinRoleList addRoles) {
+        return this.client.addUserRoleAsync(auth, stub, addRoles);
+    }
+
+    @CircuitBreaker(skipOn = CheckinRequestException.class)
+    @Bulkhead
+    @Fallback(fallbackMethod = "updateUserRoleRejected", applyOn = { CircuitBreakerOpenException.class, BulkheadException.class })
+    public Uni<String> updateUserRoleAsync(String auth, String stub, long roleId, CheckinRoleList updateRoles) {
+        return this.client.updateUserRoleAsync(auth, stub, roleId, updateRoles);
+    }
+
+
+    // Fallbacks for calls rejected by the circuit breaker or the bulkhead
+
+    Uni<CheckinUser> getUserInfoRejected(String auth, String stub, Throwable e) {
+        return reject("getUserInfoAsync", e);
+    }
+
+    Uni<CheckinGroupList> listAllGroupsRejected(String auth, String stub, String coId, Throwable e) {
+        return reject("listAllGroupsAsync", e);
+    }
+
+    Uni<CheckinRoleList> listGroupMembersRejected(String auth, String stub, String coId, String groupName, Throwable e) {
+        return reject("listGroupMembersAsync", e);
+    }
+
+    Uni<CheckinRecordStore> listGroupMemberRecordsRejected(String auth, String acceptEncoding, String stub,
+                                                           String coId, String groupName, Throwable e) {
+        return reject("listGroupMemberRecordsAsync", e);
+    }
+
+    Uni<CheckinObject> addUserRoleRejected(String auth, String stub, CheckinRoleList addRoles, Throwable e) {
+        return reject("addUserRoleAsync", e);
+    }
+
+    Uni<String> updateUserRoleRejected(String auth, String stub, long roleId, CheckinRoleList updateRoles, Throwable e) {
+        return reject("updateUserRoleAsync", e);
+    }
+
+    /***
+     * Fail a call without sending it to Check-in
+     * @param operation The rejected operation
+     * @param e Why the call was rejected, the circuit is open or the bulkhead is full
+     */
+    static <T> Uni<T> reject(String operation, Throwable e) {
+        final var reason = e instanceof CircuitBreakerOpenException ? "circuitOpen" : "bulkheadFull";
+        log.warnf("Check-in call %s rejected (%s)", operation, reason);
+
+        return Uni.createFrom().failure(new ActionException(REJECTED, "Check-in is unavailable",
+                                                            Tuple2.of("reason", reason)));
+    }
+}
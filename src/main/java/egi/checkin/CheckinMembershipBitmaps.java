@@ -0,0 +1,204 @@
+package egi.checkin;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import egi.checkin.model.CheckinUser;
+
+
+/***
+ * Membership and role holders as bitmaps, for set algebra over users.
+ * Each VO member gets a dense ordinal (its position in the Id order of the VO members),
+ * and there is one bitmap per set of users:
+ *      vo              All VO members
+ *      group           Members of the configured group (who are also VO members)
+ *      roles           Users holding any role in the group
+ *      role:NAME       Users holding the role NAME in the group
+ * Expressions combine sets with AND, OR, ANDNOT and parentheses, e.g.
+ * "vo ANDNOT group" or "role:ims-manager ANDNOT (role:ims-owner OR role:ims-developer)".
+ * AND and ANDNOT bind tighter than OR, operators are evaluated left to right.
+ */
+public class CheckinMembershipBitmaps {
+
+    public static final String VO = "vo";
+    public static final String GROUP = "group";
+    public static final String ROLES = "roles";
+    public static final String ROLE_PREFIX = "role:";
+
+    private static final Pattern TOKEN = Pattern.compile("\\s*(\\(|\\)|[^\\s()]+)");
+
+    private final CheckinUserIndex voMembers;
+    private final CheckinUserIndex groupMembers;
+    private final CheckinUserIndex roleHolders;
+    private final List<CheckinUser> users;       // By ordinal
+    private final Map<String, BitSet> sets = new HashMap<>();
+
+
+    /***
+     * Constructor
+     * @param voMembers The VO members, all users get an ordinal from this index
+     * @param groupMembers The members of the group
+     * @param roleHolders The users holding roles in the group, with their roles filled
+     */
+    public CheckinMembershipBitmaps(CheckinUserIndex voMembers, CheckinUserIndex groupMembers, CheckinUserIndex roleHolders) {
+        this.voMembers = voMembers;
+        this.groupMembers = groupMembers;
+        this.roleHolders = roleHolders;
+        this.users = voMembers.all(CheckinUserIndex.SortBy.ID);
+
+        final int size = this.users.size();
+        var vo = new BitSet(size);
+        vo.set(0, size);
+
+        var group = new BitSet(size);
+        var anyRole = new BitSet(size);
+        for(int ordinal = 0; ordinal < size; ordinal++) {
+            var checkinUserId = this.users.get(ordinal).checkinUserId;
+            if(groupMembers.contains(checkinUserId))
+                group.set(ordinal);
+
+            var holder = roleHolders.get(checkinUserId);
+            if(null == holder || null == holder.roles || holder.roles.isEmpty())
+                continue;
+
+            anyRole.set(ordinal);
+            for(var role : holder.roles)
+                this.sets.computeIfAbsent(ROLE_PREFIX + role.toLowerCase(), r -> new BitSet(size)).set(ordinal);
+        }
+
+        this.sets.put(VO, vo);
+        this.sets.put(GROUP, group);
+        this.sets.put(ROLES, anyRole);
+    }
+
+    /***
+     * Check if these bitmaps were built from the specified indexes
+     * @return True if still valid for the indexes
+     */
+    public boolean isFor(CheckinUserIndex voMembers, CheckinUserIndex groupMembers, CheckinUserIndex roleHolders) {
+        return this.voMembers == voMembers && this.groupMembers == groupMembers && this.roleHolders == roleHolders;
+    }
+
+    /***
+     * Evaluate a set expression
+     * @param expression The expression to evaluate
+     * @return Bitmap of the ordinals of the matching users
+     * @throws IllegalArgumentException If the expression is not valid
+     */
+    public BitSet evaluate(String expression) {
+        if(null == expression || expression.isBlank())
+            throw new IllegalArgumentException("Empty expression");
+
+        var tokens = new ArrayList<String>();
+        Matcher matcher = TOKEN.matcher(expression);
+        int end = 0;
+        while(matcher.find() && matcher.start() == end) {
+            tokens.add(matcher.group(1));
+            end = matcher.end();
+        }
+
+        var parser = new Parser(tokens);
+        var result = parser.parseOr();
+        if(parser.position < tokens.size())
+            throw new IllegalArgumentException("Unexpected " + tokens.get(parser.position));
+
+        return result;
+    }
+
+    /***
+     * Get the users in a bitmap
+     * @param bitmap Ordinals of users, as returned by {@link #evaluate(String)}
+     * @return Index of the users, with their roles filled if they hold any
+     */
+    public CheckinUserIndex users(BitSet bitmap) {
+        var selected = new ArrayList<CheckinUser>(bitmap.cardinality());
+        for(int ordinal = bitmap.nextSetBit(0); ordinal >= 0; ordinal = bitmap.nextSetBit(ordinal + 1)) {
+            var user = this.users.get(ordinal);
+            var holder = this.roleHolders.get(user.checkinUserId);
+            selected.add(null != holder ? holder : user);
+        }
+
+        return new CheckinUserIndex(selected);
+    }
+
+    /***
+     * Get a set by name
+     * @return Copy of the bitmap, callers may modify it
+     */
+    private BitSet set(String name) {
+        var key = name.toLowerCase();
+        var set = this.sets.get(key);
+        if(null != set)
+            return (BitSet)set.clone();
+
+        if(key.startsWith(ROLE_PREFIX) && key.length() > ROLE_PREFIX.length())
+            // Nobody holds this role
+            return new BitSet(this.users.size());
+
+        throw new IllegalArgumentException("Unknown set " + name);
+    }
+
+
+    /***
+     * Recursive descent parser that evaluates while parsing
+     */
+    private class Parser {
+        private final List<String> tokens;
+        private int position = 0;
+
+        Parser(List<String> tokens) { this.tokens = tokens; }
+
+        BitSet parseOr() {
+            var result = parseAnd();
+            while(accept("OR"))
+                result.or(parseAnd());
+
+            return result;
+        }
+
+        BitSet parseAnd() {
+            var result = parseTerm();
+            while(true) {
+                if(accept("AND"))
+                    result.and(parseTerm());
+                else if(accept("ANDNOT"))
+                    result.andNot(parseTerm());
+                else
+                    return result;
+            }
+        }
+
+        BitSet parseTerm() {
+            if(this.position >= this.tokens.size())
+                throw new IllegalArgumentException("Unexpected end of expression");
+
+            if(accept("(")) {
+                var result = parseOr();
+                if(!accept(")"))
+                    throw new IllegalArgumentException("Missing )");
+
+                return result;
+            }
+
+            var name = this.tokens.get(this.position++);
+            if(name.equals(")") || isOperator(name))
+                throw new IllegalArgumentException("Unexpected " + name);
+
+            return set(name);
+        }
+
+        private boolean accept(String token) {
+            if(this.position < this.tokens.size() && this.tokens.get(this.position).equalsIgnoreCase(token)) {
+                this.position++;
+                return true;
+            }
+
+            return false;
+        }
+
+        private boolean isOperator(String token) {
+            return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR") || token.equalsIgnoreCase("ANDNOT");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package egi.checkin;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import egi.eu.ActionError;
+import egi.eu.model.MembershipReconciliation;
+import egi.eu.model.User;
+import egi.checkin.model.CheckinRole;
+import egi.checkin.model.CheckinRoleList;
+import egi.checkin.model.CheckinUser;
+
+
+/***
+ * Planning of group membership changes.
+ * Works only on the records passed in, so the plan is exactly as accurate as they are.
+ * All times are milliseconds since epoch.
+ */
+final class CheckinReconciliation {
+
+    private CheckinReconciliation() {}
+
+    /***
+     * Check if a record is a membership in the group (as opposed to a role in it)
+     */
+    public static boolean isMembership(CheckinRole role) {
+        return "member".equals(role.role);
+    }
+
+    /***
+     * Check if a record is marked deleted
+     */
+    private static boolean isDeleted(CheckinRole role) {
+        return Boolean.TRUE.equals(role.deleted) || (null != role.status && role.status.equalsIgnoreCase("Deleted"));
+    }
+
+    /***
+     * The users that are members of the group at a moment.
+     * @param voMembers The members of the VO, group members must also be VO members
+     * @param records The membership records of the group
+     * @param now Only records valid at this moment are considered
+     * @return Members of the group, by Check-in user Id
+     */
+    public static Map<String, CheckinUser> groupMembers(CheckinUserIndex voMembers, List<CheckinRole> records, long now) {
+        Map<String, CheckinUser> users = new HashMap<>();
+        if(null == records)
+            return users;
+
+        for(var role : records) {
+            if(!isMembership(role) || Boolean.TRUE.equals(role.deleted) || null == role.status ||
+               !role.status.equalsIgnoreCase("Active") || !CheckinValidity.isValid(role, now))
+                // Not an active membership record, skip
+                continue;
+
+            // Only include users that are members of the configured VO
+            var user = new CheckinUser(role);
+            if(null == user.checkinUserId || user.checkinUserId.isBlank())
+                // Skip invalid users too
+                continue;
+
+            if(voMembers.contains(user.checkinUserId) && !users.containsKey(user.checkinUserId))
+                users.put(user.checkinUserId, user);
+        }
+
+        return users;
+    }
+
+    /***
+     * Find the membership record of a user that is marked deleted, and can be restored.
+     * Records with a validity interval are not considered.
+     * @return The record, null if there is none
+     */
+    public static CheckinRole findDeletedMembership(CheckinRoleList records, String checkinUserId) {
+        if(null != records.records)
+            for(var role : records.records)
+                if(checkinUserId.equals(role.person.checkinUserId()) && isMembership(role) && isDeleted(role) &&
+                   null == role.from && null == role.until)
+                    return role;
+
+        return null;
+    }
+
+    /***
+     * Find the active membership record of a user, which can be marked deleted.
+     * Records with a validity interval are not considered.
+     * @return The record, null if there is none
+     */
+    public static CheckinRole findActiveMembership(CheckinRoleList records, String checkinUserId) {
+        if(null != records.records)
+            for(var role : records.records)
+                if(checkinUserId.equals(role.person.checkinUserId()) && isMembership(role) && !isDeleted(role) &&
+                   null == role.from && null == role.until)
+                    return role;
+
+        return null;
+    }
+
+    /***
+     * Compute the changes that bring the members of a group in line with a desired set of users.
+     * Desired users that are not VO members, and members whose record has a validity interval
+     * (cannot be removed without losing it), get a change that is already failed.
+     * @param voMembers The members of the VO
+     * @param records The membership records of the group
+     * @param desiredUsers The users that should be members of the group
+     * @param now Only records valid at this moment count as membership
+     * @param dryRun Recorded in the plan
+     * @return The planned changes
+     */
+    public static MembershipReconciliation plan(CheckinUserIndex voMembers, CheckinRoleList records,
+                                                List<User> desiredUsers, long now, boolean dryRun) {
+        var reconciliation = new MembershipReconciliation(dryRun);
+        var members = groupMembers(voMembers, records.records, now);
+
+        var desired = new LinkedHashMap<String, User>();
+        for(var user : desiredUsers)
+            if(null != user && null != user.checkinUserId && !user.checkinUserId.isBlank())
+                desired.putIfAbsent(user.checkinUserId, user);
+
+        for(var user : desired.values()) {
+            if(members.containsKey(user.checkinUserId)) {
+                reconciliation.unchanged++;
+                continue;
+            }
+
+            var voMember = voMembers.get(user.checkinUserId);
+            if(null == voMember) {
+                // Group members must be VO members, cannot add
+                reconciliation.changes.add(new MembershipReconciliation.Change(user, MembershipReconciliation.ADD,
+                                           new ActionError("notFound", "User is not a member of the VO")));
+                continue;
+            }
+
+            var deletedRole = findDeletedMembership(records, user.checkinUserId);
+            reconciliation.changes.add(null != deletedRole ?
+                    new MembershipReconciliation.Change(new User(voMember), MembershipReconciliation.RESTORE, deletedRole.roleId) :
+                    new MembershipReconciliation.Change(new User(voMember), MembershipReconciliation.ADD, 0));
+        }
+
+        for(var member : members.values()) {
+            if(desired.containsKey(member.checkinUserId))
+                continue;
+
+            var activeRole = findActiveMembership(records, member.checkinUserId);
+            reconciliation.changes.add(null != activeRole ?
+                    new MembershipReconciliation.Change(new User(member), MembershipReconciliation.REMOVE, activeRole.roleId) :
+                    new MembershipReconciliation.Change(new User(member), MembershipReconciliation.REMOVE,
+                            new ActionError("badRequest", "Membership has a validity interval, change it in Check-in")));
+        }
+
+        return reconciliation.count();
+    }
+}
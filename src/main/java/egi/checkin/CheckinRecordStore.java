@@ -0,0 +1,824 @@
+package egi.checkin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import egi.checkin.model.CheckinRole;
+import egi.checkin.model.CheckinUser;
+
+
+/***
+ * Compact, read-only store of Check-in membership records.
+ * Parsed straight from a VoMembers response with a streaming parser, keeping only the
+ * fields we use. Records are stored column by column in primitive arrays, the few distinct
+ * values of status, affiliation, and title are dictionary-encoded, dates are stored as
+ * milliseconds since epoch, and the details of each person are stored only once.
+ */
+public class CheckinRecordStore {
+
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Record columns
+    private final int size;
+    private final long[] recordIds;
+    private final int[] persons;        // Index in person columns, -1 if no person
+    private final short[] statuses;     // Codes in dictionary
+    private final short[] affiliations;
+    private final short[] titles;
+    private final short[] roles;        // Lowercase title, or affiliation when there is no title
+    private final long[] validFrom;     // Milliseconds since epoch, NO_DATE if not set
+    private final long[] validThrough;
+    private final BitSet deleted;
+    private final String[] dictionary;  // Code 0 is null
+
+    // Person columns
+    private final String[] userIds;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final String[] emails;
+    private final BitSet emailVerified;
+
+
+    /***
+     * Constructor
+     */
+    private CheckinRecordStore(Builder b) {
+        this.size = b.size;
+        this.recordIds = Arrays.copyOf(b.recordIds, b.size);
+        this.persons = Arrays.copyOf(b.persons, b.size);
+        this.statuses = Arrays.copyOf(b.statuses, b.size);
+        this.affiliations = Arrays.copyOf(b.affiliations, b.size);
+        this.titles = Arrays.copyOf(b.titles, b.size);
+        this.roles = Arrays.copyOf(b.roles, b.size);
+        this.validFrom = Arrays.copyOf(b.validFrom, b.size);
+        this.validThrough = Arrays.copyOf(b.validThrough, b.size);
+        this.deleted = b.deleted;
+        this.dictionary = b.dictionary.toArray(new String[0]);
+
+        final int personCount = b.userIds.size();
+        this.userIds = b.userIds.toArray(new String[personCount]);
+        this.firstNames = b.firstNames.toArray(new String[personCount]);
+        this.lastNames = b.lastNames.toArray(new String[personCount]);
+        this.emails = b.emails.toArray(new String[personCount]);
+        this.emailVerified = b.emailVerified;
+    }
+
+    /***
+     * Parse a VoMembers response.
+     * @param body The response body, a CoPersonRoles object, optionally gzip-compressed
+     * @return Store with all records in the response
+     * @throws IOException If the response is not valid JSON
+     */
+    public static CheckinRecordStore parse(byte[] body) throws IOException {
+        if(body.length >= 2 && (byte)0x1f == body[0] && (byte)0x8b == body[1]) {
+            // Compressed, inflate while parsing
+            try(var in = new GZIPInputStream(new ByteArrayInputStream(body));
+                var parser = jsonFactory.createParser(in)) {
+                var store = parse(parser);
+
+                // Read to the end, so the trailers are verified and all members inflated
+                in.transferTo(OutputStream.nullOutputStream());
+                return store;
+            }
+        }
+
+        try(var parser = jsonFactory.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    /***
+     * Parse a VoMembers response.
+     * @param in Stream with the response body, a CoPersonRoles object
+     * @return Store with all records in the response
+     * @throws IOException If the response cannot be read, or it is not valid JSON
+     */
+    public static CheckinRecordStore parse(InputStream in) throws IOException {
+        try(var parser = jsonFactory.createParser(in)) {
+            return parse(parser);
+        }
+    }
+
+    /***
+     * Parse a VoMembers response, chunk by chunk as it arrives.
+     * @param body The response body, a CoPersonRoles object, optionally gzip-compressed
+     * @return Store with all records in the response, fails with an {@link IOException}
+     *         if the response is not valid JSON
+     */
+    public static Uni<CheckinRecordStore> parseAsync(Multi<byte[]> body) {
+        return Uni.createFrom().deferred(() -> {
+            var feed = new Feed();
+            return body
+                .onItem().call(chunk -> {
+                    try {
+                        feed.accept(chunk);
+                        return Uni.createFrom().voidItem();
+                    }
+                    catch(IOException e) {
+                        return Uni.createFrom().failure(e);
+                    }
+                })
+                .collect().last()
+                .chain(lastChunk -> {
+                    // Got the whole response
+                    try {
+                        return Uni.createFrom().item(feed.finish());
+                    }
+                    catch(IOException e) {
+                        return Uni.createFrom().failure(e);
+                    }
+                });
+        });
+    }
+
+    /***
+     * Parse a VoMembers response.
+     * @param parser Parser positioned before the CoPersonRoles object
+     * @return Store with all records in the response
+     */
+    private static CheckinRecordStore parse(JsonParser parser) throws IOException {
+        var builder = new Builder();
+        if(JsonToken.START_OBJECT != parser.nextToken())
+            throw new IOException("Expected CoPersonRoles object");
+
+        while(JsonToken.FIELD_NAME == parser.nextToken()) {
+            var field = parser.getCurrentName();
+            var token = parser.nextToken();
+            if("CoPersonRoles".equals(field) && JsonToken.START_ARRAY == token) {
+                while(JsonToken.START_OBJECT == parser.nextToken())
+                    builder.parseRecord(parser);
+            }
+            else
+                parser.skipChildren();
+        }
+
+        return builder.build();
+    }
+
+    /***
+     * Parses a VoMembers response incrementally, as its chunks arrive.
+     * Uses a non-blocking parser, so no thread waits for the rest of the response, and
+     * only the record currently being parsed is buffered, not the whole response.
+     * Compressed responses are detected by the gzip magic bytes and inflated on the fly.
+     * Like {@link GZIPInputStream}, the trailer of each gzip member is verified and
+     * concatenated members are inflated one after the other.
+     */
+    public static class Feed {
+
+        private static final int GZIP_HEADER_SIZE = 10;
+        private static final int GZIP_TRAILER_SIZE = 8;
+        private static final int FEXTRA = 4, FNAME = 8, FCOMMENT = 16, FHCRC = 2;
+
+        private final Builder builder = new Builder();
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        private ByteArrayOutputStream head = new ByteArrayOutputStream(); // Until we know if compressed
+        private boolean compressed = false;
+        private final ByteArrayOutputStream member = new ByteArrayOutputStream(); // Header or trailer of a gzip member
+        private Inflater inflater;          // Inflates the data of the current gzip member
+        private final CRC32 crc = new CRC32();
+        private long inflatedSize;          // Size of the data of the current gzip member
+        private boolean inTrailer = false;
+        private int members = 0;            // Number of complete gzip members
+        private final byte[] inflated = new byte[16 * 1024];
+
+        private int depth = 0;              // Nesting level of the parser
+        private boolean inRecords = false;  // Parser is in the CoPersonRoles array
+        private boolean done = false;       // Parsed the whole CoPersonRoles object
+        private TokenBuffer record;         // Tokens of the current record
+        private int recordDepth = 0;
+
+
+        /***
+         * Constructor
+         */
+        public Feed() {
+            try {
+                this.parser = jsonFactory.createNonBlockingByteArrayParser();
+                this.feeder = (ByteArrayFeeder)this.parser.getNonBlockingInputFeeder();
+            }
+            catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /***
+         * Parse the next chunk of the response
+         * @param chunk Part of the response body, optionally gzip-compressed
+         * @throws IOException If the response is not valid JSON, or cannot be inflated
+         */
+        public void accept(byte[] chunk) throws IOException {
+            if(null != this.head) {
+                // Collect the first bytes, until we know if the response is compressed
+                this.head.write(chunk);
+                chunk = this.head.toByteArray();
+                if(chunk.length < 2)
+                    return;
+
+                this.compressed = (byte)0x1f == chunk[0] && (byte)0x8b == chunk[1];
+                this.head = null;
+            }
+
+            if(!this.compressed) {
+                feed(chunk, chunk.length);
+                return;
+            }
+
+            // Compressed, inflate what we got so far
+            int offset = 0;
+            while(offset < chunk.length) {
+                if(null != this.inflater) {
+                    // Data of a member
+                    this.inflater.setInput(chunk, offset, chunk.length - offset);
+                    try {
+                        int length;
+                        while((length = this.inflater.inflate(this.inflated)) > 0) {
+                            this.crc.update(this.inflated, 0, length);
+                            feed(this.inflated, length);
+                        }
+
+                        if(this.inflater.needsDictionary())
+                            throw new ZipException("Unsupported preset dictionary");
+                    }
+                    catch(DataFormatException e) {
+                        throw new ZipException(e.getMessage());
+                    }
+
+                    if(!this.inflater.finished())
+                        return; // Needs more input
+
+                    // The trailer follows
+                    offset = chunk.length - this.inflater.getRemaining();
+                    this.inflatedSize = this.inflater.getBytesWritten();
+                    this.inflater.end();
+                    this.inflater = null;
+                    this.inTrailer = true;
+                }
+                else if(this.inTrailer) {
+                    // Trailer of a member, CRC32 and size of the data
+                    final int length = Math.min(GZIP_TRAILER_SIZE - this.member.size(), chunk.length - offset);
+                    this.member.write(chunk, offset, length);
+                    offset += length;
+                    if(this.member.size() < GZIP_TRAILER_SIZE)
+                        return;
+
+                    final var trailer = this.member.toByteArray();
+                    if(readInt(trailer, 0) != this.crc.getValue())
+                        throw new ZipException("Corrupt compressed response (bad CRC)");
+                    if(readInt(trailer, 4) != (this.inflatedSize & 0xffffffffL))
+                        throw new ZipException("Corrupt compressed response (bad size)");
+
+                    this.member.reset();
+                    this.inTrailer = false;
+                    this.members++;
+                }
+                else {
+                    // Header of a member
+                    this.member.write(chunk, offset, chunk.length - offset);
+                    chunk = this.member.toByteArray();
+                    offset = gzipHeaderSize(chunk);
+                    if(offset < 0)
+                        return;
+
+                    this.member.reset();
+                    this.crc.reset();
+                    this.inflater = new Inflater(true);
+                }
+            }
+        }
+
+        /***
+         * Finish parsing, call after the last chunk of the response
+         * @return Store with all records in the response
+         * @throws IOException If the response was incomplete
+         */
+        public CheckinRecordStore finish() throws IOException {
+            if(null != this.head) {
+                // Response shorter than the gzip magic, must be plain
+                var rest = this.head.toByteArray();
+                this.head = null;
+                feed(rest, rest.length);
+            }
+
+            if(null != this.inflater)
+                this.inflater.end();
+
+            if(this.compressed && (null != this.inflater || this.inTrailer || this.member.size() > 0 || 0 == this.members))
+                // Ended inside a member
+                throw new EOFException("Compressed response is truncated");
+
+            this.feeder.endOfInput();
+            consume();
+            this.parser.close();
+
+            if(!this.done)
+                throw new EOFException("Expected CoPersonRoles object");
+
+            return this.builder.build();
+        }
+
+        /***
+         * Feed bytes to the parser, and process all tokens that are complete.
+         * The parser only reads the bytes until it runs out of input, so the
+         * buffer can be reused after this returns.
+         */
+        private void feed(byte[] bytes, int length) throws IOException {
+            if(0 == length || this.done)
+                return;
+
+            this.feeder.feedInput(bytes, 0, length);
+            consume();
+        }
+
+        /***
+         * Process all tokens available in the parser.
+         * Tokens of a record are collected until the record ends, then parsed
+         * into the builder like with a regular parser.
+         */
+        private void consume() throws IOException {
+            JsonToken token;
+            while(!this.done && null != (token = this.parser.nextToken()) && JsonToken.NOT_AVAILABLE != token) {
+                if(null != this.record) {
+                    // Inside a record
+                    this.record.copyCurrentEvent(this.parser);
+                    if(token.isStructStart())
+                        this.recordDepth++;
+                    else if(token.isStructEnd() && 0 == --this.recordDepth) {
+                        // Got a whole record
+                        try(var recordParser = this.record.asParser()) {
+                            recordParser.nextToken();
+                            this.builder.parseRecord(recordParser);
+                        }
+                        this.record = null;
+                    }
+                    continue;
+                }
+
+                if(0 == this.depth && JsonToken.START_OBJECT != token)
+                    throw new IOException("Expected CoPersonRoles object");
+
+                if(this.inRecords && 2 == this.depth) {
+                    if(JsonToken.START_OBJECT == token) {
+                        // Record starts
+                        this.record = new TokenBuffer(this.parser);
+                        this.record.copyCurrentEvent(this.parser);
+                        this.recordDepth = 1;
+                        continue;
+                    }
+                    if(JsonToken.END_ARRAY == token)
+                        this.inRecords = false;
+                }
+                else if(1 == this.depth && JsonToken.START_ARRAY == token && "CoPersonRoles".equals(this.parser.currentName()))
+                    this.inRecords = true;
+
+                if(token.isStructStart())
+                    this.depth++;
+                else if(token.isStructEnd() && 0 == --this.depth)
+                    this.done = true;
+            }
+        }
+
+        /***
+         * Get the size of a gzip header
+         * @param bytes Start of the compressed response
+         * @return Size of the header, -1 if more bytes are needed to tell
+         * @throws IOException If not a supported gzip header
+         */
+        static int gzipHeaderSize(byte[] bytes) throws IOException {
+            if(bytes.length < GZIP_HEADER_SIZE)
+                return -1;
+            if((byte)0x1f != bytes[0] || (byte)0x8b != bytes[1])
+                throw new ZipException("Not in gzip format");
+            if(8 != bytes[2])
+                throw new ZipException("Unsupported compression method");
+
+            final int flags = bytes[3] & 0xff;
+            int size = GZIP_HEADER_SIZE;
+            if(0 != (flags & FEXTRA)) {
+                if(bytes.length < size + 2)
+                    return -1;
+                size += 2 + ((bytes[size] & 0xff) | (bytes[size + 1] & 0xff) << 8);
+            }
+            for(int flag : new int[] { FNAME, FCOMMENT }) {
+                if(0 != (flags & flag)) {
+                    // Zero-terminated string
+                    while(size < bytes.length && 0 != bytes[size])
+                        size++;
+                    if(size++ >= bytes.length)
+                        return -1;
+                }
+            }
+            if(0 != (flags & FHCRC))
+                size += 2;
+
+            return size <= bytes.length ? size : -1;
+        }
+
+        /***
+         * Read an unsigned little-endian 32-bit integer
+         */
+        private static long readInt(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xffL) | (bytes[offset + 1] & 0xffL) << 8 |
+                   (bytes[offset + 2] & 0xffL) << 16 | (bytes[offset + 3] & 0xffL) << 24;
+        }
+    }
+
+    /***
+     * Number of records
+     */
+    public int size() { return this.size; }
+
+    /***
+     * The Id of a record
+     */
+    public long recordId(int record) { return this.recordIds[record]; }
+
+    /***
+     * The Check-in user Id of the person a record is about
+     * @return Check-in user Id, null if the person has no identifier of type "epuid"
+     */
+    public String checkinUserId(int record) {
+        final int person = this.persons[record];
+        return person >= 0 ? this.userIds[person] : null;
+    }
+
+    public String status(int record) { return this.dictionary[this.statuses[record]]; }
+    public String affiliation(int record) { return this.dictionary[this.affiliations[record]]; }
+    public String title(int record) { return this.dictionary[this.titles[record]]; }
+
+    /***
+     * The role of a record, "member" for membership records, the name of the role otherwise
+     * @return Role in lowercase, null if neither title nor affiliation is set
+     */
+    public String role(int record) { return this.dictionary[this.roles[record]]; }
+
+    public boolean isDeleted(int record) { return this.deleted.get(record); }
+    public long validFrom(int record) { return this.validFrom[record]; }
+    public long validThrough(int record) { return this.validThrough[record]; }
+
+    /***
+     * Check if a record represents active membership
+     * @param now Milliseconds since epoch, records are only active within their validity interval
+     */
+    public boolean isActiveMembership(int record, long now) {
+        return "member".equals(role(record)) && !isDeleted(record) && "Active".equalsIgnoreCase(status(record)) &&
+               CheckinValidity.isValid(validFrom(record), validThrough(record), now);
+    }
+
+    /***
+     * The first moment after now when a record enters or leaves its validity interval
+     * @return Milliseconds since epoch, {@link CheckinValidity#NEVER} if the record will not change
+     */
+    public long nextBoundary(int record, long now) {
+        return CheckinValidity.nextBoundary(validFrom(record), validThrough(record), now);
+    }
+
+    /***
+     * Build the user a record is about
+     * @return User details, null if the record has no person
+     */
+    public CheckinUser user(int record) {
+        final int person = this.persons[record];
+        if(person < 0)
+            return null;
+
+        var user = new CheckinUser(this.userIds[person]);
+        user.firstName = this.firstNames[person];
+        user.lastName = this.lastNames[person];
+        if(null != user.firstName && null != user.lastName)
+            user.fullName = user.firstName + " " + user.lastName;
+        user.email = this.emails[person];
+        user.emailIsVerified = this.emailVerified.get(person);
+
+        return user;
+    }
+
+    /***
+     * Build a regular membership record, with the fields kept in the store.
+     * Only meant for tracing, as it allocates the full object graph.
+     */
+    public CheckinRole toRole(int record) {
+        var role = new CheckinRole(checkinUserId(record), null, null, affiliation(record), status(record));
+        role.roleId = recordId(record);
+        role.title = title(record);
+        role.role = role(record);
+        role.deleted = isDeleted(record);
+        role.from = NO_DATE != validFrom(record) ? new Date(validFrom(record)) : null;
+        role.until = NO_DATE != validThrough(record) ? new Date(validThrough(record)) : null;
+
+        return role;
+    }
+
+
+    /***
+     * Accumulates records while parsing, or while reading them from a snapshot
+     */
+    static class Builder {
+        int size = 0;
+        long[] recordIds = new long[256];
+        int[] persons = new int[256];
+        short[] statuses = new short[256];
+        short[] affiliations = new short[256];
+        short[] titles = new short[256];
+        short[] roles = new short[256];
+        long[] validFrom = new long[256];
+        long[] validThrough = new long[256];
+        final BitSet deleted = new BitSet();
+
+        final List<String> dictionary = new ArrayList<>();
+        final Map<String, Short> codes = new HashMap<>();
+
+        final Map<Long, Integer> personsByCoManageId = new HashMap<>();
+        final Map<String, Integer> personsByUserId = new HashMap<>();
+        final List<String> userIds = new ArrayList<>();
+        final List<String> firstNames = new ArrayList<>();
+        final List<String> lastNames = new ArrayList<>();
+        final List<String> emails = new ArrayList<>();
+        final BitSet emailVerified = new BitSet();
+
+        Builder() {
+            this.dictionary.add(null); // Code 0
+        }
+
+        /***
+         * Build the store from the records added so far
+         */
+        CheckinRecordStore build() {
+            return new CheckinRecordStore(this);
+        }
+
+        /***
+         * Parse one CoPersonRole object, the parser is positioned on its start
+         */
+        void parseRecord(JsonParser parser) throws IOException {
+            long id = 0;
+            int person = -1;
+            String status = null, affiliation = null, title = null;
+            long from = NO_DATE, until = NO_DATE;
+            boolean isDeleted = false;
+
+            while(JsonToken.FIELD_NAME == parser.nextToken()) {
+                var field = parser.getCurrentName();
+                var token = parser.nextToken();
+                switch(field) {
+                    case "Id": id = parser.getValueAsLong(); break;
+                    case "Person": person = JsonToken.START_OBJECT == token ? parsePerson(parser) : -1; break;
+                    case "Status": status = parser.getValueAsString(); break;
+                    case "Affiliation": affiliation = parser.getValueAsString(); break;
+                    case "Title": title = parser.getValueAsString(); break;
+                    case "ValidFrom": from = parseDate(parser.getValueAsString()); break;
+                    case "ValidThrough": until = parseDate(parser.getValueAsString()); break;
+                    case "Deleted": isDeleted = parser.getValueAsBoolean(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+
+            add(id, person, status, affiliation, title, from, until, isDeleted);
+        }
+
+        /***
+         * Add a record
+         * @param person Index of the person, as returned by {@link #addPerson}, -1 if no person
+         */
+        void add(long id, int person, String status, String affiliation, String title,
+                 long from, long until, boolean isDeleted) {
+            if(this.size == this.recordIds.length)
+                grow();
+
+            final int i = this.size++;
+            this.recordIds[i] = id;
+            this.persons[i] = person;
+            this.statuses[i] = encode(status);
+            this.affiliations[i] = encode(affiliation);
+            this.titles[i] = encode(title);
+            if(null != title && !title.isBlank())
+                this.roles[i] = encode(title.toLowerCase());
+            else
+                this.roles[i] = encode(null != affiliation ? affiliation.toLowerCase() : null);
+            this.validFrom[i] = from;
+            this.validThrough[i] = until;
+            if(isDeleted)
+                this.deleted.set(i);
+        }
+
+        /***
+         * Parse a Person object, the parser is positioned on its start
+         * @return Index of the person
+         */
+        int parsePerson(JsonParser parser) throws IOException {
+            long coManageId = 0;
+            String[] userId = { null };
+            String[] name = { null, null };
+            String[] email = { null };
+            boolean[] verified = { false };
+
+            while(JsonToken.FIELD_NAME == parser.nextToken()) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field) {
+                    case "Id": coManageId = parser.getValueAsLong(); break;
+                    case "Identifier": forEachObject(parser, () -> parseIdentifier(parser, userId)); break;
+                    case "Name": forEachObject(parser, () -> parseName(parser, name)); break;
+                    case "EmailAddress": forEachObject(parser, () -> parseEmail(parser, email, verified)); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+
+            return addPerson(coManageId, userId[0], name[0], name[1], email[0], verified[0]);
+        }
+
+        /***
+         * Add a person, unless already added
+         * @param coManageId The CoManage Id of the person, 0 if not known
+         * @return Index of the person
+         */
+        int addPerson(long coManageId, String userId, String firstName, String lastName,
+                      String email, boolean verified) {
+            // Store each person once
+            Integer existing = 0 != coManageId ? this.personsByCoManageId.get(coManageId) :
+                               null != userId ? this.personsByUserId.get(userId) : null;
+            if(null != existing)
+                return existing;
+
+            final int person = this.userIds.size();
+            this.userIds.add(userId);
+            this.firstNames.add(firstName);
+            this.lastNames.add(lastName);
+            this.emails.add(email);
+            if(verified)
+                this.emailVerified.set(person);
+
+            if(0 != coManageId)
+                this.personsByCoManageId.put(coManageId, person);
+            else if(null != userId)
+                this.personsByUserId.put(userId, person);
+
+            return person;
+        }
+
+        /***
+         * Parse an identifier, keep the first one of type "epuid"
+         */
+        void parseIdentifier(JsonParser parser, String[] userId) throws IOException {
+            String type = null, id = null, identifier = null;
+            while(JsonToken.FIELD_NAME == parser.nextToken()) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field) {
+                    case "type": type = parser.getValueAsString(); break;
+                    case "Id": id = parser.getValueAsString(); break;
+                    case "identifier": identifier = parser.getValueAsString(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+
+            if(null == userId[0] && null != type && type.equalsIgnoreCase("epuid"))
+                userId[0] = null != id ? id : identifier;
+        }
+
+        /***
+         * Parse a name, keep the first complete one
+         */
+        void parseName(JsonParser parser, String[] name) throws IOException {
+            String given = null, family = null;
+            while(JsonToken.FIELD_NAME == parser.nextToken()) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field) {
+                    case "given": given = parser.getValueAsString(); break;
+                    case "family": family = parser.getValueAsString(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+
+            if(null == name[0] && null != given && !given.isBlank() && null != family && !family.isBlank()) {
+                name[0] = given;
+                name[1] = family;
+            }
+        }
+
+        /***
+         * Parse an email address, keep the first one
+         */
+        void parseEmail(JsonParser parser, String[] email, boolean[] verified) throws IOException {
+            String mail = null;
+            boolean isVerified = false;
+            while(JsonToken.FIELD_NAME == parser.nextToken()) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field) {
+                    case "mail": mail = parser.getValueAsString(); break;
+                    case "verified": isVerified = parser.getValueAsBoolean(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+
+            if(null == email[0] && null != mail && !mail.isBlank()) {
+                email[0] = mail;
+                verified[0] = isVerified;
+            }
+        }
+
+        /***
+         * Object parser callback
+         */
+        interface ObjectParser {
+            void parse() throws IOException;
+        }
+
+        /***
+         * Call a parser for an object, or for each object in an array.
+         * The parser is positioned on the start of the object or array.
+         */
+        static void forEachObject(JsonParser parser, ObjectParser objectParser) throws IOException {
+            var token = parser.currentToken();
+            if(JsonToken.START_OBJECT == token)
+                objectParser.parse();
+            else if(JsonToken.START_ARRAY == token) {
+                while((token = parser.nextToken()) != JsonToken.END_ARRAY && null != token) {
+                    if(JsonToken.START_OBJECT == token)
+                        objectParser.parse();
+                    else
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        /***
+         * Get the dictionary code of a value, adding it if needed
+         */
+        short encode(String value) {
+            if(null == value)
+                return 0;
+
+            var code = this.codes.get(value);
+            if(null == code) {
+                if(this.dictionary.size() > Short.MAX_VALUE)
+                    throw new IllegalStateException("Too many distinct values in Check-in records");
+
+                code = (short)this.dictionary.size();
+                this.dictionary.add(value);
+                this.codes.put(value, code);
+            }
+
+            return code;
+        }
+
+        /***
+         * Parse a date and time in the format used by Check-in, which is in UTC
+         * @return Milliseconds since epoch, NO_DATE if missing or invalid
+         */
+        static long parseDate(String value) {
+            if(null == value || value.isBlank())
+                return NO_DATE;
+
+            try {
+                return LocalDateTime.parse(value, dateFormat).toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+            catch(DateTimeParseException e) {
+                return NO_DATE;
+            }
+        }
+
+        /***
+         * Double the capacity of the record columns
+         */
+        void grow() {
+            final int capacity = this.recordIds.length * 2;
+            this.recordIds = Arrays.copyOf(this.recordIds, capacity);
+            this.persons = Arrays.copyOf(this.persons, capacity);
+            this.statuses = Arrays.copyOf(this.statuses, capacity);
+            this.affiliations = Arrays.copyOf(this.affiliations, capacity);
+            this.titles = Arrays.copyOf(this.titles, capacity);
+            this.roles = Arrays.copyOf(this.roles, capacity);
+            this.validFrom = Arrays.copyOf(this.validFrom, capacity);
+            this.validThrough = Arrays.copyOf(this.validThrough, capacity);
+        }
+    }
+}
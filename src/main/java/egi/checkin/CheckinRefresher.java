@@ -0,0 +1,290 @@
+package egi.checkin;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.tuples.Tuple2;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import egi.eu.DedicatedConnections;
+import egi.eu.IntegratedManagementSystemConfig;
+import egi.eu.InvalidationBus;
+import egi.eu.entity.CheckinMemberEntity;
+import egi.eu.entity.CheckinRoleAssignmentEntity;
+import egi.eu.entity.CheckinSnapshotEntity;
+
+
+/***
+ * Refreshes the Check-in membership in just one replica, the leader.
+ * The leader is the replica holding a Postgres advisory lock, on a connection it keeps open.
+ * It fetches the VO members and group role records before they expire from its cache,
+ * stores them as a {@link CheckinSnapshot} in a shared table, and notifies the other replicas.
+ * The followers load the snapshot into their caches, so their caches never expire and they
+ * do not call Check-in. If the leader goes away, its connection closes, the lock is released,
+ * and the next follower to try takes over.
+ * The leader also mirrors the membership into the tables of {@link CheckinMemberEntity} and
+ * {@link CheckinRoleAssignmentEntity}, so that queries can join with it.
+ */
+@Singleton
+public class CheckinRefresher {
+
+    private static final Logger log = Logger.getLogger(CheckinRefresher.class);
+
+    @Inject
+    CheckinConfig checkinConfig;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
+
+    @Inject
+    Checkin checkin;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    DedicatedConnections connections;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    InvalidationBus invalidationBus;
+
+    @Inject
+    MeterRegistry registry;
+
+    private volatile SqlConnection lockConnection;  // Not null while we are the leader
+    private volatile boolean stopping = false;
+    private volatile long sharedUpdatedAt = 0;      // Of the last snapshot loaded or stored
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+
+    /***
+     * Start refreshing
+     */
+    void onStart(@Observes StartupEvent event) {
+        final var config = this.checkinConfig.refresher();
+        if(!config.enabled())
+            return;
+
+        registry.gauge("checkin.refresher.leader", this, refresher -> null != refresher.lockConnection ? 1 : 0);
+        this.vertx.setPeriodic(config.interval().toMillis(), id -> tick());
+    }
+
+    /***
+     * Step down, so that another replica takes over right away
+     */
+    void onStop(@Observes ShutdownEvent event) {
+        this.stopping = true;
+
+        var connection = this.lockConnection;
+        if(null != connection)
+            connection.closeAndForget();
+    }
+
+    /***
+     * Load the shared snapshot when the leader announces a newer one
+     */
+    void onInvalidation(@Observes InvalidationBus.Invalidation event) {
+        if(InvalidationBus.TOPIC_CHECKIN_SNAPSHOT.equals(event.topic) && null == this.lockConnection)
+            run(followAsync());
+    }
+
+    /***
+     * Refresh as leader, or try to become the leader, or load the shared snapshot
+     */
+    private void tick() {
+        if(this.stopping)
+            return;
+
+        Uni<Void> step = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Try to become the leader, unless we already are
+                return null != this.lockConnection ? Uni.createFrom().item(true) : tryLeadAsync();
+            })
+            .chain(leader -> {
+                // Leader refreshes, followers load what the leader shared
+                return leader ? refreshAsync() : followAsync();
+            });
+
+        run(step);
+    }
+
+    /***
+     * Run one step at a time, never fails
+     */
+    private void run(Uni<Void> step) {
+        if(!this.running.compareAndSet(false, true))
+            // Previous step still running
+            return;
+
+        step.onTermination().invoke(() -> this.running.set(false))
+            .subscribe().with(unused -> {}, e -> log.warnf("Check-in refresh failed: %s", e.getMessage()));
+    }
+
+    /***
+     * Try to acquire the advisory lock that makes us the leader.
+     * The lock is taken on a dedicated connection, outside the pool, as the leader keeps it open.
+     * @return True if we are now the leader
+     */
+    private Uni<Boolean> tryLeadAsync() {
+        final long key = this.checkinConfig.refresher().lockKey();
+
+        return this.connections.connectAsync()
+            .chain(connection -> connection.preparedQuery("SELECT pg_try_advisory_lock($1)")
+                .execute(Tuple.of(key))
+                .map(rows -> rows.iterator().next().getBoolean(0))
+                .invoke(acquired -> {
+                    if(!acquired) {
+                        // Another replica is the leader
+                        connection.closeAndForget();
+                        return;
+                    }
+
+                    // Keep the connection, the lock is released when it closes
+                    connection.closeHandler(() -> {
+                        log.warn("Lost Check-in refresh leadership");
+                        this.lockConnection = null;
+                    });
+                    this.lockConnection = connection;
+                    log.info("Became the Check-in refresh leader");
+                })
+                .onFailure().invoke(e -> connection.closeAndForget()));
+    }
+
+    /***
+     * Refresh the Check-in data that is about to expire, then share it
+     * @return Completes when shared
+     */
+    private Uni<Void> refreshAsync() {
+        return this.checkin.refreshExpiringAsync(this.checkinConfig.refresher().refreshAt())
+            .chain(refreshed -> {
+                if(!refreshed)
+                    return Uni.createFrom().voidItem();
+
+                // Refreshed, share the snapshot
+                final var snapshot = this.checkin.snapshot();
+                return Uni.createFrom().item(() -> toEntity(snapshot))
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                    .chain(entity -> CheckinSnapshotEntity.save(this.client, entity)
+                        .invoke(() -> this.sharedUpdatedAt = entity.updatedAt))
+                    .invoke(() -> {
+                        log.debug("Shared Check-in snapshot");
+                        this.registry.counter("checkin.refresher.shared").increment();
+                        this.invalidationBus.publish(InvalidationBus.TOPIC_CHECKIN_SNAPSHOT);
+                    })
+                    .chain(unused -> mirrorAsync(snapshot));
+            });
+    }
+
+    /***
+     * Update the membership mirror tables
+     * @param snapshot The refreshed VO members
+     * @return Completes when the tables are up-to-date
+     */
+    private Uni<Void> mirrorAsync(CheckinSnapshot snapshot) {
+        if(null == snapshot.voMembers)
+            return Uni.createFrom().voidItem();
+
+        final var groupName = this.imsConfig.group();
+        final var sample = Timer.start(this.registry);
+
+        Uni<Void> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Get the group members, usually from the cache
+                return this.checkin.listGroupMembersAsync(groupName, null);
+            })
+            .chain(groupMembers -> {
+                // Got group members, get the role holders too
+                return this.checkin.listUsersWithGroupRolesAsync(groupName, null, null)
+                    .map(roleHolders -> Tuple2.of(groupMembers, roleHolders));
+            })
+            .chain(indexes -> {
+                // Got all users, write them in one transaction
+                var members = new ArrayList<CheckinMemberEntity>(snapshot.voMembers.size());
+                for(var user : snapshot.voMembers.all(CheckinUserIndex.SortBy.ID))
+                    members.add(new CheckinMemberEntity(user.checkinUserId, user.fullName, user.email,
+                                                        indexes.getItem1().contains(user.checkinUserId)));
+
+                var assignments = new ArrayList<CheckinRoleAssignmentEntity>();
+                for(var user : indexes.getItem2().all(CheckinUserIndex.SortBy.ID))
+                    if(null != user.roles)
+                        for(var role : user.roles)
+                            assignments.add(new CheckinRoleAssignmentEntity(user.checkinUserId, role));
+
+                return this.client.withTransaction(connection ->
+                    CheckinMemberEntity.syncAsync(connection, members)
+                        .chain(unused -> CheckinRoleAssignmentEntity.syncAsync(connection, assignments)));
+            })
+            .invoke(() -> {
+                log.debug("Mirrored Check-in membership");
+                sample.stop(this.registry.timer("checkin.refresher.mirror"));
+            });
+
+        return result;
+    }
+
+    /***
+     * Load the snapshot shared by the leader, if it is newer than the last one we loaded
+     * @return Completes when loaded
+     */
+    private Uni<Void> followAsync() {
+        final var groupName = this.imsConfig.group();
+
+        return CheckinSnapshotEntity.load(this.client, groupName, this.sharedUpdatedAt)
+            .chain(entity -> {
+                if(null == entity)
+                    // Nothing newer
+                    return Uni.createFrom().voidItem();
+
+                return Uni.createFrom().item(() -> {
+                        try {
+                            return CheckinSnapshot.fromBytes(entity.data);
+                        }
+                        catch(IOException e) {
+                            throw new IllegalStateException("Invalid shared Check-in snapshot", e);
+                        }
+                    })
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                    .invoke(snapshot -> {
+                        this.sharedUpdatedAt = entity.updatedAt;
+                        if(this.checkin.applySharedSnapshot(snapshot, groupName)) {
+                            log.debug("Loaded shared Check-in snapshot");
+                            this.registry.counter("checkin.refresher.loaded").increment();
+                        }
+                    })
+                    .replaceWithVoid();
+            });
+    }
+
+    /***
+     * Serialize a snapshot to store it
+     */
+    private static CheckinSnapshotEntity toEntity(CheckinSnapshot snapshot) {
+        try {
+            return new CheckinSnapshotEntity(snapshot.groupName, snapshot.toBytes(),
+                                             Math.max(snapshot.voMembersUpdatedAt, snapshot.rolesUpdatedAt));
+        }
+        catch(IOException e) {
+            throw new IllegalStateException("Cannot serialize Check-in snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package egi.checkin;
+
+import jakarta.ws.rs.core.Response;
+
+
+/**
+ * Exception class for Check-in API calls that Check-in rejected as invalid (4xx, except 408 and 429).
+ * These mean our request was wrong, not that Check-in is in trouble.
+ */
+public class CheckinRequestException extends CheckinServiceException {
+
+    public CheckinRequestException(Response resp, String body) {
+        super(resp, body);
+    }
+}
@@ -1,5 +1,6 @@
 package egi.checkin;
 
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.jboss.resteasy.reactive.RestHeader;
@@ -39,6 +40,15 @@ public interface CheckinService {
                                                @RestPath("coId") String coId,
                                                @RestPath("groupName") String groupName);
 
+    @GET
+    @Path("/api/v2/VoMembers/co/{coId}/cou/{groupName}.json")
+    @Produces(MediaType.APPLICATION_JSON)
+    Multi<byte[]> listGroupMembersRawAsync(@RestHeader("Authorization") String auth,
+                                           @RestHeader("Accept-Encoding") String acceptEncoding,
+                                           @RestHeader("x-test-stub") String stub,
+                                           @RestPath("coId") String coId,
+                                           @RestPath("groupName") String groupName);
+
     @POST
     @Path("/api/v2/VoMembers.json")
     @Consumes(MediaType.APPLICATION_JSON)
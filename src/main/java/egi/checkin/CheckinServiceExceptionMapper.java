@@ -24,6 +24,9 @@ public final class CheckinServiceExceptionMapper implements ResponseExceptionMap
         } catch(Exception ignored) {}
 
         String msg = getBody(response);
+        if(isRequestError(response.getStatus()))
+            return new CheckinRequestException(response, msg);
+
         return new CheckinServiceException(response, msg);
     }
 
@@ -32,6 +35,18 @@ public final class CheckinServiceExceptionMapper implements ResponseExceptionMap
         return status >= StatusCode.BAD_REQUEST;
     }
 
+    /***
+     * Check if Check-in rejected a call because the request was wrong.
+     * Timeouts and throttling are client errors too, but they mean Check-in is overloaded.
+     * @param status The HTTP status of the response
+     * @return True for client errors that should not open the circuit breaker
+     */
+    static boolean isRequestError(int status) {
+        return status < StatusCode.INTERNAL_SERVER_ERROR &&
+               StatusCode.REQUEST_TIMEOUT != status &&
+               StatusCode.TOO_MANY_REQUESTS != status;
+    }
+
     private String getBody(Response response) {
         String body = "";
         if(response.hasEntity()) {
@@ -0,0 +1,374 @@
+package egi.checkin;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import egi.checkin.model.CheckinRole;
+import egi.checkin.model.CheckinRoleList;
+import egi.checkin.model.CheckinUser;
+
+
+/***
+ * Last known Check-in membership, persisted to a file so that it survives restarts,
+ * or shared with the other replicas through the database.
+ *
+ * File layout (big-endian):
+ *      int     magic "IMSC"
+ *      int     format version
+ *      long    VO members updated at (milliseconds since epoch), 0 if none
+ *      int     number of VO members, followed by each member's
+ *              Check-in Id, full name, first name, last name, email (strings), and email verified (byte)
+ *      int     number of VO membership records (-1 if none), followed by each record's
+ *              Id (long), Check-in Id, first name, last name, email (strings), email verified (byte),
+ *              affiliation, title (strings), valid from and valid through (longs, NO_DATE if not set)
+ *      long    group role records updated at (milliseconds since epoch), 0 if none
+ *      string  group name
+ *      int     number of group role records (-1 if none), followed by each record's
+ *              Id (long), CoManage Id of the person (long), Check-in Id, first name, last name, email (strings),
+ *              email verified (byte), status, affiliation, title (strings), deleted (byte),
+ *              valid from and valid through (longs, NO_DATE if not set)
+ * Strings are stored as an int byte length (-1 for null) followed by UTF-8 bytes.
+ * This is the only supported format version. Its number starts at 3, so that files
+ * written by development builds with a different layout are rejected instead of misread.
+ */
+public class CheckinSnapshot {
+
+    private static final int MAGIC = 0x494d5343; // "IMSC"
+    private static final int FORMAT_VERSION = 3;
+
+    public final CheckinUserIndex voMembers;
+    public final CheckinRecordStore voRecords; // Active VO membership records, to apply their validity
+    public final long voMembersUpdatedAt;
+    public final String groupName;
+    public final CheckinRoleList roleRecords;
+    public final long rolesUpdatedAt;
+
+
+    /***
+     * Constructor
+     * @param voMembers The VO members, null if not loaded
+     * @param voRecords The VO records the members were built from, null if not available
+     * @param voMembersUpdatedAt When the VO members were fetched from Check-in
+     * @param groupName The group the role records belong to
+     * @param roleRecords The role records of the group, null if not loaded
+     * @param rolesUpdatedAt When the role records were fetched from Check-in
+     */
+    public CheckinSnapshot(CheckinUserIndex voMembers, CheckinRecordStore voRecords, long voMembersUpdatedAt,
+                           String groupName, CheckinRoleList roleRecords, long rolesUpdatedAt) {
+        this.voMembers = voMembers;
+        this.voRecords = null != voMembers ? voRecords : null;
+        this.voMembersUpdatedAt = null != voMembers ? voMembersUpdatedAt : 0;
+        this.groupName = groupName;
+        this.roleRecords = roleRecords;
+        this.rolesUpdatedAt = null != roleRecords ? rolesUpdatedAt : 0;
+    }
+
+    /***
+     * Load a snapshot, mapping the file into memory
+     * @param file The snapshot file
+     * @return Snapshot, null if the file does not exist
+     * @throws IOException If the file cannot be read, or it is not a snapshot of the current format version
+     */
+    public static CheckinSnapshot load(Path file) throws IOException {
+        if(!Files.exists(file))
+            return null;
+
+        try(var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /***
+     * Load a snapshot from bytes, as returned by {@link #toBytes()}
+     * @param data The serialized snapshot
+     * @return Snapshot
+     * @throws IOException If this is not a snapshot of the current format version
+     */
+    public static CheckinSnapshot fromBytes(byte[] data) throws IOException {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /***
+     * Read a snapshot
+     * @param buffer The serialized snapshot
+     * @return Snapshot
+     * @throws IOException If this is not a snapshot of the current format version
+     */
+    private static CheckinSnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if(buffer.remaining() < 8 || MAGIC != buffer.getInt())
+                throw new IOException("Not a Check-in snapshot");
+
+            var version = buffer.getInt();
+            if(FORMAT_VERSION != version)
+                throw new IOException("Unsupported Check-in snapshot version " + version);
+
+            // VO members
+            final long voMembersUpdatedAt = buffer.getLong();
+            final int count = buffer.getInt();
+            CheckinUserIndex voMembers = null;
+            if(0 != voMembersUpdatedAt) {
+                var users = new ArrayList<CheckinUser>(count);
+                for(int i = 0; i < count; i++) {
+                    var user = new CheckinUser(readString(buffer));
+                    user.fullName = readString(buffer);
+                    user.firstName = readString(buffer);
+                    user.lastName = readString(buffer);
+                    user.email = readString(buffer);
+                    user.emailIsVerified = 0 != buffer.get();
+                    users.add(user);
+                }
+                voMembers = new CheckinUserIndex(users);
+            }
+
+            // VO membership records
+            final int recordCount = buffer.getInt();
+            CheckinRecordStore voRecords = null;
+            if(recordCount >= 0) {
+                var builder = new CheckinRecordStore.Builder();
+                for(int i = 0; i < recordCount; i++) {
+                    final long recordId = buffer.getLong();
+                    final int person = builder.addPerson(0, readString(buffer), readString(buffer), readString(buffer),
+                                                         readString(buffer), 0 != buffer.get());
+                    final var affiliation = readString(buffer);
+                    final var title = readString(buffer);
+                    final long from = buffer.getLong();
+                    final long until = buffer.getLong();
+                    builder.add(recordId, person, "Active", affiliation, title, from, until, false);
+                }
+                voRecords = builder.build();
+            }
+
+            // Group role records
+            final long rolesUpdatedAt = buffer.getLong();
+            final var groupName = readString(buffer);
+            final var roleRecords = readRoleRecords(buffer, rolesUpdatedAt);
+
+            return new CheckinSnapshot(voMembers, voRecords, voMembersUpdatedAt, groupName, roleRecords, rolesUpdatedAt);
+        }
+        catch(RuntimeException e) {
+            // Truncated or corrupt snapshot
+            throw new IOException("Invalid Check-in snapshot", e);
+        }
+    }
+
+    /***
+     * Save the snapshot.
+     * Writes a temporary file first, then replaces the snapshot file, so that
+     * readers never see a partially written snapshot.
+     * @param file The snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        var dir = file.toAbsolutePath().getParent();
+        if(null != dir)
+            Files.createDirectories(dir);
+
+        var temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try(var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /***
+     * Serialize the snapshot, in the same format as the snapshot file
+     * @return The serialized snapshot
+     * @throws IOException If the snapshot cannot be written
+     */
+    public byte[] toBytes() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try(var out = new DataOutputStream(bytes)) {
+            write(out);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /***
+     * Write the snapshot
+     */
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+
+        // VO members
+        out.writeLong(this.voMembersUpdatedAt);
+        var users = null != this.voMembers ? this.voMembers.all(CheckinUserIndex.SortBy.ID) : null;
+        out.writeInt(null != users ? users.size() : 0);
+        if(null != users)
+            for(var user : users) {
+                writeString(out, user.checkinUserId);
+                writeString(out, user.fullName);
+                writeString(out, user.firstName);
+                writeString(out, user.lastName);
+                writeString(out, user.email);
+                out.writeByte(user.emailIsVerified ? 1 : 0);
+            }
+
+        // VO membership records, only the active ones can make someone a member
+        final var records = this.voRecords;
+        int recordCount = -1;
+        if(null != records) {
+            recordCount = 0;
+            for(int i = 0; i < records.size(); i++)
+                if(isMembership(records, i))
+                    recordCount++;
+        }
+        out.writeInt(recordCount);
+        if(null != records)
+            for(int i = 0; i < records.size(); i++) {
+                if(!isMembership(records, i))
+                    continue;
+
+                var user = records.user(i);
+                out.writeLong(records.recordId(i));
+                writeString(out, user.checkinUserId);
+                writeString(out, user.firstName);
+                writeString(out, user.lastName);
+                writeString(out, user.email);
+                out.writeByte(user.emailIsVerified ? 1 : 0);
+                writeString(out, records.affiliation(i));
+                writeString(out, records.title(i));
+                out.writeLong(records.validFrom(i));
+                out.writeLong(records.validThrough(i));
+            }
+
+        // Group role records
+        out.writeLong(this.rolesUpdatedAt);
+        writeString(out, this.groupName);
+        final var roles = null != this.roleRecords ? this.roleRecords.records : null;
+        out.writeInt(null != this.roleRecords ? (null != roles ? roles.size() : 0) : -1);
+        if(null != roles)
+            for(var role : roles) {
+                var user = null != role.person ? new CheckinUser(role) : new CheckinUser((String)null);
+                if(null == user.checkinUserId && null != role.person && null != role.person.ids && !role.person.ids.isEmpty())
+                    // Built locally, not received from Check-in
+                    user.checkinUserId = role.person.ids.get(0).id;
+                out.writeLong(role.roleId);
+                out.writeLong(null != role.person ? role.person.Id : 0);
+                writeString(out, user.checkinUserId);
+                writeString(out, user.firstName);
+                writeString(out, user.lastName);
+                writeString(out, user.email);
+                out.writeByte(user.emailIsVerified ? 1 : 0);
+                writeString(out, role.status);
+                writeString(out, role.affiliation);
+                writeString(out, role.title);
+                out.writeByte(Boolean.TRUE.equals(role.deleted) ? 1 : 0);
+                out.writeLong(null != role.from ? role.from.getTime() : CheckinRecordStore.NO_DATE);
+                out.writeLong(null != role.until ? role.until.getTime() : CheckinRecordStore.NO_DATE);
+            }
+    }
+
+    /***
+     * Read the group role records
+     * @param rolesUpdatedAt When the role records were fetched, 0 if they were not
+     * @return Role records, null if none
+     */
+    private static CheckinRoleList readRoleRecords(ByteBuffer buffer, long rolesUpdatedAt) {
+        final int count = buffer.getInt();
+        if(count < 0)
+            return null;
+
+        var roles = new CheckinRoleList();
+        roles.records = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            var role = new CheckinRole();
+            role.roleId = buffer.getLong();
+            role.person = new CheckinRole.Person(buffer.getLong());
+
+            final var checkinUserId = readString(buffer);
+            if(null != checkinUserId) {
+                var id = new CheckinRole.Person.Identifier(checkinUserId);
+                id.type = id.kind;
+                role.person.ids = new ArrayList<>(List.of(id));
+            }
+
+            var name = new CheckinRole.Person.Name();
+            name.given = readString(buffer);
+            name.family = readString(buffer);
+            if(null != name.given || null != name.family)
+                role.person.names = new ArrayList<>(List.of(name));
+
+            var email = new CheckinRole.Person.Email();
+            email.mail = readString(buffer);
+            email.verified = 0 != buffer.get();
+            if(null != email.mail)
+                role.person.emails = new ArrayList<>(List.of(email));
+
+            role.status = readString(buffer);
+            role.affiliation = readString(buffer);
+            role.title = readString(buffer);
+            role.deleted = 0 != buffer.get();
+
+            final long from = buffer.getLong();
+            final long until = buffer.getLong();
+            role.from = CheckinRecordStore.NO_DATE != from ? new Date(from) : null;
+            role.until = CheckinRecordStore.NO_DATE != until ? new Date(until) : null;
+
+            // Same as when fetched from Check-in, "member" for memberships, the name of the role otherwise
+            if(null != role.title && !role.title.isBlank())
+                role.role = role.title.toLowerCase();
+            else
+                role.role = null != role.affiliation ? role.affiliation.toLowerCase() : null;
+
+            roles.records.add(role);
+        }
+
+        return 0 != rolesUpdatedAt ? roles : null;
+    }
+
+    /***
+     * Check if a VO record is an active membership of a known user, whether valid now or not
+     */
+    private static boolean isMembership(CheckinRecordStore records, int record) {
+        return "member".equals(records.role(record)) && !records.isDeleted(record) &&
+               "Active".equalsIgnoreCase(records.status(record)) && null != records.checkinUserId(record);
+    }
+
+    /***
+     * Read a length-prefixed UTF-8 string
+     */
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if(length < 0)
+            return null;
+
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***
+     * Write a length-prefixed UTF-8 string
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(null == value) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,70 @@
+package egi.checkin;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import egi.eu.IntegratedManagementSystemConfig;
+
+
+/***
+ * Restores the Check-in membership saved by the previous run, at startup.
+ * See {@link CheckinSnapshot}.
+ */
+@Singleton
+public class CheckinSnapshotLoader {
+
+    private static final Logger log = Logger.getLogger(CheckinSnapshotLoader.class);
+
+    @Inject
+    CheckinConfig checkinConfig;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
+
+    @Inject
+    Checkin checkin;
+
+    @Inject
+    MeterRegistry registry;
+
+
+    /***
+     * Load the snapshot, if one is configured
+     */
+    void onStart(@Observes StartupEvent event) {
+        var file = checkinConfig.snapshotFile();
+        if(file.isEmpty() || file.get().isBlank())
+            return;
+
+        var sample = Timer.start(registry);
+        var result = "missing";
+        try {
+            var snapshot = CheckinSnapshot.load(Path.of(file.get()));
+            if(null != snapshot) {
+                checkin.restoreSnapshot(snapshot, imsConfig.group());
+                result = "loaded";
+
+                log.infof("Restored Check-in snapshot with %d VO members and %d group records",
+                          null != snapshot.voMembers ? snapshot.voMembers.size() : 0,
+                          null != snapshot.roleRecords && null != snapshot.roleRecords.records ?
+                                snapshot.roleRecords.records.size() : 0);
+            }
+        }
+        catch(IOException e) {
+            result = "failed";
+            log.warnf("Cannot restore Check-in snapshot: %s", e.getMessage());
+        }
+        finally {
+            sample.stop(registry.timer("checkin.snapshot.load", "result", result));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package egi.checkin;
+
+import java.util.*;
+
+import egi.checkin.model.CheckinUser;
+
+
+/**
+ * Immutable, pre-sorted set of Check-in users.
+ * Built once when the users are loaded from Check-in, then used to serve pages of users
+ * without copying or sorting the whole set on every request.
+ */
+public class CheckinUserIndex {
+
+    /***
+     * The order in which users can be listed
+     */
+    public enum SortBy {
+        NAME("name"),
+        ID("id");
+
+        private final String value;
+
+        SortBy(String value) { this.value = value; }
+
+        public String getValue() { return this.value; }
+
+        /***
+         * Parse sort order
+         * @param value The name of the field to sort by
+         * @return Sort order, {@link #NAME} if the value is not recognized
+         */
+        public static SortBy of(String value) {
+            if(null != value)
+                for(var s : values())
+                    if(s.value.equalsIgnoreCase(value.trim()))
+                        return s;
+
+            return NAME;
+        }
+    }
+
+    private static final Comparator<CheckinUser> BY_ID =
+            Comparator.comparing(CheckinUser::getCheckinUserId, Comparator.nullsLast(String::compareTo));
+
+    private static final Comparator<CheckinUser> BY_NAME =
+            Comparator.comparing((CheckinUser u) -> null != u.fullName ? u.fullName : "", String.CASE_INSENSITIVE_ORDER)
+                      .thenComparing(BY_ID);
+
+    public static final CheckinUserIndex EMPTY = new CheckinUserIndex(Collections.emptyList());
+
+    private final List<CheckinUser> byName;
+    private final List<CheckinUser> byId;
+    private final Map<String, CheckinUser> users;
+    private final String[] searchKeys; // Parallel to byName
+
+
+    /***
+     * Construct from a collection of users
+     * @param users The users to index, one per Check-in user Id
+     */
+    public CheckinUserIndex(Collection<CheckinUser> users) {
+        var nameOrder = users.toArray(new CheckinUser[0]);
+        var idOrder = nameOrder.clone();
+        Arrays.sort(nameOrder, BY_NAME);
+        Arrays.sort(idOrder, BY_ID);
+
+        this.byName = Collections.unmodifiableList(Arrays.asList(nameOrder));
+        this.byId = Collections.unmodifiableList(Arrays.asList(idOrder));
+
+        var map = new HashMap<String, CheckinUser>(nameOrder.length * 2);
+        this.searchKeys = new String[nameOrder.length];
+        for(int i = 0; i < nameOrder.length; i++) {
+            var user = nameOrder[i];
+            if(null != user.checkinUserId)
+                map.put(user.checkinUserId, user);
+
+            this.searchKeys[i] = searchKey(user);
+        }
+
+        this.users = Collections.unmodifiableMap(map);
+    }
+
+    /***
+     * Number of users in the index
+     */
+    public int size() { return this.byName.size(); }
+
+    /***
+     * Check if a user is in the index
+     * @param checkinUserId The Check-in Id of the user
+     * @return True if the user is included
+     */
+    public boolean contains(String checkinUserId) { return this.users.containsKey(checkinUserId); }
+
+    /***
+     * Get a user by Check-in Id
+     * @param checkinUserId The Check-in Id of the user
+     * @return The user, null if not included
+     */
+    public CheckinUser get(String checkinUserId) { return this.users.get(checkinUserId); }
+
+    /***
+     * Get all users, in the specified order
+     * @param sortBy The order of the users
+     * @return Read-only list of users
+     */
+    public List<CheckinUser> all(SortBy sortBy) {
+        return SortBy.ID == sortBy ? this.byId : this.byName;
+    }
+
+    /***
+     * Get all users as a map
+     * @return Read-only map of users, by Check-in Id
+     */
+    public Map<String, CheckinUser> asMap() { return this.users; }
+
+    /***
+     * Get a page of users, without copying the index.
+     * @param sortBy The order of the users
+     * @param from The number of users to skip
+     * @param limit The maximum number of users to return
+     * @return Read-only view over the requested users
+     */
+    public List<CheckinUser> slice(SortBy sortBy, long from, int limit) {
+        var all = all(sortBy);
+        var start = (int)Math.max(0, Math.min(from, all.size()));
+        var end = (int)Math.min((long)start + Math.max(0, limit), all.size());
+        return all.subList(start, end);
+    }
+
+    /***
+     * Find the users whose name, email, or Check-in Id contains some text
+     * @param text The text to look for, case-insensitive
+     * @param sortBy The order of the returned users
+     * @return Matching users, all users if the text is empty
+     */
+    public List<CheckinUser> search(String text, SortBy sortBy) {
+        if(null == text || text.isBlank())
+            return all(sortBy);
+
+        final var needle = text.trim().toLowerCase();
+        var matches = new ArrayList<CheckinUser>();
+        for(int i = 0; i < this.searchKeys.length; i++)
+            if(this.searchKeys[i].contains(needle))
+                matches.add(this.byName.get(i));
+
+        if(SortBy.ID == sortBy)
+            matches.sort(BY_ID);
+
+        return matches;
+    }
+
+    /***
+     * Build the text used to search for a user
+     */
+    private static String searchKey(CheckinUser user) {
+        var key = new StringBuilder();
+        if(null != user.fullName)
+            key.append(user.fullName.toLowerCase()).append('\n');
+        if(null != user.email)
+            key.append(user.email.toLowerCase()).append('\n');
+        if(null != user.checkinUserId)
+            key.append(user.checkinUserId.toLowerCase());
+
+        return key.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package egi.checkin;
+
+import java.util.Date;
+import java.util.List;
+
+import egi.checkin.model.CheckinRole;
+
+import static egi.checkin.CheckinRecordStore.NO_DATE;
+
+
+/***
+ * Validity intervals of Check-in records.
+ * A record with ValidFrom and/or ValidThrough set is only in effect between these moments,
+ * both inclusive. Indexes built from records stay correct until the earliest moment
+ * a record enters or leaves its interval, see {@link #nextBoundary(long, long, long)}.
+ * All times are milliseconds since epoch, NO_DATE when not set.
+ */
+final class CheckinValidity {
+
+    // No boundary ahead, an index built from the records never expires because of validity
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private CheckinValidity() {}
+
+    /***
+     * Check if a validity interval includes a moment
+     */
+    public static boolean isValid(long from, long until, long now) {
+        return (NO_DATE == from || from <= now) && (NO_DATE == until || now <= until);
+    }
+
+    /***
+     * Check if a record is in effect at a moment
+     */
+    public static boolean isValid(CheckinRole role, long now) {
+        return isValid(millis(role.from), millis(role.until), now);
+    }
+
+    /***
+     * The first moment after now when a record enters or leaves its validity interval
+     * @return Milliseconds since epoch, NEVER if the record will not change
+     */
+    public static long nextBoundary(long from, long until, long now) {
+        long next = NEVER;
+        if(NO_DATE != from && from > now)
+            next = from;
+        if(NO_DATE != until && until >= now && until < NEVER - 1)
+            next = Math.min(next, until + 1);
+
+        return next;
+    }
+
+    /***
+     * The first moment after now when any of the records enters or leaves its validity interval
+     * @return Milliseconds since epoch, NEVER if none of the records will change
+     */
+    public static long nextBoundary(List<CheckinRole> records, long now) {
+        long next = NEVER;
+        if(null != records)
+            for(var role : records)
+                next = Math.min(next, nextBoundary(millis(role.from), millis(role.until), now));
+
+        return next;
+    }
+
+    private static long millis(Date date) {
+        return null != date ? date.getTime() : NO_DATE;
+    }
+}
@@ -26,6 +26,7 @@ public class CheckinUser {
     public final static String ATTR_EMAIL = "email";
     public final static String ATTR_EMAILCHECKED = "emailVerified";
     public final static String ATTR_ASSURANCE = "assurance";
+    public final static String ATTR_USERINFO = "checkinUserInfo";
 
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     @JsonProperty("voperson_id")
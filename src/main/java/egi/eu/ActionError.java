@@ -151,7 +151,7 @@ public class ActionError {
             this.description = msg;
 
         var type = t.getClass();
-        if (type.equals(CheckinServiceException.class) ||
+        if (t instanceof CheckinServiceException ||
             type.equals(ClientWebApplicationException.class) ||
             type.equals(WebApplicationException.class) ) {
             // Build from web exception
@@ -238,6 +238,9 @@ public class ActionError {
             case "noAccess" -> this.status = Status.FORBIDDEN;
             case "badRequest" -> this.status = Status.BAD_REQUEST;
             case "notFound" -> this.status = Status.NOT_FOUND;
+            case "checkinUnavailable" -> this.status = Status.SERVICE_UNAVAILABLE;
+            case "timeout" -> this.status = Status.SERVICE_UNAVAILABLE;
+            case "pending" -> this.status = Status.ACCEPTED;
             default -> {
                 return false;
             }
@@ -1,9 +1,14 @@
 package egi.eu;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.tuples.Tuple2;
 import org.jboss.logging.Logger;
 import org.jboss.logging.MDC;
 
+import jakarta.inject.Inject;
 import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.core.UriBuilder;
 import java.net.URI;
@@ -20,8 +25,16 @@ public class BaseResource {
     public static final String TEST_STUB = "x-test-stub";
 
     protected Logger log;
+
+    @Inject
     protected Checkin checkin;
 
+    @Inject
+    DeadlineConfig deadlineConfig;
+
+    @Inject
+    protected MeterRegistry registry;
+
 
     /***
      * Construct with logger
@@ -29,7 +42,6 @@ public class BaseResource {
      */
     public BaseResource(Logger log) {
         this.log = log;
-        this.checkin = new Checkin();
     }
 
     /***
@@ -45,6 +57,56 @@ public class BaseResource {
         return value;
     }
 
+    /***
+     * Bound the time a request may take.
+     * When the time budget of the resource runs out, the pending work is cancelled, including
+     * calls to Check-in and database sessions/transactions, and the client is asked to retry later.
+     * @param response The response, once all work for the request is done
+     * @return The response, or a 503 error if it took longer than allowed
+     */
+    protected Uni<Response> withDeadline(Uni<Response> response) {
+        final var resource = this.log.getName().substring(this.log.getName().lastIndexOf('.') + 1);
+        final var budget = this.deadlineConfig.budgetFor(resource);
+
+        return response
+            .ifNoItem().after(budget).recoverWithItem(() -> {
+                // Out of time, upstream work has been cancelled
+                log.errorf("Request did not complete in %s", budget);
+                registry.counter("request.deadline.exceeded", "resource", resource).increment();
+
+                var error = new ActionError("timeout", Tuple2.of("budget", budget.toString()));
+                return Response.fromResponse(error.toResponse())
+                        .header(HttpHeaders.RETRY_AFTER, this.deadlineConfig.retryAfter().toSeconds())
+                        .build();
+            });
+    }
+
+    /***
+     * Bound the time the client waits for a request that changes data.
+     * Unlike {@link #withDeadline}, the pending work is not cancelled when the time budget runs
+     * out, as it may have already changed Check-in or the database. The change is allowed to
+     * complete in the background, and the client is told so instead of being asked to retry,
+     * as repeating a change that may have been applied is not safe.
+     * @param response The response, once all work for the request is done
+     * @return The response, or a 202 if it took longer than allowed
+     */
+    protected Uni<Response> withWriteDeadline(Uni<Response> response) {
+        final var resource = this.log.getName().substring(this.log.getName().lastIndexOf('.') + 1);
+        final var budget = this.deadlineConfig.budgetFor(resource);
+
+        // Cancelling a subscriber of a memoized Uni does not cancel its upstream
+        final var change = response.memoize().indefinitely();
+        return change
+            .ifNoItem().after(budget).recoverWithItem(() -> {
+                // Out of time, let the change complete without waiting for it
+                log.warnf("Change did not complete in %s, finishing it in background", budget);
+                registry.counter("request.deadline.exceeded", "resource", resource).increment();
+
+                var error = new ActionError("pending", Tuple2.of("budget", budget.toString()));
+                return error.toResponse();
+            });
+    }
+
     /***
      * Helper to obtain the original request URI, even when running behind a reverse proxy.
      * Note that the proxy must forward the original request path in the HTTP header X-Real-Path.
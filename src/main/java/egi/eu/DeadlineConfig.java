@@ -0,0 +1,47 @@
+package egi.eu;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithName;
+
+import java.time.Duration;
+import java.util.Map;
+
+
+/***
+ * The configuration of the request deadlines
+ */
+@ConfigMapping(prefix = "egi.deadlines")
+public interface DeadlineConfig {
+
+    /***
+     * How long a request may take, unless configured for its resource
+     * @return Time budget of requests
+     */
+    @WithName("default")
+    @WithDefault("15s")
+    Duration defaultBudget();
+
+    /***
+     * Time budget of requests to specific resources, by resource class name (e.g. Users)
+     * @return Time budgets
+     */
+    Map<String, Duration> resources();
+
+    /***
+     * When to suggest clients retry requests that ran out of time
+     * @return Delay to send in the Retry-After header
+     */
+    @WithName("retry-after")
+    @WithDefault("5s")
+    Duration retryAfter();
+
+    /***
+     * Get the time budget of requests to a resource
+     * @param resource The resource class name
+     * @return Time budget of requests
+     */
+    default Duration budgetFor(String resource) {
+        return resources().getOrDefault(resource, defaultBudget());
+    }
+}
@@ -0,0 +1,52 @@
+package egi.eu;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgConnection;
+import io.vertx.pgclient.PgConnectOptions;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Optional;
+
+
+/***
+ * Opens database connections that are not taken from the pool.
+ * For connections that are kept open for the life of the replica, e.g. to listen for
+ * notifications or to hold an advisory lock, which would otherwise shrink the pool for good.
+ * They connect to the same database as the pool, with the same credentials.
+ */
+@Singleton
+public class DedicatedConnections {
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.url")
+    String url;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    Optional<String> password;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.additional-properties.search_path")
+    Optional<String> searchPath;
+
+
+    /***
+     * Open a new connection, the caller must close it
+     * @return The connection
+     */
+    public Uni<PgConnection> connectAsync() {
+        var options = PgConnectOptions.fromUri(this.url);
+        this.username.ifPresent(options::setUser);
+        this.password.ifPresent(options::setPassword);
+        this.searchPath.ifPresent(schema -> options.addProperty("search_path", schema));
+
+        return PgConnection.connect(this.vertx, options);
+    }
+}
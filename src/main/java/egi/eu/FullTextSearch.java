@@ -0,0 +1,207 @@
+package egi.eu;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.tuples.Tuple2;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import egi.checkin.model.CheckinUser;
+import egi.eu.model.Role.RoleStatus;
+import egi.eu.model.SearchResult;
+
+
+/***
+ * Full-text search of users, roles, and process documents.
+ * Only the versions that a head points to are searched, see {@link egi.eu.entity.DocumentHeadEntity}.
+ * Every table is filtered with @@ on the same expression as its GIN index, so the indexes are used.
+ * Users are not in the database, the ones that matched in memory are ranked with the same function
+ * as the documents, so that all results are on the same scale and can be paged by the database.
+ */
+@Singleton
+public class FullTextSearch {
+
+    // Types of search results
+    public static final String TYPE_USER = "user";
+    public static final String TYPE_ROLE = "role";
+    public static final String TYPE_PROCESS = "process";
+    public static final String TYPE_GOVERNANCE = "governance";
+    public static final String TYPE_RESPONSIBILITIES = "responsibilities";
+
+    // Text searched in each table. These must stay identical to the expressions
+    // of the GIN indexes in import.sql and db/upgrade-*.sql, or the indexes are not used.
+    private static final String ROLE_TEXT =
+            "(setweight(to_tsvector('english', coalesce(r.name, '') || ' ' || coalesce(r.role, '')), 'A') || " +
+            "to_tsvector('english', coalesce(r.tasks, '') || ' ' || coalesce(r.recommendation, '')))";
+    private static final String PROCESS_TEXT =
+            "to_tsvector('english', coalesce(p.description, '') || ' ' || coalesce(p.contact, ''))";
+    private static final String REQUIREMENT_TEXT =
+            "to_tsvector('english', coalesce(x.code, '') || ' ' || coalesce(x.requirement, '') || ' ' || coalesce(x.source, ''))";
+    private static final String PROCESS_INTERFACE_TEXT =
+            "to_tsvector('english', coalesce(x.interfaceswith, '') || ' ' || coalesce(x.description, '') || ' ' || coalesce(x.relevantmaterial, ''))";
+    private static final String GOVERNANCE_TEXT =
+            "(setweight(to_tsvector('english', coalesce(g.title, '')), 'A') || " +
+            "to_tsvector('english', coalesce(g.description, '')))";
+    private static final String GROUP_TEXT =
+            "to_tsvector('english', coalesce(x.body, '') || ' ' || coalesce(x.composition, '') || ' ' || " +
+            "coalesce(x.meeting, '') || ' ' || coalesce(x.decisionvoting, ''))";
+    private static final String GROUP_INTERFACE_TEXT =
+            "to_tsvector('english', coalesce(y.interfaceswith, '') || ' ' || coalesce(y.comment, ''))";
+    private static final String RESPONSIBILITY_TEXT =
+            "to_tsvector('english', coalesce(p.description, ''))";
+
+    // Text of the users, weighted like the names of the roles
+    private static final String USER_TEXT =
+            "(setweight(to_tsvector('english', coalesce(u.name, '')), 'A') || " +
+            "to_tsvector('english', coalesce(u.email, '') || ' ' || coalesce(u.id, '')))";
+
+    // Rank of a match, normalized to [0, 1)
+    private static String rank(String text) {
+        return "ts_rank(" + text + ", q.query, 32)";
+    }
+
+    // Rank of a match, null if no match
+    private static String rankIfMatch(String text) {
+        return "CASE WHEN " + text + " @@ q.query THEN " + rank(text) + " END";
+    }
+
+    // Searches the versions the heads point to, documents match if any of their parts do.
+    // Matching parts are found through their own index first, then mapped to the versions.
+    private static final String SEARCH_QUERY =
+            "WITH q AS (SELECT to_tsquery('english', $1) AS query), " +
+            "users AS (SELECT * FROM unnest($4::varchar[], $5::varchar[], $6::varchar[]) AS u(id, name, email)), " +
+            "requirements AS (" +
+                "SELECT m.process_id AS id, max(" + rank(REQUIREMENT_TEXT) + ") AS score " +
+                "FROM q, process_requirements x JOIN process_requirements_map m ON m.requirement_id = x.id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'process') AND " + REQUIREMENT_TEXT + " @@ q.query " +
+                "GROUP BY m.process_id), " +
+            "interfaces AS (" +
+                "SELECT m.process_id AS id, max(" + rank(PROCESS_INTERFACE_TEXT) + ") AS score " +
+                "FROM q, process_interfaces x JOIN process_interfaces_map m ON m.interface_id = x.id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'process') AND " + PROCESS_INTERFACE_TEXT + " @@ q.query " +
+                "GROUP BY m.process_id), " +
+            "groups AS (" +
+                "SELECT m.governance_id AS id, max(" + rank(GROUP_TEXT) + ") AS score " +
+                "FROM q, governance_groups x JOIN governance_groups_map m ON m.group_id = x.id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'governance') AND " + GROUP_TEXT + " @@ q.query " +
+                "GROUP BY m.governance_id), " +
+            "group_interfaces AS (" +
+                "SELECT m.governance_id AS id, max(" + rank(GROUP_INTERFACE_TEXT) + ") AS score " +
+                "FROM q, governance_group_interfaces y " +
+                "JOIN governance_group_interfaces_map n ON n.interface_id = y.id " +
+                "JOIN governance_groups_map m ON m.group_id = n.group_id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'governance') AND " + GROUP_INTERFACE_TEXT + " @@ q.query " +
+                "GROUP BY m.governance_id), " +
+            "matches AS (" +
+                "SELECT 'user' AS type, u.id, coalesce(nullif(u.name, ''), u.id) AS title, " +
+                       rank(USER_TEXT) + " AS score " +
+                "FROM q, users u " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'user') " +
+            "UNION ALL " +
+                "SELECT 'role', r.role, coalesce(nullif(r.name, ''), r.role), " +
+                       rank(ROLE_TEXT) + " " +
+                "FROM q, roles r JOIN document_heads h ON h.versionid = r.id AND h.document = 'role:' || r.role " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'role') AND r.status <> $3 AND " + ROLE_TEXT + " @@ q.query " +
+            "UNION ALL " +
+                "SELECT 'process', NULL, 'Process', greatest(" + rankIfMatch(PROCESS_TEXT) + ", x.score, i.score) " +
+                "FROM q, process p JOIN document_heads h ON h.versionid = p.id AND h.document = 'process' " +
+                "LEFT JOIN requirements x ON x.id = p.id LEFT JOIN interfaces i ON i.id = p.id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'process') AND " +
+                      "(" + PROCESS_TEXT + " @@ q.query OR x.id IS NOT NULL OR i.id IS NOT NULL) " +
+            "UNION ALL " +
+                "SELECT 'governance', NULL, coalesce(nullif(g.title, ''), 'Governance'), " +
+                       "greatest(" + rankIfMatch(GOVERNANCE_TEXT) + ", x.score, y.score) " +
+                "FROM q, governance g JOIN document_heads h ON h.versionid = g.id AND h.document = 'governance' " +
+                "LEFT JOIN groups x ON x.id = g.id LEFT JOIN group_interfaces y ON y.id = g.id " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'governance') AND " +
+                      "(" + GOVERNANCE_TEXT + " @@ q.query OR x.id IS NOT NULL OR y.id IS NOT NULL) " +
+            "UNION ALL " +
+                "SELECT 'responsibilities', NULL, 'Responsibilities', " + rank(RESPONSIBILITY_TEXT) + " " +
+                "FROM q, responsibility p JOIN document_heads h ON h.versionid = p.id AND h.document = 'responsibility' " +
+                "WHERE ($2::varchar IS NULL OR $2 = 'responsibilities') AND " + RESPONSIBILITY_TEXT + " @@ q.query) " +
+            "SELECT c.total, m.type, m.id, m.title, m.score " +
+            "FROM (SELECT count(*) AS total FROM matches) AS c " +
+            "LEFT JOIN LATERAL (SELECT * FROM matches ORDER BY score DESC, title, id LIMIT $7 OFFSET $8) AS m ON true";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_PREFIX_LENGTH = 3; // Shorter words only match whole words
+
+    @Inject
+    PgPool client;
+
+
+    /***
+     * Search the latest versions of the roles and of the process documents, and rank them
+     * together with the users that matched.
+     * @param text The words to look for, all must match, longer words also match as a prefix
+     * @param type Only return entities of this type, null to return all types
+     * @param users The users that matched the text, they are only ranked
+     * @param from The number of results to skip
+     * @param limit The maximum number of results to return
+     * @return The requested results, most relevant first, scores are in [0, 1),
+     *         and the total number of results
+     */
+    public Uni<Tuple2<List<SearchResult>, Long>> searchAsync(String text, String type,
+                                                             List<CheckinUser> users, long from, int limit) {
+        var query = toTsQuery(text);
+        if(query.isEmpty())
+            return Uni.createFrom().item(Tuple2.of(List.of(), 0L));
+
+        var ids = new String[users.size()];
+        var names = new String[users.size()];
+        var emails = new String[users.size()];
+        for(int i = 0; i < users.size(); i++) {
+            var user = users.get(i);
+            ids[i] = user.checkinUserId;
+            names[i] = user.fullName;
+            emails[i] = user.email;
+        }
+
+        var typeFilter = (null == type || type.isBlank()) ? null : type.trim().toLowerCase(Locale.ROOT);
+        var params = Tuple.of(query, typeFilter, RoleStatus.DEPRECATED.getValue(), ids, names, emails)
+                          .addInteger(Math.max(0, limit))
+                          .addLong(Math.max(0, from));
+
+        return client.preparedQuery(SEARCH_QUERY)
+            .execute(params)
+            .map(rows -> {
+                long total = 0;
+                var results = new ArrayList<SearchResult>();
+                for(var row : rows) {
+                    total = row.getLong("total");
+                    if(null != row.getString("type"))
+                        results.add(new SearchResult(row.getString("type"), row.getString("id"),
+                                                     row.getString("title"), row.getDouble("score")));
+                }
+                return Tuple2.of(results, total);
+            });
+    }
+
+    /***
+     * Convert text to a full-text query that matches documents containing all the words.
+     * Only letters and digits are kept, so the text cannot inject query operators.
+     * @param text The words to look for
+     * @return Query for to_tsquery(), empty if there are no words
+     */
+    public static String toTsQuery(String text) {
+        if(null == text || text.isBlank())
+            return "";
+
+        var terms = new ArrayList<String>();
+        for(var word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if(word.isEmpty())
+                continue;
+
+            terms.add(word.length() >= MIN_PREFIX_LENGTH ? word + ":*" : word);
+        }
+
+        return String.join(" & ", terms);
+    }
+}
@@ -0,0 +1,219 @@
+package egi.eu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.pgclient.PgConnection;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+
+/***
+ * Keeps the caches of all replicas in sync, using Postgres LISTEN/NOTIFY.
+ * After a change is committed, the replica that made it broadcasts the topic of the
+ * invalidated cache. The other replicas receive it as an {@link Invalidation} CDI event,
+ * which the owners of the caches observe. Notifications are best effort, if the listening
+ * connection is lost all topics are invalidated once it is restored, as some may have been missed.
+ */
+@Singleton
+public class InvalidationBus {
+
+    private static final Logger log = Logger.getLogger(InvalidationBus.class);
+
+    // Role records of the configured Check-in group
+    public static final String TOPIC_CHECKIN_ROLES = "checkin.roles";
+
+    // A newer Check-in membership snapshot was shared by the leader
+    public static final String TOPIC_CHECKIN_SNAPSHOT = "checkin.snapshot";
+
+    private static final List<String> TOPICS = List.of(TOPIC_CHECKIN_ROLES, TOPIC_CHECKIN_SNAPSHOT);
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    @Inject
+    InvalidationConfig invalidationConfig;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    DedicatedConnections connections;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Event<Invalidation> events;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Identifies this replica, so that it ignores its own notifications
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile PgConnection connection;
+    private volatile boolean stopping = false;
+    private volatile boolean missedNotifications = false;
+
+
+    /***
+     * A cache was invalidated by another replica
+     */
+    public static class Invalidation {
+        public final String topic;
+
+        public Invalidation(String topic) { this.topic = topic; }
+    }
+
+
+    /***
+     * Start listening
+     */
+    void onStart(@Observes StartupEvent event) {
+        if(!enabled())
+            return;
+
+        listen();
+    }
+
+    /***
+     * Stop listening
+     */
+    void onStop(@Observes ShutdownEvent event) {
+        this.stopping = true;
+
+        var connection = this.connection;
+        if(null != connection)
+            connection.closeAndForget();
+    }
+
+    /***
+     * Tell the other replicas that a cache must be invalidated.
+     * Call after the change has committed. Does not wait for the notification to be sent.
+     * @param topic The cache to invalidate, one of the TOPIC_ constants
+     */
+    public void publish(String topic) {
+        if(!enabled())
+            return;
+
+        this.client.preparedQuery("SELECT pg_notify($1, $2)")
+            .execute(Tuple.of(this.invalidationConfig.channel(), this.nodeId + " " + topic))
+            .subscribe().with(
+                unused -> {
+                    registry.counter("invalidation.published", "topic", topic).increment();
+                },
+                e -> {
+                    // Other replicas will catch up when their cache expires
+                    log.warnf("Cannot broadcast invalidation of %s: %s", topic, e.getMessage());
+                });
+    }
+
+    /***
+     * The Id this replica sends its notifications with
+     */
+    String nodeId() {
+        return this.nodeId;
+    }
+
+    /***
+     * Check if the invalidation is enabled and correctly configured
+     */
+    private boolean enabled() {
+        return this.invalidationConfig.enabled() && CHANNEL.matcher(this.invalidationConfig.channel()).matches();
+    }
+
+    /***
+     * Open a dedicated connection, outside the pool, and listen for notifications on it.
+     * Retries after a delay if this fails or the connection is lost later.
+     */
+    private void listen() {
+        final var channel = this.invalidationConfig.channel();
+
+        Uni<PgConnection> result = this.connections.connectAsync()
+
+            .chain(pgConnection -> {
+                // Got a connection, keep it for notifications
+                pgConnection.notificationHandler(notification -> onNotification(notification.getPayload()));
+                pgConnection.closeHandler(() -> {
+                    if(this.connection != pgConnection)
+                        // Closed before we started listening, retried below
+                        return;
+
+                    // Lost the connection, notifications sent until we listen again are missed
+                    this.connection = null;
+                    this.missedNotifications = true;
+                    if(!this.stopping) {
+                        log.warn("Lost invalidation connection, will listen again");
+                        retryLater();
+                    }
+                });
+
+                return pgConnection.query("LISTEN " + channel).execute()
+                    .replaceWith(pgConnection)
+                    .onFailure().invoke(e -> pgConnection.closeAndForget());
+            });
+
+        result.subscribe().with(
+            pgConnection -> {
+                // Listening
+                this.connection = pgConnection;
+                log.infof("Listening for invalidations on channel %s", channel);
+
+                if(this.missedNotifications) {
+                    // Some notifications may have been sent while we were not listening
+                    this.missedNotifications = false;
+                    for(var topic : TOPICS)
+                        this.events.fire(new Invalidation(topic));
+                }
+            },
+            e -> {
+                log.warnf("Cannot listen for invalidations: %s", e.getMessage());
+                this.missedNotifications = true;
+                retryLater();
+            });
+    }
+
+    /***
+     * Listen again after the configured delay
+     */
+    private void retryLater() {
+        if(this.stopping)
+            return;
+
+        this.vertx.setTimer(this.invalidationConfig.reconnectDelay().toMillis(), id -> listen());
+    }
+
+    /***
+     * Handle a notification
+     * @param payload The Id of the sending replica and the topic, separated by a space
+     */
+    private void onNotification(String payload) {
+        if(null == payload)
+            return;
+
+        final int separator = payload.indexOf(' ');
+        if(separator <= 0)
+            return;
+
+        if(this.nodeId.equals(payload.substring(0, separator)))
+            // Our own notification, the cache is already invalidated
+            return;
+
+        final var topic = payload.substring(separator + 1);
+        log.debugf("Received invalidation of %s", topic);
+        registry.counter("invalidation.received", "topic", topic).increment();
+
+        this.events.fire(new Invalidation(topic));
+    }
+}
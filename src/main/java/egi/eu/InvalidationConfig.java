@@ -0,0 +1,37 @@
+package egi.eu;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithName;
+
+import java.time.Duration;
+
+
+/***
+ * The configuration of the cross-replica cache invalidation
+ */
+@ConfigMapping(prefix = "egi.invalidation")
+public interface InvalidationConfig {
+
+    /***
+     * Whether to broadcast and receive invalidations
+     * @return True to keep the caches of all replicas in sync
+     */
+    @WithDefault("true")
+    boolean enabled();
+
+    /***
+     * The Postgres notification channel, must be a plain lowercase identifier
+     * @return Channel name
+     */
+    @WithDefault("ims_invalidate")
+    String channel();
+
+    /***
+     * How long to wait before listening again after the connection is lost
+     * @return Delay between attempts
+     */
+    @WithName("reconnect-delay")
+    @WithDefault("5s")
+    Duration reconnectDelay();
+}
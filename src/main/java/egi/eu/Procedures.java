@@ -11,7 +11,6 @@ import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.security.identity.SecurityIdentity;
 import io.smallrye.mutiny.Uni;
 
@@ -35,9 +34,6 @@ public class Procedures extends BaseResource {
 
     private static final Logger log = Logger.getLogger(Procedures.class);
 
-    @Inject
-    MeterRegistry registry;
-
     @Inject
     SecurityIdentity identity;
 
@@ -153,7 +149,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -172,6 +168,9 @@ public class Procedures extends BaseResource {
             @APIResponse(responseCode = "201", description = "Created",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = Procedure.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -200,7 +199,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -259,7 +258,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -278,6 +277,9 @@ public class Procedures extends BaseResource {
             @APIResponse(responseCode = "200", description = "Updated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = Procedure.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -316,7 +318,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -389,7 +391,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -409,6 +411,9 @@ public class Procedures extends BaseResource {
             @APIResponse(responseCode = "200", description = "Reviewed",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -447,7 +452,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -465,6 +470,9 @@ public class Procedures extends BaseResource {
             @APIResponse(responseCode = "200", description = "Deprecated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -500,7 +508,7 @@ public class Procedures extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
 }
@@ -0,0 +1,175 @@
+package egi.eu;
+
+import io.smallrye.mutiny.tuples.Tuple2;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.eclipse.microprofile.openapi.annotations.security.SecurityRequirement;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestHeader;
+import org.jboss.resteasy.reactive.RestQuery;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.mutiny.Uni;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.*;
+
+import java.util.*;
+
+import egi.checkin.CheckinConfig;
+import egi.checkin.CheckinUserIndex;
+import egi.checkin.model.CheckinUser;
+import egi.eu.model.*;
+
+
+/***
+ * Resource for full-text search.
+ */
+@Path("/")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Search")
+public class Search extends BaseResource {
+
+    private static final Logger log = Logger.getLogger(Search.class);
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    CheckinConfig checkinConfig;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
+
+    @Inject
+    FullTextSearch fullTextSearch;
+
+    // Parameter(s) to add to all endpoints
+    @RestHeader(TEST_STUB)
+    @Parameter(hidden = true)
+    @Schema(defaultValue = "default")
+    String stub;
+
+
+    /***
+     * Page of search results
+     */
+    public static class PageOfSearchResults extends Page<SearchResult, Long> {
+        public PageOfSearchResults(String baseUri, long from, int limit, List<SearchResult> results, long total) {
+            super();
+            populate(baseUri, from, limit, results, total);
+        }
+    }
+
+
+    /***
+     * Constructor
+     */
+    public Search() { super(log); }
+
+    /**
+     * Search users, roles, and process documents.
+     * @param auth The access token needed to call the service.
+     * @param query The words to look for.
+     * @param type Only return entities of this type.
+     * @param from The first element to return
+     * @param limit_ The maximum number of elements to return
+     * @return API Response, wraps a {@link PageOfSearchResults} or an ActionError entity
+     */
+    @GET
+    @Path("/search")
+    @SecurityRequirement(name = "OIDC")
+    @RolesAllowed({ Role.IMS_USER })
+    @Operation(operationId = "search", summary = "Search users, roles, and process documents")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Success",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = PageOfSearchResults.class))),
+            @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
+            @APIResponse(responseCode = "401", description="Authorization required"),
+            @APIResponse(responseCode = "403", description="Permission denied"),
+            @APIResponse(responseCode = "503", description="Try again later")
+    })
+    public Uni<Response> search(@RestHeader(HttpHeaders.AUTHORIZATION) String auth,
+                                @Context UriInfo uriInfo,
+                                @Context HttpHeaders httpHeaders,
+
+                                @RestQuery("q")
+                                @Parameter(required = true, description = "The words to look for")
+                                String query,
+
+                                @RestQuery("type")
+                                @Parameter(description = "Return only entities of this type")
+                                @Schema(enumeration = { "user", "role", "process", "governance", "responsibilities" })
+                                String type,
+
+                                @RestQuery("from")
+                                @Parameter(description = "Skip the first given number of results")
+                                @Schema(defaultValue = "0")
+                                long from,
+
+                                @RestQuery("limit")
+                                @Parameter(description = "Restrict the number of results returned")
+                                @Schema(defaultValue = "100")
+                                int limit_)
+    {
+        final int limit = (0 == limit_) ? 100 : limit_;
+
+        addToDC("userIdCaller", identity.getAttribute(CheckinUser.ATTR_USERID));
+        addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
+        addToDC("processName", imsConfig.group());
+        addToDC("query", query);
+        addToDC("type", type);
+        addToDC("from", from);
+        addToDC("limit", limit);
+
+        log.info("Searching");
+
+        if(null == query || query.isBlank())
+            return Uni.createFrom().item(new ActionError("badRequest", "Nothing to search for").toResponse());
+
+        final boolean searchUsers = null == type || type.isBlank() ||
+                                    FullTextSearch.TYPE_USER.equalsIgnoreCase(type.trim());
+
+        Uni<Response> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Get VO members, usually from the cache
+                if(!searchUsers)
+                    return Uni.createFrom().item(CheckinUserIndex.EMPTY);
+
+                return checkin.listVoMembersAsync(this.imsConfig.vo(), stub)
+                    .onFailure().recoverWithItem(e -> {
+                        // Still search the documents
+                        log.warn("Cannot get users to search");
+                        return CheckinUserIndex.EMPTY;
+                    });
+            })
+            .chain(members -> {
+                // Got VO members, rank the matching ones together with the roles and process documents
+                var users = members.search(query, CheckinUserIndex.SortBy.ID);
+                return this.fullTextSearch.searchAsync(query, type, users, from, limit);
+            })
+            .chain(results -> {
+                // Got the requested results, ranked
+                log.info("Got search results");
+                var uri = getRealRequestUri(uriInfo, httpHeaders);
+                var page = new PageOfSearchResults(uri.toString(), from, limit, results.getItem1(), results.getItem2());
+                return Uni.createFrom().item(Response.ok(page).build());
+            })
+            .onFailure().recoverWithItem(e -> {
+                log.error("Failed to search");
+                return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
+            });
+
+        return withDeadline(result);
+    }
+}
@@ -106,6 +106,9 @@ public class SysRoleCustomization implements SecurityIdentityAugmentor {
                 }
 
                 if(null != userInfo) {
+                    // Keep the whole user information, so that it does not have to be fetched again
+                    builder.addAttribute(CheckinUser.ATTR_USERINFO, userInfo);
+
                     // Got the Check-in user information, map roles
                     var roleNames = config.roles();
 
@@ -12,7 +12,6 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestQuery;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.security.identity.SecurityIdentity;
 import org.hibernate.reactive.mutiny.Mutiny;
 import io.smallrye.mutiny.Uni;
@@ -25,7 +24,7 @@ import jakarta.ws.rs.core.*;
 import java.util.*;
 
 import egi.checkin.model.CheckinUser;
-import egi.eu.entity.UserEntity;
+import egi.eu.entity.DocumentHeadEntity;
 import egi.eu.entity.GovernanceEntity;
 import egi.eu.model.*;
 
@@ -40,9 +39,6 @@ public class TheGovernance extends BaseResource {
 
     private static final Logger log = Logger.getLogger(TheGovernance.class);
 
-    @Inject
-    MeterRegistry registry;
-
     @Inject
     SecurityIdentity identity;
 
@@ -52,6 +48,9 @@ public class TheGovernance extends BaseResource {
     @Inject
     Mutiny.SessionFactory sf;
 
+    @Inject
+    UserIdCache userIdCache;
+
     // Parameter(s) to add to all endpoints
     @RestHeader(TEST_STUB)
     @Parameter(hidden = true)
@@ -122,7 +121,7 @@ public class TheGovernance extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -141,6 +140,9 @@ public class TheGovernance extends BaseResource {
             @APIResponse(responseCode = "201", description = "Updated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -162,30 +164,23 @@ public class TheGovernance extends BaseResource {
 
         log.info("Updating governance");
 
-        var latest = new ArrayList<GovernanceEntity>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(governance.changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest governance version
                     GovernanceEntity.getLastVersion()
                     .chain(latestGovernance -> {
-                        // Got the latest version
-                        latest.add(latestGovernance);
-
-                        // Get the users linked to this governance that already exist in the database
-                        return UserEntity.findByCheckinUserId(governance.changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the existing user
-                        var users = new HashMap<String, UserEntity>();
-                        if(null != existingUser)
-                            users.put(existingUser.checkinUserId, existingUser);
-
-                        // Create new governance version
-                        var latestGovernance = latest.get(0);
+                        // Got the latest version, create new governance version
+                        var users = UserIdCache.references(session, userIds);
                         var newGovernance = new GovernanceEntity(governance, latestGovernance, users);
-                        return session.persist(newGovernance);
+                        return session.persist(newGovernance)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.GOVERNANCE, newGovernance.id));
                     });
                 });
             })
@@ -200,7 +195,7 @@ public class TheGovernance extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
 }
@@ -12,7 +12,6 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestQuery;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.security.identity.SecurityIdentity;
 import org.hibernate.reactive.mutiny.Mutiny;
 import io.smallrye.mutiny.Uni;
@@ -25,8 +24,9 @@ import jakarta.ws.rs.core.*;
 import java.util.*;
 
 import egi.checkin.model.CheckinUser;
-import egi.eu.entity.UserEntity;
+import egi.eu.entity.DocumentHeadEntity;
 import egi.eu.entity.ProcessEntity;
+import egi.eu.entity.StatusTransitionEntity;
 import egi.eu.model.Process;
 import egi.eu.model.Process.ProcessStatus;
 import egi.eu.model.*;
@@ -42,9 +42,6 @@ public class TheProcess extends BaseResource {
 
     private static final Logger log = Logger.getLogger(TheProcess.class);
 
-    @Inject
-    MeterRegistry registry;
-
     @Inject
     SecurityIdentity identity;
 
@@ -54,6 +51,9 @@ public class TheProcess extends BaseResource {
     @Inject
     Mutiny.SessionFactory sf;
 
+    @Inject
+    UserIdCache userIdCache;
+
     // Parameter(s) to add to all endpoints
     @RestHeader(TEST_STUB)
     @Parameter(hidden = true)
@@ -123,16 +123,28 @@ public class TheProcess extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
-                return allVersions ?
-                        sf.withSession(session -> ProcessEntity.getAllVersions()) :
-                        sf.withSession(session -> ProcessEntity.getLastVersionAsList());
+                return sf.withSession(session -> { return
+                    (allVersions ? ProcessEntity.getAllVersions() : ProcessEntity.getLastVersionAsList())
+                    .chain(versions -> {
+                        // Got the content versions, get their status changes
+                        if(versions.isEmpty())
+                            return Uni.createFrom().item(Tuple2.of(versions, List.<StatusTransitionEntity>of()));
+
+                        var transitions = allVersions ?
+                                StatusTransitionEntity.getAll(StatusTransitionEntity.PROCESS) :
+                                StatusTransitionEntity.getLatestAsList(StatusTransitionEntity.PROCESS, versions.get(0).id);
+
+                        return transitions.map(list -> Tuple2.of(versions, list));
+                    });
+                });
             })
-            .chain(versions -> {
+            .chain(loaded -> {
                 // Got a list of versions
+                var versions = loaded.getItem1();
                 if (!versions.isEmpty())
                     log.info("Got process versions");
 
-                var proc = new Process(versions);
+                var proc = new Process(versions, loaded.getItem2());
                 return Uni.createFrom().item(Response.ok(proc).build());
             })
             .onFailure().recoverWithItem(e -> {
@@ -140,7 +152,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -159,6 +171,9 @@ public class TheProcess extends BaseResource {
             @APIResponse(responseCode = "201", description = "Updated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -184,39 +199,39 @@ public class TheProcess extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Ids of the users linked to this process
+                var users = new ArrayList<User>();
+                users.add(process.changeBy);
+                if(null != process.requirements)
+                    for(var req : process.requirements)
+                        if(null != req.responsibles)
+                            users.addAll(req.responsibles);
+
+                return userIdCache.resolveAsync(users);
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest process version
                     ProcessEntity.getLastVersion()
                     .chain(latestProcess -> {
-                        // Got the latest version
-                        final var latestStatus = Process.ProcessStatus.of(latestProcess.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestProcess);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.PROCESS, latestProcess.id, latestProcess.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestProcess = latest.get(0);
+                        final var latestStatus = ProcessStatus.of(status);
                         if(ProcessStatus.DEPRECATED == latestStatus)
                             // Cannot update deprecated entities
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot update deprecated process"));
 
-                        latest.add(latestProcess);
-
-                        // Get users linked to this process that already exist in the database
-                        var ids = new HashSet<String>();
-                        ids.add(process.changeBy.checkinUserId);
-                        if(null != process.requirements)
-                            for(var req : process.requirements)
-                                if(null != req.responsibles)
-                                    for(var resp : req.responsibles)
-                                        ids.add(resp.checkinUserId);
-
-                        return UserEntity.findByCheckinUserIds(ids.stream().toList());
-                    })
-                    .chain(existingUsers -> {
-                        // Got the existing users
-                        var users = new HashMap<String, UserEntity>();
-                        for(var user : existingUsers)
-                            users.put(user.checkinUserId, user);
-
                         // Create new process version
-                        var latestProcess = latest.get(0);
-                        var newProcess = new ProcessEntity(process, latestProcess, users);
-                        return session.persist(newProcess);
+                        var users = UserIdCache.references(session, userIds);
+                        var newProcess = new ProcessEntity(process, latestProcess, latestStatus, users);
+                        return session.persist(newProcess)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.PROCESS, newProcess.id));
                     });
                 });
             })
@@ -231,7 +246,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -250,6 +265,9 @@ public class TheProcess extends BaseResource {
             @APIResponse(responseCode = "201", description = "Requested",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -275,51 +293,31 @@ public class TheProcess extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest process version
                     ProcessEntity.getLastVersion()
                     .chain(latestProcess -> {
-                        // Got the latest version
-                        final var latestStatus = Process.ProcessStatus.of(latestProcess.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestProcess);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.PROCESS, latestProcess.id, latestProcess.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestProcess = latest.get(0);
+                        final var latestStatus = ProcessStatus.of(status);
                         if(ProcessStatus.DRAFT != latestStatus)
                             // Cannot request approval if not draft
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot request approval in this status"));
 
-                        latest.add(latestProcess);
-
-                        // Check if the calling user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestProcess.changeBy && changeBy.checkinUserId.equals(latestProcess.changeBy.checkinUserId))
-                            existingUser = latestProcess.changeBy;
-                        else if(null != latestProcess.requirements) {
-                            for(var req : latestProcess.requirements) {
-                                if (null != req.responsibles)
-                                    for(var resp : req.responsibles)
-                                        if (changeBy.checkinUserId.equals(resp.checkinUserId)) {
-                                            existingUser = resp;
-                                            break;
-                                        }
-                                if(null != existingUser)
-                                    break;
-                            }
-                        }
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new process version
-                        var latestProcess = latest.get(0);
-                        var newProcess = new ProcessEntity(latestProcess, ProcessStatus.READY_FOR_APPROVAL);
-                        newProcess.changeBy = existingUser;
-                        newProcess.changeDescription = change.changeDescription;
-
-                        return session.persist(newProcess);
+                        // Record the status change, the content stays the same
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.PROCESS, latestProcess.id,
+                                                                    ProcessStatus.READY_FOR_APPROVAL.getValue(), caller, change.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -334,7 +332,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -353,6 +351,9 @@ public class TheProcess extends BaseResource {
             @APIResponse(responseCode = "201", description = "Approved",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -388,53 +389,33 @@ public class TheProcess extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest process version
                     ProcessEntity.getLastVersion()
                     .chain(latestProcess -> {
-                        // Got the latest version
-                        final var latestStatus = Process.ProcessStatus.of(latestProcess.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestProcess);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.PROCESS, latestProcess.id, latestProcess.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestProcess = latest.get(0);
+                        final var latestStatus = ProcessStatus.of(status);
                         if(ProcessStatus.READY_FOR_APPROVAL != latestStatus)
                             // Nothing to approve/reject in this state
                             return Uni.createFrom().failure(new ActionException("badRequest", "Nothing to approve or reject"));
 
-                        latest.add(latestProcess);
-
-                        // Check if the approving user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestProcess.changeBy && changeBy.checkinUserId.equals(latestProcess.changeBy.checkinUserId))
-                            existingUser = latestProcess.changeBy;
-                        else if(null != latestProcess.requirements) {
-                            for(var req : latestProcess.requirements) {
-                                if (null != req.responsibles)
-                                    for(var resp : req.responsibles)
-                                        if(changeBy.checkinUserId.equals(resp.checkinUserId)) {
-                                            existingUser = resp;
-                                            break;
-                                        }
-                                if(null != existingUser)
-                                    break;
-                            }
-                        }
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new process version
-                        var latestProcess = latest.get(0);
+                        // Record the status change, the content stays the same
                         var newStatus = approval.operation.equalsIgnoreCase(Change.OPERATION_APPROVE) ?
                                         ProcessStatus.APPROVED : ProcessStatus.DRAFT;
-                        var newProcess = new ProcessEntity(latestProcess, newStatus);
-                        newProcess.changeBy = existingUser;
-                        newProcess.changeDescription = approval.changeDescription;
-
-                        return session.persist(newProcess);
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.PROCESS, latestProcess.id,
+                                                                    newStatus.getValue(), caller, approval.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -450,7 +431,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -469,6 +450,9 @@ public class TheProcess extends BaseResource {
             @APIResponse(responseCode = "201", description = "Deprecated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -494,51 +478,31 @@ public class TheProcess extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest process version
                     ProcessEntity.getLastVersion()
                     .chain(latestProcess -> {
-                        // Got the latest version
-                        final var latestStatus = Process.ProcessStatus.of(latestProcess.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestProcess);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.PROCESS, latestProcess.id, latestProcess.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestProcess = latest.get(0);
+                        final var latestStatus = ProcessStatus.of(status);
                         if(ProcessStatus.APPROVED != latestStatus)
                             // Cannot deprecate if not approved
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot deprecate non-approved process"));
 
-                        latest.add(latestProcess);
-
-                        // Check if the calling user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestProcess.changeBy && changeBy.checkinUserId.equals(latestProcess.changeBy.checkinUserId))
-                            existingUser = latestProcess.changeBy;
-                        else if(null != latestProcess.requirements) {
-                            for(var req : latestProcess.requirements) {
-                                if (null != req.responsibles)
-                                    for(var resp : req.responsibles)
-                                        if(changeBy.checkinUserId.equals(resp.checkinUserId)) {
-                                            existingUser = resp;
-                                            break;
-                                        }
-                                if(null != existingUser)
-                                    break;
-                            }
-                        }
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new process version
-                        var latestProcess = latest.get(0);
-                        var newProcess = new ProcessEntity(latestProcess, ProcessStatus.DEPRECATED);
-                        newProcess.changeBy = existingUser;
-                        newProcess.changeDescription = change.changeDescription;
-
-                        return session.persist(newProcess);
+                        // Record the status change, the content stays the same
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.PROCESS, latestProcess.id,
+                                                                    ProcessStatus.DEPRECATED.getValue(), caller, change.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -553,7 +517,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -572,6 +536,9 @@ public class TheProcess extends BaseResource {
             @APIResponse(responseCode = "200", description = "Reviewed",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -600,7 +567,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -664,7 +631,7 @@ public class TheProcess extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
 }
@@ -12,7 +12,6 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestQuery;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.security.identity.SecurityIdentity;
 import org.hibernate.reactive.mutiny.Mutiny;
 import io.smallrye.mutiny.Uni;
@@ -25,8 +24,9 @@ import jakarta.ws.rs.core.*;
 import java.util.*;
 
 import egi.checkin.model.CheckinUser;
-import egi.eu.entity.UserEntity;
+import egi.eu.entity.DocumentHeadEntity;
 import egi.eu.entity.ResponsibilityEntity;
+import egi.eu.entity.StatusTransitionEntity;
 import egi.eu.model.Responsibility.ResponsibilityStatus;
 import egi.eu.model.*;
 
@@ -41,9 +41,6 @@ public class TheResponsibilities extends BaseResource {
 
     private static final Logger log = Logger.getLogger(TheResponsibilities.class);
 
-    @Inject
-    MeterRegistry registry;
-
     @Inject
     SecurityIdentity identity;
 
@@ -53,6 +50,9 @@ public class TheResponsibilities extends BaseResource {
     @Inject
     Mutiny.SessionFactory sf;
 
+    @Inject
+    UserIdCache userIdCache;
+
     // Parameter(s) to add to all endpoints
     @RestHeader(TEST_STUB)
     @Parameter(hidden = true)
@@ -129,16 +129,28 @@ public class TheResponsibilities extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
-                return allVersions ?
-                        sf.withSession(session -> ResponsibilityEntity.getAllVersions()) :
-                        sf.withSession(session -> ResponsibilityEntity.getLastVersionAsList());
+                return sf.withSession(session -> { return
+                    (allVersions ? ResponsibilityEntity.getAllVersions() : ResponsibilityEntity.getLastVersionAsList())
+                    .chain(versions -> {
+                        // Got the content versions, get their status changes
+                        if(versions.isEmpty())
+                            return Uni.createFrom().item(Tuple2.of(versions, List.<StatusTransitionEntity>of()));
+
+                        var transitions = allVersions ?
+                                StatusTransitionEntity.getAll(StatusTransitionEntity.RESPONSIBILITY) :
+                                StatusTransitionEntity.getLatestAsList(StatusTransitionEntity.RESPONSIBILITY, versions.get(0).id);
+
+                        return transitions.map(list -> Tuple2.of(versions, list));
+                    });
+                });
             })
-            .chain(versions -> {
+            .chain(loaded -> {
                 // Got a list of responsibilities
+                var versions = loaded.getItem1();
                 if(!versions.isEmpty())
                     log.info("Got responsibility versions");
 
-                var resp = new Responsibility(versions);
+                var resp = new Responsibility(versions, loaded.getItem2());
                 return Uni.createFrom().item(Response.ok(resp).build());
             })
             .onFailure().recoverWithItem(e -> {
@@ -146,7 +158,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -164,6 +176,9 @@ public class TheResponsibilities extends BaseResource {
             @APIResponse(responseCode = "201", description = "Updated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -192,30 +207,26 @@ public class TheResponsibilities extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(resp.changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest responsibilities version
                     ResponsibilityEntity.getLastVersion()
-                        .chain(latestResp -> {
-                            // Got the latest version
-                            latest.add(latestResp);
-
-                            // Get users linked to this responsibility that already exist in the database
-                            var ids = new HashSet<String>();
-                            ids.add(resp.changeBy.checkinUserId);
-
-                            return UserEntity.findByCheckinUserIds(ids.stream().toList());
-                        })
-                        .chain(existingUsers -> {
-                            // Got the existing users
-                            var users = new HashMap<String, UserEntity>();
-                            for(var user : existingUsers)
-                                users.put(user.checkinUserId, user);
-
-                            // Create new responsibility version
-                            var latestResp = latest.get(0);
-                            var newResp = new ResponsibilityEntity(resp, latestResp, users);
-                            return session.persist(newResp);
-                        });
+                    .chain(latestResp -> {
+                        // Got the latest version, get its current status
+                        latest.add(latestResp);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.RESPONSIBILITY, latestResp.id, latestResp.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status, create new responsibility version
+                        var users = UserIdCache.references(session, userIds);
+                        var newResp = new ResponsibilityEntity(resp, latest.get(0), ResponsibilityStatus.of(status), users);
+                        return session.persist(newResp)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.RESPONSIBILITY, newResp.id));
+                    });
                 });
             })
             .chain(unused -> {
@@ -229,7 +240,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
     /**
      * Mark responsibilities as ready for approval.
@@ -247,6 +258,9 @@ public class TheResponsibilities extends BaseResource {
             @APIResponse(responseCode = "201", description = "Requested",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -272,39 +286,31 @@ public class TheResponsibilities extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest responsibility version
                     ResponsibilityEntity.getLastVersion()
                     .chain(latestResponsibility -> {
-                        // Got the latest version
-                        final var latestStatus = ResponsibilityStatus.of(latestResponsibility.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestResponsibility);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id, latestResponsibility.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestResponsibility = latest.get(0);
+                        final var latestStatus = ResponsibilityStatus.of(status);
                         if(ResponsibilityStatus.DRAFT != latestStatus)
                             // Cannot request approval if not draft
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot request approval in this status"));
 
-                        latest.add(latestResponsibility);
-
-                        // Check if the calling user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestResponsibility.changeBy && changeBy.checkinUserId.equals(latestResponsibility.changeBy.checkinUserId))
-                            existingUser = latestResponsibility.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new responsibility version
-                        var latestResponsibility = latest.get(0);
-                        var newResponsibility = new ResponsibilityEntity(latestResponsibility, ResponsibilityStatus.READY_FOR_APPROVAL);
-                        newResponsibility.changeBy = existingUser;
-                        newResponsibility.changeDescription = change.changeDescription;
-
-                        return session.persist(newResponsibility);
+                        // Record the status change, the content stays the same
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id,
+                                                                    ResponsibilityStatus.READY_FOR_APPROVAL.getValue(), caller, change.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -319,7 +325,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -338,6 +344,9 @@ public class TheResponsibilities extends BaseResource {
             @APIResponse(responseCode = "201", description = "Approved",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -373,41 +382,33 @@ public class TheResponsibilities extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest responsibility version
                     ResponsibilityEntity.getLastVersion()
                     .chain(latestResponsibility -> {
-                        // Got the latest version
-                        final var latestStatus = ResponsibilityStatus.of(latestResponsibility.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestResponsibility);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id, latestResponsibility.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestResponsibility = latest.get(0);
+                        final var latestStatus = ResponsibilityStatus.of(status);
                         if(ResponsibilityStatus.READY_FOR_APPROVAL != latestStatus)
                             // Nothing to approve/reject in this state
                             return Uni.createFrom().failure(new ActionException("badRequest", "Nothing to approve or reject"));
 
-                        latest.add(latestResponsibility);
-
-                        // Check if the approving user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestResponsibility.changeBy && changeBy.checkinUserId.equals(latestResponsibility.changeBy.checkinUserId))
-                            existingUser = latestResponsibility.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new responsibility version
-                        var Responsibility = latest.get(0);
+                        // Record the status change, the content stays the same
                         var newStatus = approval.operation.equalsIgnoreCase(Change.OPERATION_APPROVE) ?
                                         ResponsibilityStatus.APPROVED : ResponsibilityStatus.DRAFT;
-                        var newResponsibility = new ResponsibilityEntity(Responsibility, newStatus);
-                        newResponsibility.changeBy = existingUser;
-                        newResponsibility.changeDescription = approval.changeDescription;
-
-                        return session.persist(newResponsibility);
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id,
+                                                                    newStatus.getValue(), caller, approval.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -423,7 +424,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -442,6 +443,9 @@ public class TheResponsibilities extends BaseResource {
             @APIResponse(responseCode = "201", description = "Deprecated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -467,39 +471,31 @@ public class TheResponsibilities extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest responsibility version
                         ResponsibilityEntity.getLastVersion()
                     .chain(latestResponsibility -> {
-                        // Got the latest version
-                        final var latestStatus = ResponsibilityStatus.of(latestResponsibility.status);
+                        // Got the latest version, get its current status
+                        latest.add(latestResponsibility);
+                        return StatusTransitionEntity.getCurrentStatus(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id, latestResponsibility.status);
+                    })
+                    .chain(status -> {
+                        // Got the current status
+                        final var latestResponsibility = latest.get(0);
+                        final var latestStatus = ResponsibilityStatus.of(status);
                         if(ResponsibilityStatus.APPROVED != latestStatus)
                             // Cannot deprecate if not approved
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot deprecate non-approved responsibilities"));
 
-                        latest.add(latestResponsibility);
-
-                        // Check if the calling user already exists in the database
-                        UserEntity existingUser = null;
-                        if(null != latestResponsibility.changeBy && changeBy.checkinUserId.equals(latestResponsibility.changeBy.checkinUserId))
-                            existingUser = latestResponsibility.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got the user from the database, if it exists
-                        if(null == existingUser)
-                            existingUser = new UserEntity(changeBy);
-
-                        // Create new responsibility version
-                        var latestResponsibility = latest.get(0);
-                        var newResponsibility = new ResponsibilityEntity(latestResponsibility, ResponsibilityStatus.DEPRECATED);
-                        newResponsibility.changeBy = existingUser;
-                        newResponsibility.changeDescription = change.changeDescription;
-
-                        return session.persist(newResponsibility);
+                        // Record the status change, the content stays the same
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
+                        var transition = new StatusTransitionEntity(StatusTransitionEntity.RESPONSIBILITY, latestResponsibility.id,
+                                                                    ResponsibilityStatus.DEPRECATED.getValue(), caller, change.changeDescription);
+                        return session.persist(transition);
                     });
                 });
             })
@@ -514,7 +510,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -533,6 +529,9 @@ public class TheResponsibilities extends BaseResource {
             @APIResponse(responseCode = "200", description = "Reviewed",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -561,7 +560,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -625,7 +624,7 @@ public class TheResponsibilities extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
 }
@@ -0,0 +1,96 @@
+package egi.eu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import org.hibernate.reactive.mutiny.Mutiny;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import egi.eu.entity.UserEntity;
+import egi.eu.model.User;
+
+
+/***
+ * Maps Check-in user Ids to the Ids of the users in the database.
+ * Users are never deleted and their Check-in Id never changes, so the entries never go stale.
+ * Write paths resolve the users they link to before opening their transaction, then link
+ * to them with {@link #references}, which does not query the database.
+ */
+@Singleton
+public class UserIdCache {
+
+    static final int CACHE_SIZE = 10000;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+
+    /***
+     * Get the database Ids of users, creating the ones that do not exist yet
+     * @param users The users to resolve, nulls and duplicates are ignored
+     * @return Map of Check-in user Id to database Id
+     */
+    public Uni<Map<String, Long>> resolveAsync(Collection<User> users) {
+        var resolved = new HashMap<String, Long>();
+        var missing = new HashMap<String, User>();
+        for(var user : users) {
+            if(null == user || null == user.checkinUserId)
+                continue;
+
+            var id = this.ids.get(user.checkinUserId);
+            if(null != id)
+                resolved.put(user.checkinUserId, id);
+            else
+                missing.putIfAbsent(user.checkinUserId, user);
+        }
+
+        registry.counter("users.ids.cache", "result", "hit").increment(resolved.size());
+        if(missing.isEmpty())
+            return Uni.createFrom().item(resolved);
+
+        registry.counter("users.ids.cache", "result", "miss").increment(missing.size());
+        return UserEntity.upsertAsync(this.client, missing.values())
+            .map(created -> {
+                // Remember the new Ids
+                if(this.ids.size() + created.size() > CACHE_SIZE)
+                    // Simplest bound, the active users are back after one upsert each
+                    this.ids.clear();
+
+                this.ids.putAll(created);
+                resolved.putAll(created);
+                return resolved;
+            });
+    }
+
+    /***
+     * Get the number of cached Ids
+     * @return Number of users whose database Id is known
+     */
+    int size() {
+        return this.ids.size();
+    }
+
+    /***
+     * Link to resolved users from a session, without loading them
+     * @param session The session that will persist the entities linking to the users
+     * @param ids The Ids returned by {@link #resolveAsync}
+     * @return Map of Check-in user Id to user entity
+     */
+    public static Map<String, UserEntity> references(Mutiny.Session session, Map<String, Long> ids) {
+        var users = new HashMap<String, UserEntity>();
+        for(var entry : ids.entrySet())
+            users.put(entry.getKey(), session.getReference(UserEntity.class, entry.getValue()));
+
+        return users;
+    }
+}
@@ -10,18 +10,19 @@ import org.eclipse.microprofile.openapi.annotations.security.SecurityRequirement
 import org.hibernate.reactive.mutiny.Mutiny;
 import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestPath;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 import org.jboss.resteasy.reactive.RestQuery;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 import org.jboss.logging.Logger;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
 import io.smallrye.mutiny.tuples.Tuple2;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.security.identity.SecurityIdentity;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -31,6 +32,8 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
 
 import egi.checkin.CheckinConfig;
+import egi.checkin.CheckinUserIndex;
+import egi.checkin.CheckinUserIndex.SortBy;
 import egi.checkin.model.CheckinUser;
 import egi.eu.entity.*;
 import egi.eu.model.*;
@@ -45,9 +48,6 @@ public class Users extends BaseResource {
 
     private static final Logger log = Logger.getLogger(Users.class);
 
-    @Inject
-    MeterRegistry registry;
-
     @Inject
     SecurityIdentity identity;
 
@@ -60,6 +60,12 @@ public class Users extends BaseResource {
     @Inject
     Mutiny.SessionFactory sf;
 
+    @Inject
+    PgPool client;
+
+    @Inject
+    UserIdCache userIdCache;
+
     // Parameter(s) to add to all endpoints
     @RestHeader(TEST_STUB)
     @Parameter(hidden = true)
@@ -71,11 +77,26 @@ public class Users extends BaseResource {
      * Page of users
      */
     public static class PageOfUsers extends Page<UserInfo, Long> {
-        public PageOfUsers(String baseUri, long from, int limit, List<CheckinUser> checkinUsers) {
+        public PageOfUsers(String baseUri, long from, int limit, CheckinUserIndex index, SortBy sortBy, String search) {
             super();
 
+            // Only convert the users on this page
+            List<CheckinUser> checkinUsers;
+            long total;
+            if(null == search || search.isBlank()) {
+                checkinUsers = index.slice(sortBy, from, limit);
+                total = index.size();
+            }
+            else {
+                var matches = index.search(search, sortBy);
+                var start = (int)Math.max(0, Math.min(from, matches.size()));
+                var end = (int)Math.min((long)start + limit, matches.size());
+                checkinUsers = matches.subList(start, end);
+                total = matches.size();
+            }
+
             var users = checkinUsers.stream().map(UserInfo::new).collect(Collectors.toList());
-            populate(baseUri, from, limit, users, true);
+            populate(baseUri, from, limit, users, total);
         }
     }
 
@@ -100,8 +121,8 @@ public class Users extends BaseResource {
     /***
      * Page of role assignment logs
      */
-    public static class PageOfRoleLogs extends Page<RoleLog, LocalDateTime> {
-        public PageOfRoleLogs(String baseUri, LocalDateTime from, int limit, List<RoleLogEntity> logs_) {
+    public static class PageOfRoleLogs extends Page<RoleLog, String> {
+        public PageOfRoleLogs(String baseUri, String from, int limit, List<RoleLogEntity.LogRecord> logs_) {
             super();
 
             var logs = logs_.stream().map(RoleLog::new).collect(Collectors.toList());
@@ -158,16 +179,13 @@ public class Users extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
+                // Get user info, usually already fetched by OIDC to determine the roles
+                CheckinUser userInfo = identity.getAttribute(CheckinUser.ATTR_USERINFO);
+                if(null != userInfo)
+                    return Uni.createFrom().item(userInfo);
 
-                return Uni.createFrom().item(unused);
-            })
-            .chain(unused -> {
-                // Get user info
-                return this.checkin.getUserInfoAsync(auth);
+                // Not available, ask Check-in
+                return this.checkin.getUserInfoAsync(auth, stub);
             })
             .chain(checkinUser -> {
                 // Got user info, success
@@ -190,7 +208,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -226,6 +244,15 @@ public class Users extends BaseResource {
                                    @Schema(defaultValue = "false")
                                    boolean onlyProcess,
 
+                                   @RestQuery("search")
+                                   @Parameter(description = "Return only users whose name, email, or Check-in Id contains this text")
+                                   String search,
+
+                                   @RestQuery("sort")
+                                   @Parameter(description = "Order of the returned users")
+                                   @Schema(enumeration = { "name", "id" }, defaultValue = "name")
+                                   String sort,
+
                                    @RestQuery("from")
                                    @Parameter(description = "Skip the first given number of results")
                                    @Schema(defaultValue = "0")
@@ -242,6 +269,8 @@ public class Users extends BaseResource {
         addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
         addToDC("processName", imsConfig.group());
         addToDC("onlyProcess", onlyProcess);
+        addToDC("search", search);
+        addToDC("sort", sort);
         addToDC("from", from);
         addToDC("limit", limit);
 
@@ -249,25 +278,17 @@ public class Users extends BaseResource {
 
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // List users
                 return onlyProcess ?
-                        checkin.listGroupMembersAsync(this.imsConfig.group()) :
-                        checkin.listVoMembersAsync(this.imsConfig.vo());
+                        checkin.listGroupMembersAsync(this.imsConfig.group(), stub) :
+                        checkin.listVoMembersAsync(this.imsConfig.vo(), stub);
             })
             .chain(users -> {
                 // Got users, success
                 log.info("Got user list");
                 var uri = getRealRequestUri(uriInfo, httpHeaders);
-                var page = new PageOfUsers(uri.toString(), from, limit, users);
+                var page = new PageOfUsers(uri.toString(), from, limit, users, SortBy.of(sort), search);
                 return Uni.createFrom().item(Response.ok(page).build());
             })
             .onFailure().recoverWithItem(e -> {
@@ -275,7 +296,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -295,6 +316,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "200", description = "Included",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -337,17 +361,9 @@ public class Users extends BaseResource {
         var added = new ArrayList<Boolean>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // Add user
-                return checkin.addUserToGroupAsync(user.checkinUserId, this.imsConfig.group());
+                return checkin.addUserToGroupAsync(user.checkinUserId, this.imsConfig.group(), stub);
             })
             .chain(addedOrUpdated -> {
                 // Added user, log it
@@ -372,7 +388,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -392,6 +408,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "200", description = "Excluded",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -434,17 +453,9 @@ public class Users extends BaseResource {
         var removed = new ArrayList<Boolean>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // Remove user
-                return checkin.removeUserFromGroupAsync(user.checkinUserId, this.imsConfig.group());
+                return checkin.removeUserFromGroupAsync(user.checkinUserId, this.imsConfig.group(), stub);
             })
             .chain(success -> {
                 // Removed user, log it
@@ -469,6 +480,98 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
+        return withWriteDeadline(result);
+    }
+
+    /**
+     * Make the members of the configured group exactly the specified users.
+     * Only the users that must be added or removed cause changes in Check-in.
+     * @param auth The access token needed to call the service.
+     * @param dryRun If true, only return the needed changes, without applying them.
+     * @param users The users that should be members of the group.
+     * @return API Response, wraps a {@link MembershipReconciliation} or an ActionError entity
+     */
+    @PUT
+    @Path("/process/members")
+    @SecurityRequirement(name = "OIDC")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ Role.IMS_OWNER, Role.IMS_MANAGER })
+    @Operation(operationId = "reconcileGroupMembers", summary = "Set the users included in the IMS process")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Reconciled, see the result of each change",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = MembershipReconciliation.class))),
+            @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
+            @APIResponse(responseCode = "401", description="Authorization required"),
+            @APIResponse(responseCode = "403", description="Permission denied"),
+            @APIResponse(responseCode = "503", description="Try again later")
+    })
+    public Uni<Response> reconcileGroupMembers(@RestHeader(HttpHeaders.AUTHORIZATION) String auth,
+
+                                               @RestQuery("dryRun")
+                                               @Parameter(description = "Only return the needed changes")
+                                               @Schema(defaultValue = "false")
+                                               boolean dryRun,
+
+                                               List<User> users)
+    {
+        final var changeBy = new User(
+                (String)identity.getAttribute(CheckinUser.ATTR_USERID),
+                (String)identity.getAttribute(CheckinUser.ATTR_FULLNAME),
+                (String)identity.getAttribute(CheckinUser.ATTR_EMAIL));
+
+        addToDC("userIdCaller", changeBy.checkinUserId);
+        addToDC("userNameCaller", changeBy.fullName);
+        addToDC("processName", imsConfig.group());
+        addToDC("dryRun", dryRun);
+
+        log.info("Reconciling group members");
+
+        if(null == users) {
+            // Desired members must be specified, an empty list removes everyone
+            var ae = new ActionError("badRequest", "Users are required");
+            return Uni.createFrom().item(ae.toResponse());
+        }
+
+        final var notLogged = new AtomicBoolean(false);
+        Uni<Response> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Compute and apply the changes, logging each one as soon as it is applied
+                return checkin.reconcileGroupMembersAsync(this.imsConfig.group(), users, dryRun, change -> {
+                    var grant = new RoleGrant(changeBy);
+                    grant.assign = !MembershipReconciliation.REMOVE.equals(change.action);
+                    grant.role = Role.PROCESS_MEMBER;
+                    grant.roleHolder = change.user;
+                    return logRoleAssignment(grant)
+                        .onFailure().invoke(e -> {
+                            // Change applied, but not logged
+                            notLogged.set(true);
+                        });
+                }, stub);
+            })
+            .chain(reconciliation -> {
+                // Done
+                if(notLogged.get()) {
+                    log.warn("Reconciled group members, but failed to log it");
+                    reconciliation.message = "Reconciled, but not logged";
+                }
+                else
+                    reconciliation.message = reconciliation.dryRun ? "Not applied" : "Reconciled";
+
+                log.infof("Reconciled group members, %d applied, %d failed",
+                          reconciliation.applied, reconciliation.failed);
+                return Uni.createFrom().item(Response.ok(reconciliation).build());
+            })
+            .onFailure().recoverWithItem(e -> {
+                log.error("Failed to reconcile group members");
+                return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
+            });
+
+        // Not bound by the request deadline, applying many changes can take longer than it,
+        // and each applied change is already logged, so there is nothing to give up early
         return result;
     }
 
@@ -508,6 +611,15 @@ public class Users extends BaseResource {
                                             @Parameter(description = "Return only users holding roles matching this expression")
                                             String roleNameFragment,
 
+                                            @RestQuery("search")
+                                            @Parameter(description = "Return only users whose name, email, or Check-in Id contains this text")
+                                            String search,
+
+                                            @RestQuery("sort")
+                                            @Parameter(description = "Order of the returned users")
+                                            @Schema(enumeration = { "name", "id" }, defaultValue = "name")
+                                            String sort,
+
                                             @RestQuery("from")
                                             @Parameter(description = "Skip the first given number of results")
                                             @Schema(defaultValue = "0")
@@ -524,6 +636,8 @@ public class Users extends BaseResource {
         addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
         addToDC("processName", imsConfig.group());
         addToDC("roleNameFragment", roleNameFragment);
+        addToDC("search", search);
+        addToDC("sort", sort);
         addToDC("from", from);
         addToDC("limit", limit);
 
@@ -531,23 +645,15 @@ public class Users extends BaseResource {
 
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // List users holding roles
-                return checkin.listUsersWithGroupRolesAsync(this.imsConfig.group(), roleNameFragment);
+                return checkin.listUsersWithGroupRolesAsync(this.imsConfig.group(), roleNameFragment, stub);
             })
             .chain(users -> {
                 // Got users holding roles, success
                 log.info("Got users with roles");
                 var uri = getRealRequestUri(uriInfo, httpHeaders);
-                var page = new PageOfUsers(uri.toString(), from, limit, users);
+                var page = new PageOfUsers(uri.toString(), from, limit, users, SortBy.of(sort), search);
                 return Uni.createFrom().item(Response.ok(page).build());
             })
             .onFailure().recoverWithItem(e -> {
@@ -555,7 +661,92 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
+    }
+
+    /**
+     * Find users by combining memberships and roles with set operators.
+     * @param auth The access token needed to call the service.
+     * @param expression Sets of users combined with AND, OR, ANDNOT, and parentheses.
+     *                   The sets are vo, group, roles (any role), and role:NAME.
+     * @param from The number of elements to skip
+     * @param limit_ The maximum number of elements to return
+     * @return API Response, wraps a {@link PageOfUsers} or an ActionError entity
+     */
+    @GET
+    @Path("/users/query")
+    @SecurityRequirement(name = "OIDC")
+    @RolesAllowed({ Role.IMS_USER })
+    @Operation(operationId = "queryUsers", summary = "Find users by memberships and roles")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Success",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = PageOfUsers.class))),
+            @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
+            @APIResponse(responseCode = "401", description="Authorization required"),
+            @APIResponse(responseCode = "403", description="Permission denied"),
+            @APIResponse(responseCode = "503", description="Try again later")
+    })
+    public Uni<Response> queryUsers(@RestHeader(HttpHeaders.AUTHORIZATION) String auth,
+                                    @Context UriInfo uriInfo,
+                                    @Context HttpHeaders httpHeaders,
+
+                                    @RestQuery("expr")
+                                    @Parameter(required = true, description = "Set expression, e.g. \"group ANDNOT roles\" or " +
+                                                                             "\"role:ims-manager ANDNOT role:ims-owner\"")
+                                    String expression,
+
+                                    @RestQuery("sort")
+                                    @Parameter(description = "Order of the returned users")
+                                    @Schema(enumeration = { "name", "id" }, defaultValue = "name")
+                                    String sort,
+
+                                    @RestQuery("from")
+                                    @Parameter(description = "Skip the first given number of results")
+                                    @Schema(defaultValue = "0")
+                                    long from,
+
+                                    @RestQuery("limit")
+                                    @Parameter(description = "Restrict the number of results returned")
+                                    @Schema(defaultValue = "100")
+                                    int limit_)
+    {
+        final int limit = (0 == limit_) ? 100 : limit_;
+
+        addToDC("userIdCaller", identity.getAttribute(CheckinUser.ATTR_USERID));
+        addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
+        addToDC("processName", imsConfig.group());
+        addToDC("expression", expression);
+        addToDC("sort", sort);
+        addToDC("from", from);
+        addToDC("limit", limit);
+
+        log.info("Querying users");
+
+        if(null == expression || expression.isBlank())
+            return Uni.createFrom().item(new ActionError("badRequest", "Expression is required").toResponse());
+
+        Uni<Response> result = Uni.createFrom().nullItem()
+
+            .chain(unused -> {
+                // Evaluate the expression
+                return checkin.queryUsersAsync(this.imsConfig.group(), expression, stub);
+            })
+            .chain(users -> {
+                // Got matching users, success
+                log.info("Got matching users");
+                var uri = getRealRequestUri(uriInfo, httpHeaders);
+                var page = new PageOfUsers(uri.toString(), from, limit, users, SortBy.of(sort), null);
+                return Uni.createFrom().item(Response.ok(page).build());
+            })
+            .onFailure().recoverWithItem(e -> {
+                log.error("Failed to query users");
+                return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
+            });
+
+        return withDeadline(result);
     }
 
     /***
@@ -565,23 +756,17 @@ public class Users extends BaseResource {
      */
     private Uni<Void> logRoleAssignment(RoleGrant grant) {
 
-        Uni<Void> result = sf.withTransaction((session, tx) -> { return
-                // Find the users involved in this log entry
-                UserEntity.findByCheckinUserIds(Arrays.asList(
-                                grant.roleHolder.checkinUserId,
-                                grant.changeBy.checkinUserId))
-                    .chain(users -> {
-                        // Got users with the specified Ids
-                        var roleHolderL = filterList(users, user -> user.checkinUserId.equals(grant.roleHolder.checkinUserId));
-                        var changeByL = filterList(users, user -> user.checkinUserId.equals(grant.changeBy.checkinUserId));
-
-                        var roleHolder = roleHolderL.isEmpty() ? new UserEntity(grant.roleHolder) : roleHolderL.get(0);
-                        var changeBy = changeByL.isEmpty() ? new UserEntity(grant.changeBy) : changeByL.get(0);
-
-                        // Create new role assignment log entry
-                        var newRoleLog = new RoleLogEntity(grant.role, grant.assign, roleHolder, changeBy);
-                        return session.persist(newRoleLog);
-                    });
+        Uni<Void> result = userIdCache.resolveAsync(List.of(grant.roleHolder, grant.changeBy))
+            .chain(userIds -> {
+                // Got the database Ids of the users involved in this log entry
+                return sf.withTransaction((session, tx) -> {
+                    // Create new role assignment log entry
+                    var users = UserIdCache.references(session, userIds);
+                    var roleHolder = users.get(grant.roleHolder.checkinUserId);
+                    var changeBy = users.get(grant.changeBy.checkinUserId);
+                    var newRoleLog = new RoleLogEntity(grant.role, grant.assign, roleHolder, changeBy);
+                    return session.persist(newRoleLog);
+                });
             })
             .chain(unused -> {
                 // Role grant logged, success
@@ -609,6 +794,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "200", description = "Assigned",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -667,17 +855,9 @@ public class Users extends BaseResource {
         var assigned = new ArrayList<Boolean>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // Assign role
-                return checkin.assignUserRoleAsync(grant.roleHolder.checkinUserId, this.imsConfig.group(), grant.role);
+                return checkin.assignUserRoleAsync(grant.roleHolder.checkinUserId, this.imsConfig.group(), grant.role, stub);
             })
             .chain(addedOrUpdated -> {
                 // Role assignment complete, log it
@@ -701,7 +881,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -721,6 +901,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "200", description = "Revoked",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -779,17 +962,9 @@ public class Users extends BaseResource {
         var revoked = new ArrayList<Boolean>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // Revoke role
-                return checkin.revokeUserRoleAsync(grant.roleHolder.checkinUserId, this.imsConfig.group(), grant.role);
+                return checkin.revokeUserRoleAsync(grant.roleHolder.checkinUserId, this.imsConfig.group(), grant.role, stub);
             })
             .chain(success -> {
                 // Revoked role, log it
@@ -814,7 +989,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -873,17 +1048,9 @@ public class Users extends BaseResource {
 
         Uni<Response> result = Uni.createFrom().nullItem()
 
-            .chain(unused -> {
-                // Get REST client for Check-in
-                if (!checkin.init(this.checkinConfig, this.imsConfig, stub))
-                    // Could not get REST client
-                    return Uni.createFrom().failure(new ActionException("invalidConfig"));
-
-                return Uni.createFrom().item(unused);
-            })
             .chain(unused -> {
                 // List roles
-                return checkin.listGroupRolesAsync(this.imsConfig.group(), roleName);
+                return checkin.listGroupRolesAsync(this.imsConfig.group(), roleName, stub);
             })
             .chain(roles -> {
                 // Got roles, success
@@ -897,7 +1064,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -980,7 +1147,7 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
     }
 
     /**
@@ -998,6 +1165,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "201", description = "Added",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -1036,6 +1206,10 @@ public class Users extends BaseResource {
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(role.changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest role version
                     RoleEntity.getRoleAllVersions(role.role.toLowerCase())
@@ -1044,13 +1218,12 @@ public class Users extends BaseResource {
                         if(null != roleVersions && !roleVersions.isEmpty())
                             return Uni.createFrom().failure(new ActionException("badRequest", "Role must be unique"));
 
-                        return UserEntity.findByCheckinUserId(role.changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got caller user, if it exists in the database
                         // Create new role
-                        var newRole = new RoleEntity(role, null, existingUser);
-                        return session.persist(newRole);
+                        var caller = UserIdCache.references(session, userIds).get(role.changeBy.checkinUserId);
+                        var newRole = new RoleEntity(role, null, caller);
+                        return session.persist(newRole)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.role(newRole.role), newRole.id));
                     });
                 });
             })
@@ -1065,7 +1238,7 @@ public class Users extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -1083,6 +1256,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "201", description = "Updated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -1113,10 +1289,13 @@ public class Users extends BaseResource {
             return Uni.createFrom().item(ae.toResponse());
         }
 
-        var latest = new ArrayList<RoleEntity>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(role.changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest role version
                     RoleEntity.getRoleLastVersion(role.role.toLowerCase())
@@ -1130,23 +1309,12 @@ public class Users extends BaseResource {
                             // Cannot update deprecated entities
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot update deprecated role"));
 
-                        latest.add(latestRole);
-
-                        // Check if caller user already exist in the database
-                        UserEntity existingUser = null;
-                        if(null != latestRole.changeBy && role.changeBy.checkinUserId.equals(latestRole.changeBy.checkinUserId))
-                            existingUser = latestRole.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(role.changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got caller user, if it exists in the database
                         // Create new role version
-                        var latestRole = latest.get(0);
-                        var newRole = new RoleEntity(role, latestRole, existingUser);
-                        return session.persist(newRole);
+                        var caller = UserIdCache.references(session, userIds).get(role.changeBy.checkinUserId);
+                        var newRole = new RoleEntity(role, latestRole, caller);
+                        return session.persist(newRole)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.role(newRole.role), newRole.id));
                     });
                 });
             })
@@ -1161,7 +1329,7 @@ public class Users extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -1181,6 +1349,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "201", description = "Implemented",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -1218,10 +1389,13 @@ public class Users extends BaseResource {
             return Uni.createFrom().item(ae.toResponse());
         }
 
-        var latest = new ArrayList<RoleEntity>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest role version
                     RoleEntity.getRoleLastVersion(role.toLowerCase())
@@ -1235,25 +1409,14 @@ public class Users extends BaseResource {
                             // Can only implement draft entities
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot implement in this status"));
 
-                        latest.add(latestRole);
-
-                        // Check if caller user already exist in the database
-                        UserEntity existingUser = null;
-                        if(null != latestRole.changeBy && changeBy.checkinUserId.equals(latestRole.changeBy.checkinUserId))
-                            existingUser = latestRole.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got caller user, if it exists in the database
                         // Create new role version
-                        var latestRole = latest.get(0);
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
                         var newRole = new RoleEntity(latestRole, Role.RoleStatus.IMPLEMENTED);
-                        newRole.changeBy = existingUser;
+                        newRole.changeBy = caller;
                         newRole.changeDescription = change.changeDescription;
-                        return session.persist(newRole);
+                        return session.persist(newRole)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.role(newRole.role), newRole.id));
                     });
                 });
             })
@@ -1268,7 +1431,7 @@ public class Users extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
@@ -1288,6 +1451,9 @@ public class Users extends BaseResource {
             @APIResponse(responseCode = "201", description = "Deprecated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionSuccess.class))),
+            @APIResponse(responseCode = "202", description="Still being applied, check before repeating it",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ActionError.class))),
             @APIResponse(responseCode = "400", description="Invalid parameters or configuration",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ActionError.class))),
@@ -1325,10 +1491,13 @@ public class Users extends BaseResource {
             return Uni.createFrom().item(ae.toResponse());
         }
 
-        var latest = new ArrayList<RoleEntity>();
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
+                // Get the database Id of the caller
+                return userIdCache.resolveAsync(List.of(changeBy));
+            })
+            .chain(userIds -> {
                 return sf.withTransaction((session, tx) -> { return
                     // Get the latest role version
                     RoleEntity.getRoleLastVersion(role.toLowerCase())
@@ -1342,25 +1511,14 @@ public class Users extends BaseResource {
                             // Can only deprecate implemented entities
                             return Uni.createFrom().failure(new ActionException("badRequest", "Cannot deprecate in this status"));
 
-                        latest.add(latestRole);
-
-                        // Check if caller user already exist in the database
-                        UserEntity existingUser = null;
-                        if(null != latestRole.changeBy && changeBy.checkinUserId.equals(latestRole.changeBy.checkinUserId))
-                            existingUser = latestRole.changeBy;
-                        if(null != existingUser)
-                            return Uni.createFrom().item(existingUser);
-
-                        return UserEntity.findByCheckinUserId(changeBy.checkinUserId);
-                    })
-                    .chain(existingUser -> {
-                        // Got caller user, if it exists in the database
                         // Create new role version
-                        var latestRole = latest.get(0);
+                        var caller = UserIdCache.references(session, userIds).get(changeBy.checkinUserId);
                         var newRole = new RoleEntity(latestRole, Role.RoleStatus.DEPRECATED);
-                        newRole.changeBy = existingUser;
+                        newRole.changeBy = caller;
                         newRole.changeDescription = change.changeDescription;
-                        return session.persist(newRole);
+                        return session.persist(newRole)
+                            // Point the head to the new version
+                            .chain(unused -> DocumentHeadEntity.moveAsync(session, DocumentHeadEntity.role(newRole.role), newRole.id));
                     });
                 });
             })
@@ -1375,14 +1533,15 @@ public class Users extends BaseResource {
                 return new ActionError(e).toResponse();
             });
 
-        return result;
+        return withWriteDeadline(result);
     }
 
     /**
      * List assignment logs for a role.
      * @param auth The access token needed to call the service
      * @param role The to return assignment logs for
-     * @param from_ The date and time from which to return elements
+     * @param roleHolder If specified, only return logs for this role holder
+     * @param from_ The position (cursor) from which to return elements
      * @param limit_ The maximum number of elements to return
      * @return API Response, wraps a {@link PageOfRoleLogs} or an ActionError entity
      */
@@ -1416,10 +1575,20 @@ public class Users extends BaseResource {
                                               Role.PROCESS_MEMBER })
                                       String role,
 
+                                      @RestQuery("holder")
+                                      @Parameter(description = "Return only assignment logs of this user (Check-in Id)")
+                                      String roleHolder,
+
+                                      @RestQuery("current")
+                                      @Parameter(description = "Return only assignment logs of users who hold the role now.\n" +
+                                                               "Not available when the Check-in refresher is disabled.")
+                                      @Schema(defaultValue = "false")
+                                      boolean currentHolders,
+
                                       @RestQuery("from")
-                                      @Parameter(description = "Only return logs before this UTC date and time.\n" +
-                                                               "Do not include time zone in this parameter.")
-                                      @Schema(format = "yyyy-mm-ddThh:mm:ss.SSSSSS", defaultValue = "now")
+                                      @Parameter(description = "Only return logs after this position. Use the value from the\n" +
+                                                               "link to the next page, or a UTC date and time without time zone.")
+                                      @Schema(defaultValue = "now")
                                       String from_,
 
                                       @RestQuery("limit")
@@ -1433,6 +1602,8 @@ public class Users extends BaseResource {
         addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
         addToDC("processName", imsConfig.group());
         addToDC("roleName", role);
+        addToDC("roleHolder", roleHolder);
+        addToDC("currentHolders", currentHolders);
         addToDC("from", from_);
         addToDC("limit", limit);
 
@@ -1444,37 +1615,34 @@ public class Users extends BaseResource {
             return Uni.createFrom().item(ae.toResponse());
         }
 
-        LocalDateTime from = null;
-        try {
-            if((null == from_ || from_.isBlank() || from_.equalsIgnoreCase("now")))
-                from = LocalDateTime.now();
-            else
-                // Convert from UTC to the local timezone
-                from = LocalDateTime.parse(from_)
-                                    .atZone(ZoneOffset.UTC)
-                                    .withZoneSameInstant(ZoneId.systemDefault())
-                                    .toLocalDateTime();
-        }
-        catch(DateTimeParseException e) {
+        final var from = RoleLogCursor.decode(from_);
+        if(null == from) {
             var ae = new ActionError("badRequest", "Invalid parameter from");
             return Uni.createFrom().item(ae.toResponse());
         }
 
-        LocalDateTime finalFrom = from;
+        if(currentHolders && !this.checkinConfig.refresher().enabled()) {
+            // The current holders come from the membership mirror, which only the refresher maintains
+            var ae = new ActionError("badRequest", "Parameter current is not available, the Check-in refresher is disabled");
+            return Uni.createFrom().item(ae.toResponse());
+        }
+
         Uni<Response> result = Uni.createFrom().nullItem()
 
             .chain(unused -> {
-                return sf.withSession(session -> RoleLogEntity.getRoleAssignments(role.trim().toLowerCase(), finalFrom, limit));
+                return sf.withSession(session -> RoleLogEntity.getRoleAssignments(role.trim().toLowerCase(),
+                                                                                   from.changedOn, from.id,
+                                                                                   roleHolder, currentHolders, limit));
             })
             .chain(logs -> {
                 // Got role logs, success
                 log.info("Got role assignment logs");
                 var uri = getRealRequestUri(uriInfo, httpHeaders);
-                var page = new PageOfRoleLogs(uri.toString(), finalFrom, limit, logs);
+                var page = new PageOfRoleLogs(uri.toString(), from.encode(), limit, logs);
                 var logCount = logs.size();
                 if(!logs.isEmpty() && logCount == limit) {
                     var lastLog = logs.get(logCount - 1);
-                    page.setNextPage(lastLog.changedOn, limit);
+                    page.setNextPage(new RoleLogCursor(lastLog.changedOn, lastLog.id).encode(), limit);
                 }
 
                 return Uni.createFrom().item(Response.ok(page).build());
@@ -1484,6 +1652,117 @@ public class Users extends BaseResource {
                 return new ActionError(e, Tuple2.of("oidcInstance", this.checkinConfig.server())).toResponse();
             });
 
-        return result;
+        return withDeadline(result);
+    }
+
+    /**
+     * Export role assignment logs as newline delimited JSON.
+     * Logs are streamed from a database cursor, so the whole log is never held in memory.
+     * @param auth The access token needed to call the service
+     * @param role The role to export assignment logs for, all roles if not specified
+     * @return Stream of {@link RoleLog} entities, one per line
+     */
+    @GET
+    @Path("/role/logs/export")
+    @SecurityRequirement(name = "OIDC")
+    @RolesAllowed({ Role.IMS_OWNER, Role.IMS_MANAGER })
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "exportRoleLogs",
+               summary = "Export role assignment logs",
+               description = "Returns all logs in reverse chronological order, one JSON object per line")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Success",
+                    content = @Content(mediaType = RestMediaType.APPLICATION_NDJSON,
+                    schema = @Schema(implementation = RoleLog.class))),
+            @APIResponse(responseCode = "401", description="Authorization required"),
+            @APIResponse(responseCode = "403", description="Permission denied"),
+            @APIResponse(responseCode = "503", description="Try again later")
+    })
+    public Multi<RoleLog> exportRoleLogs(@RestHeader(HttpHeaders.AUTHORIZATION) String auth,
+
+                                         @RestQuery("role")
+                                         @Parameter(description = "Export assignment logs for this role only")
+                                         String role)
+    {
+        addToDC("userIdCaller", identity.getAttribute(CheckinUser.ATTR_USERID));
+        addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
+        addToDC("processName", imsConfig.group());
+        addToDC("roleName", role);
+
+        log.info("Exporting role assignment logs");
+
+        return streamRoleLogs(role);
+    }
+
+    /**
+     * Export role assignment logs as comma separated values.
+     * Logs are streamed from a database cursor, so the whole log is never held in memory.
+     * @param auth The access token needed to call the service
+     * @param role The role to export assignment logs for, all roles if not specified
+     * @return Stream of CSV lines, starting with a header
+     */
+    @GET
+    @Path("/role/logs/export")
+    @SecurityRequirement(name = "OIDC")
+    @RolesAllowed({ Role.IMS_OWNER, Role.IMS_MANAGER })
+    @Produces("text/csv")
+    @Operation(operationId = "exportRoleLogsAsCsv",
+               summary = "Export role assignment logs as CSV",
+               description = "Returns all logs in reverse chronological order")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Success",
+                    content = @Content(mediaType = "text/csv")),
+            @APIResponse(responseCode = "401", description="Authorization required"),
+            @APIResponse(responseCode = "403", description="Permission denied"),
+            @APIResponse(responseCode = "503", description="Try again later")
+    })
+    public Multi<String> exportRoleLogsAsCsv(@RestHeader(HttpHeaders.AUTHORIZATION) String auth,
+
+                                             @RestQuery("role")
+                                             @Parameter(description = "Export assignment logs for this role only")
+                                             String role)
+    {
+        addToDC("userIdCaller", identity.getAttribute(CheckinUser.ATTR_USERID));
+        addToDC("userNameCaller", identity.getAttribute(CheckinUser.ATTR_FULLNAME));
+        addToDC("processName", imsConfig.group());
+        addToDC("roleName", role);
+
+        log.info("Exporting role assignment logs as CSV");
+
+        return toCsvLines(streamRoleLogs(role));
+    }
+
+    /***
+     * Format role assignment logs as comma separated values.
+     * @param logs The role logs to format
+     * @return Stream of CSV lines, starting with a header
+     */
+    static Multi<String> toCsvLines(Multi<RoleLog> logs) {
+        return Multi.createBy().concatenating().streams(
+                Multi.createFrom().item(RoleLog.CSV_HEADER),
+                logs.map(RoleLog::toCsvLine));
+    }
+
+    /***
+     * Stream role assignment logs from the database.
+     * @param role The role to stream assignment logs for, all roles if null or empty
+     * @return Stream of role logs
+     */
+    private Multi<RoleLog> streamRoleLogs(String role) {
+        final var roleName = (null == role || role.isBlank()) ? null : role.trim().toLowerCase();
+        var exported = new AtomicLong();
+
+        return RoleLogEntity.streamRoleAssignments(this.client, roleName)
+                .map(record -> {
+                    exported.incrementAndGet();
+                    return new RoleLog(record);
+                })
+                .onCompletion().invoke(() -> {
+                    log.infof("Exported %d role assignment logs", exported.get());
+                })
+                .onFailure().invoke(e -> {
+                    log.error("Failed to export role assignment logs");
+                });
     }
 }
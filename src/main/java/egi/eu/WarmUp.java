@@ -0,0 +1,194 @@
+package egi.eu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import egi.checkin.Checkin;
+import egi.eu.entity.GovernanceEntity;
+import egi.eu.entity.ProcessEntity;
+import egi.eu.entity.ResponsibilityEntity;
+import egi.eu.entity.RoleEntity;
+
+
+/***
+ * Preloads the Check-in caches, the database connections, and the latest versions
+ * of the documents at startup. Readiness is only reported once the warm-up finishes
+ * or times out, so that instances do not receive traffic while they are still cold.
+ */
+@Readiness
+@Singleton
+public class WarmUp implements HealthCheck {
+
+    private static final Logger log = Logger.getLogger(WarmUp.class);
+
+    @Inject
+    WarmUpConfig warmUpConfig;
+
+    @Inject
+    Checkin checkin;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.max-size", defaultValue = "20")
+    int poolSize;
+
+    private volatile String outcome = null; // Null while warming up
+
+
+    /***
+     * Start warming up
+     */
+    void onStart(@Observes StartupEvent event) {
+        if(!warmUpConfig.enabled()) {
+            this.outcome = "disabled";
+            return;
+        }
+
+        // Hibernate Reactive needs a Vert.x context
+        VertxContext.getOrCreateDuplicatedContext(vertx)
+            .runOnContext(unused -> warmUp(List.of(warmUpCheckin(), warmUpDatabase())));
+    }
+
+    /***
+     * Run warm-up steps in parallel
+     * @param steps The steps, none of them may fail
+     */
+    void warmUp(List<Uni<Void>> steps) {
+        log.info("Warming up");
+
+        final var sample = Timer.start(registry);
+        Uni.join().all(steps).andFailFast()
+            .ifNoItem().after(warmUpConfig.timeout()).fail()
+            .subscribe().with(
+                unused -> {
+                    // All steps completed, but some might have failed
+                    log.info("Warm-up complete");
+                    finish(sample, "complete");
+                },
+                e -> {
+                    // Took too long, steps still running will complete in the background
+                    log.warnf("Warm-up did not complete in %s", warmUpConfig.timeout());
+                    finish(sample, "timeout");
+                });
+    }
+
+    /***
+     * Fetch the VO members and the group membership from Check-in
+     * @return Completes when the Check-in caches are filled, never fails
+     */
+    private Uni<Void> warmUpCheckin() {
+        return checkin.listGroupMembersAsync(this.imsConfig.group(), null)
+            .chain(unused -> {
+                // Got group members, VO members are cached too
+                return checkin.listVoMembersAsync(this.imsConfig.vo(), null);
+            })
+            .invoke(members -> {
+                // Got VO members
+                log.debug("Warmed up Check-in caches");
+            })
+            .replaceWithVoid()
+            .onFailure().recoverWithItem(e -> {
+                log.warnf("Cannot warm up Check-in caches: %s", e.getMessage());
+                return null;
+            });
+    }
+
+    /***
+     * Open all database connections, then load the latest versions of the documents
+     * @return Completes when the database is warmed up, never fails
+     */
+    private Uni<Void> warmUpDatabase() {
+        return warmUpPool()
+            .chain(unused -> {
+                // Pool is full, load the documents through the same lookups the requests use
+                return Panache.withSession(() -> ProcessEntity.getLastVersion()
+                    .chain(process -> GovernanceEntity.getLastVersion())
+                    .chain(governance -> ResponsibilityEntity.getLastVersion())
+                    .chain(responsibilities -> RoleEntity.getAllRoles()));
+            })
+            .invoke(roles -> {
+                // Got the latest versions
+                log.debug("Warmed up database");
+            })
+            .replaceWithVoid()
+            .onFailure().recoverWithItem(e -> {
+                log.warnf("Cannot warm up database: %s", e.getMessage());
+                return null;
+            });
+    }
+
+    /***
+     * Open as many database connections as the pool holds, by holding them all at once
+     * @return Completes when the connections were returned to the pool
+     */
+    private Uni<Void> warmUpPool() {
+        var connections = new ArrayList<Uni<SqlConnection>>();
+        for(int i = 0; i < this.poolSize; i++)
+            connections.add(client.getConnection()
+                .onFailure().invoke(e -> log.warnf("Cannot open database connection: %s", e.getMessage()))
+                .onFailure().recoverWithNull());
+
+        return Uni.join().all(connections).andFailFast()
+            .chain(opened -> {
+                // Got all connections that could be opened, return them to the pool
+                var closing = new ArrayList<Uni<Void>>();
+                for(var connection : opened)
+                    if(null != connection)
+                        closing.add(connection.close());
+
+                log.debugf("Opened %d database connections", closing.size());
+                return closing.isEmpty() ? Uni.createFrom().voidItem() :
+                                           Uni.join().all(closing).andCollectFailures().replaceWithVoid();
+            });
+    }
+
+    /***
+     * Mark the warm-up as finished
+     */
+    private void finish(Timer.Sample sample, String outcome) {
+        sample.stop(registry.timer("warmup", "result", outcome));
+        this.outcome = outcome;
+    }
+
+    /***
+     * Readiness check
+     * @return UP after the warm-up finished or timed out
+     */
+    @Override
+    public HealthCheckResponse call() {
+        final var outcome = this.outcome;
+        return HealthCheckResponse.named("warm-up")
+                .status(null != outcome)
+                .withData("outcome", null != outcome ? outcome : "running")
+                .build();
+    }
+}
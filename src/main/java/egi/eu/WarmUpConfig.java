@@ -0,0 +1,28 @@
+package egi.eu;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+
+/***
+ * The configuration of the startup warm-up
+ */
+@ConfigMapping(prefix = "egi.warmup")
+public interface WarmUpConfig {
+
+    /***
+     * Whether to preload caches at startup
+     * @return True to warm up, false to report ready immediately
+     */
+    @WithDefault("true")
+    boolean enabled();
+
+    /***
+     * How long to wait for the warm-up before reporting ready anyway
+     * @return Maximum warm-up duration
+     */
+    @WithDefault("30s")
+    Duration timeout();
+}
@@ -0,0 +1,96 @@
+package egi.eu.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.persistence.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Mirror of a Check-in VO member, so that queries can join with the current membership.
+ * Maintained by the replica that refreshes the Check-in data, see {@link #syncAsync}.
+ */
+@Entity
+@Table(name = "checkin_members",
+       indexes = { @Index(name = "checkin_members_groupmember_idx", columnList = "groupMember") })
+public class CheckinMemberEntity extends PanacheEntityBase {
+
+    // Number of rows sent to the database in one batch
+    static final int BATCH_SIZE = 500;
+
+    // Only rows that changed are written
+    private static final String UPSERT_QUERY =
+            "INSERT INTO checkin_members (checkinuserid, fullname, email, groupmember) VALUES ($1, $2, $3, $4) " +
+            "ON CONFLICT (checkinuserid) DO UPDATE " +
+            "SET fullname = excluded.fullname, email = excluded.email, groupmember = excluded.groupmember " +
+            "WHERE (checkin_members.fullname, checkin_members.email, checkin_members.groupmember) IS DISTINCT FROM " +
+                  "(excluded.fullname, excluded.email, excluded.groupmember)";
+
+    private static final String DELETE_QUERY =
+            "DELETE FROM checkin_members WHERE NOT (checkinuserid = ANY($1))";
+
+    @Id
+    @Column(length = 120)
+    public String checkinUserId;
+
+    public String fullName;
+
+    public String email;
+
+    // Member of the configured group, not just of the VO
+    public boolean groupMember;
+
+
+    /***
+     * Constructor
+     */
+    public CheckinMemberEntity() { super(); }
+
+    /***
+     * Constructor
+     */
+    public CheckinMemberEntity(String checkinUserId, String fullName, String email, boolean groupMember) {
+        super();
+        this.checkinUserId = checkinUserId;
+        this.fullName = fullName;
+        this.email = email;
+        this.groupMember = groupMember;
+    }
+
+    /***
+     * Make the mirror contain exactly the specified members.
+     * Call in a transaction, so that readers never see a partial update.
+     * @param connection The connection to use
+     * @param members All current VO members
+     * @return Completes when the mirror is up-to-date
+     */
+    public static Uni<Void> syncAsync(SqlConnection connection, List<CheckinMemberEntity> members) {
+        var ids = members.stream().map(member -> member.checkinUserId).toArray(String[]::new);
+        var rows = new ArrayList<Tuple>(members.size());
+        for(var member : members)
+            rows.add(Tuple.of(member.checkinUserId, member.fullName, member.email, member.groupMember));
+
+        return connection.preparedQuery(DELETE_QUERY).execute(Tuple.of(ids))
+            .chain(unused -> executeInBatches(connection, UPSERT_QUERY, rows));
+    }
+
+    /***
+     * Execute a statement for many rows, a batch at a time
+     * @return Completes when all rows were sent
+     */
+    static Uni<Void> executeInBatches(SqlConnection connection, String query, List<Tuple> rows) {
+        var batches = new ArrayList<List<Tuple>>();
+        for(int i = 0; i < rows.size(); i += BATCH_SIZE)
+            batches.add(rows.subList(i, Math.min(i + BATCH_SIZE, rows.size())));
+
+        return Multi.createFrom().iterable(batches)
+            .onItem().transformToUniAndConcatenate(batch -> connection.preparedQuery(query).executeBatch(batch))
+            .collect().last()
+            .replaceWithVoid();
+    }
+}
@@ -0,0 +1,92 @@
+package egi.eu.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Mirror of a role held by a member of the configured Check-in group,
+ * so that queries can join with the current role holders.
+ * Maintained together with {@link CheckinMemberEntity}.
+ */
+@Entity
+@IdClass(CheckinRoleAssignmentEntity.Key.class)
+@Table(name = "checkin_role_assignments",
+       indexes = { @Index(name = "checkin_role_assignments_role_idx", columnList = "role") })
+public class CheckinRoleAssignmentEntity extends PanacheEntityBase {
+
+    private static final String INSERT_QUERY =
+            "INSERT INTO checkin_role_assignments (checkinuserid, role) VALUES ($1, $2) ON CONFLICT DO NOTHING";
+
+    private static final String DELETE_QUERY =
+            "DELETE FROM checkin_role_assignments a WHERE NOT EXISTS (" +
+                "SELECT 1 FROM unnest($1::varchar[], $2::varchar[]) AS k(checkinuserid, role) " +
+                "WHERE k.checkinuserid = a.checkinuserid AND k.role = a.role)";
+
+    @Id
+    @Column(length = 120)
+    public String checkinUserId;
+
+    @Id
+    @Column(length = 50)
+    public String role;
+
+
+    /***
+     * Primary key
+     */
+    public static class Key implements Serializable {
+        public String checkinUserId;
+        public String role;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Objects.equals(checkinUserId, other.checkinUserId) &&
+                   Objects.equals(role, other.role);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(checkinUserId, role); }
+    }
+
+
+    /***
+     * Constructor
+     */
+    public CheckinRoleAssignmentEntity() { super(); }
+
+    /***
+     * Constructor
+     */
+    public CheckinRoleAssignmentEntity(String checkinUserId, String role) {
+        super();
+        this.checkinUserId = checkinUserId;
+        this.role = role;
+    }
+
+    /***
+     * Make the mirror contain exactly the specified role assignments.
+     * Call in a transaction, so that readers never see a partial update.
+     * @param connection The connection to use
+     * @param assignments All roles currently held in the group
+     * @return Completes when the mirror is up-to-date
+     */
+    public static Uni<Void> syncAsync(SqlConnection connection, List<CheckinRoleAssignmentEntity> assignments) {
+        var ids = assignments.stream().map(assignment -> assignment.checkinUserId).toArray(String[]::new);
+        var roles = assignments.stream().map(assignment -> assignment.role).toArray(String[]::new);
+        var rows = new ArrayList<Tuple>(assignments.size());
+        for(var assignment : assignments)
+            rows.add(Tuple.of(assignment.checkinUserId, assignment.role));
+
+        return connection.preparedQuery(DELETE_QUERY).execute(Tuple.of(ids, roles))
+            .chain(unused -> CheckinMemberEntity.executeInBatches(connection, INSERT_QUERY, rows));
+    }
+}
@@ -0,0 +1,83 @@
+package egi.eu.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.persistence.*;
+
+
+/**
+ * Check-in membership shared by the replica that refreshes it with the other replicas.
+ * The data is a serialized {@link egi.checkin.CheckinSnapshot}, one row per group.
+ */
+@Entity
+@Table(name = "checkin_snapshot")
+public class CheckinSnapshotEntity extends PanacheEntityBase {
+
+    private static final String SAVE_QUERY =
+            "INSERT INTO checkin_snapshot (groupname, data, updatedat) VALUES ($1, $2, $3) " +
+            "ON CONFLICT (groupname) DO UPDATE SET data = excluded.data, updatedat = excluded.updatedat " +
+            "WHERE checkin_snapshot.updatedat < excluded.updatedat";
+
+    private static final String LOAD_QUERY =
+            "SELECT data, updatedat FROM checkin_snapshot WHERE groupname = $1 AND updatedat > $2";
+
+    @Id
+    @Column(length = 100)
+    public String groupName;
+
+    @Column(columnDefinition = "bytea")
+    public byte[] data;
+
+    // Milliseconds since epoch, when the newest part of the snapshot was fetched from Check-in
+    public long updatedAt;
+
+
+    /***
+     * Constructor
+     */
+    public CheckinSnapshotEntity() { super(); }
+
+    /***
+     * Constructor
+     */
+    public CheckinSnapshotEntity(String groupName, byte[] data, long updatedAt) {
+        super();
+        this.groupName = groupName;
+        this.data = data;
+        this.updatedAt = updatedAt;
+    }
+
+    /***
+     * Store a snapshot, unless a newer one is already stored
+     * @param client The reactive client to use
+     * @return Completes when stored
+     */
+    public static Uni<Void> save(PgPool client, CheckinSnapshotEntity snapshot) {
+        return client.preparedQuery(SAVE_QUERY)
+                .execute(Tuple.of(snapshot.groupName, Buffer.buffer(snapshot.data), snapshot.updatedAt))
+                .replaceWithVoid();
+    }
+
+    /***
+     * Load the stored snapshot of a group, if it is newer than the one we have
+     * @param client The reactive client to use
+     * @param groupName The group the snapshot is for
+     * @param newerThan Only return the snapshot if updated after this moment
+     * @return The snapshot, null if there is no newer one
+     */
+    public static Uni<CheckinSnapshotEntity> load(PgPool client, String groupName, long newerThan) {
+        return client.preparedQuery(LOAD_QUERY)
+                .execute(Tuple.of(groupName, newerThan))
+                .map(rows -> {
+                    var it = rows.iterator();
+                    if(!it.hasNext())
+                        return null;
+
+                    var row = it.next();
+                    return new CheckinSnapshotEntity(groupName, row.getBuffer("data").getBytes(), row.getLong("updatedat"));
+                });
+    }
+}
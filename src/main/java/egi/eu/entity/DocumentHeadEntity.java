@@ -0,0 +1,80 @@
+package egi.eu.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.*;
+import org.hibernate.reactive.mutiny.Mutiny;
+
+
+/**
+ * Pointer to the latest version of a document, so that it can be loaded by its primary key
+ * instead of sorting all versions. Moved in the same transaction that creates a new version.
+ * Documents without a head (e.g. in databases created before these were added) fall back to
+ * the version with the highest number.
+ */
+@Entity
+@Table(name = "document_heads")
+public class DocumentHeadEntity extends PanacheEntityBase {
+
+    // Documents, roles have one head per role, see role()
+    public static final String PROCESS = "process";
+    public static final String GOVERNANCE = "governance";
+    public static final String RESPONSIBILITY = "responsibility";
+    public static final String ROLE_PREFIX = "role:";
+
+    // Moves the head of a document, or creates it
+    private static final String MOVE_QUERY =
+            "INSERT INTO document_heads (document, versionid) VALUES (?1, ?2) " +
+            "ON CONFLICT (document) DO UPDATE SET versionid = excluded.versionid";
+
+    @Id
+    @Column(length = 100)
+    public String document;
+
+    // Id of the latest version, e.g. of a ProcessEntity
+    @Column(nullable = false)
+    public Long versionId;
+
+
+    /***
+     * Constructor
+     */
+    public DocumentHeadEntity() { super(); }
+
+    /***
+     * The document of a role.
+     * Uses the role Id exactly as stored in the role versions, the same Id their lookups match on.
+     * @param role The role Id, as in {@link RoleEntity#role}
+     * @return Document name
+     */
+    public static String role(String role) {
+        return ROLE_PREFIX + role;
+    }
+
+    /***
+     * Get the Id of the latest version of a document
+     * @param document The document, one of the constants above
+     * @return Id of the latest version, null if the document has no head
+     */
+    public static Uni<Long> getVersionId(String document) {
+        return DocumentHeadEntity.<DocumentHeadEntity>findById(document)
+            .map(head -> null != head ? head.versionId : null);
+    }
+
+    /***
+     * Point the head of a document to a new version.
+     * Call in the transaction that persists the version, after persisting it.
+     * Creates the head if the document does not have one yet, in the same statement.
+     * @param session The session of the transaction that persisted the version
+     * @param document The document, one of the constants above
+     * @param versionId Id of the new version
+     * @return Completes when the head was moved
+     */
+    public static Uni<Void> moveAsync(Mutiny.Session session, String document, Long versionId) {
+        return session.createNativeQuery(MOVE_QUERY)
+            .setParameter(1, document)
+            .setParameter(2, versionId)
+            .executeUpdate()
+            .replaceWithVoid();
+    }
+}
@@ -4,6 +4,10 @@ import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.persistence.*;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Generated;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -21,7 +25,8 @@ import egi.eu.model.Governance;
 public class GovernanceEntity extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "governance_seq")
+    @SequenceGenerator(name = "governance_seq", sequenceName = "governance_seq", allocationSize = 50)
     public Long id;
 
     @Column(length = 256)
@@ -32,12 +37,15 @@ public class GovernanceEntity extends PanacheEntityBase {
 
     @ManyToMany(fetch = FetchType.EAGER,
                 cascade = { CascadeType.PERSIST })
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 50)
     @JoinTable(name = "governance_groups_map",
                joinColumns = { @JoinColumn(name = "governance_id") },
                inverseJoinColumns = { @JoinColumn(name = "group_id") })
     public Set<Group> groups = null;
 
     // Change tracking
+    @Generated
     @Column(nullable = false, unique = true, insertable = false, updatable = false, columnDefinition = "serial")
     public int version;
 
@@ -165,15 +173,29 @@ public class GovernanceEntity extends PanacheEntityBase {
      * @return List with latest version of the entity
      */
     public static Uni<List<GovernanceEntity>> getLastVersionAsList() {
-        return find("ORDER BY version DESC").range(0,0).list();
+        return getLastVersion().map(latest -> null != latest ? List.of(latest) : List.of());
     }
 
     /***
-     * Get the latest version
+     * Get the latest version, by the Id its head points to
      * @return Latest version of the entity
      */
     public static Uni<GovernanceEntity> getLastVersion() {
-        return find("ORDER BY version DESC").firstResult();
+        return DocumentHeadEntity.getVersionId(DocumentHeadEntity.GOVERNANCE)
+            .chain(GovernanceEntity::getVersionOrLatest);
+    }
+
+    /***
+     * Get a version by Id
+     * @param id The Id of the version, null to find the latest version by number
+     * @return The version of the entity
+     */
+    private static Uni<GovernanceEntity> getVersionOrLatest(Long id) {
+        if(null == id)
+            // No head yet
+            return find("ORDER BY version DESC").firstResult();
+
+        return find("id", id).firstResult();
     }
 
     /***
@@ -200,7 +222,8 @@ public class GovernanceEntity extends PanacheEntityBase {
     public static class Group extends PanacheEntityBase {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "governance_groups_seq")
+        @SequenceGenerator(name = "governance_groups_seq", sequenceName = "governance_groups_seq", allocationSize = 50)
         public Long id;
 
         @Column(length = 10240)
@@ -217,6 +240,8 @@ public class GovernanceEntity extends PanacheEntityBase {
 
         @ManyToMany(fetch = FetchType.EAGER,
                     cascade = { CascadeType.PERSIST })
+        @Fetch(FetchMode.SELECT)
+        @BatchSize(size = 50)
         @JoinTable(name = "governance_group_interfaces_map",
                    joinColumns = { @JoinColumn(name = "group_id") },
                    inverseJoinColumns = { @JoinColumn(name = "interface_id") })
@@ -264,7 +289,8 @@ public class GovernanceEntity extends PanacheEntityBase {
         public static class Interface extends PanacheEntityBase {
 
             @Id
-            @GeneratedValue(strategy = GenerationType.IDENTITY)
+            @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "governance_group_interfaces_seq")
+            @SequenceGenerator(name = "governance_group_interfaces_seq", sequenceName = "governance_group_interfaces_seq", allocationSize = 50)
             public Long id;
 
             @Schema(enumeration={ "Internal", "External", "Customer",
@@ -1,6 +1,10 @@
 package egi.eu.entity;
 
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Generated;
 import org.hibernate.annotations.UpdateTimestamp;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.mutiny.Uni;
@@ -28,7 +32,8 @@ import egi.eu.Utils;
 public class ProcessEntity extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "process_seq")
+    @SequenceGenerator(name = "process_seq", sequenceName = "process_seq", allocationSize = 50)
     public Long id;
 
     @Column(length = 10240)
@@ -38,6 +43,8 @@ public class ProcessEntity extends PanacheEntityBase {
 
     @ManyToMany(fetch = FetchType.EAGER,
                 cascade = { CascadeType.PERSIST })
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 50)
     @JoinTable(name = "process_requirements_map",
                joinColumns = { @JoinColumn(name = "process_id") },
                inverseJoinColumns = { @JoinColumn(name = "requirement_id") })
@@ -45,6 +52,8 @@ public class ProcessEntity extends PanacheEntityBase {
 
     @ManyToMany(fetch = FetchType.EAGER,
                 cascade = { CascadeType.PERSIST })
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 50)
     @JoinTable(name = "process_interfaces_map",
                joinColumns = { @JoinColumn(name = "process_id") },
                inverseJoinColumns = { @JoinColumn(name = "interface_id") })
@@ -58,9 +67,11 @@ public class ProcessEntity extends PanacheEntityBase {
 
     public LocalDateTime nextReview;
 
+    // Status this version was created with, see StatusTransitionEntity for later changes
     public int status;
 
     // Change tracking
+    @Generated
     @Column(nullable = false, unique = true, insertable = false, updatable = false, columnDefinition = "serial")
     public int version;
 
@@ -83,42 +94,14 @@ public class ProcessEntity extends PanacheEntityBase {
      */
     public ProcessEntity() { super(); }
 
-    /***
-     * Copy constructor with new status
-     * @param process The process to copy
-     * @param newStatus The new status
-     */
-    public ProcessEntity(ProcessEntity process, Process.ProcessStatus newStatus) {
-        super();
-
-        // Copy simple fields
-        this.description = process.description;
-        this.contact = process.contact;
-        this.status = newStatus.getValue();
-        this.reviewFrequency = process.reviewFrequency;
-        this.frequencyUnit = process.frequencyUnit;
-        this.nextReview = process.nextReview;
-
-        // Copy requirements
-        if(null != process.requirements) {
-            this.requirements = new HashSet<>();
-            this.requirements.addAll(process.requirements);
-        }
-
-        // Copy interfaces
-        if(null != process.interfaces) {
-            this.interfaces = new HashSet<>();
-            this.interfaces.addAll(process.interfaces);
-        }
-    }
-
     /***
      * Copy constructor
      * @param process The new version (from the frontend)
      * @param latest The latest version in the database
+     * @param latestStatus The current status of the latest version
      * @param users The users that already exist in the database
      */
-    public ProcessEntity(Process process, ProcessEntity latest, Map<String, UserEntity> users) {
+    public ProcessEntity(Process process, ProcessEntity latest, ProcessStatus latestStatus, Map<String, UserEntity> users) {
         super();
 
         // Copy simple fields
@@ -140,7 +123,6 @@ public class ProcessEntity extends PanacheEntityBase {
                        .withZoneSameInstant(ZoneId.systemDefault())
                        .toLocalDateTime();
 
-        final var latestStatus = ProcessStatus.of(latest.status);
         if(ProcessStatus.APPROVED == latestStatus)
             // Changing an approved entity will require a new approval
             this.status = ProcessStatus.DRAFT.getValue();
@@ -234,15 +216,29 @@ public class ProcessEntity extends PanacheEntityBase {
      * @return List with latest version of the entity
      */
     public static Uni<List<ProcessEntity>> getLastVersionAsList() {
-        return find("ORDER BY version DESC").range(0,0).list();
+        return getLastVersion().map(latest -> null != latest ? List.of(latest) : List.of());
     }
 
     /***
-     * Get the latest version
+     * Get the latest version, by the Id its head points to
      * @return Latest version of the entity
      */
     public static Uni<ProcessEntity> getLastVersion() {
-        return find("ORDER BY version DESC").firstResult();
+        return DocumentHeadEntity.getVersionId(DocumentHeadEntity.PROCESS)
+            .chain(ProcessEntity::getVersionOrLatest);
+    }
+
+    /***
+     * Get a version by Id
+     * @param id The Id of the version, null to find the latest version by number
+     * @return The version of the entity
+     */
+    private static Uni<ProcessEntity> getVersionOrLatest(Long id) {
+        if(null == id)
+            // No head yet
+            return find("ORDER BY version DESC").firstResult();
+
+        return find("id", id).firstResult();
     }
 
     /***
@@ -269,7 +265,8 @@ public class ProcessEntity extends PanacheEntityBase {
     public static class Requirement extends PanacheEntityBase {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "process_requirements_seq")
+        @SequenceGenerator(name = "process_requirements_seq", sequenceName = "process_requirements_seq", allocationSize = 50)
         public Long id;
 
         @Column(length = 10)
@@ -283,6 +280,8 @@ public class ProcessEntity extends PanacheEntityBase {
 
         @ManyToMany(fetch = FetchType.EAGER,
                     cascade = { CascadeType.PERSIST })
+        @Fetch(FetchMode.SELECT)
+        @BatchSize(size = 50)
         @JoinTable(name = "process_requirement_responsibles_map",
                    joinColumns = { @JoinColumn(name = "requirement_id") },
                    inverseJoinColumns = { @JoinColumn(name = "user_id") })
@@ -329,7 +328,8 @@ public class ProcessEntity extends PanacheEntityBase {
     public static class Interface extends PanacheEntityBase {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "process_interfaces_seq")
+        @SequenceGenerator(name = "process_interfaces_seq", sequenceName = "process_interfaces_seq", allocationSize = 50)
         public Long id;
 
         @Schema(enumeration={ "In", "Out" })
@@ -4,6 +4,7 @@ import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.persistence.*;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.hibernate.annotations.Generated;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -22,7 +23,8 @@ import egi.eu.model.Responsibility.ResponsibilityStatus;
 public class ResponsibilityEntity extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "responsibility_seq")
+    @SequenceGenerator(name = "responsibility_seq", sequenceName = "responsibility_seq", allocationSize = 50)
     public Long id;
 
     @Column(length = 10240)
@@ -36,9 +38,11 @@ public class ResponsibilityEntity extends PanacheEntityBase {
 
     public LocalDateTime nextReview;
 
+    // Status this version was created with, see StatusTransitionEntity for later changes
     public int status;
 
     // Change tracking
+    @Generated
     @Column(nullable = false, unique = true, insertable = false, updatable = false, columnDefinition = "serial")
     public int version;
 
@@ -62,29 +66,14 @@ public class ResponsibilityEntity extends PanacheEntityBase {
     public ResponsibilityEntity() { super(); }
 
 
-    /***
-     * Copy constructor with new status
-     * @param resp The responsibilities to copy
-     * @param newStatus The new status
-     */
-    public ResponsibilityEntity(ResponsibilityEntity resp, ResponsibilityStatus newStatus) {
-        super();
-
-        // Copy simple fields
-        this.description = resp.description;
-        this.status = newStatus.getValue();
-        this.reviewFrequency = resp.reviewFrequency;
-        this.frequencyUnit = resp.frequencyUnit;
-        this.nextReview = resp.nextReview;
-    }
-
     /***
      * Copy constructor
      * @param resp The new version (from the frontend)
      * @param latest The latest version in the database
+     * @param latestStatus The current status of the latest version
      * @param users The users that already exist in the database
      */
-    public ResponsibilityEntity(Responsibility resp, ResponsibilityEntity latest, Map<String, UserEntity> users) {
+    public ResponsibilityEntity(Responsibility resp, ResponsibilityEntity latest, ResponsibilityStatus latestStatus, Map<String, UserEntity> users) {
         super();
 
         this.changeDescription = resp.changeDescription;
@@ -101,7 +90,6 @@ public class ResponsibilityEntity extends PanacheEntityBase {
         this.frequencyUnit = resp.frequencyUnit;
         this.nextReview = resp.nextReview;
 
-        final var latestStatus = ResponsibilityStatus.of(latest.status);
         if(ResponsibilityStatus.APPROVED == latestStatus)
             // Changing an approved entity will require a new approval
             this.status = ResponsibilityStatus.DRAFT.getValue();
@@ -114,15 +102,29 @@ public class ResponsibilityEntity extends PanacheEntityBase {
      * @return List with latest version of the entity
      */
     public static Uni<List<ResponsibilityEntity>> getLastVersionAsList() {
-        return find("ORDER BY version DESC").range(0,0).list();
+        return getLastVersion().map(latest -> null != latest ? List.of(latest) : List.of());
     }
 
     /***
-     * Get the latest version
+     * Get the latest version, by the Id its head points to
      * @return Latest version of the entity
      */
     public static Uni<ResponsibilityEntity> getLastVersion() {
-        return find("ORDER BY version DESC").firstResult();
+        return DocumentHeadEntity.getVersionId(DocumentHeadEntity.RESPONSIBILITY)
+            .chain(ResponsibilityEntity::getVersionOrLatest);
+    }
+
+    /***
+     * Get a version by Id
+     * @param id The Id of the version, null to find the latest version by number
+     * @return The version of the entity
+     */
+    private static Uni<ResponsibilityEntity> getVersionOrLatest(Long id) {
+        if(null == id)
+            // No head yet
+            return find("ORDER BY version DESC").firstResult();
+
+        return find("id", id).firstResult();
     }
 
     /***
@@ -1,6 +1,7 @@
 package egi.eu.entity;
 
-import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
 import org.hibernate.reactive.mutiny.Mutiny;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.common.constraint.NotNull;
@@ -23,7 +24,8 @@ import egi.eu.model.Role.RoleCategory;
 public class RoleEntity extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "roles_seq")
+    @SequenceGenerator(name = "roles_seq", sequenceName = "roles_seq", allocationSize = 50)
     public Long id;
 
     @Column(length = 50)
@@ -49,7 +51,7 @@ public class RoleEntity extends PanacheEntityBase {
     // Change tracking
     public int version = 1;
 
-    @UpdateTimestamp
+    @CurrentTimestamp(source = SourceType.DB)
     public LocalDateTime changedOn;
 
     @Column(length = 2048)
@@ -99,7 +101,8 @@ public class RoleEntity extends PanacheEntityBase {
      * Copy constructor
      * @param role The new version (from the frontend)
      * @param latest The latest version in the database
-     * @param user The caller user that already exist in the database
+     * @param user The caller user that already exists in the database, can be a reference
+     *             from {@link egi.eu.UserIdCache#references} so its fields are not read
      */
     public RoleEntity(Role role, RoleEntity latest, UserEntity user) {
         super();
@@ -107,12 +110,10 @@ public class RoleEntity extends PanacheEntityBase {
         // Copy simple fields
         this.changeDescription = role.changeDescription;
         this.version = null == latest ? 1 : latest.version + 1;
-        if(null != role.changeBy) {
-            if(null != user && role.changeBy.checkinUserId.equals(user.checkinUserId))
-                this.changeBy = user;
-            else
-                this.changeBy = new UserEntity(role.changeBy);
-        }
+        if(null != user)
+            this.changeBy = user;
+        else if(null != role.changeBy)
+            this.changeBy = new UserEntity(role.changeBy);
 
         this.role = role.role;
         this.name = role.name;
@@ -143,11 +144,25 @@ public class RoleEntity extends PanacheEntityBase {
     }
 
     /***
-     * Get the last version of a role
+     * Get the last version of a role, by the Id its head points to
      * @return Role entity
      */
     public static Uni<RoleEntity> getRoleLastVersion(String role) {
-        return find("role = ?1 ORDER BY version DESC", role).firstResult();
+        return DocumentHeadEntity.getVersionId(DocumentHeadEntity.role(role))
+            .chain(id -> getRoleVersionOrLatest(role, id));
+    }
+
+    /***
+     * Get a version of a role by Id
+     * @param id The Id of the version, null to find the latest version by number
+     * @return Role entity
+     */
+    private static Uni<RoleEntity> getRoleVersionOrLatest(String role, Long id) {
+        if(null == id)
+            // No head yet
+            return find("role = ?1 ORDER BY version DESC", role).firstResult();
+
+        return find("id", id).firstResult();
     }
 
     /***
@@ -1,27 +1,57 @@
 package egi.eu.entity;
 
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
-import io.quarkus.panache.common.Page;
 import io.smallrye.common.constraint.NotNull;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
 import jakarta.persistence.*;
-import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import egi.eu.model.Role;
+
 
 /**
  * Role assignment or revocation
  */
 @Entity
-@Table(name = "rolelog")
+@Table(name = "rolelog",
+       indexes = { @Index(name = "rolelog_role_changedon_id_idx", columnList = "role, changedOn DESC, id DESC") })
 public class RoleLogEntity extends PanacheEntityBase {
 
+    // Number of rows fetched from the server-side cursor at once when streaming logs
+    private static final int STREAM_FETCH_SIZE = 200;
+
+    // Same columns as the streaming query, the users are optional
+    private static final String SELECT_QUERY =
+            "SELECT new egi.eu.entity.RoleLogEntity$LogRecord(l.id, l.role, l.assigned, l.changedOn, " +
+                   "u.checkinUserId, u.fullName, u.email, " +
+                   "c.checkinUserId, c.fullName, c.email) " +
+            "FROM RoleLogEntity l LEFT JOIN l.user u LEFT JOIN l.changeBy c ";
+
+    private static final String STREAM_QUERY =
+            "SELECT l.id, l.role, l.assigned, l.changedon, " +
+                   "u.checkinuserid, u.fullname, u.email, " +
+                   "c.checkinuserid, c.fullname, c.email " +
+            "FROM rolelog l " +
+            "LEFT JOIN role_holder_map hm ON hm.role_id = l.id LEFT JOIN users u ON u.id = hm.user_id " +
+            "LEFT JOIN role_assigner_map am ON am.role_id = l.id LEFT JOIN users c ON c.id = am.user_id " +
+            "WHERE ($1::varchar IS NULL OR l.role = $1) " +
+            "ORDER BY l.changedon DESC, l.id DESC";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rolelog_seq")
+    @SequenceGenerator(name = "rolelog_seq", sequenceName = "rolelog_seq", allocationSize = 50)
     public Long id;
 
     @Column(length = 50)
@@ -37,7 +67,7 @@ public class RoleLogEntity extends PanacheEntityBase {
             inverseJoinColumns = { @JoinColumn(name = "user_id") })
     public UserEntity user = null;
 
-    @UpdateTimestamp
+    @CurrentTimestamp(source = SourceType.DB)
     public LocalDateTime changedOn;
 
     @ManyToOne(fetch = FetchType.EAGER,
@@ -71,20 +101,123 @@ public class RoleLogEntity extends PanacheEntityBase {
     }
 
     /***
-     * Get role logs older than the specified datetime, in reverse chronological order
+     * Get role logs older than the specified position, in reverse chronological order.
+     * Uses keyset pagination on (changedOn, id), so logs with identical timestamps are neither
+     * skipped nor duplicated across pages, and the cost of a page does not depend on its depth.
+     * Only the fields needed by the API are fetched, not the full user entities. The users are
+     * outer joined, so logs without a role holder or without an assigner are still returned.
      * @param role The role to fetch assignment logs for
      * @param from The date and time from where to start loading logs
+     * @param fromId Only logs with an Id less than this are returned for logs changed exactly at <b>from</b>
+     * @param checkinUserId If not null, only return logs of this role holder
+     * @param currentHolders If true, only return logs of users who hold the role now,
+     *                       according to the Check-in membership mirror, which is only
+     *                       maintained when the Check-in refresher is enabled
      * @param limit The maximum number of logs to return
-     * @return Role log entities
+     * @return Role log records
      */
-    public static Uni<List<RoleLogEntity>> getRoleAssignments(String role, LocalDateTime from, int limit) {
+    public static Uni<List<LogRecord>> getRoleAssignments(String role, LocalDateTime from, long fromId,
+                                                          String checkinUserId, boolean currentHolders, int limit) {
 
         Map<String, Object> params = new HashMap<>();
         params.put("role", role);
         params.put("from", from);
-        return find("role = :role AND changedOn < :from ORDER BY changedOn DESC", params)
-                .page(Page.ofSize(limit))
-                .list();
+        params.put("fromId", fromId);
+
+        var query = SELECT_QUERY + "WHERE l.role = :role AND (l.changedOn < :from OR (l.changedOn = :from AND l.id < :fromId))";
+        if(null != checkinUserId && !checkinUserId.isBlank()) {
+            query += " AND u.checkinUserId = :holder";
+            params.put("holder", checkinUserId);
+        }
+
+        if(currentHolders) {
+            // Membership in the group is not a role record in Check-in
+            query += Role.PROCESS_MEMBER.equals(role) ?
+                    " AND u.checkinUserId IN (SELECT m.checkinUserId FROM CheckinMemberEntity m WHERE m.groupMember = true)" :
+                    " AND u.checkinUserId IN (SELECT a.checkinUserId FROM CheckinRoleAssignmentEntity a WHERE a.role = :role)";
+        }
+
+        final var hql = query + " ORDER BY l.changedOn DESC, l.id DESC";
+        return Panache.getSession().chain(session -> {
+            var select = session.createSelectionQuery(hql, LogRecord.class).setMaxResults(limit);
+            params.forEach(select::setParameter);
+            return select.getResultList();
+        });
     }
 
+    /***
+     * Stream all role logs in reverse chronological order.
+     * Rows are read through a server-side cursor on a single connection, fetching more
+     * only when the subscriber requests them, so memory use does not depend on the log size.
+     * @param client The reactive database client
+     * @param role The role to fetch assignment logs for, null for all roles
+     * @return Stream of role log records
+     */
+    public static Multi<LogRecord> streamRoleAssignments(PgPool client, String role) {
+
+        return Multi.createFrom().resourceFromUni(client::getConnection, (SqlConnection connection) -> {
+                // Cursors only live inside a transaction
+                return connection.begin()
+                    .onItem().transformToMulti(tx -> connection.prepare(STREAM_QUERY)
+                        .onItem().transformToMulti(statement -> statement.createStream(STREAM_FETCH_SIZE, Tuple.of(role)).toMulti())
+                        .map(LogRecord::new)
+                        .onTermination().call((failure, cancelled) -> {
+                            // End the read-only transaction before the connection goes back to the pool
+                            var end = (null == failure && !cancelled) ? tx.commit() : tx.rollback();
+                            return end.onFailure().recoverWithNull();
+                        }));
+            })
+            .withFinalizer(connection -> {
+                // Transaction ended, release the connection
+                return connection.close();
+            });
+    }
+
+    /***
+     * Projection of a role log with just the fields returned by the API.
+     * The user fields are null if the log has no role holder or assigner.
+     */
+    public static class LogRecord {
+
+        public final Long id;
+        public final String role;
+        public final boolean assigned;
+        public final LocalDateTime changedOn;
+
+        public final String userCheckinUserId;
+        public final String userFullName;
+        public final String userEmail;
+
+        public final String changeByCheckinUserId;
+        public final String changeByFullName;
+        public final String changeByEmail;
+
+
+        /***
+         * Constructor, used by the select query
+         */
+        public LogRecord(Long id, String role, Boolean assigned, LocalDateTime changedOn,
+                         String userCheckinUserId, String userFullName, String userEmail,
+                         String changeByCheckinUserId, String changeByFullName, String changeByEmail) {
+            this.id = id;
+            this.role = role;
+            this.assigned = Boolean.TRUE.equals(assigned);
+            this.changedOn = changedOn;
+            this.userCheckinUserId = userCheckinUserId;
+            this.userFullName = userFullName;
+            this.userEmail = userEmail;
+            this.changeByCheckinUserId = changeByCheckinUserId;
+            this.changeByFullName = changeByFullName;
+            this.changeByEmail = changeByEmail;
+        }
+
+        /***
+         * Construct from a row of the streaming query
+         */
+        public LogRecord(Row row) {
+            this(row.getLong(0), row.getString(1), row.getBoolean(2), row.getLocalDateTime(3),
+                 row.getString(4), row.getString(5), row.getString(6),
+                 row.getString(7), row.getString(8), row.getString(9));
+        }
+    }
 }
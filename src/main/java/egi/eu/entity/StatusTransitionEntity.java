@@ -0,0 +1,127 @@
+package egi.eu.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+
+/**
+ * Change of the status of a document version, e.g. when approval is requested or granted.
+ * Transitions are only appended, they point to the content version they apply to, so a status
+ * change costs one row no matter how large the document is. The current status of a document is
+ * the one of the newest transition of its latest content version, or the status that version was
+ * created with if there is none.
+ * Transitions are ordered by the time of the change, stamped by the database so that all replicas
+ * use the same clock. The Id only breaks ties within a transaction: each replica takes its own block
+ * of Ids from the pooled sequence, so across replicas Ids do not follow insertion order.
+ */
+@Entity
+@Table(name = "status_transitions",
+       indexes = { @Index(name = "status_transitions_content_idx", columnList = "documentType, contentId") })
+public class StatusTransitionEntity extends PanacheEntityBase {
+
+    // Document types
+    public static final String PROCESS = "process";
+    public static final String RESPONSIBILITY = "responsibility";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "status_transitions_seq")
+    @SequenceGenerator(name = "status_transitions_seq", sequenceName = "status_transitions_seq", allocationSize = 50)
+    public Long id;
+
+    @Column(length = 20, nullable = false)
+    public String documentType;
+
+    // Id of the content version, e.g. of a ProcessEntity
+    @Column(nullable = false)
+    public Long contentId;
+
+    public int status;
+
+    @CurrentTimestamp(source = SourceType.DB)
+    public LocalDateTime changedOn;
+
+    @Column(length = 2048)
+    public String changeDescription;
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "user_id")
+    public UserEntity changeBy = null;
+
+
+    /***
+     * Constructor
+     */
+    public StatusTransitionEntity() { super(); }
+
+    /***
+     * Constructor
+     * @param documentType The type of the document, one of the constants above
+     * @param contentId The content version whose status changes
+     * @param status The new status
+     * @param changeBy The caller user
+     * @param changeDescription The motivation of the change
+     */
+    public StatusTransitionEntity(String documentType, Long contentId, int status, UserEntity changeBy, String changeDescription) {
+        super();
+
+        this.documentType = documentType;
+        this.contentId = contentId;
+        this.status = status;
+        this.changeBy = changeBy;
+        this.changeDescription = changeDescription;
+    }
+
+    /***
+     * Get the newest transition of a content version
+     * @return Latest transition, null if the status of the version never changed
+     */
+    public static Uni<StatusTransitionEntity> getLatest(String documentType, Long contentId) {
+        return find("documentType = ?1 AND contentId = ?2 ORDER BY changedOn DESC, id DESC", documentType, contentId).firstResult();
+    }
+
+    /***
+     * Get the newest transition of a content version as a list
+     * @return List with the latest transition, empty if the status of the version never changed
+     */
+    public static Uni<List<StatusTransitionEntity>> getLatestAsList(String documentType, Long contentId) {
+        return find("documentType = ?1 AND contentId = ?2 ORDER BY changedOn DESC, id DESC", documentType, contentId).range(0,0).list();
+    }
+
+    /***
+     * Get all transitions of all versions of a document
+     * @return Transitions, sorted in reverse chronological order
+     */
+    public static Uni<List<StatusTransitionEntity>> getAll(String documentType) {
+        return find("documentType = ?1 ORDER BY changedOn DESC, id DESC", documentType).list();
+    }
+
+    /***
+     * Get the current status of a content version
+     * @param contentStatus The status the version was created with
+     * @return The status of the newest transition, or the initial status of the version
+     */
+    public static Uni<Integer> getCurrentStatus(String documentType, Long contentId, int contentStatus) {
+        return getLatest(documentType, contentId)
+            .map(transition -> null != transition ? transition.status : contentStatus);
+    }
+
+    /***
+     * Group transitions by the content version they apply to
+     * @param transitions Transitions in reverse chronological order
+     * @return Map of content version Id to its transitions, keeping the order
+     */
+    public static Map<Long, List<StatusTransitionEntity>> groupByContent(List<StatusTransitionEntity> transitions) {
+        var groups = new HashMap<Long, List<StatusTransitionEntity>>();
+        if(null != transitions)
+            for(var transition : transitions)
+                groups.computeIfAbsent(transition.contentId, id -> new ArrayList<>()).add(transition);
+
+        return groups;
+    }
+}
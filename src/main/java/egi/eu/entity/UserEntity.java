@@ -3,9 +3,14 @@ package egi.eu.entity;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.common.constraint.NotNull;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
 import jakarta.persistence.*;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import egi.eu.model.User;
 
@@ -14,12 +19,24 @@ import egi.eu.model.User;
  * Details of some user
  */
 @Entity
-@Cacheable
 @Table(name = "users")
 public class UserEntity extends PanacheEntityBase {
 
+    // Creates the missing users and returns the Ids of all of them, in one round trip.
+    // The no-op update is needed for RETURNING to include the existing users, which are
+    // left as they are, like when the users are looked up by Hibernate. The Ids come from the
+    // same sequence Hibernate uses, which hands them out one at a time, not in pooled blocks.
+    private static final String UPSERT_QUERY =
+            "INSERT INTO users (id, checkinuserid, fullname, email) " +
+            "SELECT nextval('users_id_seq'), u.checkinuserid, u.fullname, u.email " +
+            "FROM unnest($1::text[], $2::text[], $3::text[]) AS u(checkinuserid, fullname, email) " +
+            "ON CONFLICT (checkinuserid) DO UPDATE " +
+            "SET checkinuserid = excluded.checkinuserid " +
+            "RETURNING id, checkinuserid";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 1)
     public Long id;
 
     @Column(unique = true, length = 120)
@@ -62,4 +79,29 @@ public class UserEntity extends PanacheEntityBase {
     public static Uni<List<UserEntity>> findByCheckinUserIds(List<String> checkinUserIds) {
         return list("checkinUserId in ?1", checkinUserIds);
     }
+
+    /***
+     * Make sure users exist in the database, creating the missing ones.
+     * The name and email of existing users are not changed.
+     * @param client The connection pool to use, the users are committed right away
+     * @param users The users to create, must have distinct Check-in Ids
+     * @return Map of Check-in user Id to database Id, for all the users
+     */
+    public static Uni<Map<String, Long>> upsertAsync(PgPool client, Collection<User> users) {
+        var checkinUserIds = users.stream().map(user -> user.checkinUserId).toArray(String[]::new);
+        var fullNames = users.stream().map(user -> user.fullName).toArray(String[]::new);
+        var emails = users.stream().map(user -> user.email).toArray(String[]::new);
+
+        return client.preparedQuery(UPSERT_QUERY)
+            .execute(Tuple.tuple().addArrayOfString(checkinUserIds)
+                                  .addArrayOfString(fullNames)
+                                  .addArrayOfString(emails))
+            .map(rows -> {
+                var ids = new HashMap<String, Long>();
+                for(var row : rows)
+                    ids.put(row.getString("checkinuserid"), row.getLong("id"));
+
+                return ids;
+            });
+    }
 }
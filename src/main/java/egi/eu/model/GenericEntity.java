@@ -2,7 +2,6 @@ package egi.eu.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,24 +22,7 @@ public abstract class GenericEntity<T> {
      * @param typeNameSuffix A suffix to use as part of the name
      */
     protected GenericEntity(String typeNamePrefix, String typeNameSuffix, boolean pluralName) {
-        var type = getTypeParameter();
-        if(null != type) {
-            var name = type.getTypeName();
-            var index = name.lastIndexOf('.');
-            name = index >= 0 ? name.substring(index + 1) : name;
-
-            if(null != typeNamePrefix)
-                this.kind = String.format("%sOf%s%s", typeNamePrefix, name, pluralName ? "s" : "");
-            else if(null != typeNameSuffix)
-                this.kind = name + typeNameSuffix;
-        }
-
-        if(null == kind || kind.isBlank()) {
-            if(null != typeNamePrefix)
-                this.kind = typeNamePrefix;
-            else
-                this.kind = typeNameSuffix;
-        }
+        this.kind = TypeMetadata.of(getClass()).kind(typeNamePrefix, typeNameSuffix, pluralName);
     }
 
     /***
@@ -49,12 +31,6 @@ public abstract class GenericEntity<T> {
      */
     @SuppressWarnings("unchecked")
     protected Class<T> getTypeParameter() {
-        try {
-            ParameterizedType superclass = (ParameterizedType) getClass().getGenericSuperclass();
-            return (Class<T>) superclass.getActualTypeArguments()[0];
-        }
-        catch(Exception e) {
-            return null;
-        }
+        return (Class<T>) TypeMetadata.of(getClass()).typeParameter(0);
     }
 }
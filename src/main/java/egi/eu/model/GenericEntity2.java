@@ -2,8 +2,6 @@ package egi.eu.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.lang.reflect.ParameterizedType;
-
 
 /**
  * Base generic entity with 2 type parameters
@@ -21,24 +19,7 @@ public abstract class GenericEntity2<T, M> {
      * @param typeNameSuffix A suffix to use as part of the name
      */
     protected GenericEntity2(String typeNamePrefix, String typeNameSuffix, boolean pluralName) {
-        var type = getFirstTypeParameter();
-        if(null != type) {
-            var name = type.getTypeName();
-            var index = name.lastIndexOf('.');
-            name = index >= 0 ? name.substring(index + 1) : name;
-
-            if(null != typeNamePrefix)
-                this.kind = String.format("%sOf%s%s", typeNamePrefix, name, pluralName ? "s" : "");
-            else if(null != typeNameSuffix)
-                this.kind = name + typeNameSuffix;
-        }
-
-        if(null == kind || kind.isBlank()) {
-            if(null != typeNamePrefix)
-                this.kind = typeNamePrefix;
-            else
-                this.kind = typeNameSuffix;
-        }
+        this.kind = TypeMetadata.of(getClass()).kind(typeNamePrefix, typeNameSuffix, pluralName);
     }
 
     /***
@@ -47,13 +28,7 @@ public abstract class GenericEntity2<T, M> {
      */
     @SuppressWarnings("unchecked")
     protected Class<T> getFirstTypeParameter() {
-        try {
-            ParameterizedType superclass = (ParameterizedType) getClass().getGenericSuperclass();
-            return (Class<T>) superclass.getActualTypeArguments()[0];
-        }
-        catch(Exception e) {
-            return null;
-        }
+        return (Class<T>) TypeMetadata.of(getClass()).typeParameter(0);
     }
 
     /***
@@ -62,12 +37,15 @@ public abstract class GenericEntity2<T, M> {
      */
     @SuppressWarnings("unchecked")
     protected Class<M> getSecondTypeParameter() {
-        try {
-            ParameterizedType superclass = (ParameterizedType) getClass().getGenericSuperclass();
-            return (Class<M>) superclass.getActualTypeArguments()[1];
-        }
-        catch(Exception e) {
-            return null;
-        }
+        return (Class<M>) TypeMetadata.of(getClass()).typeParameter(1);
+    }
+
+    /***
+     * Helper to get the default value of the second type parameter (M).
+     * @return Default value, null if the type has none
+     */
+    @SuppressWarnings("unchecked")
+    protected M getSecondTypeDefault() {
+        return (M) TypeMetadata.of(getClass()).defaultValue(1);
     }
 }
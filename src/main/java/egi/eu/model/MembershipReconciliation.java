@@ -0,0 +1,116 @@
+package egi.eu.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import egi.eu.ActionError;
+
+
+/***
+ * The changes needed to bring the members of a group in line with a desired set of users,
+ * and the outcome of applying them
+ */
+public class MembershipReconciliation {
+
+    public static final String ADD = "add";
+    public static final String RESTORE = "restore";
+    public static final String REMOVE = "remove";
+
+    public static final String PLANNED = "planned";
+    public static final String APPLIED = "applied";
+    public static final String FAILED = "failed";
+
+    @Schema(enumeration={ "MembershipReconciliation" })
+    public String kind = "MembershipReconciliation";
+
+    @Schema(description="Whether the changes were only computed, but not applied")
+    public boolean dryRun;
+
+    @Schema(description="Number of desired users that are already members")
+    public int unchanged;
+
+    @Schema(description="Number of changes applied successfully")
+    public int applied;
+
+    @Schema(description="Number of changes that could not be applied")
+    public int failed;
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public String message;
+
+    @Schema(description="The needed changes, one per user")
+    public List<Change> changes = new ArrayList<>();
+
+
+    /***
+     * Constructor
+     */
+    public MembershipReconciliation() {}
+
+    /***
+     * Construct empty plan
+     */
+    public MembershipReconciliation(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /***
+     * Update the counters from the status of the changes
+     */
+    public MembershipReconciliation count() {
+        this.applied = (int)this.changes.stream().filter(c -> APPLIED.equals(c.status)).count();
+        this.failed = (int)this.changes.stream().filter(c -> FAILED.equals(c.status)).count();
+        return this;
+    }
+
+
+    /***
+     * A change to the membership of one user
+     */
+    public static class Change {
+
+        public User user;
+
+        @Schema(enumeration={ ADD, RESTORE, REMOVE })
+        public String action;
+
+        @Schema(enumeration={ PLANNED, APPLIED, FAILED })
+        public String status = PLANNED;
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public ActionError error;
+
+        // The Check-in membership record to restore or delete
+        @JsonIgnore
+        public long recordId;
+
+
+        /***
+         * Constructor
+         */
+        public Change() {}
+
+        /***
+         * Construct planned change
+         */
+        public Change(User user, String action, long recordId) {
+            this.user = user;
+            this.action = action;
+            this.recordId = recordId;
+        }
+
+        /***
+         * Construct change that cannot be applied
+         */
+        public Change(User user, String action, ActionError error) {
+            this.user = user;
+            this.action = action;
+            this.status = FAILED;
+            this.error = error;
+        }
+    }
+}
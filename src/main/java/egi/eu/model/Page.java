@@ -10,8 +10,6 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 
-import egi.eu.Utils;
-
 
 /**
  * Page of elements.
@@ -47,9 +45,7 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
     public Page() {
         super("Page", null, true);
 
-        var fromType = getSecondTypeParameter();
-
-        this.from = Utils.defaultValueFor(fromType);
+        this.from = getSecondTypeDefault();
         this.limit = 100;
         this.count = 0;
         this.elements = new ArrayList<>();
@@ -80,8 +76,7 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
         if(null == source)
             return this;
 
-        var type = getSecondTypeParameter();
-        boolean isLongFrom = Long.class.getTypeName().equals(type.getTypeName());
+        boolean isLongFrom = Long.class == getSecondTypeParameter();
 
         // Populate page with elements
         this.from = from;
@@ -95,6 +90,46 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
         this.count = this.elements.size();
 
         // Setup links to prev/next pages
+        setupLinks(baseUri, isLongFrom, source.size());
+
+        return this;
+    }
+
+    /**
+     * Populate with elements that were already selected from the source,
+     * and setup pagination links.
+     * @param baseUri The URI of the current page, or null to disable links to prev/next pages
+     * @param from The number of elements that were skipped from the source
+     * @param limit The maximum number of elements on the page
+     * @param elements The elements on the page, at most limit
+     * @param total The total number of elements in the source
+     * @return Ourselves to allow . chaining notation
+     */
+    public Page<T, M> populate(String baseUri, M from, int limit, List<T> elements, long total) {
+        if(null == elements)
+            return this;
+
+        boolean isLongFrom = Long.class == getSecondTypeParameter();
+
+        // Populate page with elements
+        this.from = from;
+        this.limit = limit;
+        this.elements = elements.size() > limit ? elements.subList(0, limit) : elements;
+        this.count = this.elements.size();
+
+        // Setup links to prev/next pages
+        setupLinks(baseUri, isLongFrom, total);
+
+        return this;
+    }
+
+    /***
+     * Setup links to the previous and next pages.
+     * @param baseUri The URI of the current page, or null to disable links to prev/next pages
+     * @param isLongFrom Whether the offset/marker is a number of elements to skip
+     * @param total The total number of elements in the source
+     */
+    private void setupLinks(String baseUri, boolean isLongFrom, long total) {
         try {
             this.baseUri = null != baseUri ? new URI(baseUri) : null;
         } catch(URISyntaxException e) {
@@ -118,7 +153,7 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
                 this.prevPage = null;
 
             long nextPageOffset = longFrom + limit;
-            if(nextPageOffset < source.size()) {
+            if(nextPageOffset < total) {
                 var nextUri = UriBuilder.fromUri(baseUri)
                                         .replaceQueryParam("from", nextPageOffset)
                                         .replaceQueryParam("limit", limit)
@@ -132,8 +167,6 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
             this.prevPage = null;
             this.nextPage = null;
         }
-
-        return this;
     }
 
     /***
@@ -206,10 +239,8 @@ public abstract class Page<T, M> extends GenericEntity2<T, M> {
             this.nextPage =page.nextPage;
         }
         else {
-            var fromType = getSecondTypeParameter();
-
             this.elements = new ArrayList<>();
-            this.from = Utils.defaultValueFor(fromType);
+            this.from = getSecondTypeDefault();
             this.limit = 100;
             this.count = 0;
             this.prevPage = null;
@@ -6,11 +6,13 @@ import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import egi.eu.entity.ProcessEntity;
+import egi.eu.entity.StatusTransitionEntity;
 
 
 /***
@@ -80,12 +82,16 @@ public class Process extends VersionInfo {
     public String apiVersion;
 
     // Change history
+    @Schema(description="Older versions and status changes, newest first. Status changes repeat\n" +
+                        "the version number of the content they apply to, so there can be several\n" +
+                        "entries with the same version, the last one being the version as created.")
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public HistoryOfProcess history = null;
 
 
     /***
-     * History of the process details
+     * History of the process details.
+     * Status changes do not create new versions, so entries can share a version number.
      */
     public static class HistoryOfProcess extends History<Process> {
         public HistoryOfProcess() { super(); }
@@ -142,19 +148,47 @@ public class Process extends VersionInfo {
             this.changeBy = new User(process.changeBy);
     }
 
+    /***
+     * Copy constructor with a status change
+     * @param process The entity to copy
+     * @param transition The status change of this version, null if none
+     */
+    public Process(ProcessEntity process, StatusTransitionEntity transition, boolean loadApiVersion) {
+        this(process, loadApiVersion);
+
+        if(null == transition)
+            return;
+
+        // The content stays the same, only the status and the change tracking differ
+        this.status = ProcessStatus.of(transition.status);
+        this.changeDescription = transition.changeDescription;
+        this.changedOn = transition.changedOn;
+        this.changeBy = (null != transition.changeBy) ? new User(transition.changeBy) : null;
+    }
+
     /***
      * Construct from history.
      * @param processVersions The list of versions, should start with the latest version.
+     * @param transitions The status changes of these versions, newest first.
      */
-    public Process(List<ProcessEntity> processVersions) {
-        // Head of the list as the current version
-        this(processVersions.get(0), true);
-
-        // The rest of the list as the history of this entity
-        var olderVersions = processVersions.stream().skip(1).map(entity -> {
-                return new Process(entity, false);
-            }).toList();
+    public Process(List<ProcessEntity> processVersions, List<StatusTransitionEntity> transitions) {
+        // Head of the list, with its newest status, as the current version
+        this(processVersions.get(0),
+             transitions.stream().filter(t -> t.contentId.equals(processVersions.get(0).id)).findFirst().orElse(null),
+             true);
+
+        // The rest as the history of this entity, each version preceded by its status changes
+        var byContent = StatusTransitionEntity.groupByContent(transitions);
+        var olderVersions = new ArrayList<Process>();
+        for(var entity : processVersions) {
+            for(var transition : byContent.getOrDefault(entity.id, List.of()))
+                olderVersions.add(new Process(entity, transition, false));
+
+            olderVersions.add(new Process(entity, false));
+        }
 
+        // The first one is the current version
+        olderVersions.remove(0);
         if(!olderVersions.isEmpty())
             this.history = new HistoryOfProcess(olderVersions);
     }
@@ -5,9 +5,11 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import egi.eu.entity.ResponsibilityEntity;
+import egi.eu.entity.StatusTransitionEntity;
 
 
 /***
@@ -58,12 +60,16 @@ public class Responsibility extends VersionInfo {
     public ResponsibilityStatus status = ResponsibilityStatus.DRAFT;
 
     // Change history
+    @Schema(description="Older versions and status changes, newest first. Status changes repeat\n" +
+                        "the version number of the content they apply to, so there can be several\n" +
+                        "entries with the same version, the last one being the version as created.")
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public HistoryOfResponsibility history = null;
 
 
     /***
-     * History of the responsibilities
+     * History of the responsibilities.
+     * Status changes do not create new versions, so entries can share a version number.
      */
     public static class HistoryOfResponsibility extends History<Responsibility> {
         public HistoryOfResponsibility() { super(); }
@@ -98,19 +104,46 @@ public class Responsibility extends VersionInfo {
             this.changeBy = new User(resp.changeBy);
     }
 
+    /***
+     * Copy constructor with a status change
+     * @param resp The entity to copy
+     * @param transition The status change of this version, null if none
+     */
+    public Responsibility(ResponsibilityEntity resp, StatusTransitionEntity transition) {
+        this(resp);
+
+        if(null == transition)
+            return;
+
+        // The content stays the same, only the status and the change tracking differ
+        this.status = ResponsibilityStatus.of(transition.status);
+        this.changeDescription = transition.changeDescription;
+        this.changedOn = transition.changedOn;
+        this.changeBy = (null != transition.changeBy) ? new User(transition.changeBy) : null;
+    }
+
     /***
      * Construct from history.
      * @param respVersions The list of versions, should start with the latest version.
+     * @param transitions The status changes of these versions, newest first.
      */
-    public Responsibility(List<ResponsibilityEntity> respVersions) {
-        // Head of the list as the current version
-        this(respVersions.get(0));
-
-        // The rest of the list as the history of this entity
-        var olderVersions = respVersions.stream().skip(1).map(entity -> {
-                return new Responsibility(entity);
-            }).toList();
+    public Responsibility(List<ResponsibilityEntity> respVersions, List<StatusTransitionEntity> transitions) {
+        // Head of the list, with its newest status, as the current version
+        this(respVersions.get(0),
+             transitions.stream().filter(t -> t.contentId.equals(respVersions.get(0).id)).findFirst().orElse(null));
+
+        // The rest as the history of this entity, each version preceded by its status changes
+        var byContent = StatusTransitionEntity.groupByContent(transitions);
+        var olderVersions = new ArrayList<Responsibility>();
+        for(var entity : respVersions) {
+            for(var transition : byContent.getOrDefault(entity.id, List.of()))
+                olderVersions.add(new Responsibility(entity, transition));
+
+            olderVersions.add(new Responsibility(entity));
+        }
 
+        // The first one is the current version
+        olderVersions.remove(0);
         if(!olderVersions.isEmpty())
             this.history = new HistoryOfResponsibility(olderVersions);
     }
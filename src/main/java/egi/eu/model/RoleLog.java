@@ -14,6 +14,9 @@ import egi.eu.entity.RoleLogEntity;
  */
 public class RoleLog {
 
+    public static final String CSV_HEADER = "role,assigned,changedOn,userId,userName,userEmail," +
+                                            "changeById,changeByName,changeByEmail\n";
+
     @Schema(enumeration={ "RoleLog" })
     public String kind = "RoleLog";
 
@@ -56,4 +59,60 @@ public class RoleLog {
         if(null != roleAssign.changeBy)
             this.changeBy = new User(roleAssign.changeBy);
     }
+
+    /***
+     * Copy constructor
+     * @param record The log record to copy
+     */
+    public RoleLog(RoleLogEntity.LogRecord record) {
+
+        this.role = record.role;
+        this.assigned = record.assigned;
+        this.changedOn = record.changedOn;
+        if(null != record.userCheckinUserId)
+            this.user = new User(record.userCheckinUserId, record.userFullName, record.userEmail);
+        if(null != record.changeByCheckinUserId)
+            this.changeBy = new User(record.changeByCheckinUserId, record.changeByFullName, record.changeByEmail);
+    }
+
+    /***
+     * Format as a line of comma separated values, see also {@link #CSV_HEADER}
+     * @return CSV line, including the line terminator
+     */
+    public String toCsvLine() {
+        var line = new StringBuilder();
+        line.append(csvValue(this.role)).append(',')
+            .append(this.assigned).append(',')
+            .append(null != this.changedOn ? VersionInfo.UtcLocalDateTimeSerializer.format(this.changedOn) : "").append(',');
+
+        appendCsvUser(line, this.user).append(',');
+        appendCsvUser(line, this.changeBy).append('\n');
+
+        return line.toString();
+    }
+
+    /***
+     * Append the fields of a user to a CSV line
+     */
+    private static StringBuilder appendCsvUser(StringBuilder line, User user) {
+        if(null == user)
+            return line.append(",,");
+
+        return line.append(csvValue(user.checkinUserId)).append(',')
+                   .append(csvValue(user.fullName)).append(',')
+                   .append(csvValue(user.email));
+    }
+
+    /***
+     * Quote a value if needed, according to RFC 4180
+     */
+    private static String csvValue(String value) {
+        if(null == value)
+            return "";
+
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
 }
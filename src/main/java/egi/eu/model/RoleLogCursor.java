@@ -0,0 +1,87 @@
+package egi.eu.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+
+/***
+ * Opaque position in the role assignment logs, used for keyset pagination.
+ * Encodes the (changedOn, id) pair of the last log returned on a page.
+ */
+public class RoleLogCursor {
+
+    private static final char SEPARATOR = '|';
+
+    public final LocalDateTime changedOn; // Local time, as stored in the database
+    public final long id;
+
+
+    /***
+     * Constructor
+     * @param changedOn Date and time of the log entry
+     * @param id Id of the log entry
+     */
+    public RoleLogCursor(LocalDateTime changedOn, long id) {
+        this.changedOn = changedOn;
+        this.id = id;
+    }
+
+    /***
+     * Cursor that points before all existing logs
+     * @return Cursor to the first page
+     */
+    public static RoleLogCursor first() {
+        return new RoleLogCursor(LocalDateTime.now(), Long.MAX_VALUE);
+    }
+
+    /***
+     * Encode as an opaque string that can be passed in URLs
+     * @return URL-safe cursor string
+     */
+    public String encode() {
+        var raw = changedOn.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /***
+     * Parse a cursor.
+     * For backwards compatibility, also accepts a plain UTC date and time, in which case
+     * all logs before that moment are included, but not the ones stamped exactly then.
+     * @param cursor The cursor string, null, empty or "now" for the first page
+     * @return Decoded cursor, null if it cannot be parsed
+     */
+    public static RoleLogCursor decode(String cursor) {
+        if(null == cursor || cursor.isBlank() || cursor.equalsIgnoreCase("now"))
+            return first();
+
+        try {
+            var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var index = raw.lastIndexOf(SEPARATOR);
+            if(index > 0) {
+                var changedOn = LocalDateTime.parse(raw.substring(0, index));
+                var id = Long.parseLong(raw.substring(index + 1));
+                return new RoleLogCursor(changedOn, id);
+            }
+        }
+        catch(IllegalArgumentException | DateTimeParseException ignored) {
+            // Not an opaque cursor, try as date and time
+        }
+
+        try {
+            // Convert from UTC to the local timezone
+            var from = LocalDateTime.parse(cursor)
+                                    .atZone(ZoneOffset.UTC)
+                                    .withZoneSameInstant(ZoneId.systemDefault())
+                                    .toLocalDateTime();
+            // No log has a smaller Id, so logs changed exactly at this moment are excluded
+            return new RoleLogCursor(from, Long.MIN_VALUE);
+        }
+        catch(DateTimeParseException e) {
+            return null;
+        }
+    }
+}
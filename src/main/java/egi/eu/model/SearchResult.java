@@ -0,0 +1,48 @@
+package egi.eu.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+
+/**
+ * Entity matching a search
+ */
+public class SearchResult {
+
+    @Schema(enumeration={ "SearchResult" })
+    public String kind = "SearchResult";
+
+    @Schema(description="The type of the matching entity",
+            enumeration={ "user", "role", "process", "governance", "responsibilities" })
+    public String type;
+
+    @Schema(description="Identifies the entity within its type (Check-in user Id, role code).\n" +
+                        "Missing for singleton entities such as the process.")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public String id;
+
+    public String title;
+
+    @Schema(description="Relevance, higher is better. Only comparable between results of the same search.")
+    public double score;
+
+
+    /***
+     * Constructor
+     */
+    public SearchResult() {}
+
+    /***
+     * Construct with details
+     * @param type The type of the matching entity
+     * @param id Identifies the entity within its type, null for singletons
+     * @param title Human-readable name of the entity
+     * @param score Relevance of the entity
+     */
+    public SearchResult(String type, String id, String title, double score) {
+        this.type = type;
+        this.id = id;
+        this.title = title;
+        this.score = score;
+    }
+}
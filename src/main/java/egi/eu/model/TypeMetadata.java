@@ -0,0 +1,135 @@
+package egi.eu.model;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import egi.eu.Utils;
+
+
+/***
+ * Type parameters of a generic entity class, resolved once per class.
+ * Entities are created for every response, this avoids reflection and
+ * string formatting each time.
+ */
+final class TypeMetadata {
+
+    private static final ClassValue<TypeMetadata> registry = new ClassValue<>() {
+        @Override
+        protected TypeMetadata computeValue(Class<?> type) {
+            return new TypeMetadata(type);
+        }
+    };
+
+    private final Class<?>[] typeParameters;
+    private final Object[] defaultValues;
+    private volatile Kind kind; // Last computed kind
+
+
+    /***
+     * Computed kind, together with the parameters it was computed from
+     */
+    private static class Kind {
+        final String prefix;
+        final String suffix;
+        final boolean plural;
+        final String value;
+
+        Kind(String prefix, String suffix, boolean plural, String value) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.plural = plural;
+            this.value = value;
+        }
+
+        boolean isFor(String prefix, String suffix, boolean plural) {
+            return this.plural == plural && Utils.equalStrings(this.prefix, prefix) && Utils.equalStrings(this.suffix, suffix);
+        }
+    }
+
+    /***
+     * Get the metadata of a class
+     * @param type The generic entity class
+     * @return Metadata of the class, computed on first use
+     */
+    static TypeMetadata of(Class<?> type) {
+        return registry.get(type);
+    }
+
+    /***
+     * Constructor
+     * @param type The class to resolve type parameters for
+     */
+    private TypeMetadata(Class<?> type) {
+        Type[] arguments;
+        try {
+            var superclass = (ParameterizedType)type.getGenericSuperclass();
+            arguments = superclass.getActualTypeArguments();
+        }
+        catch(Exception e) {
+            arguments = new Type[0];
+        }
+
+        this.typeParameters = new Class<?>[arguments.length];
+        this.defaultValues = new Object[arguments.length];
+        for(int i = 0; i < arguments.length; i++) {
+            if(arguments[i] instanceof Class<?>) {
+                this.typeParameters[i] = (Class<?>)arguments[i];
+                this.defaultValues[i] = Utils.defaultValueFor(this.typeParameters[i]);
+            }
+        }
+    }
+
+    /***
+     * Get a type parameter
+     * @param index The index of the type parameter
+     * @return Class of the type parameter, null if not available
+     */
+    Class<?> typeParameter(int index) {
+        return index < this.typeParameters.length ? this.typeParameters[index] : null;
+    }
+
+    /***
+     * Get the default value of a type parameter
+     * @param index The index of the type parameter
+     * @return Default value, null if the type has none
+     */
+    Object defaultValue(int index) {
+        return index < this.defaultValues.length ? this.defaultValues[index] : null;
+    }
+
+    /***
+     * Get the name of an entity, composed from the name of the first type parameter
+     * @param typeNamePrefix A prefix to use as part of the name
+     * @param typeNameSuffix A suffix to use as part of the name
+     * @param pluralName Whether to make the prefix plural (append 's')
+     * @return Name of the entity
+     */
+    String kind(String typeNamePrefix, String typeNameSuffix, boolean pluralName) {
+        var cached = this.kind;
+        if(null != cached && cached.isFor(typeNamePrefix, typeNameSuffix, pluralName))
+            return cached.value;
+
+        String kind = null;
+        var type = typeParameter(0);
+        if(null != type) {
+            var name = type.getTypeName();
+            var index = name.lastIndexOf('.');
+            name = index >= 0 ? name.substring(index + 1) : name;
+
+            if(null != typeNamePrefix)
+                kind = String.format("%sOf%s%s", typeNamePrefix, name, pluralName ? "s" : "");
+            else if(null != typeNameSuffix)
+                kind = name + typeNameSuffix;
+        }
+
+        if(null == kind || kind.isBlank()) {
+            if(null != typeNamePrefix)
+                kind = typeNamePrefix;
+            else
+                kind = typeNameSuffix;
+        }
+
+        this.kind = new Kind(typeNamePrefix, typeNameSuffix, pluralName, kind);
+        return kind;
+    }
+}
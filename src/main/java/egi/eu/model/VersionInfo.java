@@ -45,9 +45,17 @@ public abstract class VersionInfo {
                               JsonGenerator jsonGenerator,
                               SerializerProvider serializerProvider)
                 throws IOException, JsonProcessingException {
+            jsonGenerator.writeObject(format(someDateTime));
+        }
+
+        /***
+         * Format a date/time the way all our APIs return it
+         * @param someDateTime UTC date and time
+         * @return Formatted date/time
+         */
+        public static String format(LocalDateTime someDateTime) {
             // As all date/times we return are in UTC, add a Z to the configured formatting
-            var stringDateTime = someDateTime.format(dtf);
-            jsonGenerator.writeObject(stringDateTime + 'Z');
+            return someDateTime.format(dtf) + 'Z';
         }
     }
 }
@@ -0,0 +1,122 @@
+-- Upgrade a database created by an earlier version, where Hibernate does not manage
+-- the schema (generation is none). Safe to run more than once.
+-- Stop all replicas first, then run with: psql -v ON_ERROR_STOP=1 -f upgrade-pooled-ids-and-mirrors.sql ims
+begin;
+
+-- Ids are generated by pooled sequences (allocation size 50) instead of identity columns
+alter table ims.users alter column id drop identity if exists;
+alter table ims.responsibility alter column id drop identity if exists;
+alter table ims.roles alter column id drop identity if exists;
+alter table ims.rolelog alter column id drop identity if exists;
+alter table ims.process alter column id drop identity if exists;
+alter table ims.process_requirements alter column id drop identity if exists;
+alter table ims.process_interfaces alter column id drop identity if exists;
+alter table ims.governance alter column id drop identity if exists;
+alter table ims.governance_groups alter column id drop identity if exists;
+alter table ims.governance_group_interfaces alter column id drop identity if exists;
+
+create sequence if not exists ims.responsibility_seq start with 1 increment by 50;
+create sequence if not exists ims.roles_seq start with 1 increment by 50;
+create sequence if not exists ims.rolelog_seq start with 1 increment by 50;
+create sequence if not exists ims.process_seq start with 1 increment by 50;
+create sequence if not exists ims.process_requirements_seq start with 1 increment by 50;
+create sequence if not exists ims.process_interfaces_seq start with 1 increment by 50;
+create sequence if not exists ims.governance_seq start with 1 increment by 50;
+create sequence if not exists ims.governance_groups_seq start with 1 increment by 50;
+create sequence if not exists ims.governance_group_interfaces_seq start with 1 increment by 50;
+create sequence if not exists ims.status_transitions_seq start with 1 increment by 50;
+
+-- Users are also created by a query, so their sequence is not pooled
+create sequence if not exists ims.users_id_seq start with 1 increment by 1;
+drop sequence if exists ims.users_seq;
+
+-- Move the sequences past the existing rows, never back. A sequence that was never used
+-- has not handed out its last_value yet, so any existing row is past it
+select setval('ims.users_id_seq', max(id)) from ims.users
+having max(id) > (select case when is_called then last_value else 0 end from ims.users_id_seq);
+select setval('ims.responsibility_seq', max(id)) from ims.responsibility
+having max(id) > (select case when is_called then last_value else 0 end from ims.responsibility_seq);
+select setval('ims.roles_seq', max(id)) from ims.roles
+having max(id) > (select case when is_called then last_value else 0 end from ims.roles_seq);
+select setval('ims.rolelog_seq', max(id)) from ims.rolelog
+having max(id) > (select case when is_called then last_value else 0 end from ims.rolelog_seq);
+select setval('ims.process_seq', max(id)) from ims.process
+having max(id) > (select case when is_called then last_value else 0 end from ims.process_seq);
+select setval('ims.process_requirements_seq', max(id)) from ims.process_requirements
+having max(id) > (select case when is_called then last_value else 0 end from ims.process_requirements_seq);
+select setval('ims.process_interfaces_seq', max(id)) from ims.process_interfaces
+having max(id) > (select case when is_called then last_value else 0 end from ims.process_interfaces_seq);
+select setval('ims.governance_seq', max(id)) from ims.governance
+having max(id) > (select case when is_called then last_value else 0 end from ims.governance_seq);
+select setval('ims.governance_groups_seq', max(id)) from ims.governance_groups
+having max(id) > (select case when is_called then last_value else 0 end from ims.governance_groups_seq);
+select setval('ims.governance_group_interfaces_seq', max(id)) from ims.governance_group_interfaces
+having max(id) > (select case when is_called then last_value else 0 end from ims.governance_group_interfaces_seq);
+
+-- Keyset pagination of role logs
+create index if not exists rolelog_role_changedon_id_idx on ims.rolelog (role, changedon desc, id desc);
+
+-- Check-in membership shared by the replica that refreshes it, and its mirror
+create table if not exists ims.checkin_snapshot (
+    groupname varchar(100) not null primary key,
+    data bytea,
+    updatedat bigint not null
+);
+
+create table if not exists ims.checkin_members (
+    checkinuserid varchar(120) not null primary key,
+    fullname varchar(255),
+    email varchar(255),
+    groupmember boolean not null
+);
+create index if not exists checkin_members_groupmember_idx on ims.checkin_members (groupmember);
+
+create table if not exists ims.checkin_role_assignments (
+    checkinuserid varchar(120) not null,
+    role varchar(50) not null,
+    primary key (checkinuserid, role)
+);
+create index if not exists checkin_role_assignments_role_idx on ims.checkin_role_assignments (role);
+
+-- Status changes are recorded as transitions, not as new versions of the documents
+create table if not exists ims.status_transitions (
+    id bigint not null primary key,
+    documenttype varchar(20) not null,
+    contentid bigint not null,
+    status integer not null,
+    changedon timestamp(6),
+    changedescription varchar(2048),
+    user_id bigint references ims.users (id)
+);
+create index if not exists status_transitions_content_idx on ims.status_transitions (documenttype, contentid);
+
+-- Each document points to its latest version
+create table if not exists ims.document_heads (
+    document varchar(100) not null primary key,
+    versionid bigint not null
+);
+
+insert into ims.document_heads (document, versionid)
+select 'process', id from ims.process order by version desc limit 1
+on conflict (document) do nothing;
+insert into ims.document_heads (document, versionid)
+select 'governance', id from ims.governance order by version desc limit 1
+on conflict (document) do nothing;
+insert into ims.document_heads (document, versionid)
+select 'responsibility', id from ims.responsibility order by version desc limit 1
+on conflict (document) do nothing;
+insert into ims.document_heads (document, versionid)
+select distinct on (role) 'role:' || role, id from ims.roles order by role, version desc
+on conflict (document) do nothing;
+
+-- Full-text search, the expressions must match the ones in DocumentHeadEntity
+create index if not exists roles_search_idx on ims.roles using gin ((setweight(to_tsvector('english', coalesce(name, '') || ' ' || coalesce(role, '')), 'A') || to_tsvector('english', coalesce(tasks, '') || ' ' || coalesce(recommendation, ''))));
+create index if not exists process_search_idx on ims.process using gin (to_tsvector('english', coalesce(description, '') || ' ' || coalesce(contact, '')));
+create index if not exists process_requirements_search_idx on ims.process_requirements using gin (to_tsvector('english', coalesce(code, '') || ' ' || coalesce(requirement, '') || ' ' || coalesce(source, '')));
+create index if not exists process_interfaces_search_idx on ims.process_interfaces using gin (to_tsvector('english', coalesce(interfaceswith, '') || ' ' || coalesce(description, '') || ' ' || coalesce(relevantmaterial, '')));
+create index if not exists governance_search_idx on ims.governance using gin ((setweight(to_tsvector('english', coalesce(title, '')), 'A') || to_tsvector('english', coalesce(description, ''))));
+create index if not exists governance_groups_search_idx on ims.governance_groups using gin (to_tsvector('english', coalesce(body, '') || ' ' || coalesce(composition, '') || ' ' || coalesce(meeting, '') || ' ' || coalesce(decisionvoting, '')));
+create index if not exists governance_group_interfaces_search_idx on ims.governance_group_interfaces using gin (to_tsvector('english', coalesce(interfaceswith, '') || ' ' || coalesce(comment, '')));
+create index if not exists responsibility_search_idx on ims.responsibility using gin (to_tsvector('english', coalesce(description, '')));
+
+commit;
@@ -1,3 +1,12 @@
+-- Ids are generated by pooled sequences, number the seed rows 1..N and the map tables below refer to them
+alter table ims.users alter column id add generated by default as identity;
+alter table ims.responsibility alter column id add generated by default as identity;
+alter table ims.roles alter column id add generated by default as identity;
+alter table ims.process alter column id add generated by default as identity;
+alter table ims.governance alter column id add generated by default as identity;
+alter table ims.governance_groups alter column id add generated by default as identity;
+alter table ims.governance_group_interfaces alter column id add generated by default as identity;
+
 insert into ims.users (checkinuserid, fullname, email)
 values ('e9c37aa0d1cf14c56e560f9f9915da6761f54383badb501a2867bc43581b835c@egi.eu', 'Levente Farkas', 'levente.farkas@egi.eu');
 
@@ -390,3 +399,39 @@ values (1, 1),
        (10, 11),
        (11, 11),
        (11, 7);
+
+-- Drop the temporary numbering and move the sequences past the seed rows
+alter table ims.users alter column id drop identity;
+select setval('ims.users_id_seq', (select max(id) from ims.users));
+alter table ims.responsibility alter column id drop identity;
+select setval('ims.responsibility_seq', (select max(id) from ims.responsibility));
+alter table ims.roles alter column id drop identity;
+select setval('ims.roles_seq', (select max(id) from ims.roles));
+alter table ims.process alter column id drop identity;
+select setval('ims.process_seq', (select max(id) from ims.process));
+alter table ims.governance alter column id drop identity;
+select setval('ims.governance_seq', (select max(id) from ims.governance));
+alter table ims.governance_groups alter column id drop identity;
+select setval('ims.governance_groups_seq', (select max(id) from ims.governance_groups));
+alter table ims.governance_group_interfaces alter column id drop identity;
+select setval('ims.governance_group_interfaces_seq', (select max(id) from ims.governance_group_interfaces));
+
+-- Point the heads of the documents to their latest versions
+insert into ims.document_heads (document, versionid)
+select 'process', id from ims.process order by version desc limit 1;
+insert into ims.document_heads (document, versionid)
+select 'governance', id from ims.governance order by version desc limit 1;
+insert into ims.document_heads (document, versionid)
+select 'responsibility', id from ims.responsibility order by version desc limit 1;
+insert into ims.document_heads (document, versionid)
+select distinct on (role) 'role:' || role, id from ims.roles order by role, version desc;
+
+-- Full-text search, the expressions must match the ones in DocumentHeadEntity
+create index if not exists roles_search_idx on ims.roles using gin ((setweight(to_tsvector('english', coalesce(name, '') || ' ' || coalesce(role, '')), 'A') || to_tsvector('english', coalesce(tasks, '') || ' ' || coalesce(recommendation, ''))));
+create index if not exists process_search_idx on ims.process using gin (to_tsvector('english', coalesce(description, '') || ' ' || coalesce(contact, '')));
+create index if not exists process_requirements_search_idx on ims.process_requirements using gin (to_tsvector('english', coalesce(code, '') || ' ' || coalesce(requirement, '') || ' ' || coalesce(source, '')));
+create index if not exists process_interfaces_search_idx on ims.process_interfaces using gin (to_tsvector('english', coalesce(interfaceswith, '') || ' ' || coalesce(description, '') || ' ' || coalesce(relevantmaterial, '')));
+create index if not exists governance_search_idx on ims.governance using gin ((setweight(to_tsvector('english', coalesce(title, '')), 'A') || to_tsvector('english', coalesce(description, ''))));
+create index if not exists governance_groups_search_idx on ims.governance_groups using gin (to_tsvector('english', coalesce(body, '') || ' ' || coalesce(composition, '') || ' ' || coalesce(meeting, '') || ' ' || coalesce(decisionvoting, '')));
+create index if not exists governance_group_interfaces_search_idx on ims.governance_group_interfaces using gin (to_tsvector('english', coalesce(interfaceswith, '') || ' ' || coalesce(comment, '')));
+create index if not exists responsibility_search_idx on ims.responsibility using gin (to_tsvector('english', coalesce(description, '')));
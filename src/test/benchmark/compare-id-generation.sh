@@ -0,0 +1,41 @@
+#!/bin/sh
+# Compare the write latency of large process and governance updates with pooled sequence ids
+# (the current mapping) and with IDENTITY ids (the mapping before the switch to sequences).
+# Runs SysWriteLatencyTest on this commit, then on a copy where the entities use IDENTITY again.
+# Usage: src/test/benchmark/compare-id-generation.sh [extra maven arguments]
+set -e
+
+MVN=${MVN:-mvn}
+ROOT=$(git rev-parse --show-toplevel)
+BEFORE=$(mktemp -d)
+trap 'git -C "$ROOT" worktree remove --force "$BEFORE"' EXIT
+
+run() {
+    dir=$1
+    shift
+    (cd "$dir" && $MVN -B test -Dtest=SysWriteLatencyTest -Dbenchmark=true -Dquarkus.hibernate-orm.log.sql=false "$@") | grep "Write latency" | sed 's/.*Write latency/Write latency/'
+}
+
+# Same commit, with the ids generated by identity columns, except the users,
+# which are created by a query that draws from their sequence
+git -C "$ROOT" worktree add --detach "$BEFORE" HEAD > /dev/null
+for entity in "$BEFORE"/src/main/java/egi/eu/entity/*Entity.java; do
+    case "$entity" in *UserEntity.java) continue ;; esac
+    sed -i -e 's/@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "[a-z_]*")/@GeneratedValue(strategy = GenerationType.IDENTITY)/' \
+           -e '/@SequenceGenerator(/d' "$entity"
+done
+
+# Identity columns only assign the id on insert, which the head of the document needs
+sed -i -e 's/return session.persist(new\(Process\|Governance\))$/return session.persist(new\1).call(session::flush)/' \
+       "$BEFORE"/src/main/java/egi/eu/TheProcess.java "$BEFORE"/src/main/java/egi/eu/TheGovernance.java
+
+# The seed rows keep their ids, move the identity columns past them
+TABLES='responsibility\|roles\|process\|governance\|governance_groups\|governance_group_interfaces'
+sed -i -e "/^alter table ims\.\($TABLES\) alter column id \(add generated by default as identity\|drop identity\);\$/d" \
+       -e "s/setval('ims\.\($TABLES\)_seq'/setval(pg_get_serial_sequence('ims.\1', 'id')/" \
+       "$BEFORE"/src/main/resources/import.sql
+
+echo "IDENTITY ids:"
+run "$BEFORE" "$@"
+echo "Pooled sequence ids:"
+run "$ROOT" "$@"
@@ -0,0 +1,58 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+import egi.eu.ActionError;
+import egi.eu.ActionException;
+
+
+public class CheckinGuardTest {
+
+    @Test
+    @DisplayName("Calls rejected by the circuit breaker or the bulkhead fail as Check-in unavailable")
+    public void testRejected() {
+        var e = failure(CheckinGuard.reject("getUserInfoAsync", new CircuitBreakerOpenException()));
+        assertTrue(CheckinGuard.isRejected(e));
+        assertEquals("circuitOpen", ((ActionException)e).details().get("reason"));
+        assertEquals(Status.SERVICE_UNAVAILABLE, new ActionError(e).status());
+
+        e = failure(CheckinGuard.reject("getUserInfoAsync", new BulkheadException()));
+        assertTrue(CheckinGuard.isRejected(e));
+        assertEquals("bulkheadFull", ((ActionException)e).details().get("reason"));
+    }
+
+    @Test
+    @DisplayName("Only client errors other than timeouts and throttling are invalid requests, they do not open the circuit")
+    public void testClientErrors() {
+        var mapper = new CheckinServiceExceptionMapper();
+
+        var e = mapper.toThrowable(Response.status(Status.UNAUTHORIZED).build());
+        assertInstanceOf(CheckinRequestException.class, e);
+        assertEquals(Status.UNAUTHORIZED, new ActionError(e).status());
+
+        e = mapper.toThrowable(Response.status(Status.BAD_GATEWAY).build());
+        assertFalse(e instanceof CheckinRequestException);
+        assertEquals(Status.BAD_GATEWAY, new ActionError(e).status());
+
+        // Timeouts and throttling mean Check-in is overloaded
+        e = mapper.toThrowable(Response.status(Status.REQUEST_TIMEOUT).build());
+        assertInstanceOf(CheckinServiceException.class, e);
+        assertFalse(e instanceof CheckinRequestException);
+
+        e = mapper.toThrowable(Response.status(Status.TOO_MANY_REQUESTS).build());
+        assertFalse(e instanceof CheckinRequestException);
+    }
+
+    private static Throwable failure(Uni<?> result) {
+        return assertThrows(Throwable.class, () -> result.await().indefinitely());
+    }
+}
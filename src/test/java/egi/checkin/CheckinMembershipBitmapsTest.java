@@ -0,0 +1,65 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import egi.checkin.model.CheckinUser;
+
+
+public class CheckinMembershipBitmapsTest {
+
+    private static CheckinUser user(String id, String... roles) {
+        var user = new CheckinUser(id);
+        for(var role : roles)
+            user.addRole(role);
+
+        return user;
+    }
+
+    private static Set<String> ids(CheckinUserIndex index) {
+        return index.all(CheckinUserIndex.SortBy.ID).stream().map(u -> u.checkinUserId).collect(Collectors.toSet());
+    }
+
+    private final CheckinMembershipBitmaps bitmaps = new CheckinMembershipBitmaps(
+            new CheckinUserIndex(List.of(user("a"), user("b"), user("c"), user("d"))),
+            new CheckinUserIndex(List.of(user("a"), user("b"), user("c"))),
+            new CheckinUserIndex(List.of(user("a", "ims-manager", "ims-owner"), user("b", "ims-manager"))));
+
+    private Set<String> query(String expression) {
+        return ids(bitmaps.users(bitmaps.evaluate(expression)));
+    }
+
+    @Test
+    @DisplayName("Set operators combine memberships and roles")
+    public void testOperators() {
+        assertEquals(Set.of("d"), query("vo ANDNOT group"));
+        assertEquals(Set.of("c"), query("group ANDNOT roles"));
+        assertEquals(Set.of("b"), query("role:ims-manager ANDNOT role:ims-owner"));
+        assertEquals(Set.of("a", "d"), query("role:IMS-Owner or (vo andnot group)"));
+        assertEquals(Set.of("a"), query("group AND role:ims-owner OR role:unknown"));
+        assertTrue(query("role:unknown").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Matching users have their roles")
+    public void testRoles() {
+        var users = bitmaps.users(bitmaps.evaluate("role:ims-owner"));
+        assertEquals(Set.of("ims-manager", "ims-owner"), users.get("a").roles);
+    }
+
+    @Test
+    @DisplayName("Invalid expressions are rejected")
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> bitmaps.evaluate(""));
+        assertThrows(IllegalArgumentException.class, () -> bitmaps.evaluate("vo AND"));
+        assertThrows(IllegalArgumentException.class, () -> bitmaps.evaluate("(vo OR group"));
+        assertThrows(IllegalArgumentException.class, () -> bitmaps.evaluate("vo group"));
+        assertThrows(IllegalArgumentException.class, () -> bitmaps.evaluate("everyone"));
+    }
+}
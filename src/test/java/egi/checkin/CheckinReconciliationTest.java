@@ -0,0 +1,177 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import egi.eu.model.MembershipReconciliation;
+import egi.eu.model.User;
+import egi.checkin.model.CheckinRole;
+import egi.checkin.model.CheckinRoleList;
+import egi.checkin.model.CheckinUser;
+
+
+public class CheckinReconciliationTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR = 3_600_000L;
+
+    private static CheckinRole membership(long roleId, String checkinUserId, String status) {
+        var role = new CheckinRole(checkinUserId, "ims", "1", "member", status);
+        role.person.ids.get(0).type = "epuid";
+        role.roleId = roleId;
+        role.role = "member";
+        role.deleted = "Deleted".equals(status);
+        return role;
+    }
+
+    private static CheckinRoleList records(CheckinRole... roles) {
+        var list = new CheckinRoleList();
+        list.records = new ArrayList<>(List.of(roles));
+        return list;
+    }
+
+    private static CheckinUserIndex vo(String... checkinUserIds) {
+        var users = new ArrayList<CheckinUser>();
+        for(var checkinUserId : checkinUserIds)
+            users.add(new CheckinUser(checkinUserId));
+        return new CheckinUserIndex(users);
+    }
+
+    private static List<User> users(String... checkinUserIds) {
+        var users = new ArrayList<User>();
+        for(var checkinUserId : checkinUserIds)
+            users.add(new User(checkinUserId, null, null));
+        return users;
+    }
+
+    private static MembershipReconciliation.Change change(MembershipReconciliation plan, String checkinUserId) {
+        for(var change : plan.changes)
+            if(checkinUserId.equals(change.user.checkinUserId))
+                return change;
+        return null;
+    }
+
+    @Test
+    @DisplayName("Users that are already members are left alone")
+    public void testUnchanged() {
+        var plan = CheckinReconciliation.plan(vo("a", "b"),
+                                              records(membership(1, "a", "Active"), membership(2, "b", "Active")),
+                                              users("a", "b", "a"), NOW, false);
+
+        assertEquals(2, plan.unchanged);
+        assertTrue(plan.changes.isEmpty());
+    }
+
+    @Test
+    @DisplayName("VO members without a membership record are added")
+    public void testAdd() {
+        var plan = CheckinReconciliation.plan(vo("a", "b"), records(membership(1, "a", "Active")),
+                                              users("a", "b"), NOW, false);
+
+        assertEquals(1, plan.changes.size());
+        var add = change(plan, "b");
+        assertEquals(MembershipReconciliation.ADD, add.action);
+        assertEquals(MembershipReconciliation.PLANNED, add.status);
+        assertEquals(0, plan.failed);
+    }
+
+    @Test
+    @DisplayName("Users that are not VO members cannot be added")
+    public void testAddNotInVo() {
+        var plan = CheckinReconciliation.plan(vo("a"), records(), users("a", "x"), NOW, false);
+
+        assertEquals(2, plan.changes.size());
+        var add = change(plan, "x");
+        assertEquals(MembershipReconciliation.ADD, add.action);
+        assertEquals(MembershipReconciliation.FAILED, add.status);
+        assertEquals("notFound", add.error.id);
+        assertEquals(1, plan.failed);
+    }
+
+    @Test
+    @DisplayName("Deleted membership records are restored instead of adding new ones")
+    public void testRestore() {
+        var plan = CheckinReconciliation.plan(vo("a"), records(membership(7, "a", "Deleted")),
+                                              users("a"), NOW, false);
+
+        assertEquals(1, plan.changes.size());
+        var restore = change(plan, "a");
+        assertEquals(MembershipReconciliation.RESTORE, restore.action);
+        assertEquals(MembershipReconciliation.PLANNED, restore.status);
+        assertEquals(7, restore.recordId);
+    }
+
+    @Test
+    @DisplayName("Members that are not desired are removed")
+    public void testRemove() {
+        var plan = CheckinReconciliation.plan(vo("a", "b"),
+                                              records(membership(1, "a", "Active"), membership(2, "b", "Active")),
+                                              users("a"), NOW, false);
+
+        assertEquals(1, plan.unchanged);
+        assertEquals(1, plan.changes.size());
+        var remove = change(plan, "b");
+        assertEquals(MembershipReconciliation.REMOVE, remove.action);
+        assertEquals(MembershipReconciliation.PLANNED, remove.status);
+        assertEquals(2, remove.recordId);
+
+        // An empty list removes everyone
+        plan = CheckinReconciliation.plan(vo("a", "b"),
+                                          records(membership(1, "a", "Active"), membership(2, "b", "Active")),
+                                          users(), NOW, false);
+        assertEquals(2, plan.changes.size());
+    }
+
+    @Test
+    @DisplayName("Members whose record has a validity interval are not removed")
+    public void testRemoveWithValidity() {
+        var limited = membership(3, "a", "Active");
+        limited.until = new Date(NOW + HOUR);
+
+        var plan = CheckinReconciliation.plan(vo("a"), records(limited), users(), NOW, false);
+
+        assertEquals(1, plan.changes.size());
+        var remove = change(plan, "a");
+        assertEquals(MembershipReconciliation.REMOVE, remove.action);
+        assertEquals(MembershipReconciliation.FAILED, remove.status);
+        assertEquals("badRequest", remove.error.id);
+    }
+
+    @Test
+    @DisplayName("Memberships outside their validity interval do not count")
+    public void testOutsideValidity() {
+        var expired = membership(4, "a", "Active");
+        expired.until = new Date(NOW - HOUR);
+        var future = membership(5, "b", "Active");
+        future.from = new Date(NOW + HOUR);
+
+        var plan = CheckinReconciliation.plan(vo("a", "b"), records(expired, future), users("a", "b"), NOW, false);
+
+        // Neither is a member now, so both are added
+        assertEquals(0, plan.unchanged);
+        assertEquals(2, plan.changes.size());
+        assertEquals(MembershipReconciliation.ADD, change(plan, "a").action);
+        assertEquals(MembershipReconciliation.ADD, change(plan, "b").action);
+
+        // Once the interval starts, the future membership counts
+        plan = CheckinReconciliation.plan(vo("a", "b"), records(expired, future), users("b"), NOW + 2 * HOUR, false);
+        assertEquals(1, plan.unchanged);
+        assertTrue(plan.changes.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Group members must also be VO members")
+    public void testMembersNotInVo() {
+        var members = CheckinReconciliation.groupMembers(vo("a"),
+                List.of(membership(1, "a", "Active"), membership(2, "x", "Active")), NOW);
+
+        assertEquals(1, members.size());
+        assertTrue(members.containsKey("a"));
+    }
+}
@@ -0,0 +1,213 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import egi.checkin.model.CheckinRoleList;
+import egi.checkin.model.CheckinUser;
+
+
+public class CheckinRecordStoreTest {
+
+    private static byte[] load(String name) throws Exception {
+        try(var stream = CheckinRecordStoreTest.class.getResourceAsStream("/checkin/__files/" + name)) {
+            assertNotNull(stream);
+            return stream.readAllBytes();
+        }
+    }
+
+    @Test
+    @DisplayName("Streaming parser keeps the same data as full deserialization")
+    public void testSameAsDeserialization() throws Exception {
+        var json = load("listVoMembers.json");
+        var store = CheckinRecordStore.parse(json);
+        var list = new ObjectMapper().readValue(json, CheckinRoleList.class);
+
+        assertEquals(list.records.size(), store.size());
+        for(int i = 0; i < store.size(); i++) {
+            var record = list.records.get(i);
+            assertEquals(record.roleId, store.recordId(i));
+            assertEquals(record.person.checkinUserId(), store.checkinUserId(i));
+            assertEquals(record.status, store.status(i));
+            assertEquals(record.affiliation, store.affiliation(i));
+            assertEquals(record.title, store.title(i));
+            assertEquals(Boolean.TRUE.equals(record.deleted), store.isDeleted(i));
+            assertEquals(null != record.from ? record.from.getTime() : CheckinRecordStore.NO_DATE, store.validFrom(i));
+            assertEquals(null != record.until ? record.until.getTime() : CheckinRecordStore.NO_DATE, store.validThrough(i));
+
+            var expected = new CheckinUser(record);
+            var user = store.user(i);
+            assertEquals(expected.checkinUserId, user.checkinUserId);
+            assertEquals(expected.fullName, user.fullName);
+            assertEquals(expected.email, user.email);
+            assertEquals(expected.emailIsVerified, user.emailIsVerified);
+        }
+    }
+
+    @Test
+    @DisplayName("Compressed responses are inflated while parsing")
+    public void testCompressed() throws Exception {
+        var json = load("listVoMembers.json");
+        var compressed = new ByteArrayOutputStream();
+        try(var out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        }
+
+        var expected = CheckinRecordStore.parse(json);
+        var store = CheckinRecordStore.parse(compressed.toByteArray());
+        assertEquals(expected.size(), store.size());
+        for(int i = 0; i < store.size(); i++) {
+            assertEquals(expected.recordId(i), store.recordId(i));
+            assertEquals(expected.checkinUserId(i), store.checkinUserId(i));
+            assertEquals(expected.role(i), store.role(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Responses fed in chunks of any size parse the same as whole responses")
+    public void testChunks() throws Exception {
+        var json = load("listVoMembers.json");
+        var compressed = new ByteArrayOutputStream();
+        try(var out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        }
+
+        var expected = CheckinRecordStore.parse(json);
+        for(var body : new byte[][] { json, compressed.toByteArray() }) {
+            for(int chunkSize : new int[] { 1, 7, 1000, body.length }) {
+                var store = feed(body, chunkSize);
+                assertEquals(expected.size(), store.size());
+                for(int i = 0; i < store.size(); i++) {
+                    assertEquals(expected.recordId(i), store.recordId(i));
+                    assertEquals(expected.checkinUserId(i), store.checkinUserId(i));
+                    assertEquals(expected.role(i), store.role(i));
+                    assertEquals(expected.validThrough(i), store.validThrough(i));
+                    assertEquals(expected.user(i).email, store.user(i).email);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Truncated responses fed in chunks are rejected")
+    public void testTruncatedChunks() throws Exception {
+        var json = load("listVoMembers.json");
+        var truncated = Arrays.copyOf(json, json.length / 2);
+        assertThrows(IOException.class, () -> feed(truncated, 100));
+        assertThrows(IOException.class, () -> feed("[]".getBytes(StandardCharsets.UTF_8), 100));
+    }
+
+    @Test
+    @DisplayName("Compressed responses with a missing or wrong trailer are rejected")
+    public void testCompressedTrailer() throws Exception {
+        var compressed = gzip(load("listVoMembers.json"));
+
+        // The JSON is complete, only the trailer is missing
+        var truncated = Arrays.copyOf(compressed, compressed.length - 4);
+        var corrupt = compressed.clone();
+        corrupt[compressed.length - 8] ^= 1;
+
+        for(var body : new byte[][] { truncated, corrupt }) {
+            assertThrows(IOException.class, () -> CheckinRecordStore.parse(body));
+            for(int chunkSize : new int[] { 1, 7, body.length })
+                assertThrows(IOException.class, () -> feed(body, chunkSize));
+        }
+    }
+
+    @Test
+    @DisplayName("Compressed responses made of several gzip members are inflated whole")
+    public void testConcatenatedMembers() throws Exception {
+        var json = load("listVoMembers.json");
+        var concatenated = new ByteArrayOutputStream();
+        concatenated.write(gzip(Arrays.copyOf(json, json.length / 2)));
+        concatenated.write(gzip(Arrays.copyOfRange(json, json.length / 2, json.length)));
+        var body = concatenated.toByteArray();
+
+        var expected = CheckinRecordStore.parse(json);
+        assertEquals(expected.size(), CheckinRecordStore.parse(body).size());
+        for(int chunkSize : new int[] { 1, 7, 1000, body.length }) {
+            var store = feed(body, chunkSize);
+            assertEquals(expected.size(), store.size());
+            assertEquals(expected.recordId(expected.size() - 1), store.recordId(store.size() - 1));
+        }
+
+        // A second member that is cut short is rejected, even though the JSON is complete
+        var truncated = Arrays.copyOf(body, body.length - 1);
+        assertThrows(IOException.class, () -> feed(truncated, 1000));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var compressed = new ByteArrayOutputStream();
+        try(var out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static CheckinRecordStore feed(byte[] body, int chunkSize) throws IOException {
+        var feed = new CheckinRecordStore.Feed();
+        for(int offset = 0; offset < body.length; offset += chunkSize)
+            feed.accept(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + chunkSize)));
+
+        return feed.finish();
+    }
+
+    @Test
+    @DisplayName("Single identifiers and unknown fields are accepted")
+    public void testLenientParsing() throws Exception {
+        var json = """
+            { "ResponseType": "CoPersonRoles", "Extra": { "a": [1, 2] },
+              "CoPersonRoles": [
+                { "Id": 1, "Person": { "Id": 7, "Identifier": { "type": "epuid", "identifier": "u@egi.eu" } },
+                  "Affiliation": "member", "Title": "IMS-Manager", "Status": "Active", "Deleted": null },
+                { "Id": 2, "Person": { "Id": 7 }, "Affiliation": "Member", "Status": "Active" }
+              ] }
+            """.getBytes(StandardCharsets.UTF_8);
+
+        var store = CheckinRecordStore.parse(json);
+        assertEquals(2, store.size());
+        assertEquals("ims-manager", store.role(0));
+        assertFalse(store.isActiveMembership(0, System.currentTimeMillis()));
+        assertFalse(store.isDeleted(0));
+
+        // Same person, stored once
+        assertEquals("u@egi.eu", store.checkinUserId(1));
+        assertTrue(store.isActiveMembership(1, System.currentTimeMillis()));
+    }
+
+    @Test
+    @DisplayName("Memberships are only active within their validity interval")
+    public void testValidity() throws Exception {
+        var json = """
+            { "ResponseType": "CoPersonRoles",
+              "CoPersonRoles": [
+                { "Id": 1, "Person": { "Id": 7, "Identifier": { "type": "epuid", "identifier": "u@egi.eu" } },
+                  "Affiliation": "member", "Status": "Active",
+                  "ValidFrom": "2030-01-01 00:00:00", "ValidThrough": "2030-12-31 23:59:59" }
+              ] }
+            """.getBytes(StandardCharsets.UTF_8);
+
+        var store = CheckinRecordStore.parse(json);
+        final long from = store.validFrom(0);
+        final long until = store.validThrough(0);
+
+        assertFalse(store.isActiveMembership(0, from - 1));
+        assertEquals(from, store.nextBoundary(0, from - 1));
+
+        assertTrue(store.isActiveMembership(0, from));
+        assertTrue(store.isActiveMembership(0, until));
+        assertEquals(until + 1, store.nextBoundary(0, from));
+
+        assertFalse(store.isActiveMembership(0, until + 1));
+        assertEquals(CheckinValidity.NEVER, store.nextBoundary(0, until + 1));
+    }
+}
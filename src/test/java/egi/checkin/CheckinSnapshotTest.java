@@ -0,0 +1,164 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import egi.checkin.model.CheckinRoleList;
+import egi.checkin.model.CheckinUser;
+
+
+public class CheckinSnapshotTest {
+
+    @Test
+    @DisplayName("Snapshot survives save and load")
+    public void testRoundTrip(@TempDir Path dir) throws Exception {
+        var user = new CheckinUser("1@egi.eu");
+        user.fullName = "Jane Doe";
+        user.firstName = "Jane";
+        user.lastName = "Doe";
+        user.email = "jane@example.org";
+        user.emailIsVerified = true;
+
+        var records = new CheckinRoleList("1@egi.eu", "IMS", "2", "ims-manager", "member", "Active");
+        records.records.get(0).role = "ims-manager";
+
+        var file = dir.resolve("snapshot.bin");
+        new CheckinSnapshot(new CheckinUserIndex(List.of(user)), null, 1000, "IMS", records, 2000).save(file);
+
+        var snapshot = CheckinSnapshot.load(file);
+        assertNotNull(snapshot);
+        assertEquals(1000, snapshot.voMembersUpdatedAt);
+        assertEquals(2000, snapshot.rolesUpdatedAt);
+        assertEquals("IMS", snapshot.groupName);
+        assertNull(snapshot.voRecords);
+
+        var restored = snapshot.voMembers.get("1@egi.eu");
+        assertNotNull(restored);
+        assertEquals("Jane Doe", restored.fullName);
+        assertEquals("jane@example.org", restored.email);
+        assertTrue(restored.emailIsVerified);
+
+        var record = snapshot.roleRecords.records.get(0);
+        assertEquals("1@egi.eu", record.person.ids.get(0).id);
+        assertEquals("ims-manager", record.role);
+        assertFalse(record.deleted);
+    }
+
+    @Test
+    @DisplayName("Active VO membership records are kept, with their validity")
+    public void testVoRecords() throws Exception {
+        var json = """
+            { "CoPersonRoles": [
+                { "Id": 1, "Person": { "Id": 7, "Identifier": { "type": "epuid", "identifier": "1@egi.eu" },
+                                       "Name": { "given": "Jane", "family": "Doe" } },
+                  "Affiliation": "member", "Status": "Active" },
+                { "Id": 2, "Person": { "Id": 8, "Identifier": { "type": "epuid", "identifier": "2@egi.eu" } },
+                  "Affiliation": "member", "Status": "Active",
+                  "ValidFrom": "2030-01-01 00:00:00", "ValidThrough": "2030-12-31 23:59:59" },
+                { "Id": 3, "Person": { "Id": 9, "Identifier": { "type": "epuid", "identifier": "3@egi.eu" } },
+                  "Affiliation": "member", "Status": "Deleted", "Deleted": true },
+                { "Id": 4, "Person": { "Id": 7, "Identifier": { "type": "epuid", "identifier": "1@egi.eu" } },
+                  "Affiliation": "member", "Title": "IMS-Manager", "Status": "Active" }
+              ] }
+            """;
+        var records = CheckinRecordStore.parse(json.getBytes(StandardCharsets.UTF_8));
+        var members = new CheckinUserIndex(List.of(records.user(0)));
+
+        var bytes = new CheckinSnapshot(members, records, 1000, "IMS", null, 0).toBytes();
+        var snapshot = CheckinSnapshot.fromBytes(bytes);
+
+        // Only the active membership records are shared
+        var shared = snapshot.voRecords;
+        assertNotNull(shared);
+        assertEquals(2, shared.size());
+        assertEquals(1, shared.recordId(0));
+        assertEquals("1@egi.eu", shared.checkinUserId(0));
+        assertEquals("Jane Doe", shared.user(0).fullName);
+        assertEquals(2, shared.recordId(1));
+        assertEquals("member", shared.role(1));
+
+        // Including the ones not valid yet, so followers can apply them later
+        final long from = records.validFrom(1);
+        assertNotEquals(CheckinRecordStore.NO_DATE, from);
+        assertEquals(from, shared.validFrom(1));
+        assertEquals(records.validThrough(1), shared.validThrough(1));
+        assertFalse(shared.isActiveMembership(1, from - 1));
+        assertTrue(shared.isActiveMembership(1, from));
+        assertEquals(from, shared.nextBoundary(1, from - 1));
+    }
+
+    @Test
+    @DisplayName("Group role records are kept with the fields we use")
+    public void testRoleRecords() throws Exception {
+        var json = """
+            { "CoPersonRoles": [
+                { "Id": 1, "Person": { "Id": 7, "Identifier": [ { "type": "epuid", "identifier": "1@egi.eu" } ],
+                                       "Name": [ { "given": "Jane", "family": "Doe" } ],
+                                       "EmailAddress": [ { "mail": "jane@example.org", "verified": true } ] },
+                  "Affiliation": "member", "Status": "Active" },
+                { "Id": 2, "Person": { "Id": 7, "Identifier": [ { "type": "epuid", "identifier": "1@egi.eu" } ] },
+                  "Affiliation": "member", "Title": "IMS-Manager", "Status": "Deleted", "Deleted": true,
+                  "ValidThrough": "2030-12-31 23:59:59" }
+              ] }
+            """;
+        var records = new ObjectMapper().readValue(json, CheckinRoleList.class);
+
+        var snapshot = CheckinSnapshot.fromBytes(new CheckinSnapshot(null, null, 0, "IMS", records, 2000).toBytes());
+        assertEquals(2000, snapshot.rolesUpdatedAt);
+        assertEquals(2, snapshot.roleRecords.records.size());
+
+        var member = snapshot.roleRecords.records.get(0);
+        assertEquals(1, member.roleId);
+        assertEquals(7, member.person.Id);
+        assertEquals("member", member.role);
+        assertEquals("Active", member.status);
+        assertFalse(member.deleted);
+        assertNull(member.from);
+
+        var user = new CheckinUser(member);
+        assertEquals("1@egi.eu", user.checkinUserId);
+        assertEquals("Jane Doe", user.fullName);
+        assertEquals("jane@example.org", user.email);
+        assertTrue(user.emailIsVerified);
+        assertEquals("1@egi.eu", snapshot.roleRecords.records.get(1).person.checkinUserId());
+
+        var role = snapshot.roleRecords.records.get(1);
+        assertEquals("IMS-Manager", role.title);
+        assertEquals("ims-manager", role.role);
+        assertTrue(role.checkIfRole());
+        assertTrue(role.deleted);
+        assertEquals(records.records.get(1).until, role.until);
+
+        // No role records
+        snapshot = CheckinSnapshot.fromBytes(new CheckinSnapshot(null, null, 0, "IMS", null, 2000).toBytes());
+        assertNull(snapshot.roleRecords);
+        assertEquals(0, snapshot.rolesUpdatedAt);
+    }
+
+    @Test
+    @DisplayName("Missing and invalid snapshots are detected")
+    public void testInvalid(@TempDir Path dir) throws Exception {
+        assertNull(CheckinSnapshot.load(dir.resolve("missing.bin")));
+
+        var file = dir.resolve("invalid.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        assertThrows(IOException.class, () -> CheckinSnapshot.load(file));
+
+        // Only the current format version is read
+        var data = new CheckinSnapshot(null, null, 0, "IMS", null, 0).toBytes();
+        for(byte version : new byte[] { 1, 2, 4 }) {
+            data[7] = version;
+            assertThrows(IOException.class, () -> CheckinSnapshot.fromBytes(data));
+        }
+    }
+}
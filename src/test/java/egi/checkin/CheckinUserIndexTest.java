@@ -0,0 +1,82 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import egi.checkin.CheckinUserIndex.SortBy;
+import egi.checkin.model.CheckinUser;
+
+
+public class CheckinUserIndexTest {
+
+    private CheckinUserIndex index;
+
+
+    @BeforeEach
+    public void setupEach() {
+        this.index = new CheckinUserIndex(List.of(
+            new CheckinUser("4@egi.eu").setFullName("bob Smith").setEmail("bob@example.org"),
+            new CheckinUser("2@egi.eu").setFullName("Alice Jones").setEmail("alice@example.org"),
+            new CheckinUser("3@egi.eu").setFullName("Bob Smith").setEmail("robert@example.com"),
+            new CheckinUser("1@egi.eu").setEmail("anonymous@example.org")));
+    }
+
+    @Test
+    @DisplayName("Users are sorted by name, case-insensitive, then by Id")
+    public void testSortOrder() {
+        // Users without a name come first
+        assertEquals(List.of("1@egi.eu", "2@egi.eu", "3@egi.eu", "4@egi.eu"), ids(index.all(SortBy.NAME)));
+        assertEquals(List.of("1@egi.eu", "2@egi.eu", "3@egi.eu", "4@egi.eu"), ids(index.all(SortBy.ID)));
+
+        var byName = new CheckinUserIndex(List.of(
+            new CheckinUser("1@egi.eu").setFullName("Zoe"),
+            new CheckinUser("3@egi.eu").setFullName("adam"),
+            new CheckinUser("2@egi.eu").setFullName("Adam")));
+        assertEquals(List.of("2@egi.eu", "3@egi.eu", "1@egi.eu"), ids(byName.all(SortBy.NAME)));
+        assertEquals(List.of("1@egi.eu", "2@egi.eu", "3@egi.eu"), ids(byName.all(SortBy.ID)));
+
+        assertEquals(SortBy.ID, SortBy.of(" Id "));
+        assertEquals(SortBy.NAME, SortBy.of("email"));
+        assertEquals(SortBy.NAME, SortBy.of(null));
+    }
+
+    @Test
+    @DisplayName("Search matches part of the name, email, or Id, case-insensitive")
+    public void testSearch() {
+        assertEquals(List.of("3@egi.eu", "4@egi.eu"), ids(index.search("BOB", SortBy.NAME)));
+        assertEquals(List.of("3@egi.eu"), ids(index.search("robert@", SortBy.NAME)));
+        assertEquals(List.of("1@egi.eu", "2@egi.eu", "4@egi.eu"), ids(index.search(" example.org ", SortBy.ID)));
+        assertEquals(List.of("2@egi.eu"), ids(index.search("2@egi", SortBy.NAME)));
+        assertTrue(index.search("nobody", SortBy.NAME).isEmpty());
+
+        // No text matches everyone
+        assertEquals(index.all(SortBy.ID), index.search(" ", SortBy.ID));
+        assertEquals(index.all(SortBy.NAME), index.search(null, SortBy.NAME));
+    }
+
+    @Test
+    @DisplayName("Slices are clamped to the users in the index")
+    public void testSlice() {
+        assertEquals(List.of("2@egi.eu", "3@egi.eu"), ids(index.slice(SortBy.NAME, 1, 2)));
+        assertEquals(List.of("3@egi.eu", "4@egi.eu"), ids(index.slice(SortBy.ID, 2, 10)));
+        assertEquals(List.of("1@egi.eu"), ids(index.slice(SortBy.ID, -1, 1)));
+
+        // Starting at or beyond the end
+        assertTrue(index.slice(SortBy.NAME, index.size(), 10).isEmpty());
+        assertTrue(index.slice(SortBy.NAME, Long.MAX_VALUE, 10).isEmpty());
+
+        // No users requested
+        assertTrue(index.slice(SortBy.NAME, 0, 0).isEmpty());
+        assertTrue(index.slice(SortBy.NAME, 0, -1).isEmpty());
+        assertTrue(CheckinUserIndex.EMPTY.slice(SortBy.ID, 0, 10).isEmpty());
+    }
+
+    private static List<String> ids(List<CheckinUser> users) {
+        return users.stream().map(user -> user.checkinUserId).toList();
+    }
+}
@@ -0,0 +1,120 @@
+package egi.checkin;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.Map;
+import java.util.UUID;
+
+import egi.eu.IntegratedManagementSystemConfig;
+import egi.eu.SysTestDatabase;
+
+
+@QuarkusTest
+@TestProfile(SysCheckinFetchTest.ColdCache.class)
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysCheckinFetchTest {
+
+    private static final String STUB_HEADER = "x-test-stub";
+    private static final String GROUP = "fetch-test"; // Records of other groups than the configured one are not cached
+    private static final int DELAY = 1000; // milliseconds
+
+    /***
+     * VO members are not cached, so every listing fetches them
+     */
+    public static class ColdCache implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("egi.checkin.cache-vo-members", "0");
+        }
+    }
+
+    @InjectSysMockCheckin
+    private SysMockCheckin mockCheckin;
+
+    @Inject
+    Checkin checkin;
+
+    @Inject
+    CheckinConfig checkinConfig;
+
+    @Inject
+    IntegratedManagementSystemConfig imsConfig;
+
+
+    @Test
+    @DisplayName("The VO members and the group records are fetched concurrently")
+    public void testConcurrent() {
+        final var stub = "fetch-" + UUID.randomUUID();
+        stubList(stub, imsConfig.vo(), aResponse().withBodyFile("listVoMembers.json"));
+        stubList(stub, GROUP, aResponse().withBodyFile("listGroupMembers.json"));
+
+        var members = checkin.listGroupMembersAsync(GROUP, stub).await().indefinitely();
+        assertTrue(members.size() > 0);
+
+        // Both requests arrived before either response was sent
+        var vo = received(stub, imsConfig.vo());
+        var group = received(stub, GROUP);
+        assertTrue(Math.abs(vo - group) < DELAY, "Fetched one after the other");
+    }
+
+    @Test
+    @DisplayName("A failure to fetch the VO members fails the listing")
+    public void testVoMembersFail() {
+        final var stub = "fetch-" + UUID.randomUUID();
+        stubList(stub, imsConfig.vo(), aResponse().withStatus(Status.INTERNAL_SERVER_ERROR.getStatusCode()));
+        stubList(stub, GROUP, aResponse().withBodyFile("listGroupMembers.json"));
+
+        assertThrows(Exception.class, () -> checkin.listGroupMembersAsync(GROUP, stub).await().indefinitely());
+        received(stub, GROUP);
+    }
+
+    @Test
+    @DisplayName("A failure to fetch the group records fails the listing")
+    public void testGroupRecordsFail() {
+        final var stub = "fetch-" + UUID.randomUUID();
+        stubList(stub, imsConfig.vo(), aResponse().withBodyFile("listVoMembers.json"));
+        stubList(stub, GROUP, aResponse().withStatus(Status.INTERNAL_SERVER_ERROR.getStatusCode()));
+
+        assertThrows(Exception.class, () -> checkin.listGroupMembersAsync(GROUP, stub).await().indefinitely());
+        received(stub, imsConfig.vo());
+    }
+
+    /***
+     * Answer the listing of a VO or group after a delay
+     */
+    private void stubList(String stub, String groupName, ResponseDefinitionBuilder response) {
+        mockCheckin.stubFor(get(urlPathEqualTo(listPath(groupName)))
+            .withHeader(STUB_HEADER, equalTo(stub))
+            .willReturn(response
+                .withHeader("Content-Type", "application/json")
+                .withFixedDelay(DELAY)));
+    }
+
+    /***
+     * Get when the only listing of a VO or group was received
+     * @return Milliseconds since epoch
+     */
+    private long received(String stub, String groupName) {
+        var requests = mockCheckin.findAll(getRequestedFor(urlPathEqualTo(listPath(groupName)))
+                                               .withHeader(STUB_HEADER, equalTo(stub)));
+        assertEquals(1, requests.size());
+        return requests.get(0).getLoggedDate().getTime();
+    }
+
+    private String listPath(String groupName) {
+        return String.format("/api/v2/VoMembers/co/%s/cou/%s.json", checkinConfig.coId(), groupName);
+    }
+}
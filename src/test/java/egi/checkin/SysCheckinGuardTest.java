@@ -0,0 +1,158 @@
+package egi.checkin;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import egi.checkin.model.*;
+import egi.eu.ActionException;
+import egi.eu.SysTestDatabase;
+
+
+@QuarkusTest
+@TestProfile(SysCheckinGuardTest.SmallPolicies.class)
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysCheckinGuardTest {
+
+    private static final int VOLUME = 4;
+    private static final int CONCURRENT = 2;
+    private static final int QUEUED = 1;
+
+    /***
+     * Smaller thresholds, so that the tests can reach them
+     */
+    public static class SmallPolicies implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("CircuitBreaker/requestVolumeThreshold", String.valueOf(VOLUME),
+                          "CircuitBreaker/delay", "60000",
+                          "Bulkhead/value", String.valueOf(CONCURRENT),
+                          "Bulkhead/waitingTaskQueue", String.valueOf(QUEUED));
+        }
+    }
+
+    @Inject
+    CheckinGuard guard;
+
+    private FakeCheckin checkin;
+
+
+    @BeforeEach
+    public void setupEach() {
+        this.checkin = new FakeCheckin();
+        guard.guard(this.checkin);
+    }
+
+    @Test
+    @DisplayName("The circuit opens after failed calls, and then rejects calls without sending them")
+    public void testCircuitOpens() {
+        for(int i = 0; i < VOLUME; i++) {
+            var e = failure(guard.getUserInfoAsync("auth", null));
+            assertFalse(CheckinGuard.isRejected(e));
+        }
+        assertEquals(VOLUME, checkin.calls.get());
+
+        var e = failure(guard.getUserInfoAsync("auth", null));
+        assertTrue(CheckinGuard.isRejected(e));
+        assertEquals("circuitOpen", ((ActionException)e).details().get("reason"));
+        assertEquals(VOLUME, checkin.calls.get());
+    }
+
+    @Test
+    @DisplayName("Invalid requests do not open the circuit")
+    public void testCircuitStaysClosed() {
+        for(int i = 0; i < 2 * VOLUME; i++) {
+            var e = failure(guard.listAllGroupsAsync("auth", null, "1"));
+            assertInstanceOf(CheckinRequestException.class, e);
+        }
+        assertEquals(2 * VOLUME, checkin.calls.get());
+    }
+
+    @Test
+    @DisplayName("Calls beyond the bulkhead and its queue are rejected")
+    public void testBulkheadFull() {
+        var accepted = new ArrayList<CompletableFuture<String>>();
+        for(int i = 0; i < CONCURRENT + QUEUED; i++)
+            accepted.add(guard.updateUserRoleAsync("auth", null, i, null).subscribeAsCompletionStage());
+
+        var e = failure(guard.updateUserRoleAsync("auth", null, 0, null));
+        assertTrue(CheckinGuard.isRejected(e));
+        assertEquals("bulkheadFull", ((ActionException)e).details().get("reason"));
+        assertEquals(CONCURRENT, checkin.calls.get());
+
+        // Once the calls in progress complete, the queued one is sent too
+        checkin.pending.complete("done");
+        for(var call : accepted)
+            assertEquals("done", call.join());
+        assertEquals(CONCURRENT + QUEUED, checkin.calls.get());
+    }
+
+    private static Throwable failure(Uni<?> result) {
+        return assertThrows(Throwable.class, () -> result.await().indefinitely());
+    }
+
+    /***
+     * Check-in that is down, rejects group listings as invalid, and holds role updates until released
+     */
+    private static class FakeCheckin implements CheckinService {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+
+        @Override
+        public Uni<CheckinUser> getUserInfoAsync(String auth, String stub) {
+            calls.incrementAndGet();
+            return Uni.createFrom().failure(
+                    new CheckinServiceException(Response.status(Status.SERVICE_UNAVAILABLE).build(), ""));
+        }
+
+        @Override
+        public Uni<CheckinGroupList> listAllGroupsAsync(String auth, String stub, String coId) {
+            calls.incrementAndGet();
+            return Uni.createFrom().failure(
+                    new CheckinRequestException(Response.status(Status.BAD_REQUEST).build(), ""));
+        }
+
+        @Override
+        public Uni<CheckinRoleList> listGroupMembersAsync(String auth, String stub, String coId, String groupName) {
+            return Uni.createFrom().nothing();
+        }
+
+        @Override
+        public Multi<byte[]> listGroupMembersRawAsync(String auth, String acceptEncoding, String stub,
+                                                      String coId, String groupName) {
+            return Multi.createFrom().nothing();
+        }
+
+        @Override
+        public Uni<CheckinObject> addUserRoleAsync(String auth, String stub, CheckinRoleList addRoles) {
+            return Uni.createFrom().nothing();
+        }
+
+        @Override
+        public Uni<String> updateUserRoleAsync(String auth, String stub, long roleId, CheckinRoleList updateRoles) {
+            return Uni.createFrom().deferred(() -> {
+                calls.incrementAndGet();
+                return Uni.createFrom().completionStage(pending);
+            });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package egi.checkin;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import egi.checkin.model.CheckinUser;
+import egi.eu.SysTestDatabase;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysCheckinUserInfoTest {
+
+    private static final String PATH_USERINFO = "/auth/realms/egi/protocol/openid-connect/userinfo";
+    private static final String STUB_HEADER = "x-test-stub";
+    private static final int CONCURRENT = 10;
+
+    @InjectSysMockCheckin
+    private SysMockCheckin mockCheckin;
+
+    @Inject
+    Checkin checkin;
+
+    private String stub;
+
+
+    @BeforeEach
+    public void setupEach() {
+        // Slow user info, so that the lookups overlap
+        this.stub = "userinfo-" + UUID.randomUUID();
+        mockCheckin.stubFor(get(urlPathEqualTo(PATH_USERINFO))
+            .withHeader(STUB_HEADER, equalTo(this.stub))
+            .willReturn(aResponse()
+                .withStatus(Status.OK.getStatusCode())
+                .withHeader("Content-Type", "application/json")
+                .withFixedDelay(500)
+                .withBody(new CheckinUser("67890@egi.eu").setFullName("Jane Doe").toJsonString())));
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups of the same token make one call to Check-in")
+    public void testCoalesced() {
+        final var token = UUID.randomUUID().toString();
+        var lookups = new ArrayList<CompletableFuture<CheckinUser>>();
+        for(int i = 0; i < CONCURRENT; i++)
+            lookups.add(checkin.getUserInfoAsync(token, this.stub).subscribeAsCompletionStage());
+
+        for(var lookup : lookups)
+            assertEquals("67890@egi.eu", lookup.join().checkinUserId);
+        assertEquals(1, userInfoCalls(this.stub));
+
+        // Cached afterwards
+        assertEquals("67890@egi.eu", checkin.getUserInfoAsync(token, this.stub).await().indefinitely().checkinUserId);
+        assertEquals(1, userInfoCalls(this.stub));
+    }
+
+    @Test
+    @DisplayName("Lookups of the same token with different stubs are not shared")
+    public void testStubInKey() {
+        final var token = UUID.randomUUID().toString();
+        var pending = checkin.getUserInfoAsync(token, this.stub).subscribeAsCompletionStage();
+
+        // The default user info stub answers without a delay
+        assertEquals("12345@egi.eu", checkin.getUserInfoAsync(token, null).await().indefinitely().checkinUserId);
+        assertEquals("67890@egi.eu", pending.join().checkinUserId);
+        assertEquals(1, userInfoCalls(this.stub));
+    }
+
+    private int userInfoCalls(String stub) {
+        return mockCheckin.countRequestsMatching(getRequestedFor(urlPathEqualTo(PATH_USERINFO))
+                                                    .withHeader(STUB_HEADER, equalTo(stub)).build()).getCount();
+    }
+}
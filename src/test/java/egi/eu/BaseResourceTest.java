@@ -0,0 +1,100 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class BaseResourceTest {
+
+    private static final Duration BUDGET = Duration.ofMillis(100);
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(7);
+
+    private Deadlines resource;
+
+
+    /***
+     * Resource with a short time budget
+     */
+    private static class Deadlines extends BaseResource {
+        Deadlines() { super(Logger.getLogger(Deadlines.class)); }
+    }
+
+    @BeforeEach
+    public void setupEach() {
+        this.resource = new Deadlines();
+        this.resource.registry = new SimpleMeterRegistry();
+        this.resource.deadlineConfig = new DeadlineConfig() {
+            @Override
+            public Duration defaultBudget() { return BUDGET; }
+
+            @Override
+            public Map<String, Duration> resources() { return Map.of(); }
+
+            @Override
+            public Duration retryAfter() { return RETRY_AFTER; }
+        };
+    }
+
+    @Test
+    @DisplayName("Reads that run out of time are cancelled and the client is asked to retry")
+    public void testDeadline() {
+        var cancelled = new AtomicBoolean(false);
+        var work = Uni.createFrom().<Response>nothing().onCancellation().invoke(() -> cancelled.set(true));
+
+        var response = resource.withDeadline(work).await().atMost(Duration.ofSeconds(5));
+
+        assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("timeout", ((ActionError)response.getEntity()).id);
+        assertEquals(String.valueOf(RETRY_AFTER.toSeconds()), response.getHeaderString(HttpHeaders.RETRY_AFTER));
+        assertTrue(cancelled.get());
+        assertEquals(1, deadlinesExceeded());
+    }
+
+    @Test
+    @DisplayName("Reads that complete in time are returned as they are")
+    public void testInTime() {
+        var response = resource.withDeadline(Uni.createFrom().item(Response.ok().build()))
+                               .await().atMost(Duration.ofSeconds(5));
+
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(0, deadlinesExceeded());
+    }
+
+    @Test
+    @DisplayName("Changes that run out of time are reported as pending, and still complete")
+    public void testWriteDeadline() {
+        var change = new CompletableFuture<Response>();
+        var completed = new AtomicBoolean(false);
+        var work = Uni.createFrom().completionStage(change).invoke(() -> completed.set(true));
+
+        var response = resource.withWriteDeadline(work).await().atMost(Duration.ofSeconds(5));
+
+        assertEquals(Status.ACCEPTED.getStatusCode(), response.getStatus());
+        assertEquals("pending", ((ActionError)response.getEntity()).id);
+        assertNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, deadlinesExceeded());
+
+        // The change was not cancelled
+        change.complete(Response.ok().build());
+        assertTrue(completed.get());
+    }
+
+    private double deadlinesExceeded() {
+        return resource.registry.counter("request.deadline.exceeded", "resource", "BaseResourceTest$Deadlines").count();
+    }
+}
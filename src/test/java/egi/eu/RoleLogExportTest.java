@@ -0,0 +1,127 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import egi.eu.model.RoleLog;
+import egi.eu.model.User;
+
+
+public class RoleLogExportTest {
+
+    private static final LocalDateTime CHANGED_ON = LocalDateTime.of(2024, 3, 14, 15, 9, 26);
+
+    private static RoleLog log(User user, User changeBy) {
+        var log = new RoleLog();
+        log.role = "ims-manager";
+        log.assigned = true;
+        log.changedOn = CHANGED_ON;
+        log.user = user;
+        log.changeBy = changeBy;
+        return log;
+    }
+
+    @Test
+    @DisplayName("Plain values are not quoted")
+    public void testCsvPlain() {
+        var line = log(new User("1@egi.eu", "Jane Doe", "jane@egi.eu"),
+                       new User("2@egi.eu", "John Doe", "john@egi.eu")).toCsvLine();
+
+        assertEquals("ims-manager,true,2024-03-14T15:09:26.000000Z,1@egi.eu,Jane Doe,jane@egi.eu," +
+                     "2@egi.eu,John Doe,john@egi.eu\n", line);
+    }
+
+    @Test
+    @DisplayName("Values with separators, quotes, or line breaks are quoted")
+    public void testCsvQuoting() {
+        var line = log(new User("1@egi.eu", "Doe, Jane", "jane@egi.eu"),
+                       new User("2@egi.eu", "John \"JD\" Doe", "john@egi.eu\nother@egi.eu")).toCsvLine();
+
+        assertEquals("ims-manager,true,2024-03-14T15:09:26.000000Z,1@egi.eu,\"Doe, Jane\",jane@egi.eu," +
+                     "2@egi.eu,\"John \"\"JD\"\" Doe\",\"john@egi.eu\nother@egi.eu\"\n", line);
+
+        line = log(new User("1@egi.eu", "Jane\rDoe", null), null).toCsvLine();
+        assertTrue(line.contains(",\"Jane\rDoe\","));
+    }
+
+    @Test
+    @DisplayName("Missing values become empty fields")
+    public void testCsvNulls() {
+        var noUsers = log(null, null);
+        noUsers.changedOn = null;
+        assertEquals("ims-manager,true,,,,,,,\n", noUsers.toCsvLine());
+
+        var partial = log(new User("1@egi.eu", null, null), null);
+        assertEquals("ims-manager,true,2024-03-14T15:09:26.000000Z,1@egi.eu,,,,,\n", partial.toCsvLine());
+
+        // Every line has as many fields as the header
+        var fields = RoleLog.CSV_HEADER.split(",", -1).length;
+        assertEquals(fields, noUsers.toCsvLine().split(",", -1).length);
+        assertEquals(fields, partial.toCsvLine().split(",", -1).length);
+    }
+
+    @Test
+    @DisplayName("CSV and NDJSON exports format dates the same way")
+    public void testCsvDateFormat() throws Exception {
+        var log = log(null, null);
+        log.changedOn = LocalDateTime.of(2024, 3, 14, 15, 9, 26, 535_897_000);
+        assertEquals("ims-manager,true,2024-03-14T15:09:26.535897Z,,,,,,\n", log.toCsvLine());
+
+        var json = new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(log));
+        assertEquals("2024-03-14T15:09:26.535897Z", json.get("changedOn").asText());
+    }
+
+    @Test
+    @DisplayName("CSV export starts with the header, followed by one line per log")
+    public void testCsvExport() {
+        var logs = Multi.createFrom().items(log(new User("1@egi.eu", "Jane Doe", null), null),
+                                            log(null, new User("2@egi.eu", "John Doe", null)));
+
+        var lines = Users.toCsvLines(logs)
+                .subscribe().withSubscriber(AssertSubscriber.create(10))
+                .awaitCompletion()
+                .getItems();
+
+        assertEquals(3, lines.size());
+        assertEquals(RoleLog.CSV_HEADER, lines.get(0));
+        assertTrue(lines.get(1).startsWith("ims-manager,true,2024-03-14T15:09:26.000000Z,1@egi.eu,Jane Doe,"));
+        assertTrue(lines.get(2).endsWith(",,,,2@egi.eu,John Doe,\n"));
+    }
+
+    @Test
+    @DisplayName("CSV export of no logs is just the header")
+    public void testCsvExportEmpty() {
+        var lines = Users.toCsvLines(Multi.createFrom().empty())
+                .subscribe().withSubscriber(AssertSubscriber.create(10))
+                .awaitCompletion()
+                .getItems();
+
+        assertEquals(1, lines.size());
+        assertEquals(RoleLog.CSV_HEADER, lines.get(0));
+    }
+
+    @Test
+    @DisplayName("NDJSON export writes each log as one line of JSON")
+    public void testNdjsonExport() throws Exception {
+        var mapper = new ObjectMapper();
+        var json = mapper.writeValueAsString(log(new User("1@egi.eu", "Jane\nDoe", null), null));
+
+        // Line breaks in values are escaped, so they cannot split the record
+        assertFalse(json.contains("\n"));
+
+        var node = mapper.readTree(json);
+        assertEquals("RoleLog", node.get("kind").asText());
+        assertEquals("ims-manager", node.get("role").asText());
+        assertTrue(node.get("assigned").asBoolean());
+        assertEquals("2024-03-14T15:09:26.000000Z", node.get("changedOn").asText());
+        assertEquals("Jane\nDoe", node.get("user").get("fullName").asText());
+        assertFalse(node.has("changeBy"));
+    }
+}
@@ -0,0 +1,47 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.pgclient.PgPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysDedicatedConnectionsTest {
+
+    @Inject
+    DedicatedConnections connections;
+
+    @Inject
+    PgPool client;
+
+
+    @Test
+    @DisplayName("Dedicated connections reach the same database and schema, without using the pool")
+    public void testConnect() {
+        final int pooled = client.size();
+
+        var connection = connections.connectAsync().await().indefinitely();
+        try {
+            var row = connection.query("SELECT current_schema(), pg_try_advisory_lock(42)")
+                                .execute().await().indefinitely().iterator().next();
+            assertEquals("ims", row.getString(0));
+            assertTrue(row.getBoolean(1));
+            assertEquals(pooled, client.size());
+
+            // Another session cannot take the lock while the connection is open
+            var other = client.query("SELECT pg_try_advisory_lock(42)")
+                              .execute().await().indefinitely().iterator().next();
+            assertFalse(other.getBoolean(0));
+        }
+        finally {
+            connection.closeAndAwait();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package egi.eu;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.SecurityAttribute;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import egi.checkin.SysMockCheckinProxy;
+import egi.checkin.model.CheckinUser;
+import egi.eu.entity.DocumentHeadEntity;
+import egi.eu.model.Role;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysDocumentHeadsTest {
+
+    // The mock Check-in server will accept any token
+    private static final String BEARER_TOKEN = UUID.randomUUID().toString();
+
+    @Inject
+    PgPool client;
+
+    private Long seededHead;
+
+
+    @BeforeEach
+    public void setupEach() {
+        seededHead = headVersionId();
+    }
+
+    @AfterEach
+    public void cleanupEach() {
+        // Other tests search the seeded version
+        client.preparedQuery("UPDATE document_heads SET versionid = $1 WHERE document = $2")
+              .execute(Tuple.of(seededHead, DocumentHeadEntity.GOVERNANCE)).await().indefinitely();
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER, Role.IMS_USER },
+                  attributes = { @SecurityAttribute(key = CheckinUser.ATTR_USERID, value = "heads@egi.eu") })
+    @DisplayName("Writing a new version moves the head to it")
+    public void testMove() {
+        final var title = "Governance " + UUID.randomUUID();
+        updateGovernance(title);
+
+        assertEquals(latestVersionId(), headVersionId());
+        assertEquals(title, getGovernanceTitle());
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER, Role.IMS_USER },
+                  attributes = { @SecurityAttribute(key = CheckinUser.ATTR_USERID, value = "heads@egi.eu") })
+    @DisplayName("Without a head the version with the highest number is read, the next write creates the head")
+    public void testNoHead() {
+        final var title = "Governance " + UUID.randomUUID();
+        updateGovernance(title);
+
+        client.preparedQuery("DELETE FROM document_heads WHERE document = $1")
+              .execute(Tuple.of(DocumentHeadEntity.GOVERNANCE)).await().indefinitely();
+        assertNull(headVersionId());
+        assertEquals(title, getGovernanceTitle());
+
+        final var newTitle = "Governance " + UUID.randomUUID();
+        updateGovernance(newTitle);
+        assertEquals(latestVersionId(), headVersionId());
+        assertEquals(newTitle, getGovernanceTitle());
+    }
+
+    /***
+     * Write a new version of the governance
+     * @param title The title of the new version
+     */
+    private static void updateGovernance(String title) {
+        given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+            .contentType(ContentType.JSON)
+            .body(Map.of("title", title, "description", "Description of " + title, "groups", List.of()))
+        .when()
+            .put("/governance")
+        .then()
+            .statusCode(Status.CREATED.getStatusCode());
+    }
+
+    private static String getGovernanceTitle() {
+        return given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+        .when()
+            .get("/governance")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .extract().jsonPath().getString("title");
+    }
+
+    private Long headVersionId() {
+        var rows = client.preparedQuery("SELECT versionid FROM document_heads WHERE document = $1")
+                         .execute(Tuple.of(DocumentHeadEntity.GOVERNANCE)).await().indefinitely();
+        return rows.iterator().hasNext() ? rows.iterator().next().getLong(0) : null;
+    }
+
+    private Long latestVersionId() {
+        return client.query("SELECT id FROM governance ORDER BY version DESC LIMIT 1")
+                     .execute().await().indefinitely().iterator().next().getLong(0);
+    }
+}
@@ -0,0 +1,154 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import egi.checkin.SysMockCheckinProxy;
+
+
+@QuarkusTest
+@TestProfile(SysInvalidationBusTest.Enabled.class)
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysInvalidationBusTest {
+
+    private static final String CHANNEL = "ims_invalidate_test";
+    private static final String OTHER_NODE = "other-replica";
+
+    /***
+     * Invalidation is disabled in the test profile, these tests need it
+     */
+    public static class Enabled implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("egi.invalidation.enabled", "true",
+                          "egi.invalidation.channel", CHANNEL,
+                          "egi.invalidation.reconnect-delay", "100ms");
+        }
+    }
+
+    /***
+     * Records the invalidations this replica receives
+     */
+    @Singleton
+    public static class Received {
+        final List<String> topics = new CopyOnWriteArrayList<>();
+
+        void onInvalidation(@Observes InvalidationBus.Invalidation event) {
+            topics.add(event.topic);
+        }
+    }
+
+    @Inject
+    InvalidationBus bus;
+
+    @Inject
+    Received received;
+
+    @Inject
+    DedicatedConnections connections;
+
+    @Inject
+    PgPool client;
+
+
+    @BeforeEach
+    public void setupEach() {
+        // The bus listens once the application has started
+        await(() -> 0 < listeners());
+        received.topics.clear();
+    }
+
+    @Test
+    @DisplayName("Published invalidations reach the other replicas, tagged with the Id of this one")
+    public void testPublish() throws InterruptedException {
+        var payloads = new LinkedBlockingQueue<String>();
+        var connection = connections.connectAsync().await().indefinitely();
+        try {
+            connection.notificationHandler(notification -> payloads.add(notification.getPayload()));
+            connection.query("LISTEN " + CHANNEL).execute().await().indefinitely();
+
+            bus.publish(InvalidationBus.TOPIC_CHECKIN_ROLES);
+
+            assertEquals(bus.nodeId() + " " + InvalidationBus.TOPIC_CHECKIN_ROLES, payloads.poll(5, TimeUnit.SECONDS));
+        }
+        finally {
+            connection.closeAndAwait();
+        }
+    }
+
+    @Test
+    @DisplayName("Invalidations from other replicas are fired as events, our own are ignored")
+    public void testReceive() {
+        notify(bus.nodeId(), InvalidationBus.TOPIC_CHECKIN_SNAPSHOT);
+        notify(OTHER_NODE, InvalidationBus.TOPIC_CHECKIN_ROLES);
+
+        // Notifications are delivered in order, so ours was skipped once the other one arrives
+        await(() -> !received.topics.isEmpty());
+        assertEquals(List.of(InvalidationBus.TOPIC_CHECKIN_ROLES), received.topics);
+    }
+
+    @Test
+    @DisplayName("After the connection is lost, all topics are invalidated once listening again")
+    public void testReconnect() {
+        client.preparedQuery("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE query = $1")
+              .execute(Tuple.of("LISTEN " + CHANNEL)).await().indefinitely();
+
+        await(() -> 2 <= received.topics.size());
+        assertTrue(received.topics.containsAll(List.of(InvalidationBus.TOPIC_CHECKIN_ROLES,
+                                                       InvalidationBus.TOPIC_CHECKIN_SNAPSHOT)));
+        assertEquals(1, listeners());
+
+        // Listening again
+        received.topics.clear();
+        notify(OTHER_NODE, InvalidationBus.TOPIC_CHECKIN_ROLES);
+        await(() -> !received.topics.isEmpty());
+        assertEquals(List.of(InvalidationBus.TOPIC_CHECKIN_ROLES), received.topics);
+    }
+
+    private void notify(String nodeId, String topic) {
+        client.preparedQuery("SELECT pg_notify($1, $2)")
+              .execute(Tuple.of(CHANNEL, nodeId + " " + topic)).await().indefinitely();
+    }
+
+    /***
+     * Count the connections listening on the test channel
+     */
+    private long listeners() {
+        return client.preparedQuery("SELECT count(*) FROM pg_stat_activity WHERE query = $1")
+                     .execute(Tuple.of("LISTEN " + CHANNEL)).await().indefinitely().iterator().next().getLong(0);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        for(int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            try {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,154 @@
+package egi.eu;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.path.json.JsonPath;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import egi.checkin.SysMockCheckinProxy;
+import egi.eu.model.Role;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysRoleLogsTest {
+
+    // The mock Check-in server will accept any token
+    private static final String BEARER_TOKEN = UUID.randomUUID().toString();
+
+    // Logs and their holders are seeded with Ids from here, well past the seed data
+    private static final long FIRST_ID = 100000;
+    private static final int LOG_COUNT = 7;
+
+    private static final LocalDateTime SAME_TIME = LocalDateTime.of(2024, 3, 14, 15, 9, 26);
+
+    @Inject
+    PgPool client;
+
+
+    @BeforeEach
+    public void setupEach() {
+        client.query("DELETE FROM role_holder_map WHERE role_id >= " + FIRST_ID).execute().await().indefinitely();
+        client.query("DELETE FROM rolelog WHERE id >= " + FIRST_ID).execute().await().indefinitely();
+        client.query("DELETE FROM users WHERE id >= " + FIRST_ID).execute().await().indefinitely();
+
+        // All but the last log are stamped at the same moment, each has its own holder
+        var users = new ArrayList<Tuple>();
+        var logs = new ArrayList<Tuple>();
+        for(int i = 0; i < LOG_COUNT; i++) {
+            users.add(Tuple.of(FIRST_ID + i, holder(i)));
+            logs.add(Tuple.of(FIRST_ID + i, i < LOG_COUNT - 1 ? SAME_TIME : SAME_TIME.minusDays(1)));
+        }
+
+        client.preparedQuery("INSERT INTO users (id, checkinuserid) VALUES ($1, $2)")
+              .executeBatch(users).await().indefinitely();
+        client.preparedQuery("INSERT INTO rolelog (id, role, assigned, changedon) VALUES ($1, 'ims-developer', true, $2)")
+              .executeBatch(logs).await().indefinitely();
+        client.query("INSERT INTO role_holder_map (role_id, user_id) SELECT id, id FROM rolelog WHERE id >= " + FIRST_ID)
+              .execute().await().indefinitely();
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER })
+    @DisplayName("Paging through logs with identical timestamps returns each log once, in order")
+    public void testPagesWithSameTimestamp() {
+        var holders = new ArrayList<String>();
+        String from = null;
+        int pages = 0;
+        do {
+            var page = listRoleLogs(from, 3);
+            holders.addAll(page.getList("elements.user.checkinUserId"));
+
+            from = queryParam(page.getString("nextPage"), "from");
+            pages++;
+        } while(null != from && pages <= LOG_COUNT);
+
+        // Newest first, logs at the same time by descending Id
+        var expected = List.of(holder(5), holder(4), holder(3), holder(2), holder(1), holder(0), holder(6));
+        assertEquals(expected, holders);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER })
+    @DisplayName("Logs are returned with their fields")
+    public void testFields() {
+        var page = listRoleLogs(null, 100);
+
+        assertEquals(LOG_COUNT, page.getInt("count"));
+        assertEquals(Role.IMS_DEVELOPER, page.getString("elements[0].role"));
+        assertTrue(page.getBoolean("elements[0].assigned"));
+        assertEquals("2024-03-14T15:09:26.000000Z", page.getString("elements[0].changedOn"));
+        assertEquals("2024-03-13T15:09:26.000000Z", page.getString("elements[" + (LOG_COUNT - 1) + "].changedOn"));
+        assertNull(page.get("elements[0].changeBy"));
+        assertNull(page.getString("nextPage"));
+    }
+
+    /***
+     * List the seeded role logs
+     * @param from The cursor to start from, null for the first page
+     * @param limit The maximum number of logs to return
+     * @return The page of logs
+     */
+    private static JsonPath listRoleLogs(String from, int limit) {
+        var request = given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+            .queryParam("role", Role.IMS_DEVELOPER)
+            .queryParam("limit", limit);
+        if(null != from)
+            request.queryParam("from", from);
+
+        return request
+        .when()
+            .get("/role/logs")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .extract().jsonPath();
+    }
+
+    private static String holder(int log) {
+        return "holder" + log + "@egi.eu";
+    }
+
+    /***
+     * Extract a query parameter from a link
+     * @param link The link, can be null
+     * @param name The name of the query parameter
+     * @return Value of the parameter, null if not present
+     */
+    private static String queryParam(String link, String name) {
+        if(null == link)
+            return null;
+
+        var query = URI.create(link).getQuery();
+        if(null == query)
+            return null;
+
+        for(var param : query.split("&")) {
+            var index = param.indexOf('=');
+            if(index > 0 && param.substring(0, index).equals(name))
+                return param.substring(index + 1);
+        }
+
+        return null;
+    }
+}
@@ -26,12 +26,13 @@ public class SysRoleManipulationTest {
 
     private static final Logger log = Logger.getLogger(SysRoleManipulationTest.class);
     private ObjectMapper mapper = new ObjectMapper();
-    private Checkin checkin;
+
+    @Inject
+    Checkin checkin;
 
 
     @BeforeEach
     public void setupEach() {
-        this.checkin = new Checkin();
         var test = imsConfig.group();
         int i = 19;
     }
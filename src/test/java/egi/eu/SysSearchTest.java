@@ -0,0 +1,203 @@
+package egi.eu;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.path.json.JsonPath;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.List;
+import java.util.UUID;
+
+import egi.checkin.SysMockCheckinProxy;
+import egi.checkin.model.CheckinUser;
+import egi.eu.model.Role;
+import egi.eu.model.Role.RoleStatus;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysSearchTest {
+
+    // The mock Check-in server will accept any token
+    private static final String BEARER_TOKEN = UUID.randomUUID().toString();
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    FullTextSearch fullTextSearch;
+
+
+    @Test
+    @DisplayName("Search text is reduced to words, longer ones match as prefixes")
+    public void testQuery() {
+        assertEquals("ims:* & manager:* & x", FullTextSearch.toTsQuery("IMS (manager) & !x"));
+        assertEquals("process:* & owner:*", FullTextSearch.toTsQuery("  Process-Owner:* "));
+        assertEquals("", FullTextSearch.toTsQuery("|!&"));
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_USER })
+    @DisplayName("Roles are found by name and tasks, matches in the name rank higher")
+    public void testRoles() {
+        var page = search("owner", FullTextSearch.TYPE_ROLE);
+
+        List<String> types = page.getList("elements.type");
+        assertFalse(types.isEmpty());
+        assertTrue(types.stream().allMatch(FullTextSearch.TYPE_ROLE::equals));
+
+        // Process staff only mentions the case owner in its tasks
+        List<String> ids = page.getList("elements.id");
+        assertTrue(ids.indexOf("process-owner") < ids.indexOf("process-staff"));
+        assertEquals("Process Owner", page.getString("elements.find { it.id == 'process-owner' }.title"));
+
+        List<Float> scores = page.getList("elements.score", Float.class);
+        for(int i = 1; i < scores.size(); i++)
+            assertTrue(scores.get(i - 1) >= scores.get(i));
+        assertTrue(scores.get(0) < 1);
+
+        // Partial words match too
+        assertTrue(ids(search("manag", FullTextSearch.TYPE_ROLE)).contains("process-manager"));
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_USER })
+    @DisplayName("Deprecated roles are not found")
+    public void testDeprecatedRoles() {
+        setStatus("process-staff", RoleStatus.DEPRECATED);
+        try {
+            assertFalse(ids(search("staff", FullTextSearch.TYPE_ROLE)).contains("process-staff"));
+        }
+        finally {
+            setStatus("process-staff", RoleStatus.IMPLEMENTED);
+        }
+
+        assertTrue(ids(search("staff", FullTextSearch.TYPE_ROLE)).contains("process-staff"));
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_USER })
+    @DisplayName("Documents are found by the text of their parts")
+    public void testDocuments() {
+        // Text of the responsibilities
+        var page = search("mailing list", null);
+        assertEquals(FullTextSearch.TYPE_RESPONSIBILITIES, page.getString("elements[0].type"));
+        assertEquals("Responsibilities", page.getString("elements[0].title"));
+
+        // Text of a governance group
+        page = search("Executive Board", FullTextSearch.TYPE_GOVERNANCE);
+        assertEquals(List.of(FullTextSearch.TYPE_GOVERNANCE), page.getList("elements.type"));
+
+        // All words must match
+        assertEquals(0, search("mailing xyzzy", null).getInt("count"));
+    }
+
+    @Test
+    @DisplayName("Users are ranked on the same scale as the documents")
+    public void testUsers() {
+        var owner = new CheckinUser("owner@egi.eu").setFullName("Olivia Owner");
+        var other = new CheckinUser("other@egi.eu").setFullName("Oscar Other");
+        var results = fullTextSearch.searchAsync("owner", null, List.of(owner, other), 0, 100)
+                                    .await().indefinitely();
+
+        var users = results.getItem1().stream()
+                .filter(result -> FullTextSearch.TYPE_USER.equals(result.type)).toList();
+        assertEquals(List.of("owner@egi.eu", "other@egi.eu"), users.stream().map(result -> result.id).toList());
+        assertTrue(users.get(0).score > users.get(1).score);
+
+        // A match in the name scores like a match in the name of a role
+        var role = results.getItem1().stream().filter(result -> "process-owner".equals(result.id)).findFirst();
+        assertTrue(role.isPresent());
+        assertEquals(role.get().score, users.get(0).score, 0.1);
+        assertTrue(users.get(0).score < 1);
+
+        for(int i = 1; i < results.getItem1().size(); i++)
+            assertTrue(results.getItem1().get(i - 1).score >= results.getItem1().get(i).score);
+
+        // Only users
+        results = fullTextSearch.searchAsync("owner", FullTextSearch.TYPE_USER, List.of(owner), 0, 100)
+                                .await().indefinitely();
+        assertEquals(1L, results.getItem2());
+        assertEquals("Olivia Owner", results.getItem1().get(0).title);
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_USER })
+    @DisplayName("Results are paged by the database, links to the next page use the total")
+    public void testPaging() {
+        var all = search("owner", FullTextSearch.TYPE_ROLE);
+        List<String> ids = all.getList("elements.id");
+        assertTrue(ids.size() > 1);
+        assertEquals(ids.size(), all.getInt("count"));
+
+        var page = given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+            .queryParam("q", "owner")
+            .queryParam("type", FullTextSearch.TYPE_ROLE)
+            .queryParam("from", 1)
+            .queryParam("limit", 1)
+        .when()
+            .get("/search")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .extract().jsonPath();
+
+        assertEquals(List.of(ids.get(1)), page.getList("elements.id"));
+        assertEquals(1, page.getInt("count"));
+        assertEquals(ids.size() > 2, null != page.getString("nextPage"));
+
+        // Past the last result, the count is still known
+        var beyond = fullTextSearch.searchAsync("owner", FullTextSearch.TYPE_ROLE, List.of(), ids.size(), 10)
+                                   .await().indefinitely();
+        assertTrue(beyond.getItem1().isEmpty());
+        assertEquals(ids.size(), beyond.getItem2());
+    }
+
+    /***
+     * Search the roles and documents
+     * @param text The words to look for
+     * @param type The type of results, null for all types
+     * @return The page of results
+     */
+    private static JsonPath search(String text, String type) {
+        var request = given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+            .queryParam("q", text);
+        if(null != type)
+            request.queryParam("type", type);
+
+        return request
+        .when()
+            .get("/search")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .extract().jsonPath();
+    }
+
+    /***
+     * Get the Ids of the results
+     * @param page The page of results
+     * @return The Ids, empty if there are no results
+     */
+    private static List<String> ids(JsonPath page) {
+        List<String> ids = page.getList("elements.id");
+        return null != ids ? ids : List.of();
+    }
+
+    private void setStatus(String role, RoleStatus status) {
+        client.preparedQuery("UPDATE roles SET status = $1 WHERE role = $2")
+              .execute(Tuple.of(status.getValue(), role)).await().indefinitely();
+    }
+}
@@ -0,0 +1,63 @@
+package egi.eu;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+
+
+/***
+ * Runs a throwaway PostgreSQL server for the tests.
+ * The schema is created by Hibernate and seeded from import.sql, like in dev mode.
+ */
+public class SysTestDatabase implements QuarkusTestResourceLifecycleManager {
+
+    private static final Logger log = Logger.getLogger(SysTestDatabase.class);
+
+    private EmbeddedPostgres postgres;
+
+
+    /***
+     * Start database server
+     * @return Configuration keys to override
+     */
+    @Override
+    public Map<String, String> start() {
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+
+            // The entities live in the schema the application is configured with
+            try(var connection = postgres.getPostgresDatabase().getConnection();
+                var statement = connection.createStatement()) {
+                statement.execute("CREATE SCHEMA IF NOT EXISTS ims");
+            }
+        }
+        catch(IOException | SQLException e) {
+            log.error(e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        return Map.of("quarkus.datasource.reactive.url", "postgresql://localhost:" + postgres.getPort() + "/postgres",
+                      "quarkus.datasource.username", "postgres",
+                      "quarkus.datasource.password", "postgres",
+                      "quarkus.hibernate-orm.database.generation", "drop-and-create",
+                      "quarkus.hibernate-orm.sql-load-script", "import.sql");
+    }
+
+    /***
+     * Shutdown database server
+     */
+    @Override
+    public void stop() {
+        try {
+            if(null != postgres)
+                postgres.close();
+        }
+        catch(IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.vertx.RunOnVertxContext;
+import io.quarkus.test.vertx.UniAsserter;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import egi.eu.entity.RoleLogEntity;
+import egi.eu.entity.UserEntity;
+import egi.eu.model.User;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysUserIdCacheTest {
+
+    // Seeded by import.sql
+    private static final String SEEDED_USER = "e9c37aa0d1cf14c56e560f9f9915da6761f54383badb501a2867bc43581b835c@egi.eu";
+
+    @Inject
+    UserIdCache userIdCache;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    Mutiny.SessionFactory sf;
+
+    @Inject
+    MeterRegistry registry;
+
+
+    @Test
+    @DisplayName("Upsert returns the Ids of new and existing users, and leaves existing users as they are")
+    public void testUpsert() {
+        final var seededId = idOf(SEEDED_USER);
+        final var newUser = newUser();
+
+        var ids = UserEntity.upsertAsync(client, List.of(new User(SEEDED_USER, "Renamed", null), newUser))
+                            .await().indefinitely();
+
+        assertEquals(2, ids.size());
+        assertEquals(seededId, ids.get(SEEDED_USER));
+        assertEquals(idOf(newUser.checkinUserId), ids.get(newUser.checkinUserId));
+        assertNotEquals("Renamed", client.preparedQuery("SELECT fullname FROM users WHERE id = $1")
+                .execute(Tuple.of(seededId)).await().indefinitely().iterator().next().getString(0));
+
+        // The same user gets the same Id again
+        var again = UserEntity.upsertAsync(client, List.of(newUser)).await().indefinitely();
+        assertEquals(ids.get(newUser.checkinUserId), again.get(newUser.checkinUserId));
+    }
+
+    @Test
+    @DisplayName("Resolved users are cached, the cache is cleared when it is full")
+    public void testCache() {
+        final var user = newUser();
+        var first = userIdCache.resolveAsync(List.of(user)).await().indefinitely();
+
+        final double hits = hits();
+        var second = userIdCache.resolveAsync(List.of(user)).await().indefinitely();
+        assertEquals(first, second);
+        assertEquals(hits + 1, hits(), 0.1);
+
+        // Fill the cache, one more user clears it
+        var users = new ArrayList<User>();
+        for(int i = userIdCache.size(); i < UserIdCache.CACHE_SIZE; i++)
+            users.add(newUser());
+        userIdCache.resolveAsync(users).await().indefinitely();
+        assertEquals(UserIdCache.CACHE_SIZE, userIdCache.size());
+
+        final var last = newUser();
+        var ids = userIdCache.resolveAsync(List.of(last)).await().indefinitely();
+        assertEquals(1, userIdCache.size());
+        assertEquals(idOf(last.checkinUserId), ids.get(last.checkinUserId));
+
+        // Evicted users resolve to the same Id
+        assertEquals(first, userIdCache.resolveAsync(List.of(user)).await().indefinitely());
+    }
+
+    @Test
+    @RunOnVertxContext
+    @DisplayName("Entities link to resolved users by reference")
+    public void testReferences(UniAsserter asserter) {
+        final var holder = newUser();
+        final var assigner = newUser();
+        final var role = "ref-" + UUID.randomUUID().toString().substring(0, 8);
+
+        asserter.execute(() -> userIdCache.resolveAsync(List.of(holder, assigner))
+            .chain(ids -> sf.withTransaction((session, tx) -> {
+                var users = UserIdCache.references(session, ids);
+                return session.persist(new RoleLogEntity(role, true, users.get(holder.checkinUserId),
+                                                                     users.get(assigner.checkinUserId)));
+            })));
+
+        asserter.assertThat(() -> client.preparedQuery(
+                    "SELECT h.checkinuserid, a.checkinuserid FROM rolelog l " +
+                    "JOIN role_holder_map hm ON hm.role_id = l.id JOIN users h ON h.id = hm.user_id " +
+                    "JOIN role_assigner_map am ON am.role_id = l.id JOIN users a ON a.id = am.user_id " +
+                    "WHERE l.role = $1").execute(Tuple.of(role)),
+            rows -> {
+                assertEquals(1, rows.size());
+                var row = rows.iterator().next();
+                assertEquals(holder.checkinUserId, row.getString(0));
+                assertEquals(assigner.checkinUserId, row.getString(1));
+            });
+
+        // Linking did not create the users again
+        asserter.assertThat(() -> client.preparedQuery("SELECT count(*) FROM users WHERE checkinuserid = ANY($1)")
+                    .execute(Tuple.of(new String[] { holder.checkinUserId, assigner.checkinUserId })),
+            rows -> assertEquals(2, rows.iterator().next().getLong(0)));
+    }
+
+    private static User newUser() {
+        final var id = UUID.randomUUID().toString();
+        return new User(id + "@egi.eu", "User " + id, id + "@example.org");
+    }
+
+    private Long idOf(String checkinUserId) {
+        var rows = client.preparedQuery("SELECT id FROM users WHERE checkinuserid = $1")
+                         .execute(Tuple.of(checkinUserId)).await().indefinitely();
+        return rows.iterator().hasNext() ? rows.iterator().next().getLong(0) : null;
+    }
+
+    private double hits() {
+        return registry.counter("users.ids.cache", "result", "hit").count();
+    }
+}
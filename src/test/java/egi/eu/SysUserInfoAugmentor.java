@@ -0,0 +1,29 @@
+package egi.eu;
+
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.test.security.TestSecurityIdentityAugmentor;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.lang.annotation.Annotation;
+
+
+/***
+ * Applies the role customization to test identities that carry the OIDC user information,
+ * set with @SecurityAttribute(key = "userinfo", value = "<JSON>"), as OIDC does in production
+ */
+@ApplicationScoped
+public class SysUserInfoAugmentor implements TestSecurityIdentityAugmentor {
+
+    @Inject
+    SysRoleCustomization roleCustomization;
+
+    @Override
+    public SecurityIdentity augment(SecurityIdentity identity, Annotation[] annotations) {
+        if(null == identity.getAttribute("userinfo"))
+            return identity;
+
+        return this.roleCustomization.augment(identity, null).await().indefinitely();
+    }
+}
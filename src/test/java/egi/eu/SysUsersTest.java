@@ -3,11 +3,16 @@ package egi.eu;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import egi.checkin.InjectSysMockCheckin;
 import egi.eu.model.Role;
 import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.SecurityAttribute;
 import io.quarkus.test.security.TestSecurity;
 import io.quarkus.test.common.QuarkusTestResource;
 import org.junit.jupiter.api.DisplayName;
@@ -37,6 +42,11 @@ public class SysUsersTest {
     // The mock Check-in server will accept any token
     private static final String BEARER_TOKEN = UUID.randomUUID().toString();
 
+    // User information as fetched by OIDC, for a member of the VO
+    private static final String OIDC_USERINFO = """
+        { "voperson_id": "67890@egi.eu", "fullName": "Jane Doe",
+          "eduperson_entitlement": [ "urn:mace:egi.eu:group:vo.tools.egi.eu:role=member#aai.egi.eu" ] }""";
+
     @Test
     @TestSecurity(user = "test")
     @DisplayName("Get user info requires VO membership")
@@ -70,6 +80,29 @@ public class SysUsersTest {
         assertTrue(ui.assurances.contains("Substantial"));
     }
 
+    @Test
+    @TestSecurity(user = "test",
+                  attributes = { @SecurityAttribute(key = "userinfo", value = OIDC_USERINFO) })
+    @DisplayName("Get user info returns the user information fetched by OIDC, without calling Check-in")
+    public void testGetUserInfoFromIdentity() {
+        final var token = UUID.randomUUID().toString();
+        given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + token)
+        .when()
+            .get("/user/info")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .body("kind", equalTo("UserInfo"))
+            .body("checkinUserId", equalTo("67890@egi.eu"))
+            .body("fullName", equalTo("Jane Doe"))
+            .body("eduperson_entitlement", hasItem("urn:mace:egi.eu:group:vo.tools.egi.eu:role=member#aai.egi.eu"));
+
+        var calls = mockCheckin.countRequestsMatching(
+                            getRequestedFor(urlPathEqualTo("/auth/realms/egi/protocol/openid-connect/userinfo"))
+                                .withHeader(HttpHeaders.AUTHORIZATION, containing(token)).build());
+        assertEquals(0, calls.getCount());
+    }
+
     @Test
     @TestSecurity(user = "test")
     @DisplayName("List users requires VO membership")
@@ -116,6 +149,21 @@ public class SysUsersTest {
             .extract().body().as(Users.PageOfUsers.class);
     }
 
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_USER})
+    @DisplayName("Query users combining group members and role holders")
+    public void testQueryUsers() {
+        given()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+            .queryParam("expr", "group OR roles")
+        .when()
+            .get("/users/query")
+        .then()
+            .statusCode(Status.OK.getStatusCode())
+            .body("elements", notNullValue())
+            .body("elements", not(empty()));
+    }
+
     /***
      * Helper to convert list of entities to a map
      * @param list The list to convert
@@ -0,0 +1,141 @@
+package egi.eu;
+
+import static io.restassured.RestAssured.given;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.SecurityAttribute;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response.Status;
+
+import java.util.*;
+
+import egi.checkin.SysMockCheckinProxy;
+import egi.checkin.model.CheckinUser;
+import egi.eu.model.Role;
+
+
+/***
+ * Times large process and governance updates, to compare how entity ids are generated.
+ * Only runs when asked to, with -Dbenchmark=true. To compare against IDENTITY ids, run
+ * src/test/benchmark/compare-id-generation.sh, which runs this on both.
+ */
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SysWriteLatencyTest {
+
+    private static final Logger log = Logger.getLogger(SysWriteLatencyTest.class);
+
+    // The mock Check-in server will accept any token
+    private static final String BEARER_TOKEN = UUID.randomUUID().toString();
+
+    private static final int WARMUP_UPDATES = 5;
+    private static final int TIMED_UPDATES = 30;
+
+    private static final int REQUIREMENTS = 30;
+    private static final int RESPONSIBLES = 3;
+    private static final int INTERFACES = 30;
+    private static final int GROUPS = 20;
+    private static final int GROUP_INTERFACES = 5;
+
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER },
+                  attributes = { @SecurityAttribute(key = CheckinUser.ATTR_USERID, value = "benchmark@egi.eu") })
+    @DisplayName("Time updates of a process with many requirements and interfaces")
+    public void testProcessUpdates() {
+        time("process", "/process", update -> {
+            var requirements = new ArrayList<Map<String, Object>>();
+            for(int i = 0; i < REQUIREMENTS; i++) {
+                var responsibles = new ArrayList<Map<String, Object>>();
+                for(int r = 0; r < RESPONSIBLES; r++)
+                    responsibles.add(Map.of("checkinUserId", "responsible" + (i * RESPONSIBLES + r) + "@egi.eu",
+                                            "fullName", "Responsible " + r));
+                requirements.add(Map.of("code", "REQ" + i,
+                                        "requirement", "Requirement " + i + " of update " + update,
+                                        "source", "Source " + i,
+                                        "responsibles", responsibles));
+            }
+
+            var interfaces = new ArrayList<Map<String, Object>>();
+            for(int i = 0; i < INTERFACES; i++)
+                interfaces.add(Map.of("direction", 0 == i % 2 ? "In" : "Out",
+                                      "description", "Interface " + i + " of update " + update,
+                                      "relevantMaterial", "Material " + i,
+                                      "interfacesWith", "Process " + i));
+
+            return Map.of("description", "Benchmark update " + update,
+                          "contact", "benchmark@egi.eu",
+                          "reviewFrequency", 1,
+                          "frequencyUnit", "year",
+                          "requirements", requirements,
+                          "interfaces", interfaces);
+        });
+    }
+
+    @Test
+    @TestSecurity(user = "test", roles = { Role.IMS_OWNER },
+                  attributes = { @SecurityAttribute(key = CheckinUser.ATTR_USERID, value = "benchmark@egi.eu") })
+    @DisplayName("Time updates of a governance with many groups")
+    public void testGovernanceUpdates() {
+        time("governance", "/governance", update -> {
+            var groups = new ArrayList<Map<String, Object>>();
+            for(int i = 0; i < GROUPS; i++) {
+                var interfaces = new ArrayList<Map<String, Object>>();
+                for(int g = 0; g < GROUP_INTERFACES; g++)
+                    interfaces.add(Map.of("interfacesWith", "Group " + g,
+                                          "comment", "Interface " + g + " of group " + i + " in update " + update));
+                groups.add(Map.of("body", "Group " + i,
+                                  "composition", "Members of group " + i,
+                                  "meeting", "Weekly",
+                                  "decisionVoting", "Majority",
+                                  "interfaces", interfaces));
+            }
+
+            return Map.of("title", "Benchmark governance",
+                          "description", "Benchmark update " + update,
+                          "groups", groups);
+        });
+    }
+
+    /***
+     * Send updates of a document and log how long they took
+     * @param name What is updated, for the log
+     * @param path The endpoint that updates the document
+     * @param document Builds the body of an update, from its sequence number
+     */
+    private static void time(String name, String path, java.util.function.IntFunction<Map<String, Object>> document) {
+        var millis = new ArrayList<Long>();
+        for(int update = 0; update < WARMUP_UPDATES + TIMED_UPDATES; update++) {
+            var body = document.apply(update);
+
+            final long start = System.nanoTime();
+            given()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer: " + BEARER_TOKEN)
+                .contentType(ContentType.JSON)
+                .body(body)
+            .when()
+                .put(path)
+            .then()
+                .statusCode(Status.CREATED.getStatusCode());
+            final long elapsed = (System.nanoTime() - start) / 1000000;
+
+            if(update >= WARMUP_UPDATES)
+                millis.add(elapsed);
+        }
+
+        Collections.sort(millis);
+        log.infof("Write latency of %s updates: median %d ms, p95 %d ms, max %d ms over %d updates",
+                  name, millis.get(millis.size() / 2), millis.get((int)Math.ceil(millis.size() * 0.95) - 1),
+                  millis.get(millis.size() - 1), millis.size());
+    }
+}
@@ -0,0 +1,71 @@
+package egi.eu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+public class WarmUpTest {
+
+    private WarmUp warmUp;
+
+
+    @BeforeEach
+    public void setupEach() {
+        this.warmUp = new WarmUp();
+        this.warmUp.registry = new SimpleMeterRegistry();
+        this.warmUp.warmUpConfig = new WarmUpConfig() {
+            @Override
+            public boolean enabled() { return true; }
+
+            @Override
+            public Duration timeout() { return Duration.ofMillis(200); }
+        };
+    }
+
+    @Test
+    @DisplayName("Readiness is DOWN until all steps complete")
+    public void testComplete() {
+        var checkin = new CompletableFuture<Void>();
+        var database = new CompletableFuture<Void>();
+        warmUp.warmUp(List.of(Uni.createFrom().completionStage(checkin),
+                              Uni.createFrom().completionStage(database)));
+
+        assertEquals(HealthCheckResponse.Status.DOWN, warmUp.call().getStatus());
+        assertEquals("running", outcome());
+
+        checkin.complete(null);
+        assertEquals(HealthCheckResponse.Status.DOWN, warmUp.call().getStatus());
+
+        database.complete(null);
+        assertEquals(HealthCheckResponse.Status.UP, warmUp.call().getStatus());
+        assertEquals("complete", outcome());
+        assertEquals(1, warmUp.registry.timer("warmup", "result", "complete").count());
+    }
+
+    @Test
+    @DisplayName("Readiness turns UP when the warm-up times out")
+    public void testTimeout() throws InterruptedException {
+        warmUp.warmUp(List.of(Uni.createFrom().voidItem(), Uni.createFrom().nothing()));
+        assertEquals(HealthCheckResponse.Status.DOWN, warmUp.call().getStatus());
+
+        for(int i = 0; i < 50 && HealthCheckResponse.Status.DOWN == warmUp.call().getStatus(); i++)
+            Thread.sleep(100);
+
+        assertEquals(HealthCheckResponse.Status.UP, warmUp.call().getStatus());
+        assertEquals("timeout", outcome());
+    }
+
+    private String outcome() {
+        return (String)warmUp.call().getData().orElseThrow().get("outcome");
+    }
+}
@@ -0,0 +1,165 @@
+package egi.eu.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Tuple;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class CheckinMirrorTest {
+
+    /***
+     * A statement sent to the database, with the rows it was executed for
+     */
+    private record Statement(String query, List<Tuple> rows) {}
+
+    /***
+     * Connection that records the statements instead of sending them
+     */
+    private static class RecordingConnection {
+        final List<Statement> statements = new ArrayList<>();
+        final SqlConnection connection = SqlConnection.newInstance(
+                proxy(io.vertx.sqlclient.SqlConnection.class, (method, args) -> {
+                    if("preparedQuery".equals(method.getName()))
+                        return preparedQuery((String)args[0]);
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+
+        @SuppressWarnings("unchecked")
+        private PreparedQuery<?> preparedQuery(String query) {
+            return proxy(PreparedQuery.class, (method, args) -> {
+                switch(method.getName()) {
+                    case "execute": this.statements.add(new Statement(query, List.of((Tuple)args[0]))); break;
+                    case "executeBatch": this.statements.add(new Statement(query, (List<Tuple>)args[0])); break;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+
+                // Succeed, with the callback or the future the caller uses
+                if(args[args.length - 1] instanceof Handler<?> handler) {
+                    succeed(handler);
+                    return null;
+                }
+                return Future.succeededFuture();
+            });
+        }
+
+        /***
+         * Complete a callback of the Vert.x API, which always takes the result of the call
+         */
+        @SuppressWarnings("unchecked")
+        private static void succeed(Handler<?> handler) {
+            ((Handler<AsyncResult<Object>>)handler).handle(Future.succeededFuture());
+        }
+    }
+
+    private interface Invocation {
+        Object invoke(Method method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if(Object.class == method.getDeclaringClass()) {
+                switch(method.getName()) {
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return type.getSimpleName();
+                }
+            }
+            return invocation.invoke(method, args);
+        });
+    }
+
+    private static List<CheckinMemberEntity> members(int count) {
+        var members = new ArrayList<CheckinMemberEntity>(count);
+        for(int i = 0; i < count; i++)
+            members.add(new CheckinMemberEntity(i + "@egi.eu", "User " + i, null, 0 == i % 2));
+        return members;
+    }
+
+    @Test
+    @DisplayName("Members no longer in the VO are deleted first, then the others are upserted in batches")
+    public void testMembers() {
+        final int count = 2 * CheckinMemberEntity.BATCH_SIZE + 1;
+        var recorder = new RecordingConnection();
+        CheckinMemberEntity.syncAsync(recorder.connection, members(count)).await().indefinitely();
+
+        var statements = recorder.statements;
+        assertEquals(4, statements.size());
+
+        // Delete everyone not in the list
+        var delete = statements.get(0);
+        assertTrue(delete.query().startsWith("DELETE FROM checkin_members"));
+        var ids = (String[])delete.rows().get(0).getValue(0);
+        assertEquals(count, ids.length);
+        assertEquals("0@egi.eu", ids[0]);
+        assertEquals(count - 1 + "@egi.eu", ids[count - 1]);
+
+        // Then upsert all of them
+        int upserted = 0;
+        for(var upsert : statements.subList(1, statements.size())) {
+            assertTrue(upsert.query().startsWith("INSERT INTO checkin_members"));
+            assertTrue(upsert.rows().size() <= CheckinMemberEntity.BATCH_SIZE);
+            upserted += upsert.rows().size();
+        }
+        assertEquals(count, upserted);
+        assertEquals(1, statements.get(3).rows().size());
+
+        var row = statements.get(1).rows().get(0);
+        assertEquals("0@egi.eu", row.getString(0));
+        assertEquals("User 0", row.getString(1));
+        assertNull(row.getValue(2));
+        assertEquals(true, row.getBoolean(3));
+    }
+
+    @Test
+    @DisplayName("Syncing no members deletes them all")
+    public void testNoMembers() {
+        var recorder = new RecordingConnection();
+        CheckinMemberEntity.syncAsync(recorder.connection, List.of()).await().indefinitely();
+
+        assertEquals(1, recorder.statements.size());
+        var delete = recorder.statements.get(0);
+        assertTrue(delete.query().startsWith("DELETE FROM checkin_members"));
+        assertEquals(0, ((String[])delete.rows().get(0).getValue(0)).length);
+    }
+
+    @Test
+    @DisplayName("Role assignments no longer held are deleted first, then the others are inserted")
+    public void testRoleAssignments() {
+        var assignments = List.of(new CheckinRoleAssignmentEntity("1@egi.eu", "ims-manager"),
+                                  new CheckinRoleAssignmentEntity("1@egi.eu", "ims-owner"),
+                                  new CheckinRoleAssignmentEntity("2@egi.eu", "ims-manager"));
+
+        var recorder = new RecordingConnection();
+        CheckinRoleAssignmentEntity.syncAsync(recorder.connection, assignments).await().indefinitely();
+
+        var statements = recorder.statements;
+        assertEquals(2, statements.size());
+
+        // Delete the pairs not in the list, passed as two parallel arrays
+        var delete = statements.get(0);
+        assertTrue(delete.query().startsWith("DELETE FROM checkin_role_assignments"));
+        var keys = delete.rows().get(0);
+        assertArrayEquals(new String[] { "1@egi.eu", "1@egi.eu", "2@egi.eu" }, (String[])keys.getValue(0));
+        assertArrayEquals(new String[] { "ims-manager", "ims-owner", "ims-manager" }, (String[])keys.getValue(1));
+
+        // Then insert the ones missing
+        var insert = statements.get(1);
+        assertTrue(insert.query().startsWith("INSERT INTO checkin_role_assignments"));
+        assertEquals(3, insert.rows().size());
+        assertEquals("1@egi.eu", insert.rows().get(1).getString(0));
+        assertEquals("ims-owner", insert.rows().get(1).getString(1));
+    }
+}
@@ -0,0 +1,65 @@
+package egi.eu.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.vertx.RunOnVertxContext;
+import io.quarkus.test.vertx.UniAsserter;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import egi.checkin.SysMockCheckinProxy;
+import egi.eu.SysTestDatabase;
+
+
+@QuarkusTest
+@QuarkusTestResource(SysMockCheckinProxy.class)
+@QuarkusTestResource(SysTestDatabase.class)
+public class SysStatusTransitionTest {
+
+    @Inject
+    PgPool client;
+
+
+    @Test
+    @RunOnVertxContext
+    @DisplayName("Transitions are stamped by the database, and newest come first")
+    public void testStampedByDatabase(UniAsserter asserter) {
+        // Not the Id of any content version
+        final long contentId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+        asserter.assertThat(() -> Panache.withTransaction(() -> {
+                var transition = new StatusTransitionEntity(StatusTransitionEntity.PROCESS, contentId, 1, null, "First");
+                return transition.persistAndFlush().replaceWith(transition);
+            })
+            .chain(first -> client.preparedQuery("SELECT changedon, changedon <= localtimestamp FROM status_transitions WHERE id = $1")
+                .execute(Tuple.of(first.id))
+                .map(rows -> {
+                    // The generated value is read back on insert
+                    var row = rows.iterator().next();
+                    assertNotNull(first.changedOn);
+                    assertEquals(row.getLocalDateTime(0), first.changedOn);
+                    assertTrue(row.getBoolean(1));
+                    return first;
+                })),
+            first -> assertEquals("First", first.changeDescription));
+
+        asserter.assertThat(() -> Panache.withTransaction(() -> {
+                var transition = new StatusTransitionEntity(StatusTransitionEntity.PROCESS, contentId, 2, null, "Second");
+                return transition.persist();
+            })
+            .chain(unused -> Panache.withSession(() -> StatusTransitionEntity.getLatest(StatusTransitionEntity.PROCESS, contentId))),
+            latest -> assertEquals("Second", latest.changeDescription));
+
+        asserter.execute(() -> client.preparedQuery("DELETE FROM status_transitions WHERE contentid = $1")
+                                     .execute(Tuple.of(contentId)));
+    }
+}
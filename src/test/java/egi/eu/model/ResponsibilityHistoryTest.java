@@ -0,0 +1,74 @@
+package egi.eu.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import egi.eu.entity.ResponsibilityEntity;
+import egi.eu.entity.StatusTransitionEntity;
+import egi.eu.model.Responsibility.ResponsibilityStatus;
+
+
+public class ResponsibilityHistoryTest {
+
+    private static ResponsibilityEntity version(long id, int version, String description) {
+        var entity = new ResponsibilityEntity();
+        entity.id = id;
+        entity.version = version;
+        entity.description = description;
+        entity.status = ResponsibilityStatus.DRAFT.getValue();
+        entity.changeDescription = "Version " + version;
+        return entity;
+    }
+
+    private static StatusTransitionEntity transition(long id, long contentId, ResponsibilityStatus status) {
+        var transition = new StatusTransitionEntity(StatusTransitionEntity.RESPONSIBILITY, contentId,
+                                                    status.getValue(), null, status.name());
+        transition.id = id;
+        return transition;
+    }
+
+    @Test
+    @DisplayName("Current status comes from the newest transition of the latest version")
+    public void testCurrentStatus() {
+        var v2 = version(20, 2, "Second");
+        var v1 = version(10, 1, "First");
+        var transitions = List.of(
+                transition(3, 20, ResponsibilityStatus.READY_FOR_APPROVAL),
+                transition(2, 10, ResponsibilityStatus.APPROVED),
+                transition(1, 10, ResponsibilityStatus.READY_FOR_APPROVAL));
+
+        var resp = new Responsibility(List.of(v2, v1), transitions);
+        assertEquals(ResponsibilityStatus.READY_FOR_APPROVAL, resp.status);
+        assertEquals("Second", resp.description);
+        assertEquals(2, resp.version);
+        assertEquals("READY_FOR_APPROVAL", resp.changeDescription);
+
+        // Older entries interleave the status changes with the versions they apply to
+        assertNotNull(resp.history);
+        var history = resp.history.versions;
+        assertEquals(4, history.size());
+
+        assertEquals(2, history.get(0).version);
+        assertEquals(ResponsibilityStatus.DRAFT, history.get(0).status);
+
+        assertEquals(1, history.get(1).version);
+        assertEquals(ResponsibilityStatus.APPROVED, history.get(1).status);
+        assertEquals("First", history.get(1).description);
+
+        assertEquals(ResponsibilityStatus.READY_FOR_APPROVAL, history.get(2).status);
+        assertEquals(ResponsibilityStatus.DRAFT, history.get(3).status);
+    }
+
+    @Test
+    @DisplayName("Versions without transitions keep the status they were created with")
+    public void testNoTransitions() {
+        var resp = new Responsibility(List.of(version(10, 1, "First")), List.of());
+        assertEquals(ResponsibilityStatus.DRAFT, resp.status);
+        assertEquals("Version 1", resp.changeDescription);
+        assertNull(resp.history);
+    }
+}
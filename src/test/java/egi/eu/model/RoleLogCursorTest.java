@@ -0,0 +1,50 @@
+package egi.eu.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+
+public class RoleLogCursorTest {
+
+    @Test
+    @DisplayName("Cursor survives encoding round trip")
+    public void testRoundTrip() {
+        var changedOn = LocalDateTime.of(2024, 3, 14, 15, 9, 26, 535897000);
+        var cursor = new RoleLogCursor(changedOn, 42);
+
+        var decoded = RoleLogCursor.decode(cursor.encode());
+        assertNotNull(decoded);
+        assertEquals(changedOn, decoded.changedOn);
+        assertEquals(42, decoded.id);
+    }
+
+    @Test
+    @DisplayName("Missing cursor starts from the newest log")
+    public void testFirstPage() {
+        var cursor = RoleLogCursor.decode(null);
+        assertNotNull(cursor);
+        assertEquals(Long.MAX_VALUE, cursor.id);
+
+        cursor = RoleLogCursor.decode("now");
+        assertNotNull(cursor);
+        assertEquals(Long.MAX_VALUE, cursor.id);
+    }
+
+    @Test
+    @DisplayName("Plain date and time is still accepted, and excludes logs changed at that moment")
+    public void testLegacyDateTime() {
+        var cursor = RoleLogCursor.decode("2024-03-14T15:09:26");
+        assertNotNull(cursor);
+        assertEquals(Long.MIN_VALUE, cursor.id);
+    }
+
+    @Test
+    @DisplayName("Invalid cursor is rejected")
+    public void testInvalid() {
+        assertNull(RoleLogCursor.decode("not a cursor"));
+    }
+}
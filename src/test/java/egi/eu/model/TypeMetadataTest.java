@@ -0,0 +1,42 @@
+package egi.eu.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+
+public class TypeMetadataTest {
+
+    static class PageOfRoles extends Page<Role, Long> {
+        PageOfRoles(List<Role> roles) { super(null, 0L, 10, roles, true); }
+    }
+
+    static class PageOfCounts extends Page<Integer, Integer> {
+        PageOfCounts() { super(); }
+    }
+
+    @Test
+    @DisplayName("Type parameters are resolved once per class")
+    public void testTypeParameters() {
+        var metadata = TypeMetadata.of(PageOfRoles.class);
+        assertSame(metadata, TypeMetadata.of(PageOfRoles.class));
+        assertEquals(Role.class, metadata.typeParameter(0));
+        assertEquals(Long.class, metadata.typeParameter(1));
+        assertNull(metadata.typeParameter(2));
+    }
+
+    @Test
+    @DisplayName("Pages get the same kind and defaults as before")
+    public void testPage() {
+        var page = new PageOfRoles(List.of());
+        assertEquals("PageOfRoles", page.kind);
+        assertEquals(0L, page.from);
+
+        var counts = new PageOfCounts();
+        assertEquals("PageOfIntegers", counts.kind);
+        assertNull(counts.from); // Boxed types have no default
+    }
+}